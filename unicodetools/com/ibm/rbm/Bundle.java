@@ -53,6 +53,7 @@ public class Bundle {
     public String manager;
     
     private TreeSet groups;                                 // A vector of groups of NLS items, the key is the group name
+    private Hashtable groupsByName;                         // The same groups hashed by name, for lookups
     
     /**
      * A hashtable of all of the items in the bundle, hashed according to their
@@ -104,6 +105,7 @@ public class Bundle {
             }
         });
         
+        groupsByName = new Hashtable();
         duplicates = new Vector();
         allItems = new Hashtable();
     }
@@ -191,14 +193,9 @@ public class Bundle {
      */
 		
     public void removeUntranslatedItem(String name) {
-        Iterator iter = untranslatedItems.iterator();
-        while (iter.hasNext()) {
-            BundleItem item = (BundleItem)iter.next();
-            if (item.getKey().equals(name)) {
-                untranslatedItems.remove(item);
-                break;
-            }
-        }
+        if (name == null) return;
+        // The set is ordered by key, so any item of the same key finds the one to remove
+        untranslatedItems.remove(new BundleItem(null, name, null));
     }
 		
     /**
@@ -206,13 +203,7 @@ public class Bundle {
      */
 		
     public boolean hasGroup(String groupName) {
-        Iterator iter = groups.iterator();
-        while (iter.hasNext()) {
-            BundleGroup group = (BundleGroup)iter.next();
-            if (group.getName().equals(groupName))
-            	return true;
-        }
-        return false;
+        return (groupName != null && groupsByName.containsKey(groupName));
     }
     
     /**
@@ -231,14 +222,9 @@ public class Bundle {
      */
 		
     public void removeGroup(String groupName) {
-        Iterator iter = groups.iterator();
-        while (iter.hasNext()) {
-            BundleGroup tempGroup = (BundleGroup)iter.next();
-            if (tempGroup.getName().equals(groupName)) {
-                groups.remove(tempGroup);
-                break;
-            }
-        }
+        BundleGroup tempGroup = (groupName == null ? null : (BundleGroup)groupsByName.remove(groupName));
+        if (tempGroup != null)
+        	groups.remove(tempGroup);
         // Remove the items from the untanslated items
         removeUntranslatedItemsByGroup(groupName);
 			
@@ -350,13 +336,9 @@ public class Bundle {
      */
 		
     public BundleGroup getBundleGroup(String groupName) {
-        Iterator iter = groups.iterator();
-        while(iter.hasNext()) {
-            BundleGroup group = (BundleGroup)iter.next();
-            if (group.getName().equals(groupName))
-            	return group;
-        }
-        return null;
+        if (groupName == null)
+        	return null;
+        return (BundleGroup)groupsByName.get(groupName);
     }
     
     /**
@@ -383,7 +365,21 @@ public class Bundle {
      */
      
     public void addBundleGroup(BundleGroup bg) {
-        groups.add(bg);
+        // A group of a name all ready taken is not added, as the set of groups is ordered by name
+        if (groups.add(bg))
+        	groupsByName.put(bg.getName(), bg);
+    }
+
+    /**
+     * Called by a group of this bundle when its name is changed, to keep the lookup of
+     * groups by name current
+     */
+
+    void groupRenamed(BundleGroup bg, String oldName) {
+        if (oldName != null && groupsByName.get(oldName) == bg) {
+            groupsByName.remove(oldName);
+            groupsByName.put(bg.getName(), bg);
+        }
     }
 
     /**
@@ -78,14 +78,9 @@ public class BundleGroup {
      * Remove an item of the given name from the group
      */
     public void removeBundleItem(String itemName) {
-        Iterator iter = items.iterator();
-        while(iter.hasNext()) {
-            BundleItem item = (BundleItem)iter.next();
-            if (item.getKey().equals(itemName)) {
-                items.remove(item);
-                break;
-            }
-        }
+        if (itemName == null) return;
+        // The set is ordered by key, so any item of the same key finds the one to remove
+        items.remove(new BundleItem(null, itemName, null));
     }
 	
     /**
@@ -139,7 +134,10 @@ public class BundleGroup {
     }
 	
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        if (bundle != null)
+        	bundle.groupRenamed(this, oldName);
     }
 	
     /**
@@ -27,6 +27,7 @@ public class BundleItem {
     private boolean translated;                            // Has this item been translated?
     private Date created;                                  // The date of creation of the item
     private Date modified;                                 // The last modification date of the item
+    private boolean modifiedKnown;                         // Whether the modification date was given, not defaulted
     private String creator;                                // The name of the person who created the item
     private String modifier;                               // The name of the person who last modified the item
     private Hashtable lookups;                             // A hastable of lookups for the item (i.e. ({#}, Meaning) pairs)
@@ -47,6 +48,7 @@ public class BundleItem {
         translated = false;
         created = new Date();                               // Defaults to the system's current date
         modified = new Date();                              // Defaults to the system's current date
+        modifiedKnown = false;
         creator = null;
         modifier = null;
         lookups = new Hashtable();
@@ -68,6 +70,16 @@ public class BundleItem {
         return modified;
     }
     
+    /**
+     * Returns whether the last modification date of the item is known. It is not when the
+     * item was read from a file that gives no date, or gives one that could not be read, in
+     * which case getModifiedDate() returns the time the item was created in memory.
+     */
+	
+    public boolean isModifiedDateKnown() {
+        return modifiedKnown;
+    }
+    
     /**
      * Returns the date the item was first created.
      */
@@ -234,8 +246,10 @@ public class BundleItem {
      */
     
     public void setModifiedDate(String dateStr) {
-        if (dateStr != null)
-        	modified = parseDateFromString(dateStr);
+        if (dateStr == null) return;
+        Date date = parseDate(dateStr);
+        modified = (date == null ? new Date() : date);
+        modifiedKnown = (date != null);
     }
     
     /**
@@ -244,6 +258,7 @@ public class BundleItem {
     
     public void setModifiedDate(Date date) {
         modified = date;
+        modifiedKnown = (date != null);
     }
     
     /**
@@ -373,6 +388,12 @@ public class BundleItem {
     private static final String specialSaveChars = "=: \t\r\n\f#!";
 	
     private Date parseDateFromString(String dateStr) {
+        Date date = parseDate(dateStr);
+        return (date == null ? new Date() : date);
+    }
+    
+    // Returns null if the date cannot be read
+    private static Date parseDate(String dateStr) {
         SimpleDateFormat format = null;
         if (dateStr.length() == 10)
         	format = new SimpleDateFormat("yyyy-MM-dd"); // Simple format
@@ -381,7 +402,7 @@ public class BundleItem {
         try {
             return format.parse(dateStr);
         } catch (ParseException pe) {
-            return new Date();
+            return null;
         }
     }
 }
\ No newline at end of file
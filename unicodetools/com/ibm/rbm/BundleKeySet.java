@@ -0,0 +1,111 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.util.*;
+
+/**
+ * An immutable set of the NLS keys of a bundle, used by the code scanner to test
+ * candidate strings for membership. Most candidates found in source code are not
+ * keys at all, so a Bloom filter rejects them before the sorted key array is
+ * searched. Since nothing is modified after construction, any number of scan
+ * threads may query the set without locking.
+ * 
+ * @see com.ibm.rbm.RBReporterScanner
+ */
+public final class BundleKeySet {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASH_COUNT   = 3;
+    
+    private final String keys[];                       // The keys in ascending order
+    private final long   bits[];                       // The Bloom filter
+    private final int    mask;                         // The number of filter bits less one
+    
+    /**
+     * Creates the key set of all of the items in a bundle.
+     */
+    
+    public BundleKeySet(Bundle bundle) {
+        this(bundle.allItems.keySet());
+    }
+    
+    /**
+     * Creates a key set from a collection of Strings.
+     */
+    
+    public BundleKeySet(Collection keyCollection) {
+        keys = new String[keyCollection.size()];
+        Iterator iter = keyCollection.iterator();
+        for (int i=0; i < keys.length; i++) {
+            keys[i] = (String)iter.next();
+        }
+        Arrays.sort(keys);
+        int numBits = 64;
+        while (numBits < keys.length * BITS_PER_KEY && numBits < (1 << 30)) numBits <<= 1;
+        bits = new long[numBits >>> 6];
+        mask = numBits - 1;
+        for (int i=0; i < keys.length; i++) {
+            int h1 = keys[i].hashCode();
+            int h2 = mix(h1);
+            for (int j=0; j < HASH_COUNT; j++) {
+                int bit = (h1 + j * h2) & mask;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+    
+    // A second, independent hash derived from the String hash (the MurmurHash3 finalizer)
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+    
+    /**
+     * Returns the index of a key in the set, or -1 if the key is not a member.
+     * Indices run from 0 to size()-1 in ascending key order.
+     */
+    
+    public int indexOf(String key) {
+        if (key == null) return -1;
+        int h1 = key.hashCode();
+        int h2 = mix(h1);
+        for (int j=0; j < HASH_COUNT; j++) {
+            int bit = (h1 + j * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) return -1;
+        }
+        int index = Arrays.binarySearch(keys, key);
+        return (index < 0 ? -1 : index);
+    }
+    
+    /**
+     * Returns true if the key is a member of the set.
+     */
+    
+    public boolean contains(String key) {
+        return indexOf(key) >= 0;
+    }
+    
+    /**
+     * Returns the key at a given index.
+     */
+    
+    public String getKey(int index) {
+        return keys[index];
+    }
+    
+    /**
+     * Returns the number of keys in the set.
+     */
+    
+    public int size() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.Serializable;
+
+/**
+ * A file rule of a scan file, which accepts the files whose names start with, end with
+ * and contain the given strings. Empty or null strings are not checked.
+ *
+ * @see com.ibm.rbm.ScanPlan
+ */
+class FileRule implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    final String name;
+    final String starts_with;
+    final String ends_with;
+    final String contains;
+    
+    FileRule(String name, String starts_with, String ends_with, String contains) {
+        this.name = name;
+        this.starts_with = starts_with;
+        this.ends_with = ends_with;
+        this.contains = contains;
+    }
+    
+    boolean applyRule(String source) {
+        boolean accept = true;
+        if (starts_with != null && starts_with.length() > 0 && !(source.startsWith(starts_with))) accept = false;
+        if (ends_with != null && ends_with.length() > 0 && !(source.endsWith(ends_with))) accept = false;
+        if (contains != null && contains.length() > 0 && source.indexOf(contains) < 0) accept = false;
+        return accept;
+    }
+}
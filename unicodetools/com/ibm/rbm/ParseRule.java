@@ -0,0 +1,73 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.Serializable;
+import java.util.Vector;
+
+/**
+ * A parse rule of a scan file, which finds the resource names that follow one string and
+ * precede another on a line of code.
+ *
+ * @see com.ibm.rbm.ScanPlan
+ */
+class ParseRule implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    final String name;
+    final String before;
+    final String after;
+    
+    ParseRule(String name, String before, String after) {
+        this.name = name;
+        this.before = before;
+        this.after = after;
+    }
+    
+    // returns the vector of strings found after before and before after
+    
+    Vector applyRule(String source) {
+        Vector v = new Vector();
+        if (before != null && before.length() > 0) {
+            if (after != null && after.length() > 0) {
+                // Both before and after non-empty
+                int before_index = -1;
+                int after_index = -1;
+                while ((before_index = source.indexOf(before, ++before_index)) >= 0) {
+                    //before_index = source.indexOf(before, before_index);
+                    after_index = -1;
+                    after_index = source.indexOf(after, before_index + before.length()+1);
+                    if (after_index < 0 || before_index < 0 || before.length() < 0) {
+                        break;
+                    }
+                    v.addElement(source.substring(before_index + before.length(), after_index));
+                    before_index = after_index;
+                }
+            } else {
+                // Before non-empty, after empty
+                int index = -1;
+                while (source.indexOf(before, ++index) >= 0) {
+                    index = source.indexOf(before, index);
+                    String result = source.substring(index + before.length(), source.length());
+                    if (result != null && result.length() > 0) v.addElement(result);
+                }
+            }
+        } else if (after != null && after.length() > 0) {
+            // Before empty, after not
+            int index = -1;
+            while (source.indexOf(after, ++index) >= 0) {
+                index = source.indexOf(before, index);
+                String result = source.substring(0, index);
+                if (result != null && result.length() > 0) v.addElement(result);
+            }
+        } else {
+            // Before and after empty
+            v.addElement(source);
+        }
+        return v;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Vector;
+
+/**
+ * Include and exclude globs for a scanned directory. Globs follow the syntax of
+ * PathMatcher and are matched against the path relative to the scanned
+ * directory, using '/' as the separator. A glob without a '/' is matched against the
+ * file or directory name alone, so that 'node_modules' prunes that directory at any depth.
+ * The matchers are not serializable and are compiled again when the filter is deserialized.
+ */
+class PathFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final String includeGlobs[];
+    private final String excludeGlobs[];
+    private final boolean includeNames[];
+    private final boolean excludeNames[];
+    private transient PathMatcher includes[];
+    private transient PathMatcher excludes[];
+    
+    PathFilter(Vector includeGlobs, Vector excludeGlobs) {
+        this.includeGlobs = new String[includeGlobs.size()];
+        includeGlobs.copyInto(this.includeGlobs);
+        this.excludeGlobs = new String[excludeGlobs.size()];
+        excludeGlobs.copyInto(this.excludeGlobs);
+        includeNames = new boolean[this.includeGlobs.length];
+        excludeNames = new boolean[this.excludeGlobs.length];
+        includes = compile(this.includeGlobs, includeNames);
+        excludes = compile(this.excludeGlobs, excludeNames);
+    }
+    
+    private static PathMatcher[] compile(String globs[], boolean names[]) {
+        FileSystem fs = FileSystems.getDefault();
+        PathMatcher matchers[] = new PathMatcher[globs.length];
+        for (int i=0; i < globs.length; i++) {
+            names[i] = globs[i].indexOf('/') < 0;
+            matchers[i] = fs.getPathMatcher("glob:" + globs[i]);
+        }
+        return matchers;
+    }
+    
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        includes = compile(includeGlobs, includeNames);
+        excludes = compile(excludeGlobs, excludeNames);
+    }
+    
+    private static boolean matches(PathMatcher matchers[], boolean names[], Path path) {
+        for (int i=0; i < matchers.length; i++) {
+            Path target = path;
+            if (names[i]) target = path.getFileName();
+            if (target != null && matchers[i].matches(target)) return true;
+        }
+        return false;
+    }
+    
+    boolean isExcluded(Path relative) {
+        return matches(excludes, excludeNames, relative);
+    }
+    
+    boolean accept(Path relative) {
+        if (isExcluded(relative)) return false;
+        return includes.length == 0 || matches(includes, includeNames, relative);
+    }
+}
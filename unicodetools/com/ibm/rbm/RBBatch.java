@@ -0,0 +1,372 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.xerces.parsers.DOMParser;
+import org.w3c.dom.*;
+import org.xml.sax.*;
+
+/**
+ * RBBatch imports, validates, exports and saves any number of resource bundles in one run,
+ * without a user interface. The work is read from an XML file such as the following:
+ * <pre>
+ * &lt;RBBatch threads="4"&gt;
+ *   &lt;Bundle name="core" file="/src/nls/Core.properties"&gt;
+ *     &lt;Import format="tmx" file="/drops/core.tmx" resources="overwrite" locales="populate"
+ *             policy="identical,keep-translated,newer" /&gt;
+ *     &lt;Import format="xliff" file="/drops/core_de.xlf" resources="ignore" locales="empty"
+ *             group="Imported" translated="false" /&gt;
+ *     &lt;Validate strict="true" /&gt;
+ *     &lt;Export format="icu" file="/build/icu/Core.txt" /&gt;
+ *     &lt;Export format="xliff" file="/build/xliff/Core.xlf" /&gt;
+ *     &lt;Save /&gt;
+ *   &lt;/Bundle&gt;
+ * &lt;/RBBatch&gt;
+ * </pre>
+ * Each bundle is loaded once, and its steps are run on the loaded model in the order
+ * given. The THREADS attribute bounds the number of bundles worked on at the same time.
+ * <p>
+ * The import formats are 'properties', 'tmx', 'xliff', 'icu', reading the genrb source files
+ * RBICUExporter writes, and 'java', reading the compiled ListResourceBundle classes of a
+ * class file, a directory or a jar file. The
+ * RESOURCES attribute decides what happens to an imported resource whose key the locale
+ * all ready has: 'overwrite' replaces the existing resource and 'ignore', the default,
+ * keeps it. The LOCALES attribute
+ * decides what happens to the resources of a locale the bundle does not have: 'populate'
+ * creates the locale from the base class, 'empty' creates it empty, and 'ignore', the
+ * default, skips its resources. GROUP names the group of resources imported without one,
+ * TRANSLATED gives their translated flag, and CREATE_GROUPS="false" puts resources of
+ * unknown groups into the ungrouped items. POLICY lists the rules of RBConflictPolicy that
+ * are asked about each conflicting resource before the RESOURCES option, for example
+ * "group:Menus=keep,newer"; the number of conflicts each rule decided is reported.
+ * <p>
+ * The export formats are 'icu', 'res', writing the compiled .res files of genrb directly,
+ * 'java', 'properties', 'tmx' and 'xliff', and the file names the base class file to write.
+ * Validation reports, for each locale, the keys missing from it or not found in the base
+ * class, its duplicate keys, and its untranslated items; with STRICT="true" any missing,
+ * extra or duplicate key fails the bundle. A Save step writes the bundle back to the
+ * directory of its base class file, or to the directory given by its DIRECTORY attribute.
+ *
+ * @see com.ibm.rbm.RBBatchJob
+ * @see com.ibm.rbm.RBImportSession
+ */
+public class RBBatch {
+    private Vector      jobs;
+    private int         threads;
+    private PrintStream out = System.out;
+
+    public RBBatch(File batchFile) throws IOException {
+        jobs = new Vector();
+        readJobs(batchFile);
+    }
+
+    public RBBatch(Vector jobs, int threads) {
+        this.jobs = jobs;
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the jobs of the batch
+     */
+
+    public Vector getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Sets the stream the progress of the batch is printed to
+     */
+
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Returns the reader of an import format, or null if the format is not known
+     */
+
+    public static RBImportReader getImportReader(String format) {
+        if (format.equalsIgnoreCase("properties")) return new RBPropertiesImportReader();
+        if (format.equalsIgnoreCase("tmx")) return new RBTMXImportReader();
+        if (format.equalsIgnoreCase("xliff") || format.equalsIgnoreCase("xlf")) return new RBxliffImportReader();
+        if (format.equalsIgnoreCase("java")) return new RBJavaImportReader();
+        if (format.equalsIgnoreCase("icu")) return new RBICUImportReader();
+        return null;
+    }
+
+    /**
+     * Returns the exporter of an export format, or null if the format is not known
+     */
+
+    public static RBExporter getExporter(String format) {
+        if (format.equalsIgnoreCase("icu")) return new RBICUExporter();
+        if (format.equalsIgnoreCase("res")) return new RBICUBinaryExporter();
+        if (format.equalsIgnoreCase("java")) return new RBJavaExporter();
+        if (format.equalsIgnoreCase("properties")) return new RBPropertiesExporter();
+        if (format.equalsIgnoreCase("tmx")) return new RBTMXExporter();
+        if (format.equalsIgnoreCase("xliff") || format.equalsIgnoreCase("xlf")) return new RBxliffExporter();
+        return null;
+    }
+
+    /**
+     * Runs every job, at most THREADS at a time, and returns when they are done. Returns the
+     * number of jobs that failed.
+     */
+
+    public int runAll() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        final int failures[] = new int[1];
+        for (int i=0; i < jobs.size(); i++) {
+            final RBBatchJob job = (RBBatchJob)jobs.elementAt(i);
+            pool.execute(new Runnable() {
+                public void run() {
+                    try {
+                        RBBatch.this.run(job);
+                    } catch (Throwable t) {
+                        // Errors such as running out of memory fail the bundle, not the batch
+                        out.println("RBBatch: " + job.getName() + ": Failed: " + t);
+                        synchronized (failures) {
+                            failures[0]++;
+                        }
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        return failures[0];
+    }
+
+    /**
+     * Runs the steps of one job, stopping at the first that fails, and returns the bundle they
+     * worked on.
+     */
+
+    public RBManager run(RBBatchJob job) throws IOException {
+        RBManager rbm = job.getManager();
+        if (rbm == null) {
+            if (job.getBundleFile() == null) throw new IOException("No bundle to work on");
+            long start = System.currentTimeMillis();
+            rbm = new RBManager(job.getBundleFile(), false);
+            job.setManager(rbm);
+            out.println("RBBatch: " + job.getName() + ": Loaded " + rbm.getBundles().size() + " locales of " +
+                        rbm.getBaseClass() + " in " + (System.currentTimeMillis() - start) + " ms");
+        }
+        Vector steps = job.getSteps();
+        for (int i=0; i < steps.size(); i++) {
+            RBBatchJob.Step step = (RBBatchJob.Step)steps.elementAt(i);
+            long start = System.currentTimeMillis();
+            String result;
+            if (step.type == RBBatchJob.STEP_IMPORT) result = runImport(rbm, step);
+            else if (step.type == RBBatchJob.STEP_VALIDATE) result = validate(job, rbm, step.strict);
+            else if (step.type == RBBatchJob.STEP_EXPORT) result = runExport(rbm, step);
+            else result = save(rbm, job, step);
+            out.println("RBBatch: " + job.getName() + ": " + result + " in " + (System.currentTimeMillis() - start) + " ms");
+        }
+        return rbm;
+    }
+
+    private String runImport(RBManager rbm, RBBatchJob.Step step) throws IOException {
+        RBImportReader reader = getImportReader(step.format);
+        if (reader == null) throw new IOException("Unknown import format: " + step.format);
+        RBImportSession session = new RBImportSession(rbm);
+        session.setFileConflictOption(step.fileOption);
+        session.setResourceConflictOption(step.resourceOption);
+        session.setDefaultGroup(step.group);
+        session.setDefaultTranslated(step.translated);
+        session.setDefaultGroupCreation(step.createGroups);
+        session.addConflictPolicies(step.policies);
+        reader.importFile(step.file, session);
+        String report = session.getConflictReport();
+        return "Imported " + step.file + ": " + session.getSummary() + (report.length() > 0 ? "; conflicts " + report : "");
+    }
+
+    private String runExport(RBManager rbm, RBBatchJob.Step step) throws IOException {
+        RBExporter exporter = getExporter(step.format);
+        if (exporter == null) throw new IOException("Unknown export format: " + step.format);
+        File directory = step.file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Unable to create " + directory);
+        exporter.export(rbm, step.file.getAbsoluteFile());
+        return "Exported " + step.format + " to " + step.file;
+    }
+
+    private String save(RBManager rbm, RBBatchJob job, RBBatchJob.Step step) throws IOException {
+        File directory = step.file;
+        if (directory == null && job.getBundleFile() != null)
+            directory = job.getBundleFile().getAbsoluteFile().getParentFile();
+        if (directory == null) {
+            rbm.writeToFile();
+            return "Saved " + rbm.getBaseClass();
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Unable to create " + directory);
+        rbm.writeToDirectory(directory);
+        return "Saved " + rbm.getBaseClass() + " to " + directory;
+    }
+
+    // Checks each locale of a bundle against its base class, printing a line for each locale
+    // with problems. Returns a summary of the checks, or throws an exception if the check is
+    // strict and finds missing, extra or duplicate keys.
+    private String validate(RBBatchJob job, RBManager rbm, boolean strict) throws IOException {
+        Vector bundles = rbm.getBundles();
+        Bundle base = (Bundle)bundles.firstElement();
+        int problems = 0;
+        int untranslated = 0;
+        for (int i=0; i < bundles.size(); i++) {
+            Bundle bundle = (Bundle)bundles.elementAt(i);
+            int missing = 0;
+            int extra = 0;
+            if (i > 0) {
+                Enumeration keys = base.allItems.keys();
+                while (keys.hasMoreElements()) {
+                    if (!bundle.allItems.containsKey(keys.nextElement())) missing++;
+                }
+                keys = bundle.allItems.keys();
+                while (keys.hasMoreElements()) {
+                    if (!base.allItems.containsKey(keys.nextElement())) extra++;
+                }
+            }
+            int duplicates = (bundle.duplicates == null ? 0 : bundle.duplicates.size());
+            int locale_untranslated = (i > 0 ? bundle.getUntranslatedItemsSize() : 0);
+            untranslated += locale_untranslated;
+            problems += missing + extra + duplicates;
+            if (missing + extra + duplicates + locale_untranslated > 0) {
+                out.println("RBBatch: " + job.getName() + ": Locale " + RBReportMetrics.getLocaleName(bundle) + ": " +
+                            missing + " missing, " + extra + " not in the base class, " + duplicates + " duplicates, " +
+                            locale_untranslated + " untranslated");
+            }
+        }
+        String summary = "Validated " + bundles.size() + " locales: " + problems + " problems, " +
+                         untranslated + " untranslated items";
+        if (strict && problems > 0) throw new IOException(summary);
+        return summary;
+    }
+
+    private void readJobs(File batchFile) throws IOException {
+        Document config = null;
+        FileInputStream fis = new FileInputStream(batchFile);
+        try {
+            DOMParser parser = new DOMParser();
+            parser.parse(new InputSource(fis));
+            config = parser.getDocument();
+        } catch (SAXException saxe) {
+            throw new IOException("Illegal XML Document: " + saxe.getMessage());
+        } finally {
+            fis.close();
+        }
+        Element root = config.getDocumentElement();
+        threads = Runtime.getRuntime().availableProcessors();
+        if (root.getAttribute("threads").length() > 0) {
+            try {
+                threads = Integer.parseInt(root.getAttribute("threads"));
+            } catch (NumberFormatException nfe) {
+                throw new IOException("Illegal threads attribute: " + root.getAttribute("threads"));
+            }
+        }
+        NodeList nl = root.getElementsByTagName("Bundle");
+        for (int i=0; i < nl.getLength(); i++) {
+            jobs.addElement(readJob((Element)nl.item(i)));
+        }
+    }
+
+    private RBBatchJob readJob(Element job_elem) throws IOException {
+        String name = job_elem.getAttribute("name");
+        RBBatchJob job = new RBBatchJob(name.length() > 0 ? name : "Bundle " + (jobs.size() + 1));
+        if (job_elem.getAttribute("file").length() < 1)
+            throw new IOException("Bundle " + job.getName() + " has no file");
+        job.setBundleFile(new File(job_elem.getAttribute("file")));
+
+        Node node = job_elem.getFirstChild();
+        for (; node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() != Node.ELEMENT_NODE) continue;
+            Element step_elem = (Element)node;
+            String type = step_elem.getNodeName();
+            String format = step_elem.getAttribute("format");
+            String file = step_elem.getAttribute("file");
+            if (type.equals("Import")) {
+                if (getImportReader(format) == null)
+                    throw new IOException("Bundle " + job.getName() + " has an unknown import format: " + format);
+                if (file.length() < 1) throw new IOException("Bundle " + job.getName() + " has an import without a file");
+                RBBatchJob.Step step = job.addImport(format, new File(file), readResourceOption(job, step_elem),
+                                                     readFileOption(job, step_elem));
+                if (step_elem.getAttribute("group").length() > 0) step.group = step_elem.getAttribute("group");
+                step.translated = !step_elem.getAttribute("translated").equalsIgnoreCase("false");
+                step.createGroups = !step_elem.getAttribute("create_groups").equalsIgnoreCase("false");
+                try {
+                    step.policies = RBConflictPolicy.parse(step_elem.getAttribute("policy"));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Bundle " + job.getName() + " has an import with a bad policy: " + e.getMessage());
+                }
+            } else if (type.equals("Validate")) {
+                job.addValidate(step_elem.getAttribute("strict").equalsIgnoreCase("true"));
+            } else if (type.equals("Export")) {
+                if (getExporter(format) == null)
+                    throw new IOException("Bundle " + job.getName() + " has an unknown export format: " + format);
+                if (file.length() < 1) throw new IOException("Bundle " + job.getName() + " has an export without a file");
+                job.addExport(format, new File(file));
+            } else if (type.equals("Save")) {
+                String directory = step_elem.getAttribute("directory");
+                job.addSave(directory.length() > 0 ? new File(directory) : null);
+            } else {
+                throw new IOException("Bundle " + job.getName() + " has an unknown step: " + type);
+            }
+        }
+        return job;
+    }
+
+    private static int readResourceOption(RBBatchJob job, Element step_elem) throws IOException {
+        String option = step_elem.getAttribute("resources");
+        if (option.length() < 1 || option.equalsIgnoreCase("ignore")) return RBImportSession.RESOURCE_OPTION_IGNORE;
+        if (option.equalsIgnoreCase("overwrite")) return RBImportSession.RESOURCE_OPTION_OVERWRITE;
+        throw new IOException("Bundle " + job.getName() + " has an unknown resources option: " + option);
+    }
+
+    private static int readFileOption(RBBatchJob job, Element step_elem) throws IOException {
+        String option = step_elem.getAttribute("locales");
+        if (option.length() < 1 || option.equalsIgnoreCase("ignore")) return RBImportSession.FILE_OPTION_IGNORE;
+        if (option.equalsIgnoreCase("populate")) return RBImportSession.FILE_OPTION_POPULATE;
+        if (option.equalsIgnoreCase("empty")) return RBImportSession.FILE_OPTION_EMPTY;
+        throw new IOException("Bundle " + job.getName() + " has an unknown locales option: " + option);
+    }
+
+    private static String getUsage() {
+        return "\nRBBatch Command Line Usage:\n\n" +
+               "Usage:                 java com.ibm.rbm.RBBatch [-profile] batch_file\n\n" +
+               "Options:               -profile Print the time spent loading, importing and exporting on exit";
+    }
+
+    /**
+     * Runs the batch file given on the command line. The exit status is 0 if every bundle
+     * was processed, and 1 otherwise.
+     */
+
+    public static void main(String args[]) {
+        // The batch never needs a display
+        System.setProperty("java.awt.headless", "true");
+        String batchFile = null;
+        for (int i=0; i < args.length; i++) {
+            if (args[i].equals("-profile")) RBInstrumentation.profileUntilExit(System.out);
+            else batchFile = args[i];
+        }
+        if (batchFile == null) {
+            System.out.println(getUsage());
+            return;
+        }
+        try {
+            RBBatch batch = new RBBatch(new File(batchFile));
+            System.exit(batch.runAll() == 0 ? 0 : 1);
+        } catch (Exception e) {
+            System.err.println("RBBatch: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The work RBBatch does on one resource bundle: the bundle to load, followed by the steps
+ * to run on it in order. The bundle is loaded once, and every step works on the same
+ * model, so the resources imported by one step are validated and exported by the next.
+ *
+ * @see com.ibm.rbm.RBBatch
+ */
+public class RBBatchJob {
+    public static final int STEP_IMPORT   = 0;
+    public static final int STEP_VALIDATE = 1;
+    public static final int STEP_EXPORT   = 2;
+    public static final int STEP_SAVE     = 3;
+
+    /**
+     * One step of a job. Import steps carry the options of their RBImportSession; the
+     * PROMPT options have no meaning here.
+     */
+
+    public static class Step {
+        public int     type;
+        public String  format;                                  // The import or export format
+        public File    file;                                    // The file to import or export, or the save directory
+        public int     fileOption = RBImportSession.FILE_OPTION_IGNORE;
+        public int     resourceOption = RBImportSession.RESOURCE_OPTION_IGNORE;
+        public String  group;                                   // The group of ungrouped imports, or null
+        public boolean translated = true;
+        public boolean createGroups = true;
+        public Vector  policies = new Vector();                 // The RBConflictPolicy rules of an import
+        public boolean strict;                                  // Fail the job when validation finds problems
+
+        public Step(int type, String format, File file) {
+            this.type = type;
+            this.format = format;
+            this.file = file;
+        }
+    }
+
+    private String    name;
+    private File      bundleFile;                               // The base class file of the bundle
+    private RBManager manager;                                  // Or a bundle all ready loaded
+    private Vector    steps = new Vector();
+
+    public RBBatchJob(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public File getBundleFile() {
+        return bundleFile;
+    }
+
+    public void setBundleFile(File bundleFile) {
+        this.bundleFile = bundleFile;
+    }
+
+    public RBManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Runs the steps on a bundle that is all ready loaded instead of loading the bundle file
+     */
+
+    public void setManager(RBManager manager) {
+        this.manager = manager;
+    }
+
+    public Vector getSteps() {
+        return steps;
+    }
+
+    public void addStep(Step step) {
+        steps.addElement(step);
+    }
+
+    /**
+     * Adds a step importing a file, with the given conflict options
+     */
+
+    public Step addImport(String format, File file, int resourceOption, int fileOption) {
+        Step step = new Step(STEP_IMPORT, format, file);
+        step.resourceOption = resourceOption;
+        step.fileOption = fileOption;
+        addStep(step);
+        return step;
+    }
+
+    public Step addValidate(boolean strict) {
+        Step step = new Step(STEP_VALIDATE, null, null);
+        step.strict = strict;
+        addStep(step);
+        return step;
+    }
+
+    public Step addExport(String format, File file) {
+        Step step = new Step(STEP_EXPORT, format, file);
+        addStep(step);
+        return step;
+    }
+
+    /**
+     * Adds a step writing the bundle in its own format to a directory, or back to the
+     * directory it was loaded from if the directory is null
+     */
+
+    public Step addSave(File directory) {
+        Step step = new Step(STEP_SAVE, null, directory);
+        addStep(step);
+        return step;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.util.*;
+
+/**
+ * A rule deciding between a resource that all ready exists in a bundle and an imported
+ * resource of the same key. The rules of an RBImportSession are asked in turn, and the first
+ * one that does not abstain decides; when all of them abstain the resource conflict option of
+ * the session applies. Rules never show a user interface, so an import with any number of
+ * conflicts can finish unattended.
+ * <p>
+ * The rules below may also be named in a comma separated list and created through parse():
+ * <ul>
+ * <li><b>overwrite</b> (or <b>prefer-source</b>) - always take the imported resource
+ * <li><b>keep</b> (or <b>prefer-target</b>) - always keep the existing resource
+ * <li><b>newer</b> - take whichever resource was modified last
+ * <li><b>keep-translated</b> - keep the existing resource if it is marked as translated
+ * <li><b>prefer-translated</b> - take whichever resource is marked as translated, if only one is
+ * <li><b>identical</b> - keep the existing resource if its translation is the same
+ * <li><b>group:</b><i>name</i><b>=</b><i>rule</i> - apply the rule to resources of the named group only
+ * <li><b>locale:</b><i>encoding</i><b>=</b><i>rule</i> - apply the rule to resources of the named locale only
+ * </ul>
+ * For example, "identical,group:Menus=keep,newer" keeps menu resources and otherwise takes
+ * the resource modified last, without counting unchanged resources as replaced.
+ *
+ * @see com.ibm.rbm.RBImportSession
+ */
+public abstract class RBConflictPolicy {
+    /** The rule has no opinion; the next rule is asked */
+    public static final int ABSTAIN   = 0;
+    /** Keep the existing resource and drop the imported one */
+    public static final int KEEP      = 1;
+    /** Replace the existing resource with the imported one */
+    public static final int OVERWRITE = 2;
+
+    private String name;
+
+    protected RBConflictPolicy(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the rule, as accepted by parse()
+     */
+
+    public String getName() {
+        return name;
+    }
+
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Decides between the existing resource of a bundle and the imported resource of the same
+     * key. The imported resource is all ready placed in the group it will be inserted into.
+     * Returns KEEP, OVERWRITE or ABSTAIN.
+     */
+
+    public abstract int decide(Bundle bundle, BundleItem existing, BundleItem imported);
+
+    /**
+     * Returns a rule always taking the imported resource
+     */
+
+    public static RBConflictPolicy preferImported() {
+        return new RBConflictPolicy("overwrite") {
+            public int decide(Bundle bundle, BundleItem existing, BundleItem imported) {
+                return OVERWRITE;
+            }
+        };
+    }
+
+    /**
+     * Returns a rule always keeping the existing resource
+     */
+
+    public static RBConflictPolicy preferExisting() {
+        return new RBConflictPolicy("keep") {
+            public int decide(Bundle bundle, BundleItem existing, BundleItem imported) {
+                return KEEP;
+            }
+        };
+    }
+
+    /**
+     * Returns a rule taking whichever resource has the later modification date. The rule
+     * abstains when the dates are the same or either is unknown, such as for resources
+     * imported from plain properties files.
+     */
+
+    public static RBConflictPolicy newer() {
+        return new RBConflictPolicy("newer") {
+            public int decide(Bundle bundle, BundleItem existing, BundleItem imported) {
+                if (!existing.isModifiedDateKnown() || !imported.isModifiedDateKnown()) return ABSTAIN;
+                Date existingDate = existing.getModifiedDate();
+                Date importedDate = imported.getModifiedDate();
+                if (importedDate.after(existingDate)) return OVERWRITE;
+                if (importedDate.before(existingDate)) return KEEP;
+                return ABSTAIN;
+            }
+        };
+    }
+
+    /**
+     * Returns a rule keeping an existing resource that is marked as translated
+     */
+
+    public static RBConflictPolicy keepTranslated() {
+        return new RBConflictPolicy("keep-translated") {
+            public int decide(Bundle bundle, BundleItem existing, BundleItem imported) {
+                return (existing.isTranslated() ? KEEP : ABSTAIN);
+            }
+        };
+    }
+
+    /**
+     * Returns a rule taking the resource that is marked as translated when the other is not
+     */
+
+    public static RBConflictPolicy preferTranslated() {
+        return new RBConflictPolicy("prefer-translated") {
+            public int decide(Bundle bundle, BundleItem existing, BundleItem imported) {
+                if (existing.isTranslated() == imported.isTranslated()) return ABSTAIN;
+                return (imported.isTranslated() ? OVERWRITE : KEEP);
+            }
+        };
+    }
+
+    /**
+     * Returns a rule keeping an existing resource whose translation is the same as the
+     * imported one
+     */
+
+    public static RBConflictPolicy identical() {
+        return new RBConflictPolicy("identical") {
+            public int decide(Bundle bundle, BundleItem existing, BundleItem imported) {
+                String translation = existing.getTranslation();
+                if (translation == null) return (imported.getTranslation() == null ? KEEP : ABSTAIN);
+                return (translation.equals(imported.getTranslation()) ? KEEP : ABSTAIN);
+            }
+        };
+    }
+
+    /**
+     * Returns a rule applying another rule to the resources of one group only. The group is
+     * the one the existing resource belongs to.
+     */
+
+    public static RBConflictPolicy forGroup(final String groupName, final RBConflictPolicy policy) {
+        return new RBConflictPolicy("group:" + groupName + "=" + policy.getName()) {
+            public int decide(Bundle bundle, BundleItem existing, BundleItem imported) {
+                BundleGroup group = existing.getParentGroup();
+                if (group == null || !group.getName().equals(groupName)) return ABSTAIN;
+                return policy.decide(bundle, existing, imported);
+            }
+        };
+    }
+
+    /**
+     * Returns a rule applying another rule to the resources of one locale only
+     */
+
+    public static RBConflictPolicy forLocale(final String encoding, final RBConflictPolicy policy) {
+        return new RBConflictPolicy("locale:" + encoding + "=" + policy.getName()) {
+            public int decide(Bundle bundle, BundleItem existing, BundleItem imported) {
+                if (!encoding.equals(bundle.encoding)) return ABSTAIN;
+                return policy.decide(bundle, existing, imported);
+            }
+        };
+    }
+
+    /**
+     * Creates the rules named in a comma separated list, in the order given. Throws an
+     * IllegalArgumentException if a rule is not known.
+     */
+
+    public static Vector parse(String spec) {
+        Vector v = new Vector();
+        StringTokenizer st = new StringTokenizer(spec, ",");
+        while (st.hasMoreTokens()) {
+            String token = st.nextToken().trim();
+            if (token.length() > 0) v.addElement(parseRule(token));
+        }
+        return v;
+    }
+
+    private static RBConflictPolicy parseRule(String rule) {
+        if (rule.startsWith("group:") || rule.startsWith("locale:")) {
+            int colon = rule.indexOf(':');
+            int equals = rule.lastIndexOf('=');
+            if (equals <= colon + 1) throw new IllegalArgumentException("Conflict rule without a target: " + rule);
+            String target = rule.substring(colon + 1, equals).trim();
+            RBConflictPolicy policy = parseRule(rule.substring(equals + 1).trim());
+            if (rule.startsWith("group:")) return forGroup(target, policy);
+            return forLocale(target, policy);
+        }
+        if (rule.equals("overwrite") || rule.equals("prefer-source")) return preferImported();
+        if (rule.equals("keep") || rule.equals("prefer-target")) return preferExisting();
+        if (rule.equals("newer")) return newer();
+        if (rule.equals("keep-translated")) return keepTranslated();
+        if (rule.equals("prefer-translated")) return preferTranslated();
+        if (rule.equals("identical")) return identical();
+        throw new IllegalArgumentException("Unknown conflict rule: " + rule);
+    }
+}
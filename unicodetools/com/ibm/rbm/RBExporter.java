@@ -6,6 +6,7 @@
  */
 package com.ibm.rbm;
 
+import java.io.File;
 import java.io.IOException;
 
 import javax.swing.*;
@@ -18,7 +19,19 @@ import javax.swing.*;
  * @see com.ibm.rbm.RBManager
  */
 public abstract class RBExporter {
+    /**
+     * The save dialog of export(RBManager), which creates it when it is first needed, so that
+     * exporting through export(RBManager, File) never loads Swing
+     */
     protected static JFileChooser chooser;
 	
     public abstract void export(RBManager rbm) throws IOException;
+
+    /**
+     * Exports a resource bundle without any dialogs. The file gives the directory to write
+     * to and the base name of the files written, as if it had been chosen in the save
+     * dialog of export(RBManager).
+     */
+
+    public abstract void export(RBManager rbm, File file) throws IOException;
 }
\ No newline at end of file
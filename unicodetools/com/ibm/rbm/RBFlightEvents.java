@@ -0,0 +1,114 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JDK Flight Recorder events of RBInstrumentation, one type for each kind of operation
+ * so that they may be enabled separately in a recording. This class is only loaded when
+ * the flight recorder is present in the running Java platform.
+ *
+ * @see com.ibm.rbm.RBInstrumentation
+ */
+final class RBFlightEvents {
+    private static final EventType TYPES[] = {
+        EventType.getEventType(BundleFileLoaded.class),
+        EventType.getEventType(FileImported.class),
+        EventType.getEventType(DirectoryScanned.class),
+        EventType.getEventType(SourceFileScanned.class),
+        EventType.getEventType(ParseRuleEvaluated.class),
+        EventType.getEventType(FileExported.class)
+    };
+
+    private RBFlightEvents() {
+    }
+
+    static boolean isEnabled(int kind) {
+        return TYPES[kind].isEnabled();
+    }
+
+    static void commit(int kind, String name, long elapsed, long bytes, int items) {
+        RBEvent event;
+        switch (kind) {
+        case RBInstrumentation.FILE_LOADED: event = new BundleFileLoaded(); break;
+        case RBInstrumentation.FILE_IMPORTED: event = new FileImported(); break;
+        case RBInstrumentation.DIRECTORY_SCANNED: event = new DirectoryScanned(); break;
+        case RBInstrumentation.FILE_SCANNED: event = new SourceFileScanned(); break;
+        case RBInstrumentation.RULE_EVALUATED: event = new ParseRuleEvaluated(); break;
+        default: event = new FileExported(); break;
+        }
+        if (!event.shouldCommit()) return;
+        event.name = name;
+        event.elapsed = elapsed;
+        event.bytes = bytes;
+        event.items = items;
+        event.commit();
+    }
+
+    @Category("RBManager")
+    @StackTrace(false)
+    abstract static class RBEvent extends Event {
+        @Label("Name")
+        String name;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Items")
+        int items;
+    }
+
+    @Name("com.ibm.rbm.BundleFileLoaded")
+    @Label("Bundle File Loaded")
+    @Description("A resource bundle file parsed by RBManager")
+    static final class BundleFileLoaded extends RBEvent {
+    }
+
+    @Name("com.ibm.rbm.FileImported")
+    @Label("File Imported")
+    @Description("A file read by an importer")
+    static final class FileImported extends RBEvent {
+    }
+
+    @Name("com.ibm.rbm.DirectoryScanned")
+    @Label("Directory Scanned")
+    @Description("A directory listed by the code scan; the items are the files it submitted")
+    static final class DirectoryScanned extends RBEvent {
+    }
+
+    @Name("com.ibm.rbm.SourceFileScanned")
+    @Label("Source File Scanned")
+    @Description("A source file read by the code scan; the items are the resource names found")
+    static final class SourceFileScanned extends RBEvent {
+    }
+
+    @Name("com.ibm.rbm.ParseRuleEvaluated")
+    @Label("Parse Rule Evaluated")
+    @Description("A parse rule applied to every line of a source file; the items are its matches")
+    static final class ParseRuleEvaluated extends RBEvent {
+    }
+
+    @Name("com.ibm.rbm.FileExported")
+    @Label("File Exported")
+    @Description("A file written by an exporter")
+    static final class FileExported extends RBEvent {
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes the HTML report of RBReporter directly to a stream. The report has the same
+ * structure as the one built by RBReporter.getHTMLReportz(), but it is written as the
+ * bundles and the scan results are visited, so no document is held in memory.
+ *
+ * @see com.ibm.rbm.RBReporter
+ */
+public class RBHTMLReportWriter {
+    private static final String ENCODING = "ISO-8859-1";
+    private static final int    TREND_RUNS = 10;          // The runs shown in the trends
+
+    private RBReportStatistics stats;
+    private boolean            detailed;
+    private RBReportHistory    history;
+    private Writer             out;
+
+    public RBHTMLReportWriter(RBManager rbm, boolean detailed) {
+        this(new RBReportStatistics(rbm), detailed);
+    }
+
+    public RBHTMLReportWriter(RBReportStatistics stats, boolean detailed) {
+        this.stats = stats;
+        this.detailed = detailed;
+    }
+
+    /**
+     * Sets the history from which the trends of the report are taken. Without a history
+     * the report has no trends.
+     */
+
+    public void setHistory(RBReportHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Writes the report to a file. The code scan results are included if the scanner
+     * is not null.
+     */
+
+    public void write(File file, RBReporterScanner scanner) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING), 1 << 16);
+        try {
+            write(writer, scanner);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the report to a Writer using the ISO-8859-1 encoding. Characters outside of
+     * that encoding are written as character references.
+     */
+
+    public void write(Writer writer, RBReporterScanner scanner) throws IOException {
+        RBManager rbm = stats.getManager();
+        out = writer;
+        out.write("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01//EN\" \"http://www.w3.org/TR/html4/strict.dtd\">\n");
+        out.write("<HTML>\n  <HEAD>\n    <TITLE>");
+        text("Resource Bundle Report - " + rbm.getBaseClass());
+        out.write("</TITLE>\n  </HEAD>\n  <BODY>\n    <CENTER>\n      <H1>");
+        text("Resource Bundle Report: " + rbm.getBaseClass());
+        out.write("</H1>\n    </CENTER>\n    <CENTER>\n      <H1>");
+        text("Report Generated: " + (new Date()).toString());
+        out.write("</H1>\n    </CENTER>\n");
+
+        for (int i=0; i < stats.getBundleCount(); i++) {
+            writeLanguageReport(i);
+        }
+        if (scanner != null) writeScanReport(scanner);
+        if (history != null && history.getRunCount() > 0) writeTrendReport();
+
+        out.write("  </BODY>\n</HTML>\n");
+        out.flush();
+    }
+
+    private void writeLanguageReport(int index) throws IOException {
+        Bundle dict = stats.getBundle(index);
+        if (dict == null) return;
+        out.write("    <H2>");
+        text("Language: " + (dict.language == null ? dict.encoding : dict.language) +
+             (dict.country == null ? "" : " - Country: " + dict.country) +
+             (dict.variant == null ? "" : " - Variant: " + dict.variant));
+        out.write("</H2>\n    <BLOCKQUOTE>\n      <P>");
+        text("Number of NLS items in the file: " + String.valueOf(stats.getItemCount(index)));
+        out.write("</P>\n      <P>");
+        text("Number of NLS items not translated: " + String.valueOf(stats.getUntranslatedCount(index)));
+        out.write("</P>\n");
+        if (detailed) {
+            out.write("      <UL>Untranslated NLS keys:\n");
+            String keys[] = stats.getUntranslatedKeys(index);
+            for (int i=0; i < keys.length; i++) {
+                out.write("        <LI>");
+                text(keys[i]);
+                out.write("</LI>\n");
+            }
+            out.write("      </UL>\n");
+        }
+        out.write("    </BLOCKQUOTE>\n");
+    }
+
+    private void writeScanReport(RBReporterScanner scanner) throws IOException {
+        // The scanner may cover other bundles too; report on this one
+        Bundle base = stats.getBundle(0);
+        out.write("    <H2>Code Scan Results</H2>\n    <BLOCKQUOTE>\n      <P>");
+        text("Number of unique resources found: " + scanner.getNumberResourcesFound(base));
+        out.write("</P>\n      <P>");
+        text("Number of resources missing from bundle: " + scanner.getNumberMissingResources(base));
+        // Missing resources from the bundle
+        if (detailed) {
+            out.write("\n        <UL>Missing Resources:\n");
+            scanner.visitMissingResources(base, new ScanResultVisitor() {
+                public void visit(ScanResult result) throws IOException {
+                    Vector occ_v = result.getOccurances();
+                    out.write("          <LI>");
+                    text(result.getName() + " (" + occ_v.size() + " Occurances)");
+                    out.write("<BR>[");
+                    for (int j=0; j < occ_v.size(); j++) {
+                        if (j > 0) out.write(", ");
+                        text(occ_v.elementAt(j).toString());
+                    }
+                    out.write("]</LI>\n");
+                }
+            });
+            out.write("        </UL>\n      ");
+        } else {
+            out.write("<BR>Missing Resources: ");
+            scanner.visitMissingResources(base, new ScanResultVisitor() {
+                int i = 0;
+                public void visit(ScanResult result) throws IOException {
+                    text((i==0 ? "" : ", ") + result.getName() + " (" + result.getOccurances().size() + " Occurances)");
+                    i++;
+                }
+            });
+        }
+        out.write("</P>\n      <P>");
+        // Bundle resources not found in the code
+        text("Number of potentially unused resources in bundle: " + scanner.getNumberUnusedResources(base));
+        Vector v = scanner.getUnusedResources(base);
+        if (detailed) {
+            out.write("\n        <UL>Unused Resources:\n");
+            for (int i=0; i < v.size(); i++) {
+                ScanResult result = (ScanResult)v.elementAt(i);
+                out.write("          <LI>");
+                text(result.getName() + " (Group: " + result.getGroupName() + ")");
+                out.write("</LI>\n");
+            }
+            out.write("        </UL>\n      ");
+        } else {
+            out.write("<BR>Unused Resources: ");
+            for (int i=0; i < v.size(); i++) {
+                ScanResult result = (ScanResult)v.elementAt(i);
+                text((i==0 ? "" : ", ") + result.getName());
+            }
+        }
+        out.write("</P>\n    </BLOCKQUOTE>\n");
+    }
+
+    // Writes the totals of the latest runs, and the change in each locale over those runs
+    private void writeTrendReport() throws IOException {
+        int runs = history.getRunCount();
+        long from = history.getRunTime(Math.max(0, runs - TREND_RUNS));
+        RBReportHistory.Entry totals[] = history.getTotals(from, Long.MAX_VALUE);
+        out.write("    <H2>Translation Progress</H2>\n    <BLOCKQUOTE>\n      <TABLE BORDER=\"1\">\n");
+        out.write("        <TR><TH>Report</TH><TH>NLS items</TH><TH>Not translated</TH>" +
+                  "<TH>Missing resources</TH><TH>Unused resources</TH></TR>\n");
+        for (int i=totals.length-1; i >= 0; i--) {
+            out.write("        <TR><TD>");
+            text(new Date(totals[i].getTime()).toString() + (totals[i].isSkipped() ? " (unchanged)" : ""));
+            out.write("</TD><TD>" + totals[i].getItemCount() + "</TD><TD>" + totals[i].getUntranslatedCount() +
+                      "</TD><TD>" + totals[i].getMissingCount() + "</TD><TD>" + totals[i].getUnusedCount() +
+                      "</TD></TR>\n");
+        }
+        out.write("      </TABLE>\n      <P>");
+        text("Change in the number of NLS items not translated since " + new Date(from));
+        out.write("</P>\n      <TABLE BORDER=\"1\">\n");
+        out.write("        <TR><TH>Language</TH><TH>Then</TH><TH>Now</TH><TH>Change</TH></TR>\n");
+        for (int i=0; i < stats.getBundleCount(); i++) {
+            Bundle dict = stats.getBundle(i);
+            if (dict == null) continue;
+            RBReportHistory.Entry series[] = history.getSeries(dict.encoding == null ? "" : dict.encoding,
+                                                               null, from, Long.MAX_VALUE);
+            if (series.length < 1) continue;
+            int then = series[0].getUntranslatedCount();
+            int now = series[series.length-1].getUntranslatedCount();
+            out.write("        <TR><TD>");
+            text(dict.encoding == null || dict.encoding.length() < 1 ? "Base Class" :
+                 (dict.language == null ? dict.encoding : dict.language));
+            out.write("</TD><TD>" + then + "</TD><TD>" + now + "</TD><TD>" +
+                      (now > then ? "+" : "") + (now - then) + "</TD></TR>\n");
+        }
+        out.write("      </TABLE>\n    </BLOCKQUOTE>\n");
+    }
+
+    // Writes character data, escaping markup and characters outside of ISO-8859-1
+    private void text(String s) throws IOException {
+        for (int i=0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '&': out.write("&amp;"); break;
+            case '<': out.write("&lt;"); break;
+            case '>': out.write("&gt;"); break;
+            default:
+                if (c < 0x100) {
+                    out.write(c);
+                } else if (Character.isHighSurrogate(c) && i+1 < s.length()) {
+                    out.write("&#" + Character.toCodePoint(c, s.charAt(++i)) + ";");
+                } else {
+                    out.write("&#" + (int)c + ";");
+                }
+            }
+        }
+    }
+}
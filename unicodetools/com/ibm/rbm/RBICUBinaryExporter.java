@@ -0,0 +1,428 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import javax.swing.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * This class provides a plug-in exporter utility for RBManager that outputs compiled ICU
+ * resource bundles, the .res files the ICU tool "genrb" makes of the files RBICUExporter
+ * writes, without the text files or genrb in between.
+ * <p>
+ * Each locale is written as a table of strings in formatVersion 2, little-endian, laid out
+ * the way genrb lays it out. The key strings are written once, in the order of the groups
+ * and items, and a key that is the end of another key points into that key. Strings that
+ * are the same are written once, and a string that is the end of a longer one points into
+ * it. The shortest strings are written first, so that as many as possible are in reach of
+ * the 16-bit table. The meta-data is not written, as ICU has no place for it.
+ * <p>
+ * As with RBICUExporter, the locales are written at the same time.
+ *
+ * @see com.ibm.rbm.RBManager
+ * @see com.ibm.rbm.RBICUExporter
+ */
+public class RBICUBinaryExporter extends RBExporter {
+    // The resource types written, numbered as ICU numbers them
+    private static final int URES_TABLE     = 2;
+    private static final int URES_TABLE32   = 4;
+    private static final int URES_TABLE16   = 5;
+    private static final int URES_STRING_V2 = 6;
+
+    /** The length of the data header, padded to 16 bytes as udata pads it */
+    private static final int HEADER_SIZE = 32;
+
+    /** The number of indexes written, up to the top of the 16-bit units */
+    private static final int INDEX_LENGTH = 7;
+
+    /** The offset of the first key, after the root resource and the indexes */
+    private static final int KEYS_BOTTOM = (1 + INDEX_LENGTH) * 4;
+
+    /** Strings longer than this are written after their length, as genrb writes them */
+    private static final int MAX_IMPLICIT_STRING_LENGTH = 40;
+
+    public RBICUBinaryExporter() {
+        super();
+    }
+
+    public void export(RBManager rbm) throws IOException {
+        if (rbm == null) return;
+        // Create the file chooser when it is first needed, as exporting without it needs no Swing
+        if (chooser == null) {
+            chooser = new JFileChooser();
+            chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
+                public String getDescription() {
+                    return "root ICU File";
+                }
+                public boolean accept(File f) {
+                    if (f.isDirectory()) return true;
+                    return (f.getName().startsWith("root."));
+                }
+            });
+        } // end if
+        // Open the Save Dialog
+        int ret_val = chooser.showSaveDialog(null);
+        if (ret_val != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        export(rbm, chooser.getSelectedFile());
+    }
+
+    public void export(RBManager rbm, File file) throws IOException {
+        // Retrieve basic file information
+        final File directory = new File(file.getParent());      // The directory we will be writing to
+        String base_name = file.getName();                      // The base name of the files we will write
+        if (base_name == null || base_name.equals("")) {
+            base_name = rbm.getBaseClass();
+        }
+        if (base_name.toLowerCase().endsWith(".properties")) {
+            base_name = base_name.substring(0,base_name.length()-11);
+        } else if (base_name.toLowerCase().endsWith(".txt") || base_name.toLowerCase().endsWith(".res")) {
+            base_name = base_name.substring(0,base_name.length()-4);
+        }
+
+        final String base = base_name;
+        Vector tasks = new Vector();
+        Vector bundle_v = rbm.getBundles();
+        for (int i=0; i < bundle_v.size(); i++) {
+            final Bundle bundle = (Bundle)bundle_v.elementAt(i);
+            tasks.addElement(new Callable() {
+                public Object call() throws IOException {
+                    exportBundle(bundle, directory, base);
+                    return bundle;
+                }
+            });
+        }
+        RBImportReader.runTasks(tasks);
+    }
+
+    // Writes the file of one locale
+    private void exportBundle(Bundle bundle, File directory, String base_name) throws IOException {
+        long start = RBInstrumentation.start(RBInstrumentation.FILE_EXPORTED);
+        String base_enc = base_name;
+        if (bundle.encoding != null && !bundle.encoding.equals("")) {
+            base_enc = base_enc + "_" + bundle.encoding;
+        }
+        File write_file = new File(directory, base_enc + ".res");
+        byte data[] = toResourceBundle(bundle);
+        OutputStream out = new FileOutputStream(write_file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        RBInstrumentation.end(RBInstrumentation.FILE_EXPORTED, start, write_file.getPath(), data.length,
+                              bundle.allItems.size());
+    }
+
+    /**
+     * Returns the bytes of the .res file of a bundle.
+     */
+
+    private static byte[] toResourceBundle(Bundle bundle) throws IOException {
+        // The items in the order RBICUExporter writes them, which is the order genrb reads the keys in
+        Vector items = new Vector();
+        Vector group_v = bundle.getGroupsAsVector();
+        for (int i=0; i < group_v.size(); i++) {
+            items.addAll(((BundleGroup)group_v.elementAt(i)).getItemsAsVector());
+        }
+        int count = items.size();
+        String keys[] = new String[count];
+        int keyLength = 0;
+        for (int i=0; i < count; i++) {
+            String key = ((BundleItem)items.elementAt(i)).getKey();
+            for (int idx=0; idx < key.length(); idx++) {
+                char ch = key.charAt(idx);
+                if (ch < ' ' || '~' < ch) throw new IOException(key + " needs to use invariant characters for the key.");
+            }
+            keys[i] = key;
+            keyLength += key.length() + 1;
+        }
+
+        // The key strings
+        int keyOffsets[] = new int[count];
+        ByteArrayOutputStream keyBytes = new ByteArrayOutputStream(keyLength + 4);
+        layoutKeys(keys, keyOffsets, keyBytes);
+        while ((KEYS_BOTTOM + keyBytes.size()) % 4 != 0) keyBytes.write(0xaa);
+        int keysTop = KEYS_BOTTOM + keyBytes.size();
+        // Key offsets beyond the first 64K do not fit into the 16-bit key offsets of a table
+        int localKeyLimit = (keysTop <= 0x10000 ? keysTop : 0xffff);
+
+        // The table is in the order of its keys, which are searched in binary
+        Integer order[] = new Integer[count];
+        for (int i=0; i < count; i++) order[i] = Integer.valueOf(i);
+        final String sortKeys[] = keys;
+        Arrays.sort(order, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                return sortKeys[((Integer)o1).intValue()].compareTo(sortKeys[((Integer)o2).intValue()]);
+            }
+        });
+
+        // The strings, each one written once; the 16-bit units start with the empty string
+        StringBuffer units = new StringBuffer();
+        units.append((char)0);
+        ResString values[] = new ResString[count];
+        Hashtable strings = new Hashtable();
+        for (int i=0; i < count; i++) {
+            String value = ((BundleItem)items.elementAt(order[i].intValue())).getTranslation();
+            if (value == null || value.length() == 0) continue;
+            ResString str = (ResString)strings.get(value);
+            if (str == null) {
+                str = new ResString(value);
+                strings.put(value, str);
+            }
+            str.copies++;
+            values[i] = str;
+        }
+        layoutStrings(strings, units);
+
+        // The table itself, with 16-bit offsets of keys and strings where they all fit
+        int key16[] = new int[count];
+        int res16[] = new int[count];
+        boolean keysFit16 = true;
+        boolean stringsFit16 = true;
+        for (int i=0; i < count; i++) {
+            int keyOffset = keyOffsets[order[i].intValue()];
+            key16[i] = (keyOffset < localKeyLimit ? keyOffset : -1);
+            keysFit16 &= key16[i] >= 0;
+            res16[i] = (values[i] == null ? 0 : values[i].offset <= 0xffff ? values[i].offset : -1);
+            stringsFit16 &= res16[i] >= 0;
+        }
+        int rootType;
+        int root;
+        if (count == 0) {
+            // An empty table at offset 0, as genrb writes it; 0 alone would be an empty string
+            rootType = URES_TABLE;
+            root = URES_TABLE << 28;
+        } else if (count <= 0xffff && keysFit16 && stringsFit16) {
+            rootType = URES_TABLE16;
+            root = (URES_TABLE16 << 28) | units.length();
+            units.append((char)count);
+            for (int i=0; i < count; i++) units.append((char)key16[i]);
+            for (int i=0; i < count; i++) units.append((char)res16[i]);
+        } else {
+            rootType = (count <= 0xffff && keysFit16 ? URES_TABLE : URES_TABLE32);
+            root = 0;
+        }
+        if (units.length() % 2 != 0) units.append((char)0xaaaa);
+        int unitsTop = keysTop + units.length() * 2;
+        int top = unitsTop;
+        if (rootType == URES_TABLE && count > 0) {
+            root = (URES_TABLE << 28) | (unitsTop >> 2);
+            top += 2 + count * 6 + (count % 2 == 0 ? 2 : 0);
+        } else if (rootType == URES_TABLE32) {
+            root = (URES_TABLE32 << 28) | (unitsTop >> 2);
+            top += 4 + count * 8;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + top);
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        writeHeader(out);
+        out.putInt(root);
+        out.putInt(INDEX_LENGTH);
+        out.putInt(keysTop >> 2);
+        out.putInt(top >> 2);                            // The top of the resources
+        out.putInt(top >> 2);                            // and of the bundle
+        out.putInt(count);                               // The length of the longest table
+        out.putInt(0);                                   // The attributes
+        out.putInt(unitsTop >> 2);
+        out.put(keyBytes.toByteArray());
+        char unitChars[] = new char[units.length()];
+        units.getChars(0, unitChars.length, unitChars, 0);
+        out.asCharBuffer().put(unitChars);
+        out.position(out.position() + unitChars.length * 2);
+        if (rootType == URES_TABLE && count > 0) {
+            out.putShort((short)count);
+            for (int i=0; i < count; i++) out.putShort((short)key16[i]);
+            if (count % 2 == 0) out.putShort((short)0);
+            for (int i=0; i < count; i++) out.putInt(values[i] == null ? 0 : values[i].getResource());
+        } else if (rootType == URES_TABLE32) {
+            out.putInt(count);
+            for (int i=0; i < count; i++) out.putInt(keyOffsets[order[i].intValue()]);
+            for (int i=0; i < count; i++) out.putInt(values[i] == null ? 0 : values[i].getResource());
+        }
+        return out.array();
+    }
+
+    // Writes the ICU data header of a resource bundle in formatVersion 2
+    private static void writeHeader(ByteBuffer out) {
+        out.putShort((short)HEADER_SIZE);
+        out.put((byte)0xda);                             // The magic number
+        out.put((byte)0x27);
+        out.putShort((short)20);                         // The size of the data info
+        out.putShort((short)0);
+        out.put((byte)0);                                // Little-endian
+        out.put((byte)0);                                // ASCII
+        out.put((byte)2);                                // The size of a UChar
+        out.put((byte)0);
+        out.put(new byte[] {'R', 'e', 's', 'B'});        // The data format
+        out.put(new byte[] {2, 0, 0, 0});                // The format version
+        out.put(new byte[] {1, 4, 0, 0});                // The data version, as genrb gives it
+        out.position(HEADER_SIZE);
+    }
+
+    /**
+     * Lays out the key strings as genrb does: in the order they are read, except that a key
+     * that is the end of another key is not written, and points into that key instead.
+     * @param keys The keys in the order they are read
+     * @param offsets The offsets of the keys from the start of the resources are put here
+     * @param out The bytes of the keys are written here
+     */
+
+    private static void layoutKeys(final String keys[], int offsets[], ByteArrayOutputStream out) throws IOException {
+        int count = keys.length;
+        // Sorting the keys from their ends puts every key right before the keys that end it
+        Integer sorted[] = new Integer[count];
+        for (int i=0; i < count; i++) sorted[i] = Integer.valueOf(i);
+        Arrays.sort(sorted, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                int i1 = ((Integer)o1).intValue();
+                int i2 = ((Integer)o2).intValue();
+                int diff = compareSuffixes(keys[i1], keys[i2]);
+                return (diff != 0 ? diff : i1 - i2);
+            }
+        });
+        int ending[] = new int[count];
+        for (int i=0; i < count;) {
+            int key = sorted[i].intValue();
+            ending[key] = -1;
+            int j;
+            for (j = i+1; j < count && keys[key].endsWith(keys[sorted[j].intValue()]); j++) {
+                ending[sorted[j].intValue()] = key;
+            }
+            i = j;
+        }
+        int offset = KEYS_BOTTOM;
+        for (int i=0; i < count; i++) {
+            if (ending[i] >= 0) continue;
+            offsets[i] = offset;
+            byte bytes[] = keys[i].getBytes("US-ASCII");
+            out.write(bytes, 0, bytes.length);
+            out.write(0);
+            offset += keys[i].length() + 1;
+        }
+        for (int i=0; i < count; i++) {
+            if (ending[i] >= 0) offsets[i] = offsets[ending[i]] + keys[ending[i]].length() - keys[i].length();
+        }
+    }
+
+    /**
+     * Writes the strings into the 16-bit units as genrb does. A string that is the end of a
+     * longer string, and can be read without its length, points into the longer string. The
+     * others are written from the shortest to the longest.
+     */
+
+    private static void layoutStrings(Hashtable strings, StringBuffer units) {
+        ResString sorted[] = (ResString[])strings.values().toArray(new ResString[strings.size()]);
+        int count = sorted.length;
+        Arrays.sort(sorted, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                return compareSuffixes(((ResString)o1).value, ((ResString)o2).value);
+            }
+        });
+        for (int i=0; i < count;) {
+            ResString str = sorted[i];
+            str.unitsSaved = (str.copies - 1) * str.getUnits();
+            int j;
+            for (j = i+1; j < count && str.value.endsWith(sorted[j].value); j++) {
+                ResString suffix = sorted[j];
+                if (suffix.lengthUnits == 0) {
+                    suffix.same = str;
+                    str.unitsSaved += suffix.copies * suffix.getUnits();
+                }
+            }
+            i = j;
+        }
+        Arrays.sort(sorted, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                ResString s1 = (ResString)o1;
+                ResString s2 = (ResString)o2;
+                // The strings pointing into others go last, as they are not written
+                int diff = (s1.same != null ? 1 : 0) - (s2.same != null ? 1 : 0);
+                if (diff != 0) return diff;
+                diff = s1.value.length() - s2.value.length();
+                if (diff != 0) return diff;
+                diff = s2.unitsSaved - s1.unitsSaved;
+                if (diff != 0) return diff;
+                return s1.value.compareTo(s2.value);
+            }
+        });
+        for (int i=0; i < count; i++) {
+            ResString str = sorted[i];
+            if (str.same != null) {
+                str.offset = str.same.offset + str.same.lengthUnits + str.same.value.length() - str.value.length();
+                continue;
+            }
+            int len = str.value.length();
+            str.offset = units.length();
+            if (str.lengthUnits == 1) {
+                units.append((char)(0xdc00 + len));
+            } else if (str.lengthUnits == 2) {
+                units.append((char)(0xdfef + (len >> 16)));
+                units.append((char)len);
+            } else if (str.lengthUnits == 3) {
+                units.append((char)0xdfff);
+                units.append((char)(len >> 16));
+                units.append((char)len);
+            }
+            units.append(str.value);
+            units.append((char)0);
+        }
+    }
+
+    // Compares two strings from their ends, putting the longer first when one ends the other
+    private static int compareSuffixes(String s1, String s2) {
+        int i1 = s1.length();
+        int i2 = s2.length();
+        while (i1 > 0 && i2 > 0) {
+            int diff = s1.charAt(--i1) - s2.charAt(--i2);
+            if (diff != 0) return diff;
+        }
+        return s2.length() - s1.length();
+    }
+
+    /**
+     * A string written into the 16-bit units, with the number of times the bundle has it
+     */
+
+    private static class ResString {
+        String    value;
+        int       copies = 0;
+        int       lengthUnits;       // The number of units giving the length before the string
+        ResString same = null;       // The longer string this one is the end of
+        int       unitsSaved = 0;
+        int       offset;            // The offset within the 16-bit units
+
+        ResString(String value) {
+            this.value = value;
+            int len = value.length();
+            if (len <= MAX_IMPLICIT_STRING_LENGTH && (value.charAt(0) & 0xfc00) != 0xdc00 && value.indexOf(0) < 0) {
+                // Read up to the terminating zero
+                lengthUnits = 0;
+            } else if (len <= 0x3ee) {
+                lengthUnits = 1;
+            } else if (len <= 0xfffff) {
+                lengthUnits = 2;
+            } else {
+                lengthUnits = 3;
+            }
+        }
+
+        // Returns the number of units the string takes when written
+        int getUnits() {
+            return lengthUnits + value.length() + 1;
+        }
+
+        int getResource() {
+            return (URES_STRING_V2 << 28) | offset;
+        }
+    }
+}
@@ -9,11 +9,16 @@ package com.ibm.rbm;
 import java.io.*;
 import javax.swing.*;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * This class provides a plug-in exporter utility for RBManager that outputs ICU
  * resource bundle files in the according to the file structure of Resource
- * Bundles. Most of the meta-data is lost in this export.
+ * Bundles. The meta-data is written as comments, which RBICUImportReader reads back.
+ * <p>
+ * Each locale is written to a file of its own, as many at a time as there are processors.
+ * The text of a file is put together in a character buffer that is used over again, with the
+ * escapes written straight into it, and goes out through a large buffered UTF-8 stream.
  * 
  * @author George Rhoten
  * @see com.ibm.rbm.RBManager
@@ -28,10 +33,16 @@ public class RBICUExporter extends RBExporter {
     /** Write the groups as keys? */
     private boolean writeGroupsAsKeys = false;
 
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    private static final char   HEX_DIGITS[] = {'0','1','2','3','4','5','6','7','8','9','A','B','C','D','E','F'};
+
     public RBICUExporter() {
         super();
-		
-        // Initialize the file chooser if necessary
+    }
+	
+    public void export(RBManager rbm) throws IOException {
+        if (rbm == null) return;
+        // Create the file chooser when it is first needed, as exporting without it needs no Swing
         if (chooser == null) {
             chooser = new JFileChooser();
             chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
@@ -44,42 +55,61 @@ public class RBICUExporter extends RBExporter {
                 }
             });
         } // end if
-    }
-	
-    public void export(RBManager rbm) throws IOException {
-        if (rbm == null) return;
         // Open the Save Dialog
         int ret_val = chooser.showSaveDialog(null);
         if (ret_val != JFileChooser.APPROVE_OPTION) {
             return;
         }
+        export(rbm, chooser.getSelectedFile());
+    }
+
+    public void export(RBManager rbm, File file) throws IOException {
         // Retrieve basic file information
-        File file = chooser.getSelectedFile();                  // The file(s) we will be working with
-        File directory = new File(file.getParent());            // The directory we will be writing to
+        final File directory = new File(file.getParent());      // The directory we will be writing to
         String base_name = file.getName();                      // The base name of the files we will write
         if (base_name == null || base_name.equals("")) {
             base_name = rbm.getBaseClass();
         }
         if (base_name.toLowerCase().endsWith(".properties")) {
             base_name = base_name.substring(0,base_name.length()-11);
+        } else if (base_name.toLowerCase().endsWith(".txt")) {
+            base_name = base_name.substring(0,base_name.length()-4);
         }
 		
+        // The locales only read their own bundles, so they are written at the same time
+        final String base = base_name;
+        Vector tasks = new Vector();
         Vector bundle_v = rbm.getBundles();
         for (int i=0; i < bundle_v.size(); i++) {
-            Bundle bundle = (Bundle)bundle_v.elementAt(i);
-            String base_enc = base_name;
-            if (bundle.encoding != null && !bundle.encoding.equals("")) {
-                base_enc = base_enc + "_" + bundle.encoding;
-            }
-            String file_name = base_enc + ".txt";
-            String header = "\ufeff// Resource Bundle: " + file_name + " - File automatically generated by RBManager at " + (new Date());
-
-            OutputStream fos = new FileOutputStream(new File(directory, file_name));
-            PrintWriter resOut = new PrintWriter(new OutputStreamWriter(fos, "UTF-8"));
+            final Bundle bundle = (Bundle)bundle_v.elementAt(i);
+            tasks.addElement(new Callable() {
+                public Object call() throws IOException {
+                    exportBundle(bundle, directory, base);
+                    return bundle;
+                }
+            });
+        }
+        RBImportReader.runTasks(tasks);
+    }
 
+    // Writes the file of one locale
+    private void exportBundle(Bundle bundle, File directory, String base_name) throws IOException {
+        long start = RBInstrumentation.start(RBInstrumentation.FILE_EXPORTED);
+        String base_enc = base_name;
+        if (bundle.encoding != null && !bundle.encoding.equals("")) {
+            base_enc = base_enc + "_" + bundle.encoding;
+        }
+        String file_name = base_enc + ".txt";
+        File write_file = new File(directory, file_name);
+        ICUWriter resOut = new ICUWriter(new FileOutputStream(write_file));
+        try {
+            resOut.write("\ufeff// Resource Bundle: " + file_name + " - File automatically generated by RBManager at " + (new Date()));
+            resOut.newLine();
+            resOut.write(base_enc);
+            resOut.write(" { ");
+            resOut.newLine();
+            String ungrouped = bundle.getUngroupedGroup().getName();
             Vector group_v = bundle.getGroupsAsVector();
-            resOut.println(header);
-            resOut.println(base_enc + " { ");
             for (int j=0; j < group_v.size(); j++) {
                 BundleGroup group = (BundleGroup)group_v.elementAt(j);
 
@@ -89,103 +119,208 @@ public class RBICUExporter extends RBExporter {
                     if (writeMetaData) {
                         String groupComment = group.getComment();
                         if (groupComment != null && !groupComment.equals("")) {
-                            resOut.println("    // @groupComment " + groupComment);
+                            resOut.write("    // @groupComment ");
+                            resOut.write(groupComment);
+                            resOut.newLine();
                         }
                     }
 
-                    boolean writeGroupName = !bundle.getUngroupedGroup().getName().equals(group.getName());
-                    if (writeGroupName) {
-	                    if (writeGroupsAsKeys) {
-		                    resOut.println("    " + escapeString(group.getName(), true) + " { ");
-	                    }
-	                    else if (writeMetaData) {
-		                    resOut.println("    // @group " + escapeString(group.getName(), true));
-	                    }
+                    boolean writeGroupName = !ungrouped.equals(group.getName());
+                    if (writeGroupName && writeGroupsAsKeys) {
+                        resOut.write("    ");
+                        resOut.writeEscaped(group.getName(), true);
+                        resOut.write(" { ");
+                        resOut.newLine();
+                    }
+                    else if (writeMetaData) {
+                        // The ungrouped items are marked as well, or they would be read back into the group before them
+                        resOut.write("    // @group ");
+                        resOut.writeEscaped(group.getName(), true);
+                        resOut.newLine();
                     }
                     for (int k=0; k < itemVectSize; k++) {
                         BundleItem item = (BundleItem)itemVect.elementAt(k);
 
                         if (writeMetaData) {
-                            resOut.print("        //");
-                            resOut.print(" @translated " + item.isTranslated());
-                            resOut.print(" @created " + item.getCreatedDate());
-                            resOut.print(" @modified " + item.getModifiedDate());
-                            resOut.print(" @creator " + item.getCreator());
-                            resOut.println(" @modifier " + item.getModifier());
+                            resOut.write(item.isTranslated() ? "        // @translated true" : "        // @translated false");
+                            if (item.getCreatedDate() != null) {
+                                resOut.write(" @created ");
+                                resOut.writeDate(item.getCreatedDate());
+                            }
+                            if (item.getModifiedDate() != null) {
+                                resOut.write(" @modified ");
+                                resOut.writeDate(item.getModifiedDate());
+                            }
+                            if (item.getCreator() != null) {
+                                resOut.write(" @creator ");
+                                resOut.write(item.getCreator());
+                            }
+                            if (item.getModifier() != null) {
+                                resOut.write(" @modifier ");
+                                resOut.write(item.getModifier());
+                            }
+                            resOut.newLine();
+                            Enumeration lookups = item.getLookups().keys();
+                            while (lookups.hasMoreElements()) {
+                                String lookup = (String)lookups.nextElement();
+                                resOut.write("        // @{");
+                                resOut.write(lookup);
+                                resOut.write("} ");
+                                resOut.write(String.valueOf(item.getLookups().get(lookup)));
+                                resOut.newLine();
+                            }
                             String itemComment = item.getComment();
                             if (itemComment != null && !itemComment.equals("")) {
-                                resOut.println("        // @comment " + itemComment);
+                                resOut.write("        // @comment ");
+                                resOut.write(itemComment);
+                                resOut.newLine();
                             }
                         }
 
-                        resOut.println("        " + escapeString(item.getKey(), true)
-                                       + " { " + escapeString(item.getTranslation(), false) + " }");
+                        resOut.write("        ");
+                        resOut.writeEscaped(item.getKey(), true);
+                        resOut.write(" { ");
+                        resOut.writeEscaped(item.getTranslation(), false);
+                        resOut.write(" }");
+                        resOut.newLine();
                     } // end for - k
                     if (writeGroupName && writeGroupsAsKeys) {
-	                    resOut.println("    }");
+                        resOut.write("    }");
+                        resOut.newLine();
                     }
                 }
             } // end for - j
-            resOut.println("}");
-			
-            // Write out the file
+            resOut.write("}");
+            resOut.newLine();
+        } finally {
             resOut.close();
-            fos.close();
-        } // end for - i
+        }
+        RBInstrumentation.end(RBInstrumentation.FILE_EXPORTED, start, write_file.getPath(), write_file.length(),
+                              bundle.allItems.size());
     }
 
     /**
-     * Escape a string according to how the ICU tool "genrb" handles strings.
-     * @param str The string to escape
-     * @param isKey If this is a key, then quotes are optional.
-     * @return A string that can be used in an ICU resource bundle.
+     * Writes the text of one file. The text is put together in a buffer of characters, and
+     * strings are escaped straight into it, according to how the ICU tool "genrb" handles
+     * strings.
      */
-    protected String escapeString(String str, boolean isKey) throws IOException {
-        StringBuffer strBuf = new StringBuffer();
-        int len = str.length();
-        boolean quoteRequired = !isKey;
-        for (int idx = 0; idx < len; idx++) {
-            int ch = str.charAt(idx);
-            if (ch <= ' ' || '~' < ch) {
-                if (isKey && ch != ' ') {
-                    IOException e = new IOException(str + " needs to use invariant characters for the key.");
-                    e.fillInStackTrace();
-                    throw e;
-                } else if (escapeNonAscii && ch != ' ') {
-                    String zeros;
-                    String hexNum;
-                    if ((ch & 0xf800) == 0xd800) {
-                        // We assume that we found a valid UTF-16 string with a surrogate
-                        int ch2 = str.charAt(idx++);
-                        int chSurrogate = (((ch)<<10)+(ch2)-((0xd800<<10)+0xdc00-0x10000));
-
-                        zeros = "00000000";
-                        hexNum = Integer.toHexString(chSurrogate);
-                        strBuf.append("\\U");
+
+    private class ICUWriter {
+        private Writer   out;
+        private char     buffer[] = new char[65536];
+        private int      length = 0;
+        private Calendar calendar = new GregorianCalendar();
+
+        ICUWriter(OutputStream os) throws IOException {
+            out = new OutputStreamWriter(new BufferedOutputStream(os, 65536), "UTF-8");
+        }
+
+        void write(String str) throws IOException {
+            int len = str.length();
+            if (len > buffer.length - length) {
+                flushBuffer();
+                if (len > buffer.length) {
+                    out.write(str);
+                    return;
+                }
+            }
+            str.getChars(0, len, buffer, length);
+            length += len;
+        }
+
+        void newLine() throws IOException {
+            write(LINE_SEPARATOR);
+        }
+
+        // Writes a date as yyyy-MM-dd, which is how RBManager writes and reads them
+        void writeDate(Date date) throws IOException {
+            if (buffer.length - length < 16) flushBuffer();
+            calendar.setTime(date);
+            writeNumber(calendar.get(Calendar.YEAR), 4);
+            buffer[length++] = '-';
+            writeNumber(calendar.get(Calendar.MONTH)+1, 2);
+            buffer[length++] = '-';
+            writeNumber(calendar.get(Calendar.DAY_OF_MONTH), 2);
+        }
+
+        // Writes a number in decimal, padded with zeros to at least the given number of digits
+        private void writeNumber(int value, int digits) {
+            int width = 1;
+            for (int v = value / 10; v > 0; v /= 10) width++;
+            if (width < digits) width = digits;
+            for (int i = length + width - 1; i >= length; i--) {
+                buffer[i] = (char)('0' + value % 10);
+                value /= 10;
+            }
+            length += width;
+        }
+
+        /**
+         * Escapes a string according to how the ICU tool "genrb" handles strings.
+         * @param str The string to escape
+         * @param isKey If this is a key, then quotes are optional.
+         */
+
+        void writeEscaped(String str, boolean isKey) throws IOException {
+            int len = str.length();
+            boolean quoteRequired = !isKey;
+            if (isKey) {
+                // Keys are quoted only when they have to be, which is known before writing
+                for (int idx = 0; idx < len; idx++) {
+                    char ch = str.charAt(idx);
+                    if (ch <= ' ' || '~' < ch) {
+                        if (ch != ' ') throw new IOException(str + " needs to use invariant characters for the key.");
+                        quoteRequired = true;
+                    } else if (ch == '\"' || ch == '\\' || ch == '{' || ch == '}') {
+                        quoteRequired = true;
+                    }
+                }
+            }
+            if (buffer.length - length < 1) flushBuffer();
+            if (quoteRequired) buffer[length++] = '\"';
+            for (int idx = 0; idx < len; idx++) {
+                // The longest escape is ten characters, and the closing quote one more
+                if (buffer.length - length < 11) flushBuffer();
+                char ch = str.charAt(idx);
+                if ((ch <= ' ' || '~' < ch) && escapeNonAscii && ch != ' ') {
+                    if ((ch & 0xfc00) == 0xd800 && idx + 1 < len && (str.charAt(idx+1) & 0xfc00) == 0xdc00) {
+                        // A surrogate pair is written as the code point it stands for
+                        int ch2 = str.charAt(++idx);
+                        buffer[length++] = '\\';
+                        buffer[length++] = 'U';
+                        writeHex(((ch)<<10)+(ch2)-((0xd800<<10)+0xdc00-0x10000), 8);
                     } else {
-                        zeros = "0000";
-                        hexNum = Integer.toHexString(ch);
-                        strBuf.append("\\u");
+                        buffer[length++] = '\\';
+                        buffer[length++] = 'u';
+                        writeHex(ch, 4);
                     }
-                    strBuf.append(zeros.substring(hexNum.length()) + hexNum.toUpperCase());
+                } else if (ch == '\"' || ch == '\\') {
+                    buffer[length++] = '\\';
+                    buffer[length++] = ch;
                 } else {
-                    quoteRequired = true;
-                    strBuf.append(ch);
-                }
-            } else if (ch == '\"') {
-                quoteRequired = true;
-                strBuf.append("\\\"");
-            } else  {
-                if (ch == '{' || ch == '}') {
-                    quoteRequired = true;
+                    buffer[length++] = ch;
                 }
-                strBuf.append(ch);
             }
+            if (quoteRequired) buffer[length++] = '\"';
         }
-        if (quoteRequired) {
-            strBuf.insert(0, '\"');
-            strBuf.append('\"');
+
+        private void writeHex(int value, int digits) {
+            for (int shift = (digits-1)*4; shift >= 0; shift -= 4) {
+                buffer[length++] = HEX_DIGITS[(value >> shift) & 0xf];
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+
+        void close() throws IOException {
+            try {
+                flushBuffer();
+            } finally {
+                out.close();
+            }
         }
-        return strBuf.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,548 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads ICU resource bundle source files, in the text format of the ICU tool genrb. The
+ * chosen file brings in the locale files next to it: <code>&lt;base&gt;_&lt;locale&gt;.txt</code>
+ * as RBICUExporter writes them, and, when the chosen file is <code>root.txt</code>, the
+ * <code>&lt;locale&gt;.txt</code> files of the ICU data layout.
+ * <p>
+ * Every string resource is imported. The strings of nested tables are imported under their
+ * path of keys joined by '/', into the group named by the outermost table. Arrays, integers,
+ * binaries, aliases and imports are skipped. The groups, comments, dates and translated
+ * flags RBManager writes as <code>// @</code> comments are read back, so that the files of
+ * RBICUExporter make the round trip.
+ * <p>
+ * Each file is read once through a hand-written tokenizer that works on a buffer of
+ * characters and allocates little beyond the strings of the keys and values, as many files
+ * at a time as there are processors. The locales are then resolved together and merged each in a thread
+ * of its own.
+ *
+ * @see com.ibm.rbm.RBICUImporter
+ * @see com.ibm.rbm.RBICUExporter
+ */
+public class RBICUImportReader extends RBImportReader {
+
+    protected void read(File baseFile, RBImportSession session) throws IOException {
+        String fileName = baseFile.getName();
+        String baseName = (fileName.toLowerCase().endsWith(".txt") ? fileName.substring(0,fileName.length()-4) : fileName);
+        File baseDir = baseFile.getAbsoluteFile().getParentFile();
+        String allChildren[] = baseDir.list();
+        if (allChildren == null) throw new IOException("Unable to list " + baseDir);
+        // Find the locale files, the base file included
+        Vector tasks = new Vector();
+        for (int i=0; i < allChildren.length; i++) {
+            if (!allChildren[i].toLowerCase().endsWith(".txt")) continue;
+            String name = allChildren[i].substring(0,allChildren[i].length()-4);
+            String encoding = null;
+            if (name.equals(baseName)) encoding = "";
+            else if (name.startsWith(baseName + "_")) encoding = name.substring(baseName.length()+1);
+            else if (baseName.equals("root") && isLocaleName(name)) encoding = name;
+            if (encoding == null) continue;
+            final File file = new File(baseDir, allChildren[i]);
+            final String fileEncoding = encoding;
+            tasks.addElement(new Callable() {
+                public Object call() throws IOException {
+                    return new ICUParser(file, fileEncoding).parse();
+                }
+            });
+        }
+        Vector parsed = runTasks(tasks);
+        // Resolve all of the locales at once, and create their groups before any merging starts
+        Vector encodings = new Vector();
+        for (int i=0; i < parsed.size(); i++) encodings.addElement(((ICUFile)parsed.elementAt(i)).encoding);
+        session.resolveEncodings(encodings);
+        if (session.getDefaultGroupCreation()) {
+            // A group takes the first comment any of the files gives it
+            Vector groupNames = new Vector();
+            Hashtable groupComments = new Hashtable();
+            for (int i=0; i < parsed.size(); i++) {
+                ICUFile icu = (ICUFile)parsed.elementAt(i);
+                for (int j=0; j < icu.groupNames.size(); j++) {
+                    String name = (String)icu.groupNames.elementAt(j);
+                    String comment = (String)groupComments.get(name);
+                    if (comment == null) groupNames.addElement(name);
+                    if (comment == null || comment.equals("")) groupComments.put(name, icu.groupComments.elementAt(j));
+                }
+            }
+            RBManager rbm = session.getManager();
+            for (int i=0; i < groupNames.size(); i++) {
+                rbm.createGroup((String)groupNames.elementAt(i), (String)groupComments.get(groupNames.elementAt(i)));
+            }
+        }
+        Vector imports = new Vector();
+        for (int i=0; i < parsed.size(); i++) {
+            final ICUFile icu = (ICUFile)parsed.elementAt(i);
+            imports.addElement(new LocaleImport() {
+                protected void importInto(RBImportSession localeSession) {
+                    for (int j=0; j < icu.items.size(); j++) {
+                        localeSession.importResource((BundleItem)icu.items.elementAt(j), icu.encoding,
+                                                     (String)icu.itemGroups.elementAt(j));
+                    }
+                }
+            });
+        }
+        importLocales(imports, session);
+    }
+
+    // Tells whether a file name is a locale name in the ICU data layout, such as de or zh_Hant_TW
+    private static boolean isLocaleName(String name) {
+        int len = 0;
+        while (len < name.length() && name.charAt(len) >= 'a' && name.charAt(len) <= 'z') len++;
+        if (len < 2 || len > 3) return false;
+        if (len == name.length()) return true;
+        if (name.charAt(len) != '_' || len + 1 == name.length()) return false;
+        for (int i=len+1; i < name.length(); i++) {
+            if (!Character.isLetterOrDigit(name.charAt(i)) && name.charAt(i) != '_') return false;
+        }
+        return true;
+    }
+
+    /**
+     * The string resources of one file, in the order of the file, with the names of their groups
+     */
+
+    private static class ICUFile {
+        String encoding;
+        Vector items = new Vector();
+        Vector itemGroups = new Vector();
+        Vector groupNames = new Vector();
+        Vector groupComments = new Vector();
+    }
+
+    /**
+     * Parses one file in the genrb syntax. The tokenizer reads from a buffer of characters,
+     * skipping white space and comments, and leaves the text of each string token in a buffer
+     * that is used over again. Adjacent strings are joined into one token, as genrb does.
+     */
+
+    private static class ICUParser {
+        private static final int EOF    = -1;
+        private static final int STRING = 0;
+        private static final int OPEN   = 1;                    // '{'
+        private static final int CLOSE  = 2;                    // '}'
+        private static final int COMMA  = 3;                    // ','
+        private static final int COLON  = 4;                    // ':'
+
+        private File         file;
+        private ICUFile      result = new ICUFile();
+        private Reader       in;
+        private char         buffer[] = new char[65536];
+        private int          pos = 0;
+        private int          limit = 0;
+        private int          line = 1;
+        private StringBuffer text = new StringBuffer();         // The text of the last string token
+        private StringBuffer comment = new StringBuffer();      // The text of the comment being read
+
+        // The meta-data of the comments read since the last resource
+        private String       group = null;
+        private String       groupComment = null;
+        private Hashtable    descriptors = null;
+        private Hashtable    dates = new Hashtable();            // The dates parsed so far, by their text
+
+        ICUParser(File file, String encoding) {
+            this.file = file;
+            result.encoding = encoding;
+        }
+
+        ICUFile parse() throws IOException {
+            InputStream is = new BufferedInputStream(new FileInputStream(file));
+            try {
+                // genrb reads UTF-16 when there is a byte order mark for it, and UTF-8 is the
+                // safe choice otherwise
+                is.mark(2);
+                int b1 = is.read();
+                int b2 = is.read();
+                is.reset();
+                boolean utf16 = (b1 == 0xFE && b2 == 0xFF) || (b1 == 0xFF && b2 == 0xFE);
+                in = new InputStreamReader(is, utf16 ? "UTF-16" : "UTF-8");
+                if (fill() && buffer[pos] == '\ufeff') pos++;
+                // The outer table, named by the locale, with an optional type
+                expect(STRING, "the name of the bundle");
+                int token = nextToken();
+                if (token == COLON) {
+                    expect(STRING, "a resource type");
+                    token = nextToken();
+                }
+                if (token != OPEN) throw error("'{' expected");
+                descriptors = null;
+                readTable("", null, null);
+                if (nextToken() != EOF) throw error("end of file expected");
+                return result;
+            } finally {
+                is.close();
+            }
+        }
+
+        // Reads the resources of a table up to and including its closing brace. Keys are
+        // prefixed by the path of the table. Tables below the outer table give their group.
+        // When the key of the first resource and its brace have all ready been read, the key
+        // is given as firstKey.
+        private void readTable(String path, String tableGroup, String firstKey) throws IOException {
+            String key = firstKey;
+            while (true) {
+                int token = OPEN;
+                if (key == null) {
+                    token = nextToken();
+                    if (token == CLOSE) return;
+                    if (token != STRING) throw error("key expected");
+                    key = text.toString();
+                    token = nextToken();
+                }
+                readResource(path + key, token, tableGroup);
+                descriptors = null;
+                key = null;
+            }
+        }
+
+        // Reads a resource from the token after its key up to and including its closing brace
+        private void readResource(String key, int token, String tableGroup) throws IOException {
+            String type = null;
+            if (token == COLON) {
+                expect(STRING, "a resource type");
+                type = text.toString();
+                if (type.indexOf('(') >= 0) type = type.substring(0,type.indexOf('('));
+                token = nextToken();
+            }
+            if (token != OPEN) throw error("'{' expected after " + key);
+            String itemGroup = (tableGroup != null ? tableGroup : group);
+            String subGroup = (tableGroup != null ? tableGroup : key);
+            if (type == null) {
+                // The type is told from what follows the brace
+                token = nextToken();
+                if (token == STRING) {
+                    String value = text.toString();
+                    token = nextToken();
+                    if (token == CLOSE) addItem(key, value, itemGroup);
+                    else if (token == OPEN) {
+                        // A table, whose first key has just been read
+                        descriptors = null;
+                        readTable(key + "/", subGroup, value);
+                    }
+                    else if (token == COMMA) skipBlock();
+                    else throw error("'}' expected after " + key);
+                } else if (token == OPEN) {
+                    // An array of tables or arrays
+                    skipBlock();
+                    skipBlock();
+                } else if (token == COMMA) {
+                    skipBlock();
+                } else if (token != CLOSE) {
+                    throw error("value expected for " + key);
+                }
+            } else if (type.equals("table")) {
+                descriptors = null;
+                readTable(key + "/", subGroup, null);
+            } else if (type.equals("string")) {
+                expect(STRING, "a string");
+                String value = text.toString();
+                if (nextToken() != CLOSE) throw error("'}' expected after " + key);
+                addItem(key, value, itemGroup);
+            } else {
+                skipBlock();
+            }
+        }
+
+        // Skips the rest of a block, up to and including the brace that closes it
+        private void skipBlock() throws IOException {
+            int depth = 1;
+            while (depth > 0) {
+                int token = nextToken();
+                if (token == OPEN) depth++;
+                else if (token == CLOSE) depth--;
+                else if (token == EOF) throw error("'}' expected");
+            }
+        }
+
+        private void addItem(String key, String value, String itemGroup) {
+            BundleItem item = new BundleItem(null, key, value);
+            if (descriptors != null) {
+                Object o;
+                o = descriptors.get("comment");    if (o != null) item.setComment((String) o);
+                o = descriptors.get("translated"); if (o != null) item.setTranslated(((String) o).equalsIgnoreCase("true"));
+                o = descriptors.get("creator");    if (o != null) item.setCreator((String) o);
+                o = descriptors.get("modifier");   if (o != null) item.setModifier((String) o);
+                // A date that cannot be read leaves the default, and the modification date unknown
+                Date date;
+                o = descriptors.get("created");
+                if (o != null && (date = parseDate((String) o)) != null) item.setCreatedDate(date);
+                o = descriptors.get("modified");
+                if (o != null && (date = parseDate((String) o)) != null) item.setModifiedDate(date);
+                Enumeration descKeys = descriptors.keys();
+                while (descKeys.hasMoreElements()) {
+                    String tag = (String)descKeys.nextElement();
+                    if (tag.startsWith("{") && tag.indexOf("}") >= 0) {
+                        item.getLookups().put(tag.substring(1,tag.indexOf("}")), descriptors.get(tag));
+                    }
+                }
+            }
+            result.items.addElement(item);
+            result.itemGroups.addElement(itemGroup);
+        }
+
+        // Reads a date in either of the formats BundleItem reads, or as Date.toString() wrote
+        // it into the files of earlier versions of RBICUExporter, and returns null for a date that
+        // cannot be read. The few different dates of a file are parsed only once each.
+        private Date parseDate(String dateStr) {
+            Date date = (Date)dates.get(dateStr);
+            if (date == null) {
+                SimpleDateFormat format;
+                if (dateStr.length() == 10) format = new SimpleDateFormat("yyyy-MM-dd");
+                else if (dateStr.length() > 0 && Character.isLetter(dateStr.charAt(0)))
+                    format = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+                else format = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
+                try {
+                    date = format.parse(dateStr);
+                } catch (ParseException pe) {
+                    return null;
+                }
+                dates.put(dateStr, date);
+            }
+            return new Date(date.getTime());
+        }
+
+        // Takes the meta-data out of a comment, if it has any. Each tag is an '@' followed by
+        // its name and a space, and its value runs to the next '@', as RBManager reads them.
+        private void readComment() {
+            int at = 0;
+            while (at < comment.length() && comment.charAt(at) != '@') at++;
+            if (at == comment.length()) return;
+            String line = comment.toString();
+            while (at >= 0) {
+                int space = line.indexOf(' ', at);
+                if (space < 0) return;
+                int next = line.indexOf('@', space);
+                String name = line.substring(at+1, space).trim();
+                String value = line.substring(space, (next < 0 ? line.length() : next)).trim();
+                at = next;
+                if (name.equals("groupComment")) {
+                    groupComment = value;
+                } else if (name.equals("group")) {
+                    group = unquote(value);
+                    if (!result.groupNames.contains(group)) {
+                        result.groupNames.addElement(group);
+                        result.groupComments.addElement(groupComment == null ? "" : groupComment);
+                    }
+                    groupComment = null;
+                } else {
+                    if (descriptors == null) descriptors = new Hashtable();
+                    descriptors.put(name, value);
+                }
+            }
+        }
+
+        // Group names are written as keys, and so may be quoted
+        private static String unquote(String s) {
+            if (s.length() < 2 || s.charAt(0) != '"' || s.charAt(s.length()-1) != '"') return s;
+            StringBuffer sb = new StringBuffer();
+            for (int i=1; i < s.length()-1; i++) {
+                char c = s.charAt(i);
+                if (c == '\\' && i+1 < s.length()-1) c = s.charAt(++i);
+                sb.append(c);
+            }
+            return sb.toString();
+        }
+
+        private void expect(int expected, String what) throws IOException {
+            if (nextToken() != expected) throw error(what + " expected");
+        }
+
+        private IOException error(String message) {
+            return new IOException(file.getPath() + ":" + line + ": " + message);
+        }
+
+        // Makes sure there is a character at pos, reading more when the buffer is used up.
+        // Returns false at the end of the file.
+        private boolean fill() throws IOException {
+            if (pos < limit) return true;
+            int n;
+            do {
+                n = in.read(buffer, 0, buffer.length);
+            } while (n == 0);
+            if (n < 0) {
+                pos = limit = 0;
+                return false;
+            }
+            pos = 0;
+            limit = n;
+            return true;
+        }
+
+        // Returns the character after the current one without using it up, or -1
+        private int lookAhead() throws IOException {
+            if (pos + 1 < limit) return buffer[pos+1];
+            // Keep the current character, and read on after it
+            char c = buffer[pos];
+            int n;
+            do {
+                n = in.read(buffer, 1, buffer.length-1);
+            } while (n == 0);
+            buffer[0] = c;
+            pos = 0;
+            limit = (n < 0 ? 1 : n+1);
+            return (n < 0 ? -1 : buffer[1]);
+        }
+
+        // Skips white space and comments. Returns false at the end of the file.
+        private boolean skipSpace() throws IOException {
+            while (fill()) {
+                char c = buffer[pos];
+                if (c == '\n') {
+                    line++;
+                    pos++;
+                } else if (c <= ' ' || c == '\u2028' || c == '\u2029' || c == '\ufeff') {
+                    pos++;
+                } else if (c == '/' && lookAhead() == '/') {
+                    pos += 2;
+                    comment.setLength(0);
+                    while (fill() && buffer[pos] != '\n' && buffer[pos] != '\r') comment.append(buffer[pos++]);
+                    readComment();
+                } else if (c == '/' && lookAhead() == '*') {
+                    pos += 2;
+                    boolean star = false;
+                    while (true) {
+                        if (!fill()) return false;
+                        c = buffer[pos++];
+                        if (star && c == '/') break;
+                        if (c == '\n') line++;
+                        star = (c == '*');
+                    }
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int nextToken() throws IOException {
+            if (!skipSpace()) return EOF;
+            char c = buffer[pos];
+            switch (c) {
+            case '{': pos++; return OPEN;
+            case '}': pos++; return CLOSE;
+            case ',': pos++; return COMMA;
+            case ':': pos++; return COLON;
+            }
+            text.setLength(0);
+            // A run of strings, quoted or not, makes up one token
+            do {
+                if (buffer[pos] == '"') {
+                    pos++;
+                    readQuoted();
+                } else {
+                    readUnquoted();
+                }
+            } while (skipSpace() && isStringStart(buffer[pos]));
+            return STRING;
+        }
+
+        private static boolean isStringStart(char c) {
+            return c != '{' && c != '}' && c != ',' && c != ':';
+        }
+
+        private void readQuoted() throws IOException {
+            while (true) {
+                if (!fill()) throw error("unterminated string");
+                char c = buffer[pos++];
+                if (c == '"') return;
+                if (c == '\\') readEscape();
+                else {
+                    if (c == '\n') line++;
+                    text.append(c);
+                }
+            }
+        }
+
+        private void readUnquoted() throws IOException {
+            while (fill()) {
+                char c = buffer[pos];
+                if (c == '{' || c == '}' || c == ',' || c == ':' || c == '"' || c <= ' ') return;
+                if (c == '/') {
+                    int next = lookAhead();
+                    if (next == '/' || next == '*') return;
+                }
+                pos++;
+                if (c == '\\') readEscape();
+                else text.append(c);
+            }
+        }
+
+        // Reads the escape sequence after a backslash into the text, as u_unescape() reads it
+        private void readEscape() throws IOException {
+            if (!fill()) throw error("unterminated escape");
+            char c = buffer[pos++];
+            switch (c) {
+            case 'u': appendCodePoint(readHex(4, 4)); return;
+            case 'U': appendCodePoint(readHex(8, 8)); return;
+            case 'x':
+                if (fill() && buffer[pos] == '{') {
+                    pos++;
+                    int cp = readHex(1, 8);
+                    if (!fill() || buffer[pos++] != '}') throw error("'}' expected in \\x escape");
+                    appendCodePoint(cp);
+                } else {
+                    appendCodePoint(readHex(1, 2));
+                }
+                return;
+            case 'a': text.append('\u0007'); return;
+            case 'b': text.append('\b'); return;
+            case 'e': text.append('\u001b'); return;
+            case 'f': text.append('\f'); return;
+            case 'n': text.append('\n'); return;
+            case 'r': text.append('\r'); return;
+            case 't': text.append('\t'); return;
+            case 'v': text.append('\u000b'); return;
+            case 'c':
+                if (!fill()) throw error("unterminated escape");
+                text.append((char)(buffer[pos++] & 0x1f));
+                return;
+            }
+            if (c >= '0' && c <= '7') {
+                int value = c - '0';
+                for (int i=1; i < 3 && fill() && buffer[pos] >= '0' && buffer[pos] <= '7'; i++) {
+                    value = value*8 + (buffer[pos++] - '0');
+                }
+                appendCodePoint(value);
+                return;
+            }
+            if (c == '\n') line++;
+            text.append(c);
+        }
+
+        private int readHex(int min, int max) throws IOException {
+            int value = 0;
+            int digits = 0;
+            while (digits < max && fill()) {
+                int digit = Character.digit(buffer[pos], 16);
+                if (digit < 0) break;
+                value = value*16 + digit;
+                digits++;
+                pos++;
+            }
+            if (digits < min) throw error("hexadecimal digits expected in escape");
+            return value;
+        }
+
+        private void appendCodePoint(int cp) throws IOException {
+            if (cp < 0 || cp > 0x10FFFF) throw error("escape out of range");
+            if (cp >= 0x10000) {
+                cp -= 0x10000;
+                text.append((char)(0xD800 + (cp >> 10)));
+                text.append((char)(0xDC00 + (cp & 0x3FF)));
+            } else {
+                text.append((char)cp);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+
+import com.ibm.rbm.gui.RBManagerGUI;
+
+/**
+ * Imports ICU resource bundle source files, such as those RBICUExporter writes. The base file
+ * is chosen, and the locale files next to it are imported with it.
+ * 
+ * @see com.ibm.rbm.RBManager
+ * @see com.ibm.rbm.RBICUImportReader
+ */
+public class RBICUImporter extends RBImporter {
+	
+    public RBICUImporter(String title, RBManager rbm, RBManagerGUI gui) {
+        super(title, rbm, gui);
+    }
+	
+    protected void setupFileChooser() {
+        chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
+            public boolean accept(File f) {
+                if (f.isDirectory()) return true;
+                if (f.getName().toLowerCase().endsWith(".txt") && f.getName().indexOf("_") < 0) return true;
+                return false;
+            }
+			
+            public String getDescription() {
+                return Resources.getTranslation("import_ICU_file_description");
+            }
+        });
+    }
+	
+    protected void beginImport() throws IOException {
+        super.beginImport();
+        new RBICUImportReader().importFile(getChosenFile(), session);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The super class of the parsers behind the importers. A reader parses one file format and
+ * hands the resources it finds to an RBImportSession, without any user interface, so the
+ * same reader serves the import dialogs of RBManager and the batch tool.
+ *
+ * @see com.ibm.rbm.RBImportSession
+ * @see com.ibm.rbm.RBBatch
+ */
+public abstract class RBImportReader {
+    /**
+     * Imports the resources of a file into the bundle of a session, and then resolves the
+     * conflicts the file has left
+     */
+
+    public void importFile(File file, RBImportSession session) throws IOException {
+        long start = RBInstrumentation.start(RBInstrumentation.FILE_IMPORTED);
+        int offered = session.getItemsOffered();
+        read(file, session);
+        session.resolveConflicts();
+        RBInstrumentation.end(RBInstrumentation.FILE_IMPORTED, start, file.getPath(), file.length(),
+                              session.getItemsOffered() - offered);
+    }
+
+    /**
+     * Parses a file, resolving the locales it names through session.resolveEncodings() and
+     * handing each resource to session.importResource(). Readers may resolve conflicts along
+     * the way with session.resolveConflicts(); those left over are resolved by importFile().
+     */
+
+    protected abstract void read(File file, RBImportSession session) throws IOException;
+
+    /**
+     * The import of the resources of one locale, as run by importLocales()
+     */
+
+    protected static abstract class LocaleImport {
+        /**
+         * Hands the resources of the locale to session.importResource()
+         */
+
+        protected abstract void importInto(RBImportSession session) throws IOException;
+    }
+
+    /**
+     * Runs the imports of several locales, whose locales have all ready been resolved, and
+     * resolves the conflicts of each. With more than one locale, each is imported on a thread
+     * of its own with a child session of its own, whose counts are added to the session when
+     * all are done. Every thread works on a different Bundle, so the threads never wait on
+     * each other. A session that canPrompt() imports the locales one after another on the
+     * calling thread instead, since its prompts may show a dialog that the calling thread
+     * would otherwise be blocked from showing.
+     */
+
+    protected static void importLocales(Vector imports, RBImportSession session) throws IOException {
+        if (imports.size() < 2 || session.canPrompt()) {
+            for (int i=0; i < imports.size(); i++) {
+                ((LocaleImport)imports.elementAt(i)).importInto(session);
+                session.resolveConflicts();
+            }
+            return;
+        }
+        Vector tasks = new Vector();
+        for (int i=0; i < imports.size(); i++) {
+            final LocaleImport localeImport = (LocaleImport)imports.elementAt(i);
+            final RBImportSession localeSession = session.createChildSession();
+            tasks.addElement(new Callable() {
+                public Object call() throws IOException {
+                    localeImport.importInto(localeSession);
+                    localeSession.resolveConflicts();
+                    return localeSession;
+                }
+            });
+        }
+        Vector done = runTasks(tasks);
+        for (int i=0; i < done.size(); i++) session.addCounts((RBImportSession)done.elementAt(i));
+    }
+
+    /**
+     * Runs a vector of Callable tasks, as many at a time as there are processors, and returns
+     * their results in the same order. Once every task has finished, the first failure, if
+     * any, is thrown.
+     */
+
+    protected static Vector runTasks(Vector tasks) throws IOException {
+        Vector results = new Vector();
+        if (tasks.size() < 2) {
+            for (int i=0; i < tasks.size(); i++) {
+                try {
+                    results.addElement(((Callable)tasks.elementAt(i)).call());
+                } catch (IOException ioe) {
+                    throw ioe;
+                } catch (RuntimeException re) {
+                    throw re;
+                } catch (Exception e) {
+                    throw new IOException(e.toString());
+                }
+            }
+            return results;
+        }
+        int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Vector pending = new Vector();
+            for (int i=0; i < tasks.size(); i++) pending.addElement(pool.submit((Callable)tasks.elementAt(i)));
+            Throwable error = null;
+            for (int i=0; i < pending.size(); i++) {
+                try {
+                    results.addElement(((Future)pending.elementAt(i)).get());
+                } catch (InterruptedException ie) {
+                    throw new InterruptedIOException("Import interrupted");
+                } catch (ExecutionException ee) {
+                    if (error == null) error = ee.getCause();
+                }
+            }
+            if (error instanceof IOException) throw (IOException)error;
+            if (error instanceof RuntimeException) throw (RuntimeException)error;
+            if (error instanceof Error) throw (Error)error;
+            if (error != null) throw new IOException(error.toString());
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
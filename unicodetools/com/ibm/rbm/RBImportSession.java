@@ -0,0 +1,497 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.util.*;
+
+/**
+ * Inserts imported resources into the bundles of an RBManager, resolving conflicts with
+ * the resources and locales that all ready exist according to fixed options. An import
+ * reader parses a file and hands each resource it finds to importResource(); the session
+ * finds or creates the group of the resource and decides what to do when the key is all
+ * ready present. Locales named by the import but missing from the bundle are resolved
+ * through resolveEncodings() before their resources are imported.
+ * <p>
+ * Resources whose keys all ready exist are not inserted right away but set aside, and
+ * resolveConflicts() decides all of them at once. The conflict rules added to the session
+ * are asked first, in order; a conflict none of them decides falls to the resource
+ * conflict option. Readers resolve the conflicts when they are done with a file.
+ * <p>
+ * A session needs no user interface. The PROMPT options ask promptLocale() and
+ * promptResource(), which RBImporter overrides to show a dialog; by default they ignore
+ * the conflict. Prompts are only asked on the thread that runs the import.
+ *
+ * @see com.ibm.rbm.RBImportReader
+ * @see com.ibm.rbm.RBImporter
+ * @see com.ibm.rbm.RBConflictPolicy
+ */
+public class RBImportSession {
+    /** Create a new locale populated from the base class */
+    public static final int FILE_OPTION_POPULATE      = 0;
+    /** Create a new empty locale */
+    public static final int FILE_OPTION_EMPTY         = 1;
+    /** Ignore all resources of a locale the bundle does not have */
+    public static final int FILE_OPTION_IGNORE        = 2;
+    /** Ask promptLocale() for each missing locale */
+    public static final int FILE_OPTION_PROMPT        = 3;
+    /** Replace an existing resource with the imported one */
+    public static final int RESOURCE_OPTION_OVERWRITE = 0;
+    /** Keep an existing resource and drop the imported one */
+    public static final int RESOURCE_OPTION_IGNORE    = 1;
+    /** Ask promptResource() for each conflicting resource */
+    public static final int RESOURCE_OPTION_PROMPT    = 2;
+
+    private RBManager rbm;
+    private int       fileOption = FILE_OPTION_IGNORE;
+    private int       resourceOption = RESOURCE_OPTION_IGNORE;
+    private String    defaultGroup;
+    private boolean   defaultTranslated = true;
+    private boolean   groupCreation = true;
+    private Vector    policies = new Vector();              // The conflict rules, in the order they are asked
+    private Vector    conflicts = new Vector();             // The conflicts not yet resolved
+    private Hashtable decisions = new Hashtable();          // Rule name -> int[] {replaced, kept}
+    private Hashtable bundleCache = new Hashtable();        // Encoding -> Bundle
+    private Hashtable groupCache = new Hashtable();         // Bundle -> Hashtable of group name -> BundleGroup
+
+    private int       itemsOffered;
+    private int       itemsAdded;
+    private int       itemsReplaced;
+    private int       itemsKept;
+    private int       itemsSkipped;
+    private int       localesCreated;
+
+    public RBImportSession(RBManager rbm) {
+        this.rbm = rbm;
+    }
+
+    public RBManager getManager() {
+        return rbm;
+    }
+
+    /**
+     * Sets what is done with locales named by the import that the bundle does not have;
+     * one of the FILE_OPTION constants.
+     */
+
+    public void setFileConflictOption(int option) {
+        fileOption = option;
+    }
+
+    public int getFileConflictOption() {
+        return fileOption;
+    }
+
+    /**
+     * Sets what is done with imported resources whose keys all ready exist in their locale;
+     * one of the RESOURCE_OPTION constants.
+     */
+
+    public void setResourceConflictOption(int option) {
+        resourceOption = option;
+    }
+
+    public int getResourceConflictOption() {
+        return resourceOption;
+    }
+
+    /**
+     * Returns whether the session may call promptLocale() or promptResource(), that is
+     * whether either conflict option is a PROMPT option. Readers import on the calling thread
+     * alone when it may, since a prompt may have to be shown on that thread.
+     */
+
+    public boolean canPrompt() {
+        return fileOption == FILE_OPTION_PROMPT || resourceOption == RESOURCE_OPTION_PROMPT;
+    }
+
+    /**
+     * Sets the group of resources imported without one. By default this is the group of
+     * ungrouped items of the base class.
+     */
+
+    public void setDefaultGroup(String groupName) {
+        defaultGroup = groupName;
+    }
+
+    public String getDefaultGroup() {
+        if (defaultGroup == null) return ((Bundle)rbm.getBundles().firstElement()).getUngroupedGroup().getName();
+        return defaultGroup;
+    }
+
+    /**
+     * Sets whether resources are marked as translated when the import does not say
+     */
+
+    public void setDefaultTranslated(boolean translated) {
+        defaultTranslated = translated;
+    }
+
+    public boolean getDefaultTranslated() {
+        return defaultTranslated;
+    }
+
+    /**
+     * Sets whether a group named by an imported resource is created when its locale does
+     * not have it. Otherwise the resource goes into the group of ungrouped items.
+     */
+
+    public void setDefaultGroupCreation(boolean create) {
+        groupCreation = create;
+    }
+
+    public boolean getDefaultGroupCreation() {
+        return groupCreation;
+    }
+
+    /**
+     * Adds a rule deciding resource conflicts. Rules are asked in the order they are added,
+     * before the resource conflict option.
+     */
+
+    public void addConflictPolicy(RBConflictPolicy policy) {
+        policies.addElement(policy);
+    }
+
+    /**
+     * Adds each of a vector of rules, such as the one returned by RBConflictPolicy.parse()
+     */
+
+    public void addConflictPolicies(Vector v) {
+        for (int i=0; i < v.size(); i++) addConflictPolicy((RBConflictPolicy)v.elementAt(i));
+    }
+
+    public Vector getConflictPolicies() {
+        return policies;
+    }
+
+    /**
+     * Inserts a resource into the locale of the given encoding. A resource whose key all ready
+     * exists is set aside until resolveConflicts() is called. Resources of locales the bundle
+     * does not have are skipped.
+     */
+
+    public void importResource(BundleItem item, String encoding, String group_name) {
+        itemsOffered++;
+        Bundle bundle = null;
+        BundleGroup group = null;
+
+        if (group_name == null)
+            group_name = getDefaultGroup();
+        // Get the bundle to which we will be adding this resource
+        if (encoding != null) {
+            bundle = (Bundle)bundleCache.get(encoding);
+            if (bundle == null) {
+                bundle = rbm.getBundle(encoding);
+                // Only found bundles are kept, since a missing one may be created later on
+                if (bundle != null) bundleCache.put(encoding, bundle);
+            }
+        }
+        // Skip this import if the bundle is non-existent (Should have been resolved if wanted)
+        if (bundle == null) {
+            itemsSkipped++;
+            return;
+        }
+        group = findGroup(bundle, group_name);
+        // If all group identification efforts fail, we fail
+        if (group == null) {
+            itemsSkipped++;
+            return;
+        }
+        item.setParentGroup(group);
+        // Set conflicts aside for resolveConflicts()
+        if (bundle.allItems.containsKey(item.getKey())) {
+            conflicts.addElement(new Conflict(bundle, item));
+        } else {
+            // Insert the resource
+            bundle.addBundleItem(item);
+            itemsAdded++;
+        }
+    }
+
+    // Returns the group of a bundle that resources of the given group name go into, creating it
+    // if the session creates groups, or else falling back to the group of ungrouped items. The
+    // answer is kept, so each group name is resolved only once for each bundle.
+    private BundleGroup findGroup(Bundle bundle, String group_name) {
+        Hashtable groups = (Hashtable)groupCache.get(bundle);
+        if (groups == null) {
+            groups = new Hashtable();
+            groupCache.put(bundle, groups);
+        }
+        BundleGroup group = (BundleGroup)groups.get(group_name);
+        if (group != null) return group;
+        group = bundle.getBundleGroup(group_name);
+        if (group == null) {
+            if (getDefaultGroupCreation()) {
+                // Create a new group by this name
+                bundle.addBundleGroup(group_name, "");
+                group = bundle.getBundleGroup(group_name);
+            } else {
+                // Use the group of ungrouped items, or any group if there is none
+                group = bundle.getUngroupedGroup();
+                if (group == null) group = bundle.getBundleGroup(0);
+            }
+        }
+        if (group != null) groups.put(group_name, group);
+        return group;
+    }
+
+    /**
+     * Decides all of the conflicts set aside since the last call. Each conflict is put to the
+     * conflict rules in turn; when none of them decides, the resource conflict option does.
+     */
+
+    public void resolveConflicts() {
+        for (int i=0; i < conflicts.size(); i++) {
+            Conflict conflict = (Conflict)conflicts.elementAt(i);
+            resolveResource(conflict.bundle, conflict.item);
+        }
+        conflicts.removeAllElements();
+    }
+
+    /**
+     * Returns the number of conflicts waiting for resolveConflicts()
+     */
+
+    public int getConflictCount() {
+        return conflicts.size();
+    }
+
+    /**
+     * Called for an imported item whose key all ready exists within the bundle
+     */
+
+    protected void resolveResource(Bundle bundle, BundleItem item) {
+        BundleItem original = (BundleItem)bundle.allItems.get(item.getKey());
+        int decision = RBConflictPolicy.ABSTAIN;
+        String rule = null;
+        if (original != null) {
+            for (int i=0; i < policies.size() && decision == RBConflictPolicy.ABSTAIN; i++) {
+                RBConflictPolicy policy = (RBConflictPolicy)policies.elementAt(i);
+                decision = policy.decide(bundle, original, item);
+                rule = policy.getName();
+            }
+        }
+        if (decision == RBConflictPolicy.ABSTAIN) {
+            int option = getResourceConflictOption();
+            if (option == RESOURCE_OPTION_PROMPT) {
+                option = (original == null ? RESOURCE_OPTION_IGNORE : promptResource(bundle, original, item));
+                rule = "prompt";
+            } else {
+                rule = (option == RESOURCE_OPTION_OVERWRITE ? "overwrite" : "keep");
+            }
+            decision = (option == RESOURCE_OPTION_OVERWRITE ? RBConflictPolicy.OVERWRITE : RBConflictPolicy.KEEP);
+        }
+        int counts[] = (int[])decisions.get(rule);
+        if (counts == null) {
+            counts = new int[2];
+            decisions.put(rule, counts);
+        }
+        if (decision == RBConflictPolicy.OVERWRITE) {
+            bundle.removeItem(item.getKey());
+            bundle.addBundleItem(item);
+            itemsReplaced++;
+            counts[0]++;
+        } else {
+            itemsKept++;
+            counts[1]++;
+        }
+    }
+
+    /**
+     * Given a vector of strings containing locale encodings (e.g. {"en", "en_us", "de"}), creates
+     * those missing from the bundle according to the file conflict option.
+     */
+
+    public void resolveEncodings(Vector v) {
+        for (int i=0; i < v.size(); i++) {
+            String encoding = (String)v.elementAt(i);
+            if (encoding == null || encoding.equals("") || rbm.hasResource(encoding)) {
+                continue;
+            }
+            // We need to resolve this conflict
+            int option = getFileConflictOption();
+            if (option == FILE_OPTION_PROMPT) option = promptLocale(encoding);
+            if (option == FILE_OPTION_POPULATE) {
+                if (rbm.createResource(null, null, null, encoding, null, null, null, true)) localesCreated++;
+            } else if (option == FILE_OPTION_EMPTY) {
+                if (rbm.createResource(null, null, null, encoding, null, null, null, false)) localesCreated++;
+            }
+        }
+    }
+
+    /**
+     * Decides what to do with a locale the bundle does not have, when the file conflict
+     * option is FILE_OPTION_PROMPT. Returns one of the other FILE_OPTION constants.
+     */
+
+    protected int promptLocale(String encoding) {
+        return FILE_OPTION_IGNORE;
+    }
+
+    /**
+     * Decides between an existing resource and an imported one of the same key, when the
+     * resource conflict option is RESOURCE_OPTION_PROMPT. Returns RESOURCE_OPTION_OVERWRITE
+     * or RESOURCE_OPTION_IGNORE.
+     */
+
+    protected int promptResource(Bundle bundle, BundleItem original, BundleItem item) {
+        return RESOURCE_OPTION_IGNORE;
+    }
+
+    /**
+     * Creates a session with the same options, which imports into the same bundle but
+     * counts on its own. Readers that import several locales at once give each thread
+     * a session of its own, so that the counts are never shared between threads, and
+     * add the counts back with addCounts() when done. Prompts of the new session are
+     * passed to this one, one at a time, on the thread of the new session; a session
+     * that canPrompt() should therefore not hand a child session to another thread, since
+     * its prompts may show a dialog that only the thread of the import can show.
+     */
+
+    public RBImportSession createChildSession() {
+        final RBImportSession parent = this;
+        RBImportSession child = new RBImportSession(rbm) {
+            protected int promptLocale(String encoding) {
+                synchronized (parent) {
+                    return parent.promptLocale(encoding);
+                }
+            }
+
+            protected int promptResource(Bundle bundle, BundleItem original, BundleItem item) {
+                synchronized (parent) {
+                    return parent.promptResource(bundle, original, item);
+                }
+            }
+        };
+        child.fileOption = fileOption;
+        child.resourceOption = resourceOption;
+        // Settled now, since the base class may be changing in another thread later on
+        child.defaultGroup = getDefaultGroup();
+        child.defaultTranslated = defaultTranslated;
+        child.groupCreation = groupCreation;
+        child.policies = policies;
+        return child;
+    }
+
+    /**
+     * Adds the counts of another session, usually one made by createChildSession(), to
+     * those of this one
+     */
+
+    public synchronized void addCounts(RBImportSession session) {
+        itemsOffered += session.itemsOffered;
+        itemsAdded += session.itemsAdded;
+        itemsReplaced += session.itemsReplaced;
+        itemsKept += session.itemsKept;
+        itemsSkipped += session.itemsSkipped;
+        localesCreated += session.localesCreated;
+        Enumeration rules = session.decisions.keys();
+        while (rules.hasMoreElements()) {
+            Object rule = rules.nextElement();
+            int add[] = (int[])session.decisions.get(rule);
+            int counts[] = (int[])decisions.get(rule);
+            if (counts == null) {
+                counts = new int[2];
+                decisions.put(rule, counts);
+            }
+            counts[0] += add[0];
+            counts[1] += add[1];
+        }
+    }
+
+    /**
+     * Returns the number of resources handed to importResource()
+     */
+
+    public int getItemsOffered() {
+        return itemsOffered;
+    }
+
+    /**
+     * Returns the number of resources added under keys that did not exist before
+     */
+
+    public int getItemsAdded() {
+        return itemsAdded;
+    }
+
+    /**
+     * Returns the number of existing resources replaced by imported ones
+     */
+
+    public int getItemsReplaced() {
+        return itemsReplaced;
+    }
+
+    /**
+     * Returns the number of imported resources dropped in favor of existing ones
+     */
+
+    public int getItemsKept() {
+        return itemsKept;
+    }
+
+    /**
+     * Returns the number of imported resources dropped because their locale or group was
+     * not found
+     */
+
+    public int getItemsSkipped() {
+        return itemsSkipped;
+    }
+
+    /**
+     * Returns the number of locales created by resolveEncodings()
+     */
+
+    public int getLocalesCreated() {
+        return localesCreated;
+    }
+
+    /**
+     * Returns a one line account of what the session has done
+     */
+
+    public String getSummary() {
+        return itemsOffered + " resources imported: " + itemsAdded + " added, " + itemsReplaced + " replaced, " +
+               itemsKept + " kept, " + itemsSkipped + " skipped; " + localesCreated + " locales created";
+    }
+
+    /**
+     * Returns a one line account of how the conflicts were decided, with the number of
+     * resources replaced and kept by each rule or option that decided any
+     */
+
+    public String getConflictReport() {
+        StringBuffer buffer = new StringBuffer();
+        Vector rules = new Vector();
+        for (int i=0; i < policies.size(); i++) rules.addElement(((RBConflictPolicy)policies.elementAt(i)).getName());
+        rules.addElement("overwrite");
+        rules.addElement("keep");
+        rules.addElement("prompt");
+        for (int i=0; i < rules.size(); i++) {
+            String rule = (String)rules.elementAt(i);
+            if (rules.indexOf(rule) < i) continue;
+            int counts[] = (int[])decisions.get(rule);
+            if (counts == null) continue;
+            if (buffer.length() > 0) buffer.append("; ");
+            buffer.append(rule + ": " + counts[0] + " replaced, " + counts[1] + " kept");
+        }
+        return buffer.toString();
+    }
+
+    // An imported resource whose key all ready exists in its locale
+    private static class Conflict {
+        Bundle     bundle;
+        BundleItem item;
+
+        Conflict(Bundle bundle, BundleItem item) {
+            this.bundle = bundle;
+            this.item = item;
+        }
+    }
+}
@@ -32,14 +32,6 @@ import java.awt.event.*;
  * @see com.ibm.rbm.RBManager
  */
 public class RBImporter extends JDialog {
-    private final static int FILE_OPTION_POPULATE      = 0;            // Create a new locale file populated from base file
-    private final static int FILE_OPTION_EMPTY         = 1;            // Create a new empty locale file
-    private final static int FILE_OPTION_IGNORE        = 2;            // Ignore all resources from this encoding
-    private final static int FILE_OPTION_PROMPT        = 3;            // Prompt for each conflict
-    private final static int RESOURCE_OPTION_OVERWRITE = 0;            // Use the value from the source import file
-    private final static int RESOURCE_OPTION_IGNORE    = 1;            // Ignore the import and use existing value
-    private final static int RESOURCE_OPTION_PROMPT    = 2;            // Propmpt for each conflict
-	
     protected static JFileChooser chooser;
     protected int    num_conflicts;
     protected int    num_extra_files;
@@ -47,10 +39,12 @@ public class RBImporter extends JDialog {
     protected RBManager rbm;
     protected RBManagerGUI gui;
     protected boolean pathSet = false;
+    protected RBImportSession session;                  // Receives the resources of the current import
 	
     // Visual Components
     JRadioButton resourceOverwriteRadio    = new JRadioButton(Resources.getTranslation("import_resource_conflict_overwrite"), false);
     JRadioButton resourceIgnoreRadio       = new JRadioButton(Resources.getTranslation("import_resource_conflict_ignore"), false);
+    JRadioButton resourceNewerRadio        = new JRadioButton(Resources.getTranslation("import_resource_conflict_newer"), false);
     JRadioButton resourcePromptRadio       = new JRadioButton(Resources.getTranslation("import_conflict_prompt"), true);
     JRadioButton fileGeneratePopulateRadio = new JRadioButton(Resources.getTranslation("import_file_conflict_generate_populate"), false);
     JRadioButton fileGenerateEmptyRadio    = new JRadioButton(Resources.getTranslation("import_file_conflict_generate_empty"), false);
@@ -114,98 +108,58 @@ public class RBImporter extends JDialog {
     }
 	
     /**
-     * A super class method intended for use of nearly all subclass importers, once a resource
-     * is found by those subclasses. This method is called in order to create the new resource
-     * and handle the various conflict errors that may result as a part of that import.
+     * Creates the session that receives the resources of an import, with the options selected
+     * in the dialog. The PROMPT options ask the user about each conflict.
      */
 	
-    protected void importResource(BundleItem item, String encoding, String group_name) {
-        Bundle bundle = null;
-        BundleGroup group = null;
-        BundleGroup backup_group = null;
-		
-        if (group_name == null)
-        	group_name = getDefaultGroup();
-        if (encoding == null)
-        	return;
-        // Get the bundle to which we will be adding this resource
-        bundle = rbm.getBundle(encoding);
-        // Skip this import if the bundle is non-existent (Should have been resolved if wanted)
-        if (bundle == null)
-        	return;
-        // Find the group in the bundle, Ungrouped if non-existent
-        Vector gv = bundle.getGroupsAsVector();
-        for (int i=0; i < gv.size(); i++) {
-            BundleGroup tempg = (BundleGroup)gv.elementAt(i);
-            if (i==0) backup_group = tempg;
-            if (tempg.getName().equals("Ungrouped Items")) backup_group = tempg;
-            else if (tempg.getName().equals(group_name)) {
-                group = tempg;
-                break;
+    protected RBImportSession createSession() {
+        RBImportSession importSession = new RBImportSession(rbm) {
+            protected int promptLocale(String encoding) {
+                String options[] = { Resources.getTranslation("import_file_conflict_generate_populate"),
+                                     Resources.getTranslation("import_file_conflict_generate_empty"),
+                                     Resources.getTranslation("import_file_conflict_ignore")};
+				
+                String result = (String)JOptionPane.showInputDialog(RBImporter.this, Resources.getTranslation("import_file_conflict_choose", encoding),
+                    Resources.getTranslation("import_file_conflicts"), JOptionPane.QUESTION_MESSAGE,
+                    null, options, options[0]);
+                if (result == null) return FILE_OPTION_IGNORE;
+                if (result.equals(Resources.getTranslation("import_file_conflict_generate_populate"))) return FILE_OPTION_POPULATE;
+                if (result.equals(Resources.getTranslation("import_file_conflict_generate_empty"))) return FILE_OPTION_EMPTY;
+                return FILE_OPTION_IGNORE;
             }
-        }
-        if (group == null) {
-            if (getDefaultGroupCreation()) {
-                // Create a new group by this name
-                bundle.addBundleGroup(group_name, "");
-                gv = bundle.getGroupsAsVector();
-                for (int i=0; i < gv.size(); i++) {
-                    BundleGroup tempg = (BundleGroup)gv.elementAt(i);
-                    if (tempg.getName().equals(group_name)) {
-                        group = tempg;
-                        break;
-                    }
-                }
-            } else {
-                // Use the backup_group
-                group = backup_group;
+            
+            protected int promptResource(Bundle bundle, BundleItem original, BundleItem item) {
+                String trans = original.getTranslation();
+                String options[] = { Resources.getTranslation("import_resource_conflict_overwrite"),
+                                     Resources.getTranslation("import_resource_conflict_ignore")};
+                String insert[] = {item.getKey(), (bundle.encoding.equals("") ? "(Base Class)" : bundle.encoding)};
+                String result = (String)JOptionPane.showInputDialog(RBImporter.this,  Resources.getTranslation("import_resource_conflict_choose", insert) + 
+                    "\n" + Resources.getTranslation("import_resource_conflict_choose_source", item.getTranslation()) +
+                    "\n" + Resources.getTranslation("import_resource_conflict_choose_target", trans),
+                    Resources.getTranslation("import_file_conflicts"), JOptionPane.QUESTION_MESSAGE,
+                    null, options, options[0]);
+                if (result != null && result.equals(Resources.getTranslation("import_resource_conflict_overwrite")))
+                    return RESOURCE_OPTION_OVERWRITE;
+                return RESOURCE_OPTION_IGNORE;
             }
-        }
-        // If all group identification efforts fail, we fail
-        if (group == null)
-        	return;
-        item.setParentGroup(group);
-        // Check for and resolve conflicts
-        if (bundle.allItems.containsKey(item.getKey())) {
-            resolveResource(bundle,item); 
-            RBManagerGUI.debugMsg("Resolve conflict");
-        } else {
-            // Insert the resource
-            bundle.addBundleItem(item);
-        }
+        };
+        importSession.setFileConflictOption(getFileConflictOption());
+        importSession.setResourceConflictOption(getResourceConflictOption());
+        if (resourceNewerRadio.isSelected()) importSession.addConflictPolicy(RBConflictPolicy.newer());
+        importSession.setDefaultGroup(getDefaultGroup());
+        importSession.setDefaultTranslated(getDefaultTranslated());
+        importSession.setDefaultGroupCreation(getDefaultGroupCreation());
+        return importSession;
     }
-    
+	
     /**
-     * This method should be called when trying to import and item whose key all ready exists within the bundle.
+     * A super class method intended for use of nearly all subclass importers, once a resource
+     * is found by those subclasses. The resource is handed to the session of the import, which
+     * creates it and handles the various conflict errors that may result.
      */
 	
-    protected void resolveResource(Bundle bundle, BundleItem item) {
-        if (this.getResourceConflictOption() == RESOURCE_OPTION_IGNORE)
-        	return;
-        else if (this.getResourceConflictOption() == RESOURCE_OPTION_OVERWRITE) {
-            bundle.removeItem(item.getKey());
-            bundle.addBundleItem(item);
-        } else if (this.getResourceConflictOption() == RESOURCE_OPTION_PROMPT) {
-            BundleItem original = (BundleItem)bundle.allItems.get(item.getKey());
-            if (original == null)
-            	return;
-            String trans = original.getTranslation();
-            String options[] = { Resources.getTranslation("import_resource_conflict_overwrite"),
-                                 Resources.getTranslation("import_resource_conflict_ignore")};
-            String insert[] = {item.getKey(), (bundle.encoding.equals("") ? "(Base Class)" : bundle.encoding)};
-            String result = (String)JOptionPane.showInputDialog(this,  Resources.getTranslation("import_resource_conflict_choose", insert) + 
-                "\n" + Resources.getTranslation("import_resource_conflict_choose_source", item.getTranslation()) +
-                "\n" + Resources.getTranslation("import_resource_conflict_choose_target", trans),
-                Resources.getTranslation("import_file_conflicts"), JOptionPane.QUESTION_MESSAGE,
-                null, options, options[0]);
-            if (result == null)
-            	return;
-            if (result.equals(Resources.getTranslation("import_resource_conflict_overwrite"))) {
-                bundle.removeItem(item.getKey());
-                bundle.addBundleItem(item);
-            } else if (result.equals(Resources.getTranslation("import_resource_conflict_ignore")))
-            	return;
-        }
+    protected void importResource(BundleItem item, String encoding, String group_name) {
+        session.importResource(item, encoding, group_name);
     }
 	
     /**
@@ -214,55 +168,28 @@ public class RBImporter extends JDialog {
      */
 	
     protected void resolveEncodings(Vector v) {
-        for (int i=0; i < v.size(); i++) {
-            String encoding = (String)v.elementAt(i);
-            if (encoding == null || encoding.equals("") || rbm.hasResource(encoding)) {
-                continue;
-            }
-
-            // We need to resolve this conflict
-            if (this.getFileConflictOption() == FILE_OPTION_IGNORE) continue;
-            else if (this.getFileConflictOption() == FILE_OPTION_POPULATE) {
-                rbm.createResource(null, null, null, encoding, null, null, null, true);
-            } else if (this.getFileConflictOption() == FILE_OPTION_EMPTY) {
-                rbm.createResource(null, null, null, encoding, null, null, null, true);
-            } else if (this.getFileConflictOption() == FILE_OPTION_PROMPT) {
-                String options[] = { Resources.getTranslation("import_file_conflict_generate_populate"),
-                                     Resources.getTranslation("import_file_conflict_generate_empty"),
-                                     Resources.getTranslation("import_file_conflict_ignore")};
-				
-                String result = (String)JOptionPane.showInputDialog(this, Resources.getTranslation("import_file_conflict_choose", encoding),
-                    Resources.getTranslation("import_file_conflicts"), JOptionPane.QUESTION_MESSAGE,
-                    null, options, options[0]);
-                if (result == null) continue;
-                if (result.equals(Resources.getTranslation("import_file_conflict_ignore"))) continue;
-                else if (result.equals(Resources.getTranslation("import_file_conflict_generate_populate"))) {
-                    rbm.createResource(null, null, null, encoding, null, null, null, true);
-                } else if (result.equals(Resources.getTranslation("import_file_conflict_generate_empty"))) {
-                    rbm.createResource(null, null, null, encoding, null, null, null, false);
-                }
-            }
-        }
+        session.resolveEncodings(v);
         gui.updateDisplayTree();
     }
 	
     // Returns an integer mask describing the user's selection for file resolving missing file locale conflicts
 	
     private int getFileConflictOption() {
-        if (fileGeneratePopulateRadio.isSelected()) return FILE_OPTION_POPULATE;
-        if (fileGenerateEmptyRadio.isSelected()) return FILE_OPTION_EMPTY;
-        if (fileIgnoreRadio.isSelected()) return FILE_OPTION_IGNORE;
-        if (filePromptRadio.isSelected()) return FILE_OPTION_PROMPT;
-        return FILE_OPTION_PROMPT;
+        if (fileGeneratePopulateRadio.isSelected()) return RBImportSession.FILE_OPTION_POPULATE;
+        if (fileGenerateEmptyRadio.isSelected()) return RBImportSession.FILE_OPTION_EMPTY;
+        if (fileIgnoreRadio.isSelected()) return RBImportSession.FILE_OPTION_IGNORE;
+        if (filePromptRadio.isSelected()) return RBImportSession.FILE_OPTION_PROMPT;
+        return RBImportSession.FILE_OPTION_PROMPT;
     }
 	
     // Returns an integer mask describing the user's selection for duplicate resource key conflicts
 	
     private int getResourceConflictOption() {
-        if (resourceOverwriteRadio.isSelected()) return RESOURCE_OPTION_OVERWRITE;
-        if (resourceIgnoreRadio.isSelected()) return RESOURCE_OPTION_IGNORE;
-        if (resourcePromptRadio.isSelected()) return RESOURCE_OPTION_PROMPT;
-        return RESOURCE_OPTION_PROMPT;
+        if (resourceOverwriteRadio.isSelected()) return RBImportSession.RESOURCE_OPTION_OVERWRITE;
+        if (resourceIgnoreRadio.isSelected()) return RBImportSession.RESOURCE_OPTION_IGNORE;
+        if (resourceNewerRadio.isSelected()) return RBImportSession.RESOURCE_OPTION_IGNORE;
+        if (resourcePromptRadio.isSelected()) return RBImportSession.RESOURCE_OPTION_PROMPT;
+        return RBImportSession.RESOURCE_OPTION_PROMPT;
     }
 	
     // Returns the group name for use when no group name is specified
@@ -354,6 +281,7 @@ public class RBImporter extends JDialog {
         fileGroup.add(filePromptRadio);
         resourceGroup.add(resourceOverwriteRadio);
         resourceGroup.add(resourceIgnoreRadio);
+        resourceGroup.add(resourceNewerRadio);
         resourceGroup.add(resourcePromptRadio);
 		
         // Add action listeners
@@ -366,7 +294,9 @@ public class RBImporter extends JDialog {
         importButton.addActionListener(new ActionListener(){
             public void actionPerformed(ActionEvent ev) {
                 try {
+                    session = createSession();
                     beginImport();
+                    session.resolveConflicts();
                     gui.updateProjectTree();
                     gui.updateDisplayTree();
                     thisWindowClosing();
@@ -416,6 +346,7 @@ public class RBImporter extends JDialog {
 		
         resourceBox.add(resourceOverwriteRadio);
         resourceBox.add(resourceIgnoreRadio);
+        resourceBox.add(resourceNewerRadio);
         resourceBox.add(resourcePromptRadio);
 		
         defaultPanel.add(defaultPanel2);
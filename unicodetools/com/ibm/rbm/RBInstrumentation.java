@@ -0,0 +1,182 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records where the time goes when bundles are loaded, code is scanned, and files are
+ * imported or exported. Each operation is counted together with its time, bytes and
+ * items when profiling is on, and is sent to the JDK Flight Recorder as an event when a
+ * recording has the event enabled. When neither is the case, start() returns 0 and
+ * end() returns at once, so the instrumented code pays for no more than a test.
+ * <p>
+ * The code being measured calls:
+ * <pre>
+ *     long start = RBInstrumentation.start(RBInstrumentation.FILE_LOADED);
+ *     ...
+ *     RBInstrumentation.end(RBInstrumentation.FILE_LOADED, start, file.getPath(), file.length(), items);
+ * </pre>
+ *
+ * @see com.ibm.rbm.RBFlightEvents
+ */
+public final class RBInstrumentation {
+    /** A resource bundle file parsed by RBManager */
+    public static final int FILE_LOADED       = 0;
+    /** A file read by an importer */
+    public static final int FILE_IMPORTED     = 1;
+    /** A directory listed by the code scan */
+    public static final int DIRECTORY_SCANNED = 2;
+    /** A source file read by the code scan */
+    public static final int FILE_SCANNED      = 3;
+    /** A parse rule applied to a source file */
+    public static final int RULE_EVALUATED    = 4;
+    /** A file written by an exporter */
+    public static final int FILE_EXPORTED     = 5;
+
+    private static final String NAMES[] = {"Bundle files loaded", "Files imported", "Directories scanned",
+                                           "Source files scanned", "Parse rules evaluated", "Files exported"};
+
+    private static final boolean FLIGHT_RECORDER = isFlightRecorderPresent();
+
+    private static volatile boolean profiling;
+    private static final AtomicLongArray counts = new AtomicLongArray(NAMES.length);
+    private static final AtomicLongArray nanos  = new AtomicLongArray(NAMES.length);
+    private static final AtomicLongArray bytes  = new AtomicLongArray(NAMES.length);
+    private static final AtomicLongArray items  = new AtomicLongArray(NAMES.length);
+
+    private RBInstrumentation() {
+    }
+
+    private static boolean isFlightRecorderPresent() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * Turns the counters on or off
+     */
+
+    public static void setProfiling(boolean profiling) {
+        RBInstrumentation.profiling = profiling;
+    }
+
+    public static boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * Turns the counters on and prints their summary to a stream when the Java platform
+     * exits. This is what the -profile option of the command line tools does.
+     */
+
+    public static void profileUntilExit(final PrintStream out) {
+        setProfiling(true);
+        Runtime.getRuntime().addShutdownHook(new Thread("RBInstrumentation summary") {
+            public void run() {
+                writeSummary(out);
+            }
+        });
+    }
+
+    /**
+     * Returns whether operations of a kind are being recorded
+     */
+
+    public static boolean isEnabled(int kind) {
+        return profiling || (FLIGHT_RECORDER && RBFlightEvents.isEnabled(kind));
+    }
+
+    /**
+     * Returns the start time of an operation, or 0 if operations of its kind are not
+     * being recorded.
+     */
+
+    public static long start(int kind) {
+        if (!isEnabled(kind)) return 0;
+        long now = System.nanoTime();
+        return (now == 0 ? 1 : now);
+    }
+
+    /**
+     * Records the end of an operation begun with start()
+     */
+
+    public static void end(int kind, long start, String name, long byteCount, int itemCount) {
+        if (start == 0) return;
+        record(kind, name, System.nanoTime() - start, byteCount, itemCount);
+    }
+
+    /**
+     * Records an operation whose time was measured by the caller. This suits operations
+     * made of many small steps, whose times are added up before being recorded.
+     */
+
+    public static void record(int kind, String name, long elapsedNanos, long byteCount, int itemCount) {
+        if (profiling) {
+            counts.incrementAndGet(kind);
+            nanos.addAndGet(kind, elapsedNanos);
+            bytes.addAndGet(kind, byteCount);
+            items.addAndGet(kind, itemCount);
+        }
+        if (FLIGHT_RECORDER) RBFlightEvents.commit(kind, name, elapsedNanos, byteCount, itemCount);
+    }
+
+    /**
+     * Clears the counters
+     */
+
+    public static void reset() {
+        for (int i=0; i < NAMES.length; i++) {
+            counts.set(i, 0);
+            nanos.set(i, 0);
+            bytes.set(i, 0);
+            items.set(i, 0);
+        }
+    }
+
+    /**
+     * Prints a table of the counters
+     */
+
+    public static void writeSummary(PrintStream out) {
+        out.println();
+        out.println(pad("Operation", 24, false) + pad("Count", 10, true) + pad("Total ms", 12, true) +
+                    pad("Mean ms", 10, true) + pad("KB", 12, true) + pad("KB/s", 10, true) +
+                    pad("Items", 12, true) + pad("Items/s", 10, true));
+        for (int i=0; i < NAMES.length; i++) {
+            long count = counts.get(i);
+            if (count == 0) continue;
+            double millis = nanos.get(i) / 1e6;
+            double seconds = millis / 1000.0;
+            out.println(pad(NAMES[i], 24, false) + pad(String.valueOf(count), 10, true) +
+                        pad(format(millis), 12, true) + pad(format(millis / count), 10, true) +
+                        pad(format(bytes.get(i) / 1024.0), 12, true) +
+                        pad(seconds > 0 ? format(bytes.get(i) / 1024.0 / seconds) : "-", 10, true) +
+                        pad(String.valueOf(items.get(i)), 12, true) +
+                        pad(seconds > 0 ? format(items.get(i) / seconds) : "-", 10, true));
+        }
+        out.flush();
+    }
+
+    private static String format(double value) {
+        return String.valueOf(Math.round(value * 10) / 10.0);
+    }
+
+    private static String pad(String s, int width, boolean right) {
+        StringBuffer buffer = new StringBuffer(width);
+        if (!right) buffer.append(s);
+        for (int i=s.length(); i < width; i++) buffer.append(' ');
+        if (right) buffer.append(s);
+        return buffer.toString();
+    }
+}
@@ -30,8 +30,11 @@ public class RBJavaExporter extends RBExporter {
 	
     public RBJavaExporter() {
         super();
-		
-        // Initialize the file chooser if necessary
+    }
+	
+    public void export(RBManager rbm) throws IOException {
+        if (rbm == null) return;
+        // Create the file chooser when it is first needed, as exporting without it needs no Swing
         if (chooser == null) {
             chooser = new JFileChooser();
             chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
@@ -45,10 +48,6 @@ public class RBJavaExporter extends RBExporter {
                 }
             });
         }
-    }
-	
-    public void export(RBManager rbm) throws IOException {
-        if (rbm == null) return;
         // Open the additional Dialog
         RBJavaExporterDialog parametersDialog = new RBJavaExporterDialog();
         packageName = parametersDialog.getPackageName();
@@ -58,8 +57,11 @@ public class RBJavaExporter extends RBExporter {
         // Open the Save Dialog
         int ret_val = chooser.showSaveDialog(null);
         if (ret_val != JFileChooser.APPROVE_OPTION) return;
+        export(rbm, chooser.getSelectedFile());
+    }
+
+    public void export(RBManager rbm, File file) throws IOException {
         // Retrieve basic file information
-        File file = chooser.getSelectedFile();                  // The file(s) we will be working with
         File directory = new File(file.getParent());            // The directory we will be writing to
         String base_name = file.getName();                      // The base name of the files we will write
         if (base_name == null || base_name.equals("")) base_name = rbm.getBaseClass();
@@ -68,6 +70,7 @@ public class RBJavaExporter extends RBExporter {
         Vector bundle_v = rbm.getBundles();
         for (int i=0; i < bundle_v.size(); i++) {
             Bundle bundle = (Bundle)bundle_v.elementAt(i);
+            long start = RBInstrumentation.start(RBInstrumentation.FILE_EXPORTED);
             String base_enc = base_name;
             if (bundle.encoding != null && !bundle.encoding.equals("")) base_enc = base_enc + "_" + bundle.encoding;
             String file_name = base_enc + ".java";
@@ -109,6 +112,8 @@ public class RBJavaExporter extends RBExporter {
             writer.write(buffer.toString());
             writer.flush();
             writer.close();
+            RBInstrumentation.end(RBInstrumentation.FILE_EXPORTED, start, write_file.getPath(), write_file.length(),
+                                  bundle.allItems.size());
         } // end for - i
     }
 }
@@ -0,0 +1,587 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.zip.*;
+
+/**
+ * Reads compiled ListResourceBundle classes: a base class together with the locale classes
+ * next to it, every class of a directory, or every class of a jar file. The classes of a
+ * directory or jar file are those of the base class of the bundle being imported into.
+ * <p>
+ * The classes are never loaded. Each class file is parsed directly, and the instructions of
+ * its static initializer and of its getContents() method are followed far enough to find
+ * the array of key value pairs they build, as the Java compiler writes it for an array
+ * initializer. Nothing of the class is ever run, so classes from anywhere may be imported,
+ * and as many are parsed at a time as there are processors. Only resources whose values
+ * are strings are imported; class files carry no groups or comments.
+ *
+ * @see com.ibm.rbm.RBJavaImporter
+ * @see com.ibm.rbm.RBJavaExporter
+ */
+public class RBJavaImportReader extends RBImportReader {
+    /**
+     * The resources of one compiled class, ready to be merged into a bundle
+     */
+
+    static class CompiledBundle {
+        String className;
+        String locale;
+        Vector keys = new Vector();
+        Vector values = new Vector();
+    }
+
+    protected void read(File file, RBImportSession session) throws IOException {
+        String baseName = session.getManager().getBaseClass();
+        if (file.getName().toLowerCase().endsWith(".jar") || file.getName().toLowerCase().endsWith(".zip")) {
+            readArchive(file, baseName, session);
+            return;
+        }
+        File directory = file;
+        if (!file.isDirectory()) {
+            // The class chosen names the base class, unless it is a locale of the bundle's own
+            String className = getClassName(file.getName());
+            if (getLocale(className, baseName) == null) baseName = className;
+            directory = file.getAbsoluteFile().getParentFile();
+        }
+        File children[] = directory.listFiles();
+        if (children == null) throw new IOException("Unable to list " + directory);
+        Vector tasks = new Vector();
+        for (int i=0; i < children.length; i++) {
+            final File child = children[i];
+            if (!child.isFile() || !child.getName().endsWith(".class")) continue;
+            final String locale = getLocale(getClassName(child.getName()), baseName);
+            if (locale == null) continue;
+            tasks.addElement(new Callable() {
+                public Object call() throws IOException {
+                    InputStream in = new BufferedInputStream(new FileInputStream(child));
+                    try {
+                        return parse(in, child.getPath(), locale);
+                    } finally {
+                        in.close();
+                    }
+                }
+            });
+        }
+        merge(runTasks(tasks), session);
+    }
+
+    // Reads the classes of the bundle out of a jar or zip file
+    private void readArchive(File file, String baseName, RBImportSession session) throws IOException {
+        final ZipFile zip = new ZipFile(file);
+        try {
+            Vector tasks = new Vector();
+            Enumeration entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = (ZipEntry)entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.endsWith(".class")) continue;
+                final String locale = getLocale(getClassName(name.substring(name.lastIndexOf('/') + 1)), baseName);
+                if (locale == null) continue;
+                tasks.addElement(new Callable() {
+                    public Object call() throws IOException {
+                        InputStream in = new BufferedInputStream(zip.getInputStream(entry));
+                        try {
+                            return parse(in, entry.getName(), locale);
+                        } finally {
+                            in.close();
+                        }
+                    }
+                });
+            }
+            merge(runTasks(tasks), session);
+        } finally {
+            zip.close();
+        }
+    }
+
+    // Returns the name of a class file without its extension
+    private static String getClassName(String fileName) {
+        return (fileName.endsWith(".class") ? fileName.substring(0, fileName.length() - 6) : fileName);
+    }
+
+    // Returns the locale of a class of a bundle, "" for the base class, or null if the class
+    // does not belong to the bundle
+    private static String getLocale(String className, String baseName) {
+        if (baseName == null) return null;
+        if (className.equals(baseName)) return "";
+        if (className.startsWith(baseName + "_") && className.length() > baseName.length() + 1)
+            return className.substring(baseName.length() + 1);
+        return null;
+    }
+
+    // Resolves the locales of all of the classes at once, and then imports the resources of
+    // each locale on a thread of its own
+    private void merge(Vector parsed, RBImportSession session) throws IOException {
+        Vector locales = new Vector();
+        Hashtable classesByLocale = new Hashtable();
+        for (int i=0; i < parsed.size(); i++) {
+            CompiledBundle compiled = (CompiledBundle)parsed.elementAt(i);
+            Vector localeClasses = (Vector)classesByLocale.get(compiled.locale);
+            if (localeClasses == null) {
+                // A jar file may hold classes of the same name in different packages
+                localeClasses = new Vector();
+                classesByLocale.put(compiled.locale, localeClasses);
+                locales.addElement(compiled.locale);
+            }
+            localeClasses.addElement(compiled);
+        }
+        session.resolveEncodings(locales);
+        Vector imports = new Vector();
+        for (int i=0; i < locales.size(); i++) {
+            final Vector localeClasses = (Vector)classesByLocale.get(locales.elementAt(i));
+            imports.addElement(new LocaleImport() {
+                protected void importInto(RBImportSession localeSession) {
+                    mergeLocale(localeClasses, localeSession);
+                }
+            });
+        }
+        importLocales(imports, session);
+    }
+
+    // Imports the resources of the classes of one locale
+    private static void mergeLocale(Vector localeClasses, RBImportSession session) {
+        String group = session.getDefaultGroup();
+        for (int i=0; i < localeClasses.size(); i++) {
+            CompiledBundle compiled = (CompiledBundle)localeClasses.elementAt(i);
+            for (int j=0; j < compiled.keys.size(); j++) {
+                BundleItem item = new BundleItem(null, (String)compiled.keys.elementAt(j), (String)compiled.values.elementAt(j));
+                item.setTranslated(session.getDefaultTranslated());
+                session.importResource(item, compiled.locale, group);
+            }
+        }
+    }
+
+    /**
+     * Parses one class file, returning the string resources of the ListResourceBundle it
+     * holds. The name is only used in messages.
+     */
+
+    static CompiledBundle parse(InputStream in, String name, String locale) throws IOException {
+        ClassFile cf = new ClassFile(new DataInputStream(in), name);
+        Hashtable statics = new Hashtable();
+        if (cf.clinit != null) cf.interpret(cf.clinit, statics);
+        Object contents = null;
+        if (cf.getContents != null) contents = cf.interpret(cf.getContents, statics);
+        // Without a getContents() of its own, the class may still keep the usual static field
+        if (!(contents instanceof Object[])) contents = statics.get("contents");
+        if (!(contents instanceof Object[]))
+            throw new IOException("No resources found in " + name + "; it is not a ListResourceBundle built from an array initializer");
+        CompiledBundle compiled = new CompiledBundle();
+        compiled.className = cf.className;
+        compiled.locale = locale;
+        Object pairs[] = (Object[])contents;
+        for (int i=0; i < pairs.length; i++) {
+            if (!(pairs[i] instanceof Object[])) continue;
+            Object pair[] = (Object[])pairs[i];
+            if (pair.length < 2 || !(pair[0] instanceof String) || !(pair[1] instanceof String)) continue;
+            compiled.keys.addElement(pair[0]);
+            compiled.values.addElement(pair[1]);
+        }
+        return compiled;
+    }
+
+    /**
+     * The parts of a class file needed to find the contents of a ListResourceBundle: the
+     * constant pool and the code of two methods
+     */
+
+    private static class ClassFile {
+        private static final Object UNKNOWN = new Object();     // A value the interpreter does not follow
+        private static final Object NULL = new Object();        // The null reference
+
+        String   name;                                          // The file or entry, for messages
+        String   className;                                     // The internal name of the class, like a/b/C
+        int      tags[];
+        Object   pool[];                                        // Strings, Integers, or int[] of indices
+        byte     clinit[];
+        byte     getContents[];
+
+        ClassFile(DataInputStream in, String name) throws IOException {
+            this.name = name;
+            if (in.readInt() != 0xCAFEBABE) throw new IOException(name + " is not a class file");
+            in.readUnsignedShort();                             // Minor version
+            in.readUnsignedShort();                             // Major version
+            readConstantPool(in);
+            in.readUnsignedShort();                             // Access flags
+            className = getClassName(in.readUnsignedShort());
+            in.readUnsignedShort();                             // Super class
+            int interfaces = in.readUnsignedShort();
+            for (int i=0; i < interfaces; i++) in.readUnsignedShort();
+            int fields = in.readUnsignedShort();
+            for (int i=0; i < fields; i++) {
+                in.readUnsignedShort();
+                in.readUnsignedShort();
+                in.readUnsignedShort();
+                skipAttributes(in);
+            }
+            int methods = in.readUnsignedShort();
+            for (int i=0; i < methods; i++) {
+                in.readUnsignedShort();
+                String methodName = getUtf8(in.readUnsignedShort());
+                String descriptor = getUtf8(in.readUnsignedShort());
+                int attributes = in.readUnsignedShort();
+                for (int j=0; j < attributes; j++) {
+                    String attribute = getUtf8(in.readUnsignedShort());
+                    int length = in.readInt();
+                    if (!attribute.equals("Code")) {
+                        skip(in, length);
+                        continue;
+                    }
+                    in.readUnsignedShort();                     // Max stack
+                    in.readUnsignedShort();                     // Max locals
+                    byte code[] = new byte[in.readInt()];
+                    in.readFully(code);
+                    skip(in, length - 8 - code.length);
+                    if (methodName.equals("<clinit>")) clinit = code;
+                    else if (methodName.equals("getContents") && descriptor.equals("()[[Ljava/lang/Object;")) getContents = code;
+                }
+            }
+        }
+
+        private void readConstantPool(DataInputStream in) throws IOException {
+            int count = in.readUnsignedShort();
+            tags = new int[count];
+            pool = new Object[count];
+            for (int i=1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                tags[i] = tag;
+                switch (tag) {
+                case 1:                                         // Utf8
+                    pool[i] = in.readUTF();
+                    break;
+                case 3:                                         // Integer
+                    pool[i] = Integer.valueOf(in.readInt());
+                    break;
+                case 4:                                         // Float
+                    in.readInt();
+                    break;
+                case 5:                                         // Long, taking two entries
+                case 6:                                         // Double, taking two entries
+                    in.readLong();
+                    i++;
+                    break;
+                case 7:                                         // Class
+                case 8:                                         // String
+                case 16:                                        // MethodType
+                case 19:                                        // Module
+                case 20:                                        // Package
+                    pool[i] = new int[] {in.readUnsignedShort()};
+                    break;
+                case 9:                                         // Fieldref
+                case 10:                                        // Methodref
+                case 11:                                        // InterfaceMethodref
+                case 12:                                        // NameAndType
+                case 17:                                        // Dynamic
+                case 18:                                        // InvokeDynamic
+                    pool[i] = new int[] {in.readUnsignedShort(), in.readUnsignedShort()};
+                    break;
+                case 15:                                        // MethodHandle
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                default:
+                    throw new IOException(name + " has an unknown constant pool entry " + tag);
+                }
+            }
+        }
+
+        private static void skipAttributes(DataInputStream in) throws IOException {
+            int attributes = in.readUnsignedShort();
+            for (int i=0; i < attributes; i++) {
+                in.readUnsignedShort();
+                skip(in, in.readInt());
+            }
+        }
+
+        private static void skip(DataInputStream in, int length) throws IOException {
+            while (length > 0) {
+                int skipped = in.skipBytes(length);
+                if (skipped <= 0) throw new EOFException();
+                length -= skipped;
+            }
+        }
+
+        private String getUtf8(int index) throws IOException {
+            if (index <= 0 || index >= pool.length || tags[index] != 1) throw new IOException(name + " has a broken constant pool");
+            return (String)pool[index];
+        }
+
+        private String getClassName(int index) throws IOException {
+            if (index <= 0 || index >= pool.length || tags[index] != 7) throw new IOException(name + " has a broken constant pool");
+            return getUtf8(((int[])pool[index])[0]);
+        }
+
+        // Returns {class name, member name, descriptor} of a field or method reference
+        private String[] getMember(int index) throws IOException {
+            if (index <= 0 || index >= pool.length || tags[index] < 9 || tags[index] > 11)
+                throw new IOException(name + " has a broken constant pool");
+            int ref[] = (int[])pool[index];
+            int nameAndType[] = (int[])pool[ref[1]];
+            return new String[] {getClassName(ref[0]), getUtf8(nameAndType[0]), getUtf8(nameAndType[1])};
+        }
+
+        // Returns the value pushed by ldc of a constant pool entry
+        private Object getConstant(int index) throws IOException {
+            if (index <= 0 || index >= pool.length) throw new IOException(name + " has a broken constant pool");
+            if (tags[index] == 8) return getUtf8(((int[])pool[index])[0]);
+            if (tags[index] == 3) return pool[index];
+            return UNKNOWN;
+        }
+
+        /**
+         * Follows the code of a method from its start, keeping the values of the static fields
+         * of the class it stores, and returns the value it returns. The instructions an array
+         * initializer compiles to are followed, and calls and object creation push a value
+         * that is not followed. Branches are not taken, and any other instruction is stepped
+         * over, dropping the values of the statement it is part of; the statements of a
+         * static initializer begin with an empty stack, so those after it are still followed.
+         */
+
+        Object interpret(byte code[], Hashtable statics) throws IOException {
+            Vector stack = new Vector();
+            Object locals[] = new Object[256];
+            int pc = 0;
+            try {
+                while (pc < code.length) {
+                    int op = code[pc] & 0xFF;
+                    switch (op) {
+                    case 0x00:                                  // nop
+                        pc += 1;
+                        break;
+                    case 0x01:                                  // aconst_null
+                        stack.addElement(NULL);
+                        pc += 1;
+                        break;
+                    case 0x02: case 0x03: case 0x04: case 0x05: // iconst_m1 to iconst_5
+                    case 0x06: case 0x07: case 0x08:
+                        stack.addElement(Integer.valueOf(op - 0x03));
+                        pc += 1;
+                        break;
+                    case 0x09: case 0x0a: case 0x0b: case 0x0c: // lconst, fconst and dconst
+                    case 0x0d: case 0x0e: case 0x0f:
+                        stack.addElement(UNKNOWN);
+                        pc += 1;
+                        break;
+                    case 0x10:                                  // bipush
+                        stack.addElement(Integer.valueOf(code[pc+1]));
+                        pc += 2;
+                        break;
+                    case 0x11:                                  // sipush
+                        stack.addElement(Integer.valueOf((short)(((code[pc+1] & 0xFF) << 8) | (code[pc+2] & 0xFF))));
+                        pc += 3;
+                        break;
+                    case 0x12:                                  // ldc
+                        stack.addElement(getConstant(code[pc+1] & 0xFF));
+                        pc += 2;
+                        break;
+                    case 0x13:                                  // ldc_w
+                        stack.addElement(getConstant(readShort(code, pc+1)));
+                        pc += 3;
+                        break;
+                    case 0x14:                                  // ldc2_w
+                        stack.addElement(UNKNOWN);
+                        pc += 3;
+                        break;
+                    case 0x15: case 0x19:                       // iload, aload
+                        stack.addElement(getLocal(locals, code[pc+1] & 0xFF));
+                        pc += 2;
+                        break;
+                    case 0x1a: case 0x1b: case 0x1c: case 0x1d: // iload_0 to iload_3
+                        stack.addElement(getLocal(locals, op - 0x1a));
+                        pc += 1;
+                        break;
+                    case 0x2a: case 0x2b: case 0x2c: case 0x2d: // aload_0 to aload_3
+                        stack.addElement(getLocal(locals, op - 0x2a));
+                        pc += 1;
+                        break;
+                    case 0x32:                                  // aaload
+                    {
+                        Object index = pop(stack);
+                        Object array = pop(stack);
+                        if (array instanceof Object[] && index instanceof Integer &&
+                            ((Integer)index).intValue() >= 0 && ((Integer)index).intValue() < ((Object[])array).length) {
+                            Object value = ((Object[])array)[((Integer)index).intValue()];
+                            stack.addElement(value == null ? NULL : value);
+                        } else {
+                            stack.addElement(UNKNOWN);
+                        }
+                        pc += 1;
+                        break;
+                    }
+                    case 0x36: case 0x3a:                       // istore, astore
+                        locals[code[pc+1] & 0xFF] = pop(stack);
+                        pc += 2;
+                        break;
+                    case 0x3b: case 0x3c: case 0x3d: case 0x3e: // istore_0 to istore_3
+                        locals[op - 0x3b] = pop(stack);
+                        pc += 1;
+                        break;
+                    case 0x4b: case 0x4c: case 0x4d: case 0x4e: // astore_0 to astore_3
+                        locals[op - 0x4b] = pop(stack);
+                        pc += 1;
+                        break;
+                    case 0x53:                                  // aastore
+                    {
+                        Object value = pop(stack);
+                        Object index = pop(stack);
+                        Object array = pop(stack);
+                        if (array instanceof Object[] && index instanceof Integer &&
+                            ((Integer)index).intValue() >= 0 && ((Integer)index).intValue() < ((Object[])array).length) {
+                            ((Object[])array)[((Integer)index).intValue()] = (value == NULL ? null : value);
+                        }
+                        pc += 1;
+                        break;
+                    }
+                    case 0x57:                                  // pop
+                        pop(stack);
+                        pc += 1;
+                        break;
+                    case 0x59:                                  // dup
+                    {
+                        Object value = pop(stack);
+                        stack.addElement(value);
+                        stack.addElement(value);
+                        pc += 1;
+                        break;
+                    }
+                    case 0xb0:                                  // areturn
+                        return pop(stack);
+                    case 0xb1:                                  // return
+                        return null;
+                    case 0xb2:                                  // getstatic
+                    {
+                        String member[] = getMember(readShort(code, pc+1));
+                        Object value = (member[0].equals(className) ? statics.get(member[1]) : null);
+                        stack.addElement(value == null ? UNKNOWN : value);
+                        pc += 3;
+                        break;
+                    }
+                    case 0xb3:                                  // putstatic
+                    {
+                        String member[] = getMember(readShort(code, pc+1));
+                        Object value = pop(stack);
+                        if (member[0].equals(className)) statics.put(member[1], value);
+                        pc += 3;
+                        break;
+                    }
+                    case 0xb4:                                  // getfield
+                        pop(stack);
+                        stack.addElement(UNKNOWN);
+                        pc += 3;
+                        break;
+                    case 0xb5:                                  // putfield
+                        pop(stack);
+                        pop(stack);
+                        pc += 3;
+                        break;
+                    case 0xb6: case 0xb7: case 0xb8: case 0xb9: // invokevirtual, invokespecial, invokestatic, invokeinterface
+                    {
+                        String member[] = getMember(readShort(code, pc+1));
+                        int arguments = countArguments(member[2]);
+                        for (int i=0; i < arguments; i++) pop(stack);
+                        Object receiver = (op == 0xb8 ? null : pop(stack));
+                        if (!member[2].endsWith(")V")) {
+                            // The clone of an array, as a getContents() handing out a copy returns
+                            if (member[1].equals("clone") && receiver instanceof Object[]) stack.addElement(receiver);
+                            else stack.addElement(UNKNOWN);
+                        }
+                        pc += (op == 0xb9 ? 5 : 3);
+                        break;
+                    }
+                    case 0xbb:                                  // new
+                        stack.addElement(UNKNOWN);
+                        pc += 3;
+                        break;
+                    case 0xbd:                                  // anewarray
+                    {
+                        Object count = pop(stack);
+                        if (count instanceof Integer && ((Integer)count).intValue() >= 0 && ((Integer)count).intValue() <= 1 << 20)
+                            stack.addElement(new Object[((Integer)count).intValue()]);
+                        else
+                            stack.addElement(UNKNOWN);
+                        pc += 3;
+                        break;
+                    }
+                    case 0xc0:                                  // checkcast
+                        pc += 3;
+                        break;
+                    case 0xac: case 0xad: case 0xae: case 0xaf: // ireturn, lreturn, freturn, dreturn
+                        return null;
+                    default:
+                        // A branch or an instruction an array initializer does not use
+                        pc += getLength(code, pc);
+                        stack.removeAllElements();
+                    }
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException(name + " has a truncated method");
+            }
+            return null;
+        }
+
+        private static int readShort(byte code[], int pc) {
+            return ((code[pc] & 0xFF) << 8) | (code[pc+1] & 0xFF);
+        }
+
+        private static Object getLocal(Object locals[], int index) {
+            return (locals[index] == null ? UNKNOWN : locals[index]);
+        }
+
+        // Returns the length of the instruction at pc, including its operands
+        private static int getLength(byte code[], int pc) {
+            int op = code[pc] & 0xFF;
+            if (op == 0x10 || op == 0x12 || (op >= 0x15 && op <= 0x19) || (op >= 0x36 && op <= 0x3a) ||
+                op == 0xa9 || op == 0xbc) return 2;
+            if (op == 0x11 || op == 0x13 || op == 0x14 || op == 0x84 || (op >= 0x99 && op <= 0xa8) ||
+                (op >= 0xb2 && op <= 0xb8) || op == 0xbb || op == 0xbd || op == 0xc0 || op == 0xc1 ||
+                op == 0xc6 || op == 0xc7) return 3;
+            if (op == 0xc5) return 4;
+            if (op == 0xb9 || op == 0xba || op == 0xc8 || op == 0xc9) return 5;
+            if (op == 0xc4) return ((code[pc+1] & 0xFF) == 0x84 ? 6 : 4);   // wide
+            if (op == 0xaa || op == 0xab) {
+                // The operands of a switch begin at the next multiple of four
+                int operands = (pc + 4) & ~3;
+                if (op == 0xaa) {
+                    int low = readInt(code, operands + 4);
+                    int high = readInt(code, operands + 8);
+                    return operands - pc + 12 + 4 * (high - low + 1);
+                }
+                return operands - pc + 8 + 8 * readInt(code, operands + 4);
+            }
+            return 1;
+        }
+
+        private static int readInt(byte code[], int pc) {
+            return (readShort(code, pc) << 16) | readShort(code, pc + 2);
+        }
+
+        // Pops a value, or returns one that is not followed when a statement was only partly followed
+        private static Object pop(Vector stack) {
+            if (stack.size() == 0) return UNKNOWN;
+            Object value = stack.lastElement();
+            stack.removeElementAt(stack.size() - 1);
+            return value;
+        }
+
+        // Returns the number of arguments of a method descriptor such as (ILjava/lang/String;[J)V
+        private static int countArguments(String descriptor) {
+            int count = 0;
+            int i = 1;
+            while (i < descriptor.length() && descriptor.charAt(i) != ')') {
+                while (descriptor.charAt(i) == '[') i++;
+                if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+                i++;
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -9,17 +9,18 @@ package com.ibm.rbm;
 
 import java.io.*;
 
-import com.ibm.rbm.gui.RBManagerGUI;
+import javax.swing.JFileChooser;
 
-import java.util.*;
-import java.net.*;
+import com.ibm.rbm.gui.RBManagerGUI;
 
 /**
- * This is the super class for all importer plug-in classes. As of yet, there
- * is little contained in this class.
+ * Imports compiled ListResourceBundle classes. The base class may be chosen together with
+ * the locale classes next to it, or a directory or jar file holding the classes of the
+ * bundle. The class files are read by RBJavaImportReader without being loaded.
  * 
  * @author Jared Jackson
  * @see com.ibm.rbm.RBManager
+ * @see com.ibm.rbm.RBJavaImportReader
  */
 public class RBJavaImporter extends RBImporter {
 	
@@ -28,10 +29,12 @@ public class RBJavaImporter extends RBImporter {
     }
 	
     protected void setupFileChooser() {
+        chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
         chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
             public boolean accept(File f) {
                 if (f.isDirectory()) return true;
                 if (f.getName().endsWith(".class") && f.getName().indexOf("_") < 0) return true;
+                if (f.getName().endsWith(".jar")) return true;
                 return false;
             }
 			
@@ -43,42 +46,6 @@ public class RBJavaImporter extends RBImporter {
 	
     protected void beginImport() throws IOException {
         super.beginImport();
-        ListResourceBundle base_lrb = null;
-        URLClassLoader urlLoader = null;
-        try {
-            File baseFile = getChosenFile();
-            URL baseURL = baseFile.toURL();
-            URL urls[] = new URL[1];
-            urls[0] = baseURL;
-            urlLoader = new URLClassLoader(urls);
-            String baseName = baseFile.getName();
-            baseName = baseName.substring(0, baseName.indexOf(".class"));
-            
-            Class baseClass = urlLoader.loadClass(baseName);
-            base_lrb = (ListResourceBundle)baseClass.newInstance();
-        } catch (Exception e) {
-            RBManagerGUI.debugMsg(e.toString());
-            RBManagerGUI.debugMsg(e.getMessage());
-            e.printStackTrace(System.err);
-        }
-        if (base_lrb != null) {
-            Enumeration keys = base_lrb.getKeys();
-            while (keys.hasMoreElements()) {
-                String key = keys.nextElement().toString();
-                RBManagerGUI.debugMsg("Resource -> " + key + " = " + base_lrb.getString(key));
-            }
-        }
-    }
-}
-
-/*
-class myClassLoader extends ClassLoader {
-    public myClassLoader() {
-        super();
-    }
-	
-    public Class myDefineClass(String name, byte array[], int off, int len) {
-        return super.defineClass(name, array, off, len);
+        new RBJavaImportReader().importFile(getChosenFile(), session);
     }
 }
-*/
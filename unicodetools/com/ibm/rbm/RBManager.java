@@ -8,6 +8,7 @@ package com.ibm.rbm;
 
 import java.util.*;
 import java.io.*;
+import java.awt.GraphicsEnvironment;
 import javax.swing.UIManager;
 import javax.swing.JOptionPane;
 
@@ -96,19 +97,25 @@ public class RBManager {
      */
 	
     public RBManager(File mainFile) throws FileNotFoundException, IOException {
+        this(mainFile, true);
+    }
+	
+    /**
+     * Reads a resource bundle like the standard constructor, but only adds the bundle to the
+     * recent files preference if asked to. The batch tool and the reporter read bundles
+     * without touching the preferences, which are neither needed by them nor safe to update
+     * from several threads.
+     * @param mainFile The base class file of the resource bundle to be read
+     * @param addToRecentFiles Whether to add the bundle to the recent files preference
+     */
+	
+    public RBManager(File mainFile, boolean addToRecentFiles) throws FileNotFoundException, IOException {
         init();
 		
         currentDirectory = new File(mainFile.getParent());
 		
         String[] encodings;
-		
-        // Initiailize the readers to the main NLS file
-        FileReader fr = new FileReader(mainFile);
-        BufferedReader br = new BufferedReader(fr);
-		
-        // Load the java readable values from the main NLS file;
-        Properties p = new Properties();
-        p.load(new FileInputStream(mainFile));
+        long start = RBInstrumentation.start(RBInstrumentation.FILE_LOADED);
 		
         // Count the number of language files and set up the encoding and dictionary data
         int numLanguages = 1;
@@ -137,7 +144,6 @@ public class RBManager {
                     || temp[i].endsWith(NLSpostfix.toUpperCase()) || NLSpostfix.equals(""))) {
                     // Starts with the base class name and ends in proper suffix (above)
                     // Base name is followed by . or _ (below)
-                    RBManagerGUI.debugMsg("Character is: " + temp[i].charAt(NLSbaseClass.length()));
                     if (temp[i].charAt(NLSbaseClass.length()) == '.' || temp[i].charAt(NLSbaseClass.length()) == '_')
                         numLanguages++;
                 }
@@ -163,99 +169,17 @@ public class RBManager {
             encodings[0] = new String("");
         } // end the count and initialization
 		
+        // Make sure this is a file that was generated by RBManager
+        if (!isRBManagerFile(mainFile)) {
+            if (!GraphicsEnvironment.isHeadless()) JOptionPane.showMessageDialog(null,
+                Resources.getTranslation("error_not_rbmanager_format") + "\n" + Resources.getTranslation("error_suggest_import_properties"),
+                Resources.getTranslation("dialog_title_error_not_rbmanager_format"), JOptionPane.ERROR_MESSAGE);
+            throw new FileNotFoundException("Improper format for file: " + mainFile.getName());
+        }
         // Read in the entries from the main file
-        String line;
-        // Set the dictionary for the main file
-        Bundle dict = new Bundle(encodings[0]);
+        Bundle dict = readBundle(mainFile, encodings[0]);
         bundles.addElement(dict);
-        // Set up the first group in case there are NLS items which were not assigned to a group
-        BundleGroup group = new BundleGroup(dict, "Ungrouped Items");
-        group.setComment("NLS Items which were not initially assigned to a group");
-        dict.addBundleGroup(group);
-        BundleItem item = new BundleItem(group,null,null);
-        int count = 0;
-        while ((line = br.readLine()) != null) {
-            // Test to make sure this is a file that was generated by RBManager
-            if (!line.trim().equals("")) count++;
-            if (count == 1 && !line.startsWith("# @file")) {
-                // Not generated by RBManager
-                JOptionPane.showMessageDialog(null,
-                    Resources.getTranslation("error_not_rbmanager_format") + "\n" + Resources.getTranslation("error_suggest_import_properties"),
-                    Resources.getTranslation("dialog_title_error_not_rbmanager_format"), JOptionPane.ERROR_MESSAGE);
-                throw new FileNotFoundException("Improper format for file: " + mainFile.getName());
-            }
-            String commentLine = null;
-            // Grab text following the # sign
-            if (line.indexOf("#") >= 0) {
-                commentLine = line.substring(line.indexOf("#")+1,line.length());
-                line = line.substring(0,line.indexOf("#"));
-            }
-            if (commentLine != null && commentLine.trim().length() > 0) {
-                // Process any information made available in comment '@' information
-                Hashtable descriptors = getDescriptors(null,commentLine);
-                if (descriptors != null) {
-                    Object o;
-                    // File tags
-                    o = descriptors.get("file"); if (o != null) dict.name = ((String) o);
-                    o = descriptors.get("fileComment");  if (o != null) dict.comment  = ((String) o);
-                    o = descriptors.get("fileLanguage"); if (o != null) dict.language = ((String) o);
-                    o = descriptors.get("fileCountry");  if (o != null) dict.country  = ((String) o);
-                    o = descriptors.get("fileVariant");  if (o != null) dict.variant  = ((String) o);
-                    o = descriptors.get("fileManager");  if (o != null) dict.manager  = ((String) o);
-                    
-                    // Group tags
-                    o = descriptors.get("group");
-                    if (o != null) {
-                        group = new BundleGroup(dict, (String)o);
-                        item.setParentGroup(group);
-                        dict.addBundleGroup(group);
-                    }
-                    o = descriptors.get("groupComment"); if (o != null) group.setComment((String) o);
-					
-                    // Item tags
-                    o = descriptors.get("comment");    if (o != null) item.setComment((String) o);
-                    o = descriptors.get("translated"); if (o != null) item.setTranslated(((String) o).equalsIgnoreCase("true"));
-                    o = descriptors.get("creator");    if (o != null) item.setCreator((String) o);
-                    o = descriptors.get("modifier");   if (o != null) item.setModifier((String) o);
-                    o = descriptors.get("created");    if (o != null) item.setCreatedDate((String) o);
-                    o = descriptors.get("modified");   if (o != null) item.setModifiedDate((String) o);
-					
-                    // Lookup tags (e.g. {_#_} _description_)
-                    Enumeration keys = descriptors.keys();
-                    while (keys.hasMoreElements()) {
-                        String tag = (String)keys.nextElement();
-                        if (tag.startsWith("{")) {
-                            if (tag.indexOf("}") < 0) continue;
-                            String lookup = tag.substring(1,tag.indexOf("}"));
-                            item.getLookups().put(lookup, descriptors.get(tag));
-                        }
-                    }
-                } 
-            } // end check of comment line
-            if (line.trim().length() < 1) continue;
-			
-            // Grab the name and value (translation) from the line
-            int breakpoint = 0;
-            boolean started = false;
-            char array[] = line.toCharArray();
-            for (int i=0; i < array.length; i++) {
-                if (!started && array[i] != ' ' && array[i] != '\t') started = true;
-                if (started && (array[i] == '=' || array[i] == ':' || array[i] == ' ' || array[i] == '\t')) {
-                    breakpoint = i;
-                    break;
-                }
-            }
-            String key = String.valueOf(array,0,breakpoint);
-			
-            item.setKey(key);
-            String translation = p.getProperty(key);
-            if (translation == null || translation.equals(""))
-                item.setTranslation(line.substring(line.indexOf("=")+1,line.length()).trim());
-            else item.setTranslation(translation);
-			
-            dict.addBundleItem(item);
-            item = new BundleItem(group,null,null);
-        } // end while - main NLS file
+        RBInstrumentation.end(RBInstrumentation.FILE_LOADED, start, mainFile.getPath(), mainFile.length(), dict.allItems.size());
 		
         // Now that we have parsed the entire main language file, populate the allNLSKey set with the dictionary keys
         allBundleKeys = new Vector();
@@ -269,22 +193,59 @@ public class RBManager {
             if (encodings[i].equals("kr")) continue; // I can't handle double byte character sets yet
             // Try to obtain the new file
             File tempFile = new File(resDir, NLSbaseClass + "_" + encodings[i] + NLSpostfix);
-            fr = new FileReader(tempFile);
-            br = new BufferedReader(fr);
-			
-            // Try to obtain the java readable properties for the file
-            p = new Properties();
-            p.load(new FileInputStream(tempFile));
-            
-            // Set the dictionary for the main file
-            dict = new Bundle(encodings[i]);
+            start = RBInstrumentation.start(RBInstrumentation.FILE_LOADED);
+            dict = readBundle(tempFile, encodings[i]);
             bundles.addElement(dict);
-            // Set up the first group in case there are NLS items which were not assigned to a group
-            group = new BundleGroup(dict, "Ungrouped Items");
-            dict.addBundleGroup(group);
-            group.setComment("NLS Items which were not initially assigned to a group");
-            item = new BundleItem(group,null,null);
-            // Create the rest of the groups
+            RBInstrumentation.end(RBInstrumentation.FILE_LOADED, start, tempFile.getPath(), tempFile.length(), dict.allItems.size());
+        } // end for looop through languages
+        // Add this opened file to our recent files
+        if (addToRecentFiles) Preferences.addRecentFilePreference(mainFile.getName(), mainFile.getAbsolutePath());
+    } // end RBManager()
+
+    /**
+     * Tests whether a file was written by RBManager, whose files begin with the @file tag.
+     * Only the lines up to the first one that is not blank are read.
+     */
+
+    public static boolean isRBManagerFile(File file) throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.trim().equals("")) return line.startsWith("# @file");
+            }
+            return true;
+        } finally {
+            br.close();
+        }
+    }
+
+    /**
+     * Reads one file of a resource bundle written by RBManager into a new Bundle of the given
+     * encoding, with the groups, comments and other meta-data held in its comments. The keys
+     * are kept as they appear in the file, and the translations are read by java.util.Properties.
+     * The meta-data and keys are read in the default encoding, which is the one the files are
+     * written in, and the translations in ISO-8859-1, as java.util.Properties reads them. The
+     * file is read from the disk once.
+     */
+
+    public static Bundle readBundle(File file, String encoding) throws IOException {
+        // Set the dictionary for the file
+        Bundle dict = new Bundle(encoding);
+        // Set up the first group in case there are NLS items which were not assigned to a group
+        BundleGroup group = new BundleGroup(dict, "Ungrouped Items");
+        group.setComment("NLS Items which were not initially assigned to a group");
+        dict.addBundleGroup(group);
+        BundleItem item = new BundleItem(group,null,null);
+        Vector items = new Vector();                        // The items in the order of the file
+        Vector lineValues = new Vector();                   // The text after the '=' of each item's line
+        byte data[] = readFile(file);
+        // Load the java readable values
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(data));
+        BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data)));
+        try {
+            String line;
             while ((line = br.readLine()) != null) {
                 String commentLine = null;
                 // Grab the text following the # sign
@@ -347,28 +308,53 @@ public class RBManager {
                         break;
                     }
                 }
-                String key = String.valueOf(array,0,breakpoint);
-                item.setKey(key);
-                String translation = p.getProperty(key);
-                if (translation == null || translation.equals(""))
-                    item.setTranslation(line.substring(line.indexOf("=")+1,line.length()).trim());
-                else item.setTranslation(translation);
-				
-                dict.addBundleItem(item);
+                item.setKey(String.valueOf(array,0,breakpoint));
+                items.addElement(item);
+                lineValues.addElement(line.substring(line.indexOf("=")+1,line.length()).trim());
                 item = new BundleItem(group,null,null);
             } // end while - next line
-        } // end for looop through languages
-        // Add this opened file to our recent files
-        Preferences.addRecentFilePreference(mainFile.getName(), mainFile.getAbsolutePath());
-    } // end RBManager()
+        } finally {
+            br.close();
+        }
+        // The translations are known once the whole file is read, since a key defined twice
+        // takes the last of its values
+        for (int i=0; i < items.size(); i++) {
+            item = (BundleItem)items.elementAt(i);
+            String translation = properties.getProperty(item.getKey());
+            if (translation == null || translation.equals(""))
+                item.setTranslation((String)lineValues.elementAt(i));
+            else item.setTranslation(translation);
+            dict.addBundleItem(item);
+        }
+        return dict;
+    }
+
+    // Returns the contents of a file
+    private static byte[] readFile(File file) throws IOException {
+        byte data[] = new byte[(int)file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
 	
     // *** METHODS ***
 	
     /**
-     * Main
+     * Main. The -profile option prints a summary of the time spent loading, importing
+     * and exporting when the program exits.
      */
 	
     public static void main(String args[]) {
+        if (args.length > 0 && args[0].equals("-profile")) {
+            RBInstrumentation.profileUntilExit(System.out);
+            String rest[] = new String[args.length-1];
+            System.arraycopy(args, 1, rest, 0, rest.length);
+            args = rest;
+        }
         // Make sure the user specified a path
         if (args.length < 1) { 
             new RBManager();
@@ -383,9 +369,21 @@ public class RBManager {
      */
 	
     public void writeToFile() throws IOException {
+        writeToDirectory(currentDirectory);
+        // In case this is a newly created bundle or the location has changed recently, update the recent files, preference
+        Preferences.addRecentFilePreference(baseClass + ".properties", currentDirectory.getAbsolutePath() + File.separator +
+                                            baseClass + ".properties");
+    }
+	
+    /**
+     * Writes every resource file of the bundle into a directory, without changing the current
+     * directory of the bundle or the recent files preference
+     */
+	
+    public void writeToDirectory(File directory) throws IOException {
         for (int i = 0; i < bundles.size(); i++) {
             Bundle bundle = (Bundle)bundles.elementAt(i);
-            File outputFile = new File(currentDirectory, baseClass + 
+            File outputFile = new File(directory, baseClass + 
                                        ((bundle.encoding == null || bundle.encoding.equals("")) ? "" : "_" + bundle.encoding) +
                                         ".properties");
             FileWriter fw = new FileWriter(outputFile);
@@ -393,9 +391,6 @@ public class RBManager {
             fw.flush();
             fw.close();
         }
-        // In case this is a newly created bundle or the location has changed recently, update the recent files, preference
-        Preferences.addRecentFilePreference(baseClass + ".properties", currentDirectory.getAbsolutePath() + File.separator +
-                                            baseClass + ".properties");
     }
 	
     /**
@@ -856,17 +851,12 @@ public class RBManager {
      * @return The requested resource bundle
      */
     public Bundle getBundle(String locale) {
-    	Bundle bundle = null;
-        if (hasResource(locale)) {
-            for (int i = 0; i < bundles.size(); i++) {
-                Bundle tempb = (Bundle)bundles.elementAt(i);
-                if (tempb.encoding.equals(locale)) {
-                    bundle = tempb;
-                    break;
-                }
-            }
+        for (int i = 0; i < bundles.size(); i++) {
+            Bundle tempb = (Bundle)bundles.elementAt(i);
+            if (tempb.encoding.equals(locale))
+                return tempb;
         }
-        return bundle;
+        return null;
     }
 
     /**
@@ -898,7 +888,7 @@ public class RBManager {
     }
 	
     // Return a hashtable of the tags in a comment line (i.e. the text after each '@' character) and their values
-    private Hashtable getDescriptors(Hashtable result, String line) {
+    private static Hashtable getDescriptors(Hashtable result, String line) {
         // Recursion terminating condition
         if (line == null || line.length() <= 0 || line.indexOf("@") < 0) return result;
         // Otherwise generate what information we can and recurse
@@ -22,8 +22,11 @@ public class RBPropertiesExporter extends RBExporter {
 	
     public RBPropertiesExporter() {
         super();
-		
-        // Initialize the file chooser if necessary
+    }
+	
+    public void export(RBManager rbm) throws IOException {
+        if (rbm == null) return;
+        // Create the file chooser when it is first needed, as exporting without it needs no Swing
         if (chooser == null) {
             chooser = new JFileChooser();
             chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
@@ -38,15 +41,14 @@ public class RBPropertiesExporter extends RBExporter {
                 }
             });
         } // end if
-    }
-	
-    public void export(RBManager rbm) throws IOException {
-        if (rbm == null) return;
         // Open the Save Dialog
         int ret_val = chooser.showSaveDialog(null);
         if (ret_val != JFileChooser.APPROVE_OPTION) return;
+        export(rbm, chooser.getSelectedFile());
+    }
+
+    public void export(RBManager rbm, File file) throws IOException {
         // Retrieve basic file information
-        File file = chooser.getSelectedFile();                  // The file(s) we will be working with
         File directory = new File(file.getParent());            // The directory we will be writing to
         String base_name = file.getName();                      // The base name of the files we will write
         if (base_name == null || base_name.equals("")) base_name = rbm.getBaseClass();
@@ -57,6 +59,7 @@ public class RBPropertiesExporter extends RBExporter {
         for (int i=0; i < bundle_v.size(); i++) {
             Properties prop = new Properties();
             Bundle bundle = (Bundle)bundle_v.elementAt(i);
+            long start = RBInstrumentation.start(RBInstrumentation.FILE_EXPORTED);
             String base_enc = base_name;
             if (bundle.encoding != null && !bundle.encoding.equals("")) base_enc = base_enc + "_" + bundle.encoding;
             String file_name = base_enc + ".properties";
@@ -76,6 +79,9 @@ public class RBPropertiesExporter extends RBExporter {
             File write_file = new File(directory, file_name);
             FileOutputStream fos = new FileOutputStream(write_file);
             prop.store(fos, header);
+            fos.close();
+            RBInstrumentation.end(RBInstrumentation.FILE_EXPORTED, start, write_file.getPath(), write_file.length(),
+                                  prop.size());
         } // end for - i
     }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads the base class file of a properties resource bundle, together with the locale files
+ * next to it. Files written by RBManager are parsed by RBManager and keep their groups,
+ * comments and other meta-data; any other properties files are read as plain key value pairs.
+ * <p>
+ * The format is told from the first line of the base class file that is not blank. Each
+ * locale file is then read once, as many at a time as there are processors, and the
+ * resources of each locale are merged in a thread of its own after all of the locales have
+ * been resolved.
+ *
+ * @see com.ibm.rbm.RBPropertiesImporter
+ */
+public class RBPropertiesImportReader extends RBImportReader {
+
+    protected void read(File baseFile, RBImportSession session) throws IOException {
+        final boolean rbmFormat = RBManager.isRBManagerFile(baseFile);
+        String baseName = baseFile.getName().substring(0,baseFile.getName().length()-11); // |'.properties'| == 11
+        File baseDir = baseFile.getAbsoluteFile().getParentFile();
+        String allChildren[] = baseDir.list();
+        if (allChildren == null) throw new IOException("Unable to list " + baseDir);
+        // Find the locale files, the base class file included
+        Vector tasks = new Vector();
+        for (int i=0; i < allChildren.length; i++) {
+            if (!allChildren[i].toLowerCase().endsWith(".properties")) continue;
+            String encoding = null;
+            if (allChildren[i].length() == baseName.length() + 11 && allChildren[i].startsWith(baseName)) encoding = "";
+            else if (allChildren[i].startsWith(baseName + "_")) encoding = allChildren[i].substring(baseName.length()+1, allChildren[i].length()-11);
+            if (encoding == null) continue;
+            final File file = new File(baseDir, allChildren[i]);
+            final String fileEncoding = encoding;
+            tasks.addElement(new Callable() {
+                public Object call() throws IOException {
+                    return (rbmFormat ? RBManager.readBundle(file, fileEncoding) : readPlainFile(file, fileEncoding));
+                }
+            });
+        }
+        Vector bundles = runTasks(tasks);
+        // Resolve all of the locales at once, and then merge each of them
+        Vector encodings = new Vector();
+        Vector imports = new Vector();
+        for (int i=0; i < bundles.size(); i++) {
+            final Bundle b = (Bundle)bundles.elementAt(i);
+            encodings.addElement(b.encoding);
+            imports.addElement(new LocaleImport() {
+                protected void importInto(RBImportSession localeSession) {
+                    importBundle(b, rbmFormat, localeSession);
+                }
+            });
+        }
+        session.resolveEncodings(encodings);
+        importLocales(imports, session);
+    }
+
+    // Reads a properties file that was not written by RBManager into a bundle without groups
+    private static Bundle readPlainFile(File file, String encoding) throws IOException {
+        Properties p = new Properties();
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            p.load(in);
+        } finally {
+            in.close();
+        }
+        Bundle b = new Bundle(encoding);
+        Enumeration keys = p.keys();
+        while (keys.hasMoreElements()) {
+            String key = (String)keys.nextElement();
+            b.allItems.put(key, new BundleItem(null, key, p.getProperty(key)));
+        }
+        return b;
+    }
+
+    // Hands the resources of a bundle read from a file to the session. The resources of files
+    // written by RBManager keep their groups and translated flags.
+    private static void importBundle(Bundle b, boolean rbmFormat, RBImportSession session) {
+        Enumeration keys = b.allItems.keys();
+        while (keys.hasMoreElements()) {
+            String key = (String)keys.nextElement();
+            BundleItem item = (BundleItem)b.allItems.get(key);
+            if (rbmFormat) {
+                session.importResource(item, b.encoding, (item.getParentGroup() == null ? session.getDefaultGroup() :
+                                                          item.getParentGroup().getName()));
+            } else {
+                item.setTranslated(session.getDefaultTranslated());
+                session.importResource(item, b.encoding, session.getDefaultGroup());
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.xerces.parsers.DOMParser;
+import org.w3c.dom.*;
+import org.xml.sax.*;
+
+/**
+ * RBReportDaemon generates the reports of any number of report jobs on a schedule,
+ * without a user interface. The jobs are read from an XML file such as the following:
+ * <pre>
+ * &lt;RBReportJobs threads="2"&gt;
+ *   &lt;Job name="core" bundle="/src/nls/Core.properties" output="/reports/core"
+ *        scan="/src/nls/core_scan.xml"&gt;
+ *     &lt;Schedule every="6" unit="hours" /&gt;
+ *     &lt;Report format="html" file="report.html" detail="high" /&gt;
+ *     &lt;Report format="xml" file="report.xml" detail="low" /&gt;
+ *     &lt;Report format="metrics" file="metrics.prom" /&gt;
+ *   &lt;/Job&gt;
+ *   &lt;Job name="all" project="/src/nls/all.rbproject" output="/reports/all"&gt;
+ *     &lt;Schedule time="02:30" day="sunday" /&gt;
+ *     &lt;Report format="text" file="report.txt" /&gt;
+ *   &lt;/Job&gt;
+ * &lt;/RBReportJobs&gt;
+ * </pre>
+ * A job names either a single bundle or a project file. The THREADS attribute bounds the
+ * number of jobs run at the same time. A run that comes due while the previous run of the
+ * same job is still going is skipped. Reports whose inputs have not changed since they were
+ * last written are not written again, unless the job has a FORCE attribute of 'true'. A
+ * job with a HISTORY attribute of 'true' records the figures of each run in the output
+ * directory; see RBReportHistory. A report format of 'metrics' writes the figures of the
+ * bundle in the Prometheus text format, and a METRICS_PORT attribute on the root element
+ * serves the figures of all jobs over HTTP on that port of the loopback address.
+ *
+ * @see com.ibm.rbm.RBReportJob
+ */
+public class RBReportDaemon {
+    private static final String DAYS[] = {"monday", "tuesday", "wednesday", "thursday",
+                                          "friday", "saturday", "sunday"};
+
+    private Vector                   jobs;
+    private int                      threads;
+    private RBReportGenerator        generator = new RBReportGenerator();
+    private ScheduledExecutorService scheduler;
+    private ExecutorService          workers;
+    private Hashtable                running = new Hashtable();   // An AtomicBoolean for each job
+    private int                      metricsPort = -1;            // The port serving the metrics, or -1
+    private RBReportMetricsServer    metricsServer;
+
+    public RBReportDaemon(File jobsFile) throws IOException {
+        jobs = new Vector();
+        readJobs(jobsFile);
+    }
+
+    public RBReportDaemon(Vector jobs, int threads) {
+        this.jobs = jobs;
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the jobs of the daemon
+     */
+
+    public Vector getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Serves the metrics of all jobs on a port of the loopback address once the daemon is
+     * started. A port of 0 picks any free port, and -1 serves no metrics.
+     */
+
+    public void setMetricsPort(int port) {
+        metricsPort = port;
+    }
+
+    /**
+     * Returns the port the metrics are served on, or -1 if they are not served
+     */
+
+    public synchronized int getMetricsPort() {
+        return (metricsServer == null ? -1 : metricsServer.getPort());
+    }
+
+    /**
+     * Starts the schedule of each job. A job without a schedule is run once.
+     */
+
+    public synchronized void start() throws IOException {
+        if (scheduler != null) return;
+        if (metricsPort >= 0) {
+            RBReportMetrics metrics = new RBReportMetrics();
+            generator.setMetrics(metrics);
+            metricsServer = new RBReportMetricsServer(metrics);
+            metricsServer.start(metricsPort);
+            System.out.println("RBReportDaemon: Serving metrics at http://localhost:" + metricsServer.getPort() + "/metrics");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        workers = Executors.newFixedThreadPool(Math.max(1, threads));
+        for (int i=0; i < jobs.size(); i++) {
+            RBReportJob job = (RBReportJob)jobs.elementAt(i);
+            running.put(job, new AtomicBoolean(false));
+            if (job.isScheduled()) schedule(job, new Date());
+            else submit(job);
+        }
+    }
+
+    /**
+     * Stops the schedule, waiting for the runs in progress to finish.
+     */
+
+    public synchronized void stop() throws InterruptedException {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        scheduler = null;
+        workers = null;
+        if (metricsServer != null) {
+            metricsServer.stop();
+            metricsServer = null;
+        }
+    }
+
+    /**
+     * Runs every job once, at most THREADS at a time, and returns when they are done.
+     * Returns the number of jobs that failed.
+     */
+
+    public int runAll() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        final int failures[] = new int[1];
+        for (int i=0; i < jobs.size(); i++) {
+            final RBReportJob job = (RBReportJob)jobs.elementAt(i);
+            pool.execute(new Runnable() {
+                public void run() {
+                    if (!runJob(job)) {
+                        synchronized (failures) {
+                            failures[0]++;
+                        }
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        return failures[0];
+    }
+
+    // Schedules the next run of a job after the given time. Each run is scheduled on its own,
+    // since runs at a defined time of day are not evenly spaced.
+    private void schedule(final RBReportJob job, Date after) {
+        Date next = job.getNextRun(after);
+        long delay = Math.max(0, next.getTime() - System.currentTimeMillis());
+        System.out.println("RBReportDaemon: Next report of " + job.getName() + " at " + next);
+        scheduler.schedule(new Runnable() {
+            public void run() {
+                submit(job);
+                schedule(job, new Date());
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Hands a job to the workers, unless its previous run is still going
+    private void submit(final RBReportJob job) {
+        final AtomicBoolean flag = (AtomicBoolean)running.get(job);
+        if (!flag.compareAndSet(false, true)) {
+            System.out.println("RBReportDaemon: Skipped report of " + job.getName() + ", the previous report is still running");
+            return;
+        }
+        workers.execute(new Runnable() {
+            public void run() {
+                try {
+                    runJob(job);
+                } finally {
+                    flag.set(false);
+                }
+            }
+        });
+    }
+
+    private boolean runJob(RBReportJob job) {
+        try {
+            int count = generator.generate(job);
+            if (count > 0)
+                System.out.println("RBReportDaemon: Generated " + count + " reports of " + job.getName() + " at " + new Date());
+            return true;
+        } catch (Exception e) {
+            System.err.println("RBReportDaemon: Error generating report of " + job.getName() + ": " + e.getMessage());
+            e.printStackTrace(System.err);
+            return false;
+        }
+    }
+
+    private void readJobs(File jobsFile) throws IOException {
+        Document config = null;
+        FileInputStream fis = new FileInputStream(jobsFile);
+        try {
+            DOMParser parser = new DOMParser();
+            parser.parse(new InputSource(fis));
+            config = parser.getDocument();
+        } catch (SAXException saxe) {
+            throw new IOException("Illegal XML Document: " + saxe.getMessage());
+        } finally {
+            fis.close();
+        }
+        Element root = config.getDocumentElement();
+        threads = Runtime.getRuntime().availableProcessors();
+        if (root.getAttribute("threads").length() > 0) threads = parseInt(root, "threads");
+        if (root.getAttribute("metrics_port").length() > 0) metricsPort = parseInt(root, "metrics_port");
+        NodeList nl = root.getElementsByTagName("Job");
+        for (int i=0; i < nl.getLength(); i++) {
+            jobs.addElement(readJob((Element)nl.item(i)));
+        }
+    }
+
+    private RBReportJob readJob(Element job_elem) throws IOException {
+        String name = job_elem.getAttribute("name");
+        RBReportJob job = new RBReportJob(name.length() > 0 ? name : "Job " + (jobs.size() + 1));
+        if (job_elem.getAttribute("bundle").length() > 0)
+            job.setBundleFile(new File(job_elem.getAttribute("bundle")));
+        else if (job_elem.getAttribute("project").length() > 0)
+            job.setProjectFile(new File(job_elem.getAttribute("project")));
+        else
+            throw new IOException("Job " + job.getName() + " names neither a bundle nor a project");
+        if (job_elem.getAttribute("output").length() < 1)
+            throw new IOException("Job " + job.getName() + " has no output directory");
+        job.setOutputDirectory(new File(job_elem.getAttribute("output")));
+        if (job_elem.getAttribute("scan").length() > 0)
+            job.setScanFile(new File(job_elem.getAttribute("scan")));
+        job.setForced(job_elem.getAttribute("force").equalsIgnoreCase("true"));
+        job.setHistory(job_elem.getAttribute("history").equalsIgnoreCase("true"));
+
+        NodeList nl = job_elem.getElementsByTagName("Report");
+        for (int i=0; i < nl.getLength(); i++) {
+            Element report_elem = (Element)nl.item(i);
+            String format = report_elem.getAttribute("format");
+            int formatIndex;
+            if (format.equalsIgnoreCase("text")) formatIndex = RBReportJob.FORMAT_TEXT;
+            else if (format.equalsIgnoreCase("html")) formatIndex = RBReportJob.FORMAT_HTML;
+            else if (format.equalsIgnoreCase("xml")) formatIndex = RBReportJob.FORMAT_XML;
+            else if (format.equalsIgnoreCase("metrics")) formatIndex = RBReportJob.FORMAT_METRICS;
+            else throw new IOException("Job " + job.getName() + " has an unknown report format: " + format);
+            String file = report_elem.getAttribute("file");
+            if (file.length() < 1 && formatIndex == RBReportJob.FORMAT_METRICS) file = "metrics.prom";
+            else if (file.length() < 1) file = "report." + (formatIndex == RBReportJob.FORMAT_TEXT ? "txt" : format.toLowerCase());
+            job.setReport(formatIndex, file, !report_elem.getAttribute("detail").equalsIgnoreCase("low"));
+        }
+
+        nl = job_elem.getElementsByTagName("Schedule");
+        if (nl.getLength() > 0) {
+            Element schedule_elem = (Element)nl.item(0);
+            if (schedule_elem.getAttribute("every").length() > 0) {
+                long value = parseInt(schedule_elem, "every");
+                String unit = schedule_elem.getAttribute("unit");
+                if (unit.equalsIgnoreCase("minutes")) value *= 60L * 1000L;
+                else if (unit.equalsIgnoreCase("hours") || unit.length() < 1) value *= 60L * 60L * 1000L;
+                else if (unit.equalsIgnoreCase("days")) value *= 24L * 60L * 60L * 1000L;
+                else throw new IOException("Job " + job.getName() + " has an unknown schedule unit: " + unit);
+                if (value < 1) throw new IOException("Job " + job.getName() + " has an illegal schedule interval");
+                job.setInterval(value);
+            } else if (schedule_elem.getAttribute("time").length() > 0) {
+                String time = schedule_elem.getAttribute("time");
+                int hour, minute;
+                try {
+                    hour = Integer.parseInt(time.substring(0, time.indexOf(':')));
+                    minute = Integer.parseInt(time.substring(time.indexOf(':') + 1));
+                } catch (RuntimeException re) {
+                    throw new IOException("Job " + job.getName() + " has an illegal schedule time: " + time);
+                }
+                int day = 0;
+                String dayName = schedule_elem.getAttribute("day");
+                for (int i=0; i < DAYS.length; i++) {
+                    if (DAYS[i].equalsIgnoreCase(dayName)) day = i+1;
+                }
+                job.setDefinedTime(hour, minute, day);
+            }
+        }
+        return job;
+    }
+
+    private static int parseInt(Element elem, String attribute) throws IOException {
+        try {
+            return Integer.parseInt(elem.getAttribute(attribute));
+        } catch (NumberFormatException nfe) {
+            throw new IOException("Illegal " + attribute + " attribute: " + elem.getAttribute(attribute));
+        }
+    }
+
+    private static String getUsage() {
+        return "\nRBReportDaemon Command Line Usage:\n\n" +
+               "Usage:                 java com.ibm.rbm.RBReportDaemon [-once] [-profile] jobs_file\n\n" +
+               "Options:               -once    Run each job once and exit\n" +
+               "                       -profile Print the time spent loading and scanning on exit";
+    }
+
+    /**
+     * Runs the jobs of the jobs file given on the command line until the process is ended,
+     * or once if the -once option is given.
+     */
+
+    public static void main(String args[]) {
+        // The reports never need a display
+        System.setProperty("java.awt.headless", "true");
+        boolean once = false;
+        String jobsFile = null;
+        for (int i=0; i < args.length; i++) {
+            if (args[i].equals("-once")) once = true;
+            else if (args[i].equals("-profile")) RBInstrumentation.profileUntilExit(System.out);
+            else jobsFile = args[i];
+        }
+        if (jobsFile == null) {
+            System.out.println(getUsage());
+            return;
+        }
+        try {
+            RBReportDaemon daemon = new RBReportDaemon(new File(jobsFile));
+            if (once) {
+                System.exit(daemon.runAll() == 0 ? 0 : 1);
+            }
+            daemon.start();
+        } catch (Exception e) {
+            System.err.println("RBReportDaemon: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
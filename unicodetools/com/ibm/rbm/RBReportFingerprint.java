@@ -0,0 +1,126 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A digest of the inputs of a report, used by RBReportGenerator to tell whether a report
+ * has to be written again. Files are fingerprinted by their path, modification time and
+ * length only, so computing a fingerprint never reads the contents of a file.
+ *
+ * @see com.ibm.rbm.RBReportGenerator
+ */
+class RBReportFingerprint {
+    private static final char HEX[] = "0123456789abcdef".toCharArray();
+
+    private MessageDigest digest;
+
+    RBReportFingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException nsae) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(nsae.toString());
+        }
+    }
+
+    void addString(String s) {
+        try {
+            digest.update((s == null ? "" : s).getBytes("UTF-8"));
+            digest.update((byte)0);
+        } catch (UnsupportedEncodingException uee) {
+            // UTF-8 is always supported
+        }
+    }
+
+    void addFile(File f) {
+        addString(f.getAbsolutePath());
+        addString(String.valueOf(f.lastModified()));
+        addString(String.valueOf(f.length()));
+    }
+
+    /**
+     * Adds the base class file of a resource bundle together with the files of all of its
+     * locales, which RBManager finds in the same directory.
+     */
+
+    void addBundleFiles(File baseFile) {
+        addFile(baseFile);
+        String baseName = baseFile.getName();
+        if (baseName.indexOf('.') > 0) baseName = baseName.substring(0, baseName.indexOf('.'));
+        File directory = baseFile.getAbsoluteFile().getParentFile();
+        String names[] = (directory == null ? null : directory.list());
+        if (names == null) return;
+        Arrays.sort(names);
+        for (int i=0; i < names.length; i++) {
+            String name = names[i];
+            if (name.length() <= baseName.length() || !name.startsWith(baseName)) continue;
+            char c = name.charAt(baseName.length());
+            if (c == '_' || c == '.') addFile(new File(directory, name));
+        }
+    }
+
+    /**
+     * Adds the scan file and every file a scan following the plan would read.
+     */
+
+    void addScanInputs(ScanPlan plan) {
+        addFile(plan.getConfigFile());
+        for (int i=0; i < plan.getDirectoryCount(); i++) {
+            ScanPlan.DirectoryPlan dir = plan.getDirectory(i);
+            addString(dir.getDirectory().getAbsolutePath());
+            addScanDirectory(dir, dir.getDirectory(), dir.getDirectory().toPath());
+        }
+    }
+
+    // Follows the same walk as RBReporterScanner.scanDirectory()
+    private void addScanDirectory(ScanPlan.DirectoryPlan dir, File directory, Path root) {
+        File children[] = directory.listFiles();
+        if (children == null) return;
+        Arrays.sort(children);
+        for (int i=0; i < children.length; i++) {
+            File f = children[i];
+            Path relative = root.relativize(f.toPath());
+            if (f.isDirectory()) {
+                if (dir.isRecursive() && !dir.getFilter().isExcluded(relative)) addScanDirectory(dir, f, root);
+                continue;
+            }
+            if (!dir.getFilter().accept(relative)) continue;
+            for (int j=0; j < dir.getFileRuleCount(); j++) {
+                if (dir.getFileRule(j).applyRule(f.getName())) {
+                    addFile(f);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the fingerprint as a hexadecimal String. More inputs may still be added
+     * afterwards.
+     */
+
+    String getValue() {
+        byte bytes[];
+        try {
+            bytes = ((MessageDigest)digest.clone()).digest();
+        } catch (CloneNotSupportedException cnse) {
+            throw new IllegalStateException(cnse.toString());
+        }
+        char chars[] = new char[bytes.length * 2];
+        for (int i=0; i < bytes.length; i++) {
+            chars[2*i] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[2*i+1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates the reports of a report job. This is the part of RBReporter that does not
+ * depend on the user interface, so it may be used by the reporter window as well as by
+ * the headless RBReportDaemon. A generator holds no state between runs, so one
+ * instance may run several jobs at the same time.
+ * <p>
+ * Unless a job asks to be run regardless, the generator records a fingerprint of the
+ * inputs of every report it writes in a state file in the output directory. A report
+ * whose bundle files, scan file and scanned code have not changed since it was written
+ * is left alone, and if no report needs to be written the bundle is not even loaded.
+ * <p>
+ * The figures of the locales of a bundle are gathered in parallel, and the reports in
+ * the different formats are then written at the same time from those figures, so a run
+ * takes about as long as its slowest report.
+ *
+ * @see com.ibm.rbm.RBReportJob
+ */
+public class RBReportGenerator {
+    /** The name of the state file kept in the output directory of a job */
+    public static final String STATE_FILE = "rbreport.state";
+
+    private static final String FORMAT_NAMES[] = {"text", "html", "xml", "metrics"};
+
+    private RBReportMetrics metrics;                 // Shared by all runs, or null
+
+    /**
+     * Sets the metrics into which the metrics of every bundle reported on are merged, such
+     * as those served by an RBReportMetricsServer.
+     */
+
+    public void setMetrics(RBReportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public RBReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Loads the bundle or project of a job and writes its reports. Returns the number of
+     * reports written.
+     */
+
+    public int generate(RBReportJob job) throws IOException {
+        long runStart = System.currentTimeMillis();
+        File directory = job.getOutputDirectory();
+        if (directory == null || !directory.isDirectory())
+            throw new IOException("Specified output directory is unusable");
+        if (job.getProjectFile() != null) return generateProject(job, runStart);
+        File baseFile = job.getBundleFile();
+        if (baseFile == null || !baseFile.isFile())
+            throw new IOException("Specified input file is unusable");
+
+        Properties state = loadState(job);
+        ScanPlan plan = (job.getScanFile() == null ? null : ScanPlan.forFile(job.getScanFile()));
+        RBReportFingerprint inputs = new RBReportFingerprint();
+        if (plan != null) inputs.addScanInputs(plan);
+        inputs.addBundleFiles(baseFile);
+        String digests[] = getStaleReports(job, state, "", directory, inputs);
+        if (digests == null) {
+            recordSkipped(job, directory, runStart);
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        RBManager rbm = new RBManager(baseFile, false);
+        int timings[] = {(int)(System.currentTimeMillis() - start), 0};
+        RBReporterScanner scanner = null;
+        if (plan != null) {
+            start = System.currentTimeMillis();
+            scanner = new RBReporterScanner(singleton(rbm.getBundles().elementAt(0)), plan);
+            scanner.performScan();
+            timings[1] = (int)(System.currentTimeMillis() - start);
+        }
+        try {
+            int count = writeReports(job, rbm, directory, scanner, digests, timings, runStart);
+            updateState(job, state, "", digests);
+            storeState(job, state);
+            return count;
+        } finally {
+            if (scanner != null) scanner.dispose();
+        }
+    }
+
+    /**
+     * Writes all of the reports of a job for an already loaded resource bundle, without
+     * checking for changes.
+     */
+
+    public void generate(RBReportJob job, RBManager rbm) throws IOException {
+        long runStart = System.currentTimeMillis();
+        File directory = job.getOutputDirectory();
+        if (directory == null || !directory.isDirectory())
+            throw new IOException("Specified output directory is unusable");
+        RBReporterScanner scanner = null;
+        int timings[] = {0, 0};
+        if (job.getScanFile() != null) {
+            long start = System.currentTimeMillis();
+            scanner = new RBReporterScanner(singleton(rbm.getBundles().elementAt(0)),
+                                            ScanPlan.forFile(job.getScanFile()));
+            scanner.performScan();
+            timings[1] = (int)(System.currentTimeMillis() - start);
+        }
+        try {
+            writeReports(job, rbm, directory, scanner, new String[FORMAT_NAMES.length], timings, runStart);
+        } finally {
+            if (scanner != null) scanner.dispose();
+        }
+    }
+
+    // Scans the code once for all of the bundles of the project that need new reports
+    private int generateProject(RBReportJob job, long runStart) throws IOException {
+        File directory = job.getOutputDirectory();
+        Vector names = new Vector();
+        Vector files = new Vector();
+        RBReporterScanner.readProjectFile(job.getProjectFile(), names, files);
+
+        Properties state = loadState(job);
+        ScanPlan plan = (job.getScanFile() == null ? null : ScanPlan.forFile(job.getScanFile()));
+        RBReportFingerprint scanInputs = new RBReportFingerprint();
+        if (plan != null) scanInputs.addScanInputs(plan);
+        String scanDigest = scanInputs.getValue();
+
+        // The reports of a bundle depend only on its own files and on the scanned code
+        Vector stale = new Vector();
+        Vector staleDigests = new Vector();
+        for (int i=0; i < files.size(); i++) {
+            RBReportFingerprint inputs = new RBReportFingerprint();
+            inputs.addString(scanDigest);
+            inputs.addBundleFiles((File)files.elementAt(i));
+            String digests[] = getStaleReports(job, state, names.elementAt(i) + "/",
+                                               new File(directory, (String)names.elementAt(i)), inputs);
+            if (digests == null) {
+                recordSkipped(job, new File(directory, (String)names.elementAt(i)), runStart);
+                continue;
+            }
+            stale.addElement(Integer.valueOf(i));
+            staleDigests.addElement(digests);
+        }
+        if (stale.size() < 1) return 0;
+
+        RBManager managers[] = new RBManager[stale.size()];
+        int loadMillis[] = new int[managers.length];
+        Vector bundles = new Vector();
+        for (int i=0; i < managers.length; i++) {
+            long start = System.currentTimeMillis();
+            managers[i] = new RBManager((File)files.elementAt(((Integer)stale.elementAt(i)).intValue()), false);
+            loadMillis[i] = (int)(System.currentTimeMillis() - start);
+            bundles.addElement(managers[i].getBundles().elementAt(0));
+        }
+        RBReporterScanner scanner = null;
+        int scanMillis = 0;
+        if (plan != null) {
+            long start = System.currentTimeMillis();
+            scanner = new RBReporterScanner(bundles, plan);
+            scanner.performScan();
+            scanMillis = (int)(System.currentTimeMillis() - start);
+        }
+        try {
+            int count = 0;
+            for (int i=0; i < managers.length; i++) {
+                String name = (String)names.elementAt(((Integer)stale.elementAt(i)).intValue());
+                File bundleDirectory = new File(directory, name);
+                if (!bundleDirectory.isDirectory() && !bundleDirectory.mkdirs())
+                    throw new IOException("Unable to create the output directory " + bundleDirectory);
+                String digests[] = (String[])staleDigests.elementAt(i);
+                // The scan is shared by all of the bundles, so each is charged its full time
+                int timings[] = {loadMillis[i], scanMillis};
+                count += writeReports(job, managers[i], bundleDirectory, scanner, digests, timings, runStart);
+                updateState(job, state, name + "/", digests);
+            }
+            storeState(job, state);
+            return count;
+        } finally {
+            if (scanner != null) scanner.dispose();
+        }
+    }
+
+    /**
+     * Returns the new fingerprint of each report of a job that has to be written, and null
+     * for the reports that are current or not requested. Returns null if no report has to
+     * be written at all. The trends of the HTML report cover every run recorded in the history
+     * kept in the given directory, so its fingerprint includes the number of runs there will
+     * be once this run is recorded.
+     */
+
+    private String[] getStaleReports(RBReportJob job, Properties state, String prefix,
+                                     File directory, RBReportFingerprint inputs) throws IOException {
+        String inputDigest = inputs.getValue();
+        int runs = 0;
+        if (job.isHistory() && directory.isDirectory()) runs = new RBReportHistory(directory).getRunCount();
+        String digests[] = new String[FORMAT_NAMES.length];
+        boolean stale = false;
+        for (int format=0; format < digests.length; format++) {
+            String fileName = job.getReportFile(format);
+            if (fileName == null) continue;
+            // The settings of a report are part of its fingerprint
+            RBReportFingerprint fingerprint = new RBReportFingerprint();
+            fingerprint.addString(inputDigest);
+            fingerprint.addString(FORMAT_NAMES[format] + ":" + fileName + ":" + job.isDetailed(format));
+            if (format == RBReportJob.FORMAT_HTML && job.isHistory()) fingerprint.addString("runs:" + (runs + 1));
+            String digest = fingerprint.getValue();
+            File output = new File(job.getOutputDirectory(), prefix + fileName);
+            if (!job.isForced() && output.isFile() && digest.equals(state.getProperty(prefix + fileName))) {
+                System.out.println("RBReportGenerator: Skipped " + prefix + fileName + " of " + job.getName() +
+                                   ", its inputs are unchanged");
+                continue;
+            }
+            digests[format] = digest;
+            stale = true;
+        }
+        return (stale ? digests : null);
+    }
+
+    private void updateState(RBReportJob job, Properties state, String prefix, String digests[]) {
+        for (int format=0; format < digests.length; format++) {
+            if (digests[format] != null) state.setProperty(prefix + job.getReportFile(format), digests[format]);
+        }
+    }
+
+    // Records a run whose reports were all skipped in the history kept in a directory
+    private void recordSkipped(RBReportJob job, File directory, long runStart) throws IOException {
+        if (!job.isHistory() || !directory.isDirectory()) return;
+        long now = System.currentTimeMillis();
+        new RBReportHistory(directory).recordSkipped(now, (int)(now - runStart));
+    }
+
+    private Properties loadState(RBReportJob job) throws IOException {
+        Properties state = new Properties();
+        File stateFile = new File(job.getOutputDirectory(), STATE_FILE);
+        if (!stateFile.isFile()) return state;
+        InputStream is = new FileInputStream(stateFile);
+        try {
+            state.load(is);
+        } finally {
+            is.close();
+        }
+        return state;
+    }
+
+    // The state file is replaced in a single step, so that a run that is cut short never
+    // leaves it half written
+    private void storeState(RBReportJob job, Properties state) throws IOException {
+        File stateFile = new File(job.getOutputDirectory(), STATE_FILE);
+        File temp = new File(stateFile.getPath() + ".tmp");
+        OutputStream os = new FileOutputStream(temp);
+        try {
+            state.store(os, "RBReporter report fingerprints");
+        } finally {
+            os.close();
+        }
+        if (!temp.renameTo(stateFile)) {
+            // Some platforms do not rename over an existing file
+            stateFile.delete();
+            if (!temp.renameTo(stateFile)) throw new IOException("Unable to write " + stateFile);
+        }
+    }
+
+    private static Vector singleton(Object o) {
+        Vector v = new Vector();
+        v.addElement(o);
+        return v;
+    }
+
+    // Writes the reports that have a fingerprint, or all requested reports if none has one.
+    // The timings are the milliseconds spent loading the bundle and scanning the code, and
+    // the run started at runStart.
+    private int writeReports(RBReportJob job, RBManager rbm, File directory, RBReporterScanner scanner,
+                             String digests[], int timings[], long runStart) throws IOException {
+        boolean all = true;
+        for (int format=0; format < digests.length; format++) {
+            if (digests[format] != null) all = false;
+        }
+        // The locales are examined, and the reports written, by a pool sized to whichever is larger
+        int threads = Math.max(rbm.getBundles().size(), FORMAT_NAMES.length);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Runtime.getRuntime().availableProcessors()));
+        try {
+            // The per locale figures are gathered once and shared by all of the reports
+            RBReportStatistics stats = new RBReportStatistics(rbm, pool);
+            RBReportMetrics bundleMetrics = new RBReportMetrics(job.getName());
+            bundleMetrics.setStatistics(stats);
+            bundleMetrics.setLoad(stats, timings[0]);
+            if (scanner != null) bundleMetrics.setScan(stats, scanner, timings[1]);
+            RBReportHistory history = null;
+            int run = -1;
+            if (job.isHistory()) {
+                // The run is recorded first, so that the trends of the HTML report include it
+                history = new RBReportHistory(directory);
+                run = history.record(System.currentTimeMillis(), stats, scanner, timings[0], timings[1]);
+            }
+
+            // The formats are written at the same time, each to its own file
+            Vector pending = new Vector();
+            int formats[] = {RBReportJob.FORMAT_TEXT, RBReportJob.FORMAT_HTML, RBReportJob.FORMAT_XML};
+            for (int i=0; i < formats.length; i++) {
+                String fileName = job.getReportFile(formats[i]);
+                if (fileName == null || !(all || digests[formats[i]] != null)) continue;
+                pending.addElement(pool.submit(createReportTask(job, formats[i], new File(directory, fileName),
+                                                                stats, scanner, history, bundleMetrics)));
+            }
+            waitForReports(pending);
+            int count = pending.size();
+
+            bundleMetrics.set("last_run_timestamp_seconds", new String[] {"bundle", rbm.getBaseClass()},
+                              System.currentTimeMillis() / 1000);
+            // The metrics come last, so that they include the timings of the other reports
+            String fileName = job.getReportFile(RBReportJob.FORMAT_METRICS);
+            if (fileName != null && (all || digests[RBReportJob.FORMAT_METRICS] != null)) {
+                bundleMetrics.write(new File(directory, fileName));
+                count++;
+            }
+            if (metrics != null) metrics.putAll(bundleMetrics);
+            if (history != null) history.setElapsedMillis(run, (int)(System.currentTimeMillis() - runStart));
+            return count;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // The HTML and XML reports are streamed, so their size is not limited by the heap
+    private Callable createReportTask(final RBReportJob job, final int format, final File file,
+                                      final RBReportStatistics stats, final RBReporterScanner scanner,
+                                      final RBReportHistory history, final RBReportMetrics bundleMetrics) {
+        return new Callable() {
+            public Object call() throws IOException {
+                long start = System.currentTimeMillis();
+                if (format == RBReportJob.FORMAT_TEXT) {
+                    RBTextReportWriter writer = new RBTextReportWriter(stats, job.isDetailed(format));
+                    writer.write(file, scanner);
+                } else if (format == RBReportJob.FORMAT_HTML) {
+                    RBHTMLReportWriter writer = new RBHTMLReportWriter(stats, job.isDetailed(format));
+                    writer.setHistory(history);
+                    writer.write(file, scanner);
+                } else {
+                    RBXMLReportWriter writer = new RBXMLReportWriter(stats, job.isDetailed(format));
+                    writer.write(file, scanner);
+                }
+                bundleMetrics.setReport(stats, FORMAT_NAMES[format], System.currentTimeMillis() - start, file.length());
+                return null;
+            }
+        };
+    }
+
+    // Waits for all of the reports, even after one has failed, then passes on the first error
+    private static void waitForReports(Vector pending) throws IOException {
+        Throwable error = null;
+        for (int i=0; i < pending.size(); i++) {
+            try {
+                ((Future)pending.elementAt(i)).get();
+            } catch (InterruptedException ie) {
+                throw new InterruptedIOException("Report generation interrupted");
+            } catch (ExecutionException ee) {
+                if (error == null) error = ee.getCause();
+            }
+        }
+        if (error instanceof IOException) throw (IOException)error;
+        if (error instanceof RuntimeException) throw (RuntimeException)error;
+        if (error != null) throw new IOException(error.toString());
+    }
+}
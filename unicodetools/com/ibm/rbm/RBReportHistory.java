@@ -0,0 +1,486 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * An append-only record of the translation progress of a resource bundle, kept in the
+ * output directory of a report job. Every report run appends one fixed width record for
+ * the run as a whole, one for each locale and one for each group of each locale. The
+ * records of a run are written together and are sorted by locale and group, and an index
+ * holds the time of each run together with the position of its records. Records already
+ * written are never changed, apart from the elapsed time of a run which is filled in once
+ * its reports are done, so a run is never lost when a later one fails.
+ * <p>
+ * A run whose reports were skipped, because nothing had changed, is recorded as well, with
+ * a record for the run as a whole only. It carries over the counts of the previous run.
+ * <p>
+ * Queries read the files through memory maps. A run is found by a binary search of the
+ * index by time, and a record within a run by a binary search by locale and group, so
+ * a query touches only the records it returns.
+ *
+ * @see com.ibm.rbm.RBReportGenerator
+ */
+public class RBReportHistory {
+    public static final String DATA_FILE  = "rbhistory.dat";
+    public static final String INDEX_FILE = "rbhistory.idx";
+    public static final String NAMES_FILE = "rbhistory.names";
+
+    // A record is the time, the locale and group ids, six counts, the elapsed time and flags
+    static final int RECORD_SIZE = 48;
+    // An index entry is the time of a run, its first record and its number of records
+    static final int INDEX_SIZE  = 20;
+    // The data file is mapped in pieces, since a single map may not exceed 2GB
+    private static final long CHUNK_RECORDS = 1 << 24;
+
+    private static final int NONE = -1;                    // The id of the totals of a run or a locale
+    private static final int SKIPPED = 1;                  // The flag of a run whose reports were skipped
+    private static final int ELAPSED_OFFSET = 40;          // The offset of the elapsed time in a record
+
+    private File      directory;
+    private Vector    names = new Vector();                // The locale and group names by id
+    private Hashtable ids = new Hashtable();               // The Integer id of each name
+    private long      namesLength;                         // The bytes of the names file read
+
+    /**
+     * A record of the history
+     */
+
+    public static final class Entry {
+        long   time;
+        String locale;
+        String group;
+        int    items;
+        int    untranslated;
+        int    missing;
+        int    unused;
+        int    loadMillis;
+        int    scanMillis;
+        int    elapsedMillis;
+        int    flags;
+
+        /** The time of the run */
+        public long getTime() { return time; }
+        /** The encoding of the locale, "" for the base class, or null for the totals of a run */
+        public String getLocale() { return locale; }
+        /** The name of the group, or null for the totals of a locale or a run */
+        public String getGroup() { return group; }
+        public int getItemCount() { return items; }
+        public int getUntranslatedCount() { return untranslated; }
+        /** The number of keys used in the code but missing from the bundle */
+        public int getMissingCount() { return missing; }
+        /** The number of items of the bundle not used in the code */
+        public int getUnusedCount() { return unused; }
+        /** The milliseconds spent loading the bundle; recorded with the totals of a run only */
+        public int getLoadMillis() { return loadMillis; }
+        /** The milliseconds spent scanning the code; recorded with the totals of a run only */
+        public int getScanMillis() { return scanMillis; }
+        /** The milliseconds the whole run took; recorded with the totals of a run only */
+        public int getElapsedMillis() { return elapsedMillis; }
+        /** Whether the reports of the run were skipped, since nothing had changed */
+        public boolean isSkipped() { return (flags & SKIPPED) != 0; }
+    }
+
+    public RBReportHistory(File directory) throws IOException {
+        this.directory = directory;
+        readNames();
+    }
+
+    /**
+     * Appends a run to the history and returns its number. The scan counts are recorded with
+     * the totals of the run and of each locale, and the unused items with the groups of the
+     * base class. The time of the run is moved past the previous run if the clock went back.
+     * The elapsed time of the run is set with setElapsedMillis() when the run is done.
+     */
+
+    public synchronized int record(long time, RBReportStatistics stats, RBReporterScanner scanner,
+                                   int loadMillis, int scanMillis) throws IOException {
+        readNames();
+        int nameCount = names.size();
+        int missing = 0;
+        int unused = 0;
+        Hashtable groupUnused = new Hashtable();
+        if (scanner != null && stats.getBundle(0) != null) {
+            Bundle base = stats.getBundle(0);
+            missing = scanner.getNumberMissingResources(base);
+            Vector v = scanner.getUnusedResources(base);
+            unused = v.size();
+            for (int i=0; i < v.size(); i++) {
+                BundleItem item = ((ScanResult)v.elementAt(i)).getItem();
+                String group = (item == null || item.getParentGroup() == null ? "" : item.getParentGroup().getName());
+                int count[] = (int[])groupUnused.get(group);
+                if (count == null) groupUnused.put(group, count = new int[1]);
+                count[0]++;
+            }
+        }
+
+        Vector records = new Vector();
+        int totalItems = 0;
+        int totalUntranslated = 0;
+        for (int i=0; i < stats.getBundleCount(); i++) {
+            Bundle bundle = stats.getBundle(i);
+            if (bundle == null) continue;
+            int locale = getId(bundle.encoding == null ? "" : bundle.encoding);
+            records.addElement(new int[] {locale, NONE, stats.getItemCount(i), stats.getUntranslatedCount(i),
+                                          missing, unused, 0, 0, 0, 0});
+            String groups[] = stats.getGroupNames(i);
+            for (int j=0; j < groups.length; j++) {
+                int count[] = (i == 0 ? (int[])groupUnused.get(groups[j]) : null);
+                records.addElement(new int[] {locale, getId(groups[j]), stats.getGroupItemCount(i, j),
+                                              stats.getGroupUntranslatedCount(i, j), 0,
+                                              (count == null ? 0 : count[0]), 0, 0, 0, 0});
+            }
+            totalItems += stats.getItemCount(i);
+            totalUntranslated += stats.getUntranslatedCount(i);
+        }
+        records.addElement(new int[] {NONE, NONE, totalItems, totalUntranslated, missing, unused,
+                                      loadMillis, scanMillis, 0, 0});
+        Collections.sort(records, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                int a[] = (int[])o1;
+                int b[] = (int[])o2;
+                return compareIds(a[0], a[1], b[0], b[1]);
+            }
+        });
+
+        // The names and records go first, so that an index entry never refers to a
+        // record that was not completely written
+        appendNames(nameCount);
+        return appendRun(time, records);
+    }
+
+    /**
+     * Appends a run whose reports were skipped, since nothing had changed, and which took
+     * the given milliseconds. Returns the number of the run.
+     */
+
+    public synchronized int recordSkipped(long time, int elapsedMillis) throws IOException {
+        readNames();
+        int totals[] = {NONE, NONE, 0, 0, 0, 0, 0, 0, elapsedMillis, SKIPPED};
+        int runs = getRunCount();
+        if (runs > 0) {
+            // The counts are unchanged, so they are those of the previous run
+            ByteBuffer index = mapIndex();
+            long start = index.getLong((runs - 1) * INDEX_SIZE + 8);
+            if (index.getInt((runs - 1) * INDEX_SIZE + 16) > 0) {
+                MappedByteBuffer chunks[] = mapData();
+                if (compareRecord(chunks, start, NONE, NONE) == 0) {
+                    Entry previous = readEntry(chunks, start);
+                    totals[2] = previous.items;
+                    totals[3] = previous.untranslated;
+                    totals[4] = previous.missing;
+                    totals[5] = previous.unused;
+                }
+            }
+        }
+        Vector records = new Vector();
+        records.addElement(totals);
+        return appendRun(time, records);
+    }
+
+    /**
+     * Sets the elapsed time of a run recorded by record()
+     */
+
+    public synchronized void setElapsedMillis(int run, int elapsedMillis) throws IOException {
+        ByteBuffer index = mapIndex();
+        if (run < 0 || run >= index.capacity() / INDEX_SIZE) throw new IndexOutOfBoundsException(String.valueOf(run));
+        // The totals of the run sort before its other records
+        long first = index.getLong(run * INDEX_SIZE + 8);
+        RandomAccessFile raf = new RandomAccessFile(new File(directory, DATA_FILE), "rw");
+        try {
+            raf.seek(first * RECORD_SIZE + ELAPSED_OFFSET);
+            raf.writeInt(elapsedMillis);
+        } finally {
+            raf.close();
+        }
+    }
+
+    // Appends the sorted records of a run and its index entry, and returns the number of the run
+    private int appendRun(long time, Vector records) throws IOException {
+        RandomAccessFile index = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        try {
+            long runs = index.length() / INDEX_SIZE;
+            if (runs > 0) {
+                index.seek((runs - 1) * INDEX_SIZE);
+                time = Math.max(time, index.readLong() + 1);
+            }
+            long first = appendRecords(time, records);
+            ByteBuffer buffer = ByteBuffer.allocate(INDEX_SIZE);
+            buffer.putLong(time).putLong(first).putInt(records.size());
+            index.seek(runs * INDEX_SIZE);
+            index.write(buffer.array());
+            index.setLength((runs + 1) * INDEX_SIZE);
+            return (int)runs;
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Returns the number of runs recorded
+     */
+
+    public synchronized int getRunCount() throws IOException {
+        return (int)(new File(directory, INDEX_FILE).length() / INDEX_SIZE);
+    }
+
+    /**
+     * Returns the time of the i-th run, the first run being 0
+     */
+
+    public synchronized long getRunTime(int run) throws IOException {
+        ByteBuffer index = mapIndex();
+        if (run < 0 || run >= index.capacity() / INDEX_SIZE) throw new IndexOutOfBoundsException(String.valueOf(run));
+        return index.getLong(run * INDEX_SIZE);
+    }
+
+    /**
+     * Returns the times of the runs from one time up to, but not including, another
+     */
+
+    public synchronized long[] getRunTimes(long from, long to) throws IOException {
+        ByteBuffer index = mapIndex();
+        int first = findRun(index, from);
+        int last = findRun(index, to);
+        long times[] = new long[Math.max(0, last - first)];
+        for (int i=0; i < times.length; i++) {
+            times[i] = index.getLong((first + i) * INDEX_SIZE);
+        }
+        return times;
+    }
+
+    /**
+     * Returns the totals of the runs from one time up to, but not including, another
+     */
+
+    public Entry[] getTotals(long from, long to) throws IOException {
+        return query(NONE, NONE, from, to);
+    }
+
+    /**
+     * Returns the records of a locale in the runs from one time up to, but not including,
+     * another. The locale is given by its encoding, "" being the base class. If the group
+     * is null the totals of the locale are returned, otherwise those of the group. Runs
+     * that did not include the locale or group are left out.
+     */
+
+    public synchronized Entry[] getSeries(String locale, String group, long from, long to) throws IOException {
+        readNames();
+        Integer localeId = (Integer)ids.get(locale);
+        Integer groupId = (group == null ? Integer.valueOf(NONE) : (Integer)ids.get(group));
+        if (localeId == null || groupId == null) return new Entry[0];
+        return query(localeId.intValue(), groupId.intValue(), from, to);
+    }
+
+    private synchronized Entry[] query(int locale, int group, long from, long to) throws IOException {
+        readNames();
+        ByteBuffer index = mapIndex();
+        int first = findRun(index, from);
+        int last = findRun(index, to);
+        if (last <= first) return new Entry[0];
+        MappedByteBuffer chunks[] = mapData();
+        Vector entries = new Vector();
+        int guess = 0;
+        for (int run=first; run < last; run++) {
+            long start = index.getLong(run * INDEX_SIZE + 8);
+            int count = index.getInt(run * INDEX_SIZE + 16);
+            // Runs tend to have the same locales and groups, so the record is most likely
+            // at the same position as in the previous run
+            int found = -1;
+            if (guess < count && compareRecord(chunks, start + guess, locale, group) == 0) {
+                found = guess;
+            } else {
+                int low = 0;
+                int high = count - 1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    int c = compareRecord(chunks, start + mid, locale, group);
+                    if (c < 0) low = mid + 1;
+                    else if (c > 0) high = mid - 1;
+                    else {
+                        found = mid;
+                        break;
+                    }
+                }
+            }
+            if (found < 0) continue;
+            guess = found;
+            entries.addElement(readEntry(chunks, start + found));
+        }
+        Entry result[] = new Entry[entries.size()];
+        entries.copyInto(result);
+        return result;
+    }
+
+    // Returns the first run at or after a time
+    private static int findRun(ByteBuffer index, long time) {
+        int low = 0;
+        int high = index.capacity() / INDEX_SIZE;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (index.getLong(mid * INDEX_SIZE) < time) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static int compareIds(int locale1, int group1, int locale2, int group2) {
+        if (locale1 != locale2) return (locale1 < locale2 ? -1 : 1);
+        if (group1 != group2) return (group1 < group2 ? -1 : 1);
+        return 0;
+    }
+
+    private static ByteBuffer recordBuffer(MappedByteBuffer chunks[], long record) {
+        return chunks[(int)(record / CHUNK_RECORDS)];
+    }
+
+    private static int recordOffset(long record) {
+        return (int)(record % CHUNK_RECORDS) * RECORD_SIZE;
+    }
+
+    private static int compareRecord(MappedByteBuffer chunks[], long record, int locale, int group) {
+        ByteBuffer buffer = recordBuffer(chunks, record);
+        int offset = recordOffset(record);
+        return compareIds(buffer.getInt(offset + 8), buffer.getInt(offset + 12), locale, group);
+    }
+
+    private Entry readEntry(MappedByteBuffer chunks[], long record) {
+        ByteBuffer buffer = recordBuffer(chunks, record);
+        int offset = recordOffset(record);
+        Entry entry = new Entry();
+        entry.time = buffer.getLong(offset);
+        entry.locale = getName(buffer.getInt(offset + 8));
+        entry.group = getName(buffer.getInt(offset + 12));
+        entry.items = buffer.getInt(offset + 16);
+        entry.untranslated = buffer.getInt(offset + 20);
+        entry.missing = buffer.getInt(offset + 24);
+        entry.unused = buffer.getInt(offset + 28);
+        entry.loadMillis = buffer.getInt(offset + 32);
+        entry.scanMillis = buffer.getInt(offset + 36);
+        entry.elapsedMillis = buffer.getInt(offset + ELAPSED_OFFSET);
+        entry.flags = buffer.getInt(offset + 44);
+        return entry;
+    }
+
+    private ByteBuffer mapIndex() throws IOException {
+        File file = new File(directory, INDEX_FILE);
+        if (!file.isFile()) return ByteBuffer.allocate(0);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long size = raf.length() / INDEX_SIZE * INDEX_SIZE;
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private MappedByteBuffer[] mapData() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(new File(directory, DATA_FILE), "r");
+        try {
+            long records = raf.length() / RECORD_SIZE;
+            MappedByteBuffer chunks[] = new MappedByteBuffer[(int)((records + CHUNK_RECORDS - 1) / CHUNK_RECORDS)];
+            for (int i=0; i < chunks.length; i++) {
+                long count = Math.min(CHUNK_RECORDS, records - i * CHUNK_RECORDS);
+                chunks[i] = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                                 i * CHUNK_RECORDS * RECORD_SIZE, count * RECORD_SIZE);
+            }
+            return chunks;
+        } finally {
+            raf.close();
+        }
+    }
+
+    // Returns the number of the first record written
+    private long appendRecords(long time, Vector records) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(new File(directory, DATA_FILE), "rw");
+        try {
+            // Anything past the last whole record was left by an interrupted run
+            long first = raf.length() / RECORD_SIZE;
+            ByteBuffer buffer = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+            for (int i=0; i < records.size(); i++) {
+                int values[] = (int[])records.elementAt(i);
+                buffer.putLong(time);
+                for (int j=0; j < values.length; j++) buffer.putInt(values[j]);
+            }
+            raf.seek(first * RECORD_SIZE);
+            raf.write(buffer.array());
+            raf.setLength((first + records.size()) * RECORD_SIZE);
+            return first;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private int getId(String name) {
+        Integer id = (Integer)ids.get(name);
+        if (id == null) {
+            id = Integer.valueOf(names.size());
+            names.addElement(name);
+            ids.put(name, id);
+        }
+        return id.intValue();
+    }
+
+    private String getName(int id) {
+        return (id < 0 || id >= names.size() ? null : (String)names.elementAt(id));
+    }
+
+    // Appends the names given an id since the names file was last read
+    private void appendNames(int from) throws IOException {
+        if (from >= names.size()) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bytes);
+        for (int i=from; i < names.size(); i++) {
+            dos.writeUTF((String)names.elementAt(i));
+        }
+        dos.flush();
+        RandomAccessFile raf = new RandomAccessFile(new File(directory, NAMES_FILE), "rw");
+        try {
+            raf.seek(namesLength);
+            raf.write(bytes.toByteArray());
+            raf.setLength(namesLength + bytes.size());
+        } finally {
+            raf.close();
+        }
+        namesLength += bytes.size();
+    }
+
+    // Reads the names added to the names file since it was last read
+    private void readNames() throws IOException {
+        File file = new File(directory, NAMES_FILE);
+        if (!file.isFile() || file.length() <= namesLength) return;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        byte data[];
+        try {
+            data = new byte[(int)(raf.length() - namesLength)];
+            raf.seek(namesLength);
+            raf.readFully(data);
+        } finally {
+            raf.close();
+        }
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream dis = new DataInputStream(bytes);
+        int read = 0;
+        try {
+            while (read < data.length) {
+                String name = dis.readUTF();
+                ids.put(name, Integer.valueOf(names.size()));
+                names.addElement(name);
+                read = data.length - bytes.available();
+            }
+        } catch (EOFException eofe) {
+            // A name cut short by an interrupted run; it is written again when next needed
+        }
+        namesLength += read;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The settings of one report run: the resource bundle or project to report on, the
+ * optional code scan, the reports to write, and when the run is to be repeated.
+ * Jobs are run by RBReportGenerator, and are scheduled by RBReportDaemon.
+ *
+ * @see com.ibm.rbm.RBReportGenerator
+ * @see com.ibm.rbm.RBReportDaemon
+ */
+public class RBReportJob {
+    public static final int FORMAT_TEXT = 0;
+    public static final int FORMAT_HTML = 1;
+    public static final int FORMAT_XML  = 2;
+    public static final int FORMAT_METRICS = 3;     // Prometheus text exposition, see RBReportMetrics
+
+    private String  name;
+    private File    bundleFile;                        // The base class file of a single bundle
+    private File    projectFile;                       // Or a project listing several bundles
+    private File    outputDirectory;
+    private File    scanFile;                          // The code scan settings, or null
+    private String  reportFiles[] = new String[4];     // The report file names by format
+    private boolean detailed[] = new boolean[4];
+    private boolean forced;                            // Write the reports even if nothing changed
+    private boolean history;                           // Record each run in an RBReportHistory
+
+    // ** SCHEDULE **
+    private long    interval;                          // Milliseconds between runs, or zero
+    private int     hour = -1;                         // The time of day of a defined run
+    private int     minute;
+    private int     day;                               // 0 for every day, 1-7 for Monday-Sunday
+
+    public RBReportJob(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public File getBundleFile() {
+        return bundleFile;
+    }
+
+    public void setBundleFile(File bundleFile) {
+        this.bundleFile = bundleFile;
+    }
+
+    public File getProjectFile() {
+        return projectFile;
+    }
+
+    /**
+     * Sets a project file to report on instead of a single bundle. The code is scanned once
+     * for all of the bundles of the project, and the reports of each bundle are written to a
+     * subdirectory of the output directory named after the bundle.
+     */
+
+    public void setProjectFile(File projectFile) {
+        this.projectFile = projectFile;
+    }
+
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public void setOutputDirectory(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    public File getScanFile() {
+        return scanFile;
+    }
+
+    public void setScanFile(File scanFile) {
+        this.scanFile = scanFile;
+    }
+
+    /**
+     * Requests a report in one of the formats FORMAT_TEXT, FORMAT_HTML, FORMAT_XML or
+     * FORMAT_METRICS. The detail setting does not apply to the metrics.
+     */
+
+    public void setReport(int format, String fileName, boolean detailed) {
+        reportFiles[format] = fileName;
+        this.detailed[format] = detailed;
+    }
+
+    /**
+     * Returns the file name of the report in a format, or null if it is not written
+     */
+
+    public String getReportFile(int format) {
+        return reportFiles[format];
+    }
+
+    public boolean isDetailed(int format) {
+        return detailed[format];
+    }
+
+    /**
+     * Returns whether the reports are written on every run, rather than only when their
+     * inputs have changed since they were last written
+     */
+
+    public boolean isForced() {
+        return forced;
+    }
+
+    public void setForced(boolean forced) {
+        this.forced = forced;
+    }
+
+    /**
+     * Returns whether the figures of each run are appended to the RBReportHistory kept in
+     * the output directory, and shown as trends in the HTML report
+     */
+
+    public boolean isHistory() {
+        return history;
+    }
+
+    public void setHistory(boolean history) {
+        this.history = history;
+    }
+
+    /**
+     * Repeats the job at a fixed interval
+     */
+
+    public void setInterval(long millis) {
+        interval = millis;
+        hour = -1;
+    }
+
+    /**
+     * Runs the job at a defined time of day. The day is 0 for every day, or 1 through 7
+     * for Monday through Sunday.
+     */
+
+    public void setDefinedTime(int hour, int minute, int day) {
+        this.hour = hour;
+        this.minute = minute;
+        this.day = day;
+        interval = 0;
+    }
+
+    /**
+     * Returns whether the job is run repeatedly
+     */
+
+    public boolean isScheduled() {
+        return interval > 0 || hour >= 0;
+    }
+
+    /**
+     * Returns the time of the next run after a given time, or null if the job is not
+     * scheduled.
+     */
+
+    public Date getNextRun(Date after) {
+        GregorianCalendar now = new GregorianCalendar();
+        now.setTime(after);
+        if (interval > 0) {
+            return new Date(after.getTime() + interval);
+        } else if (hour >= 0) {
+            GregorianCalendar then = new GregorianCalendar();
+            then.setTime(after);
+            then.set(Calendar.HOUR_OF_DAY, hour);
+            then.set(Calendar.MINUTE, minute);
+            then.set(Calendar.SECOND, 0);
+            then.set(Calendar.MILLISECOND, 0);
+
+            if (then.getTime().compareTo(now.getTime()) <= 0) then.add(Calendar.DATE, 1);
+            if (day > 0 && day <= 7) {
+                // Move on to the right day of the week
+                int weekDays[] = {Calendar.MONDAY, Calendar.TUESDAY, Calendar.WEDNESDAY, Calendar.THURSDAY,
+                                  Calendar.FRIDAY, Calendar.SATURDAY, Calendar.SUNDAY};
+                while (then.get(Calendar.DAY_OF_WEEK) != weekDays[day-1]) then.add(Calendar.DATE, 1);
+            }
+            return then.getTime();
+        }
+        return null;
+    }
+
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A set of gauges describing the state of resource bundles and the performance of the
+ * reporter, written in the Prometheus text exposition format so that a monitoring system
+ * can collect them. A gauge is identified by its name and labels, and setting it again
+ * replaces its value. RBReportGenerator fills one set for each bundle it reports on,
+ * and may merge them into a set shared by all jobs, which RBReportMetricsServer serves
+ * over HTTP.
+ *
+ * @see com.ibm.rbm.RBReportGenerator
+ * @see com.ibm.rbm.RBReportMetricsServer
+ */
+public class RBReportMetrics {
+    /** The content type of the text exposition format */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String PREFIX = "rbmanager_";
+    private static final String HELP[][] = {
+        {"bundle_items", "Number of NLS items of a locale"},
+        {"bundle_untranslated_items", "Number of NLS items of a locale that are not translated"},
+        {"bundle_duplicate_items", "Number of NLS items of a locale whose keys duplicate an earlier item"},
+        {"bundle_locales", "Number of locales of a bundle, including the base class"},
+        {"scan_resources_found", "Number of unique resources found in the code"},
+        {"scan_missing_resources", "Number of resources used in the code but missing from the bundle"},
+        {"scan_unused_resources", "Number of resources of the bundle not found in the code"},
+        {"scan_files", "Number of files scanned"},
+        {"load_seconds", "Time taken to load the bundle"},
+        {"load_items_per_second", "NLS items loaded per second"},
+        {"scan_seconds", "Time taken to scan the code"},
+        {"scan_files_per_second", "Files scanned per second"},
+        {"report_write_seconds", "Time taken to write a report"},
+        {"report_bytes", "Size of a report"},
+        {"report_bytes_per_second", "Bytes of a report written per second"},
+        {"last_run_timestamp_seconds", "Time of the last run that wrote reports of the bundle"}
+    };
+
+    private TreeMap gauges = new TreeMap();     // The labels and values of each gauge by name
+    private String  job;                        // Added as a report_job label to every gauge, or null
+
+    public RBReportMetrics() {
+    }
+
+    /**
+     * Creates a set whose gauges all have a report_job label holding the name of a report
+     * job, so that the sets of several jobs may be merged.
+     */
+
+    public RBReportMetrics(String job) {
+        this.job = job;
+    }
+
+    /**
+     * Sets a gauge. The labels are given as alternating names and values.
+     */
+
+    public synchronized void set(String name, String labels[], double value) {
+        TreeMap series = (TreeMap)gauges.get(name);
+        if (series == null) {
+            series = new TreeMap();
+            gauges.put(name, series);
+        }
+        if (job != null) {
+            String jobLabels[] = new String[labels.length + 2];
+            // Prometheus sets the job label itself, to the name of the scrape target
+            jobLabels[0] = "report_job";
+            jobLabels[1] = job;
+            System.arraycopy(labels, 0, jobLabels, 2, labels.length);
+            labels = jobLabels;
+        }
+        series.put(formatLabels(labels), Double.valueOf(value));
+    }
+
+    /**
+     * Copies all of the gauges of another set into this one, replacing those with the
+     * same name and labels.
+     */
+
+    public void putAll(RBReportMetrics metrics) {
+        // Copy first, so that both sets are never locked at once
+        TreeMap copy;
+        synchronized (metrics) {
+            copy = new TreeMap();
+            Iterator it = metrics.gauges.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry entry = (Map.Entry)it.next();
+                copy.put(entry.getKey(), new TreeMap((TreeMap)entry.getValue()));
+            }
+        }
+        synchronized (this) {
+            Iterator it = copy.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry entry = (Map.Entry)it.next();
+                TreeMap series = (TreeMap)gauges.get(entry.getKey());
+                if (series == null) gauges.put(entry.getKey(), entry.getValue());
+                else series.putAll((TreeMap)entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Sets the gauges of the items of each locale of a bundle
+     */
+
+    public void setStatistics(RBReportStatistics stats) {
+        String bundle = stats.getManager().getBaseClass();
+        int locales = 0;
+        for (int i=0; i < stats.getBundleCount(); i++) {
+            Bundle dict = stats.getBundle(i);
+            if (dict == null) continue;
+            locales++;
+            String labels[] = {"bundle", bundle, "locale", getLocaleName(dict)};
+            set("bundle_items", labels, stats.getItemCount(i));
+            set("bundle_untranslated_items", labels, stats.getUntranslatedCount(i));
+            set("bundle_duplicate_items", labels, (dict.duplicates == null ? 0 : dict.duplicates.size()));
+        }
+        set("bundle_locales", new String[] {"bundle", bundle}, locales);
+    }
+
+    /**
+     * Sets the gauges of the code scan of the base class of a bundle, together with the
+     * time the scan took.
+     */
+
+    public void setScan(RBReportStatistics stats, RBReporterScanner scanner, long scanMillis) throws IOException {
+        Bundle base = stats.getBundle(0);
+        String labels[] = {"bundle", stats.getManager().getBaseClass()};
+        set("scan_resources_found", labels, scanner.getNumberResourcesFound(base));
+        set("scan_missing_resources", labels, scanner.getNumberMissingResources(base));
+        set("scan_unused_resources", labels, scanner.getNumberUnusedResources(base));
+        int files = 0;
+        Vector v = scanner.getScanStatistics();
+        for (int i=0; i < v.size(); i++) {
+            files += ((ScanStatistics)v.elementAt(i)).getFilesAccepted();
+        }
+        set("scan_files", labels, files);
+        set("scan_seconds", labels, scanMillis / 1000.0);
+        if (scanMillis > 0) set("scan_files_per_second", labels, files * 1000.0 / scanMillis);
+    }
+
+    /**
+     * Sets the gauges of the time taken to load a bundle
+     */
+
+    public void setLoad(RBReportStatistics stats, long loadMillis) {
+        String labels[] = {"bundle", stats.getManager().getBaseClass()};
+        int items = 0;
+        for (int i=0; i < stats.getBundleCount(); i++) items += stats.getItemCount(i);
+        set("load_seconds", labels, loadMillis / 1000.0);
+        if (loadMillis > 0) set("load_items_per_second", labels, items * 1000.0 / loadMillis);
+    }
+
+    /**
+     * Sets the gauges of the time taken to write a report and of its size
+     */
+
+    public void setReport(RBReportStatistics stats, String format, long writeMillis, long bytes) {
+        String labels[] = {"bundle", stats.getManager().getBaseClass(), "format", format};
+        set("report_write_seconds", labels, writeMillis / 1000.0);
+        set("report_bytes", labels, bytes);
+        if (writeMillis > 0) set("report_bytes_per_second", labels, bytes * 1000.0 / writeMillis);
+    }
+
+    /**
+     * Writes the gauges in the Prometheus text exposition format
+     */
+
+    public void write(Writer out) throws IOException {
+        TreeMap copy = new TreeMap();
+        synchronized (this) {
+            Iterator it = gauges.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry entry = (Map.Entry)it.next();
+                copy.put(entry.getKey(), new TreeMap((TreeMap)entry.getValue()));
+            }
+        }
+        Iterator it = copy.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry entry = (Map.Entry)it.next();
+            String name = (String)entry.getKey();
+            String help = getHelp(name);
+            if (help != null) out.write("# HELP " + PREFIX + name + " " + help + "\n");
+            out.write("# TYPE " + PREFIX + name + " gauge\n");
+            Iterator series = ((TreeMap)entry.getValue()).entrySet().iterator();
+            while (series.hasNext()) {
+                Map.Entry sample = (Map.Entry)series.next();
+                out.write(PREFIX + name + sample.getKey() + " " + formatValue(((Double)sample.getValue()).doubleValue()) + "\n");
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the gauges to a file. The file is replaced in a single step, so that a
+     * collector reading it never sees it half written.
+     */
+
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            // Some platforms do not rename over an existing file
+            file.delete();
+            if (!temp.renameTo(file)) throw new IOException("Unable to write " + file);
+        }
+    }
+
+    static String getLocaleName(Bundle dict) {
+        return (dict.encoding == null || dict.encoding.length() < 1 ? "base" : dict.encoding);
+    }
+
+    private static String getHelp(String name) {
+        for (int i=0; i < HELP.length; i++) {
+            if (HELP[i][0].equals(name)) return HELP[i][1];
+        }
+        return null;
+    }
+
+    private static String formatLabels(String labels[]) {
+        if (labels == null || labels.length < 2) return "";
+        StringBuffer buffer = new StringBuffer("{");
+        for (int i=0; i+1 < labels.length; i += 2) {
+            if (i > 0) buffer.append(',');
+            buffer.append(labels[i]);
+            buffer.append("=\"");
+            String value = (labels[i+1] == null ? "" : labels[i+1]);
+            for (int j=0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') buffer.append('\\');
+                if (c == '\n') buffer.append("\\n");
+                else buffer.append(c);
+            }
+            buffer.append('"');
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return String.valueOf((long)value);
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a set of RBReportMetrics at the path /metrics, so that a monitoring system can
+ * collect them directly from a running RBReportDaemon. The server listens on the loopback
+ * address only, unless another address is given.
+ *
+ * @see com.ibm.rbm.RBReportMetrics
+ */
+public class RBReportMetricsServer {
+    private RBReportMetrics metrics;
+    private HttpServer      server;
+
+    public RBReportMetricsServer(RBReportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts serving the metrics on a port of the loopback address
+     */
+
+    public void start(int port) throws IOException {
+        start(new InetSocketAddress(InetAddress.getByName(null), port));
+    }
+
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) return;
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    Writer writer = new OutputStreamWriter(bytes, "UTF-8");
+                    metrics.write(writer);
+                    exchange.getResponseHeaders().set("Content-Type", RBReportMetrics.CONTENT_TYPE);
+                    if (exchange.getRequestMethod().equals("HEAD")) {
+                        exchange.sendResponseHeaders(200, -1);
+                        return;
+                    }
+                    exchange.sendResponseHeaders(200, bytes.size());
+                    OutputStream os = exchange.getResponseBody();
+                    bytes.writeTo(os);
+                    os.close();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        // One thread is plenty for a scrape every few seconds
+        server.setExecutor(null);
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on, or -1 if it is not running
+     */
+
+    public synchronized int getPort() {
+        return (server == null ? -1 : server.getAddress().getPort());
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        server = null;
+    }
+}
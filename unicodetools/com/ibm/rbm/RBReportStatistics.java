@@ -0,0 +1,178 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The per locale figures of a report, gathered in a single pass over the items of each
+ * bundle. The report writers for the different formats share one instance, so that the
+ * items are examined only once no matter how many reports are written. Once gathered the
+ * figures are never changed, so the writers may read them at the same time.
+ *
+ * @see com.ibm.rbm.RBReporter
+ */
+public class RBReportStatistics {
+    private RBManager rbm;
+    private Bundle    bundles[];
+    private int       itemCounts[];
+    private String    untranslatedKeys[][];         // In the order of the bundle's items
+    private String    groupNames[][];               // In ascending order
+    private int       groupCounts[][][];            // Item and untranslated counts of each group
+
+    public RBReportStatistics(RBManager rbm) {
+        init(rbm);
+        for (int i=0; i < bundles.length; i++) {
+            if (bundles[i] != null) computeBundle(i);
+        }
+    }
+
+    /**
+     * Gathers the figures of each locale as a separate task of an executor, and waits for
+     * all of them to finish.
+     */
+
+    public RBReportStatistics(RBManager rbm, ExecutorService executor) throws IOException {
+        init(rbm);
+        Vector pending = new Vector();
+        for (int i=0; i < bundles.length; i++) {
+            if (bundles[i] == null) continue;
+            final int index = i;
+            pending.addElement(executor.submit(new Runnable() {
+                public void run() {
+                    computeBundle(index);
+                }
+            }));
+        }
+        for (int i=0; i < pending.size(); i++) {
+            try {
+                ((Future)pending.elementAt(i)).get();
+            } catch (InterruptedException ie) {
+                throw new InterruptedIOException("Report statistics interrupted");
+            } catch (ExecutionException ee) {
+                if (ee.getCause() instanceof RuntimeException) throw (RuntimeException)ee.getCause();
+                throw new IOException(ee.getCause().toString());
+            }
+        }
+    }
+
+    private void init(RBManager rbm) {
+        this.rbm = rbm;
+        Vector v = rbm.getBundles();
+        bundles = new Bundle[v.size()];
+        v.copyInto(bundles);
+        itemCounts = new int[bundles.length];
+        untranslatedKeys = new String[bundles.length][];
+        groupNames = new String[bundles.length][];
+        groupCounts = new int[bundles.length][][];
+    }
+
+    private void computeBundle(int index) {
+        Hashtable items = bundles[index].allItems;
+        itemCounts[index] = items.size();
+        String keys[] = new String[items.size()];
+        int count = 0;
+        TreeMap groups = new TreeMap();
+        Enumeration elems = items.elements();
+        while (elems.hasMoreElements()) {
+            BundleItem item = (BundleItem)elems.nextElement();
+            String groupName = (item.getParentGroup() == null ? "" : item.getParentGroup().getName());
+            int counts[] = (int[])groups.get(groupName);
+            if (counts == null) {
+                counts = new int[2];
+                groups.put(groupName, counts);
+            }
+            counts[0]++;
+            if (!item.isTranslated()) {
+                keys[count++] = item.getKey();
+                counts[1]++;
+            }
+        }
+        untranslatedKeys[index] = new String[count];
+        System.arraycopy(keys, 0, untranslatedKeys[index], 0, count);
+        groupNames[index] = (String[])groups.keySet().toArray(new String[groups.size()]);
+        groupCounts[index] = (int[][])groups.values().toArray(new int[groups.size()][]);
+    }
+
+    /**
+     * Returns the resource bundle the statistics were gathered from
+     */
+
+    public RBManager getManager() {
+        return rbm;
+    }
+
+    /**
+     * Returns the number of locales, including the base class
+     */
+
+    public int getBundleCount() {
+        return bundles.length;
+    }
+
+    /**
+     * Returns the bundle of a locale, or null if no bundle is loaded at that index
+     */
+
+    public Bundle getBundle(int index) {
+        return bundles[index];
+    }
+
+    /**
+     * Returns the number of NLS items of a locale
+     */
+
+    public int getItemCount(int index) {
+        return itemCounts[index];
+    }
+
+    /**
+     * Returns the number of NLS items of a locale that are not translated
+     */
+
+    public int getUntranslatedCount(int index) {
+        return (untranslatedKeys[index] == null ? 0 : untranslatedKeys[index].length);
+    }
+
+    /**
+     * Returns the keys of the NLS items of a locale that are not translated
+     */
+
+    public String[] getUntranslatedKeys(int index) {
+        return (untranslatedKeys[index] == null ? new String[0] : untranslatedKeys[index]);
+    }
+
+    /**
+     * Returns the names of the groups of a locale that hold at least one item, in
+     * ascending order
+     */
+
+    public String[] getGroupNames(int index) {
+        return (groupNames[index] == null ? new String[0] : groupNames[index]);
+    }
+
+    /**
+     * Returns the number of NLS items in the i-th group returned by getGroupNames()
+     */
+
+    public int getGroupItemCount(int index, int group) {
+        return groupCounts[index][group][0];
+    }
+
+    /**
+     * Returns the number of NLS items not translated in the i-th group returned by
+     * getGroupNames()
+     */
+
+    public int getGroupUntranslatedCount(int index, int group) {
+        return groupCounts[index][group][1];
+    }
+}
@@ -65,8 +65,9 @@ public class RBReporter extends JFrame {
 	Date lastReport = null;
 	Date nextReport = null;
 	boolean running = false;
-    /** For generating a report */
-    RBManager rbm;
+	RBManager bundle = null;                        // Bundle of the report methods, loaded by loadBundle()
+	File bundleFile = null;                         // File the bundle was loaded from
+	long bundleModified = 0;                        // Modification time of that file when it was loaded
 	
 	private RBReporter(boolean makeVisible) {
 		try {
@@ -127,234 +128,34 @@ public class RBReporter extends JFrame {
 	
 	// Called when a report should be generated. Does not check if it should be generated
 	private void generateReports() throws IOException {
-		File baseFile = new File(bundleField.getText());
-		if (baseFile == null || !baseFile.isFile())
-		    throw new IOException("Specified input file is unusable");
-		File directory = new File(directoryField.getText());
-		rbm = new RBManager(baseFile);
-		
-		if (rbm == null)
-		    throw new IOException("Unable to load the resource bundle file");
-		if (directory == null || !directory.isDirectory())
-		    throw new IOException("Specified output directory is unusable");
-		RBReporterScanner scanner = null;
-		if (scanCheck.isSelected()) {
-			scanner = new RBReporterScanner((Bundle)rbm.getBundles().elementAt(0),
-										    new File(scanField.getText()));
-			scanner.performScan();
-		}
-		if (textCheck.isSelected()) {
-			File textFile = new File(directory, textField.getText());
-			String textReport = getAllLanguageReports(textCombo.getSelectedIndex() == 0);
-			if (scanCheck.isSelected()) {
-				// Add file scan information
-				StringBuffer buffer = new StringBuffer();
-				buffer.append("\n\nCode Scan Results:\n\n");
-				buffer.append("\n\tNumber of unique resources found: " + scanner.getNumberResourcesFound());
-				buffer.append("\n\tNumber of resources missing from bundle: " + scanner.getNumberMissingResources());
-				// Missing resources from the bundle
-				buffer.append("\n\tMissing Resources: ");
-				Vector v = scanner.getMissingResources();
-				for (int i=0; i < v.size(); i++) {
-					ScanResult result = (ScanResult)v.elementAt(i);
-					if (textCombo.getSelectedIndex() == 0) {
-						buffer.append("\n\t\t" + result.getName() + " (" + result.getOccurances().size() + " Occurances)");
-						buffer.append("\n\t\t\t" + result.getOccurances());
-					} else {
-						buffer.append((i==0 ? "" : ", ") + result.getName() + " (" + result.getOccurances().size() + " Occurances)");
-					}
-				}
-				// Bundle resources not found in the code
-				buffer.append("\n\tNumber of potentially unused resources in bundle: " + scanner.getNumberUnusedResources());
-				v = scanner.getUnusedResources();
-				for (int i=0; i < v.size(); i++) {
-					ScanResult result = (ScanResult)v.elementAt(i);
-					if (textCombo.getSelectedIndex() == 0) {
-						buffer.append("\n\t\t" + result.getName() + " (Group: " + result.getGroupName() + ")");
-					} else {
-						buffer.append((i==0 ? "" : ", ") + result.getName());
-					}
-				}
-				
-				textReport = textReport + buffer.toString();
-			}
-			FileWriter fw = new FileWriter(textFile);
-			fw.write(textReport);
-			fw.flush();
-			fw.close();
-		}
-		if (htmlCheck.isSelected()) {
-			File htmlFile = new File(directory, htmlField.getText());
-			Document htmlReport = getHTMLReportz(htmlCombo.getSelectedIndex() == 0);
-			if (scanCheck.isSelected()) {
-				// Add file scan information
-				Element html_elem = htmlReport.getDocumentElement();
-				NodeList nl = html_elem.getElementsByTagName("BODY");
-				Element body_elem = (Element)nl.item(0);
-				Element h2_elem = htmlReport.createElement("H2");
-				Text    h2_text = htmlReport.createTextNode("Code Scan Results");
-				Element block_elem = htmlReport.createElement("BLOCKQUOTE");
-				Element p1_elem = htmlReport.createElement("P");
-				Element p2_elem = htmlReport.createElement("P");
-				Element p3_elem = htmlReport.createElement("P");
-				Text    p1_text = htmlReport.createTextNode("Number of unique resources found: " +
-															scanner.getNumberMissingResources());
-				Text    p2_text = htmlReport.createTextNode("Number of resources missing from bundle: " +
-															scanner.getNumberMissingResources());
-				Text    p3_text = htmlReport.createTextNode("Number of potentially unused resources in bundle: " +
-															scanner.getNumberUnusedResources());
-				
-				h2_elem.appendChild(h2_text);
-				p1_elem.appendChild(p1_text);
-				p2_elem.appendChild(p2_text);
-				p3_elem.appendChild(p3_text);
-				block_elem.appendChild(p1_elem);
-				block_elem.appendChild(p2_elem);
-				block_elem.appendChild(p3_elem);
-				body_elem.appendChild(h2_elem);
-				body_elem.appendChild(block_elem);
-				
-				// Missing resources from the bundle
-				Text   missing_text = null;
-				Vector v = scanner.getMissingResources();
-				if (htmlCombo.getSelectedIndex() == 0) {
-					Element ul_elem = htmlReport.createElement("UL");
-					missing_text = htmlReport.createTextNode("Missing Resources:");
-					ul_elem.appendChild(missing_text);
-					for (int i=0; i < v.size(); i++) {
-						ScanResult result = (ScanResult)v.elementAt(i);
-						Element li_elem = htmlReport.createElement("LI");
-						Element br_elem = htmlReport.createElement("BR");
-						Text    t1_text = htmlReport.createTextNode(result.getName() + " (" +
-																				  result.getOccurances().size() + " Occurances)");
-						Text    t2_text = htmlReport.createTextNode(result.getOccurances().toString());
-						li_elem.appendChild(t1_text);
-						li_elem.appendChild(br_elem);
-						li_elem.appendChild(t2_text);
-						ul_elem.appendChild(li_elem);
-					}
-					p2_elem.appendChild(ul_elem);
-				} else {
-					StringBuffer buffer = new StringBuffer();
-					buffer.append("Missing Resources: ");
-					for (int i=0; i < v.size(); i++) {
-						ScanResult result = (ScanResult)v.elementAt(i);
-						buffer.append((i==0 ? "" : ", ") + result.getName() + " (" + result.getOccurances().size() + " Occurances)");
-					}
-					missing_text = htmlReport.createTextNode(buffer.toString());
-					Element br_elem = htmlReport.createElement("BR");
-					p2_elem.appendChild(br_elem);
-					p2_elem.appendChild(missing_text);
-				}
-				// Bundle resources not found in the code
-				Text   unused_text = null;
-				v = scanner.getUnusedResources();
-				if (htmlCombo.getSelectedIndex() == 0) {
-					Element ul_elem = htmlReport.createElement("UL");
-					unused_text = htmlReport.createTextNode("Unused Resources:");
-					ul_elem.appendChild(unused_text);
-					for (int i=0; i < v.size(); i++) {
-						ScanResult result = (ScanResult)v.elementAt(i);
-						Element li_elem = htmlReport.createElement("LI");
-						Text    t1_text = htmlReport.createTextNode(result.getName() + " (Group: " +
-																				  result.getGroupName() + ")");
-						li_elem.appendChild(t1_text);
-						ul_elem.appendChild(li_elem);
-					}
-					p3_elem.appendChild(ul_elem);
-				} else {
-					StringBuffer buffer = new StringBuffer();
-					buffer.append("Unused Resources: ");
-					for (int i=0; i < v.size(); i++) {
-						ScanResult result = (ScanResult)v.elementAt(i);
-						buffer.append((i==0 ? "" : ", ") + result.getName());
-					}
-					unused_text = htmlReport.createTextNode(buffer.toString());
-					Element br_elem = htmlReport.createElement("BR");
-					p3_elem.appendChild(br_elem);
-					p3_elem.appendChild(unused_text);
-				}
-			}
-			FileWriter fw = new FileWriter(htmlFile);
-			OutputFormat of = new OutputFormat(htmlReport);
-			of.setIndenting(true);
-			of.setEncoding("ISO-8859-1");
-			HTMLSerializer serializer = new HTMLSerializer(fw, of);
-			serializer.serialize(htmlReport);
-		}
-		if (xmlCheck.isSelected()) {
-			File xmlFile = new File(directory, xmlField.getText());
-			Document xmlReport = getXMLReportz(xmlCombo.getSelectedIndex() == 0);
-			if (scanCheck.isSelected()) {
-				// Add file scan information
-				Element root = xmlReport.getDocumentElement();
-				Element code_scan_elem = xmlReport.createElement("CODE_SCAN");
-				Element unique_elem = xmlReport.createElement("UNIQUE_RESOURCES");
-				Element missing_elem = xmlReport.createElement("MISSING_RESOURCES");
-				Element unused_elem = xmlReport.createElement("UNUSED_RESOURCES");
-				Element unique_total_elem = xmlReport.createElement("TOTAL");
-				Element missing_total_elem = xmlReport.createElement("TOTAL");
-				Element unused_total_elem = xmlReport.createElement("TOTAL");
-				Text    unique_total_text = xmlReport.createTextNode(String.valueOf(scanner.getNumberMissingResources()));
-				Text    missing_total_text = xmlReport.createTextNode(String.valueOf(scanner.getNumberMissingResources()));
-				Text    unused_total_text = xmlReport.createTextNode(String.valueOf(scanner.getNumberUnusedResources()));
-				
-				unique_total_elem.appendChild(unique_total_text);
-				missing_total_elem.appendChild(missing_total_text);
-				unused_total_elem.appendChild(unused_total_text);
-				unique_elem.appendChild(unique_total_elem);
-				missing_elem.appendChild(missing_total_elem);
-				unused_elem.appendChild(unused_total_elem);
-				code_scan_elem.appendChild(unique_elem);
-				code_scan_elem.appendChild(missing_elem);
-				code_scan_elem.appendChild(unused_elem);
-				root.appendChild(code_scan_elem);
-				// Missing resources from the bundle
-				Vector v = scanner.getMissingResources();
-				for (int i=0; i < v.size(); i++) {
-					ScanResult result = (ScanResult)v.elementAt(i);
-					Element item_elem = xmlReport.createElement("RESOURCE");
-					item_elem.setAttribute("NAME",result.getName());
-					if (xmlCombo.getSelectedIndex() == 0) {
-						Vector occ_v = result.getOccurances();
-						for (int j=0; j < occ_v.size(); j++) {
-							Occurance occ = (Occurance)occ_v.elementAt(j);
-							Element occ_elem = xmlReport.createElement("OCCURANCE");
-							occ_elem.setAttribute("FILE_NAME", occ.getFileName());
-							occ_elem.setAttribute("FILE_PATH", occ.getFilePath());
-							occ_elem.setAttribute("LINE_NUMBER", String.valueOf(occ.getLineNumber()));
-							item_elem.appendChild(occ_elem);
-						}
-					}
-					missing_elem.appendChild(item_elem);
-				}
-				// Bundle resources not found in the code
-				v = scanner.getUnusedResources();
-				for (int i=0; i < v.size(); i++) {
-					ScanResult result = (ScanResult)v.elementAt(i);
-					Element item_elem = xmlReport.createElement("RESOURCE");
-					item_elem.setAttribute("NAME",result.getName());
-					item_elem.setAttribute("GROUP",result.getGroupName());
-					unused_elem.appendChild(item_elem);
-				}
-			}
-			FileWriter fw = new FileWriter(xmlFile);
-			OutputFormat of = new OutputFormat(xmlReport);
-			of.setIndenting(true);
-			of.setEncoding("ISO-8859-1");
-			XMLSerializer serializer = new XMLSerializer(fw, of);
-			serializer.serialize(xmlReport);
-		}
+		// Reports whose bundle and scanned code have not changed are not written again
+		int count = new RBReportGenerator().generate(getReportJob());
 		
 		lastReport = new Date();
 		nextReport = generateNextReportDate();
 		updateDateFields();
 		if (!isVisible()) {
-			System.out.println("RBReporter: Generated report at " + lastReport.toString());
+			if (count > 0) System.out.println("RBReporter: Generated report at " + lastReport.toString());
+			else System.out.println("RBReporter: Skipped report at " + lastReport.toString() + ", nothing has changed");
 			System.out.println("RBReporter: Next report at " + nextReport.toString());
 		}
 	}
 	
+	// Returns the report settings currently shown in the window
+	private RBReportJob getReportJob() {
+		RBReportJob job = new RBReportJob("RBReporter");
+		job.setBundleFile(new File(bundleField.getText()));
+		job.setOutputDirectory(new File(directoryField.getText()));
+		if (scanCheck.isSelected()) job.setScanFile(new File(scanField.getText()));
+		if (textCheck.isSelected())
+			job.setReport(RBReportJob.FORMAT_TEXT, textField.getText(), textCombo.getSelectedIndex() == 0);
+		if (htmlCheck.isSelected())
+			job.setReport(RBReportJob.FORMAT_HTML, htmlField.getText(), htmlCombo.getSelectedIndex() == 0);
+		if (xmlCheck.isSelected())
+			job.setReport(RBReportJob.FORMAT_XML, xmlField.getText(), xmlCombo.getSelectedIndex() == 0);
+		return job;
+	}
+	
 	// Assumes the last report was just generated, and computes the next report time accordingly
 	private Date generateNextReportDate() {
 		Date retDate = null;
@@ -397,50 +198,40 @@ public class RBReporter extends JFrame {
 		return retDate;
 	}
 
+    // The reports are written by RBReportGenerator, which only loads the bundle when a
+    // report has to be written. The methods below load the bundle named in the window once,
+    // and again only when another file is named or the file has changed.
+    private RBManager loadBundle() throws IOException {
+        File baseFile = new File(bundleField.getText());
+        if (bundle == null || !baseFile.equals(bundleFile) || baseFile.lastModified() != bundleModified) {
+            long modified = baseFile.lastModified();
+            // A report does not make the bundle one of the recently opened files
+            bundle = new RBManager(baseFile, false);
+            bundleFile = baseFile;
+            bundleModified = modified;
+        }
+        return bundle;
+    }
+
     /**
      * Returns a string based text report about all of the language files on record
      */
-    public String getAllLanguageReports(boolean detailed) {
-        String retStr = new String();
-        retStr =    "Resource Bundle Report: " + rbm.getBaseClass();
-        retStr += "\nReport Generated:       " + (new Date()).toString() + "\n\n";
-        Vector bundles = rbm.getBundles();
-        for (int i=0; i < bundles.size(); i++) {
-            retStr += getLanguageReport(detailed, (Bundle)bundles.elementAt(i));	
+    public String getAllLanguageReports(boolean detailed) throws IOException {
+        RBManager rbm = loadBundle();
+        StringWriter writer = new StringWriter();
+        try {
+            new RBTextReportWriter(rbm, detailed).write(writer, null);
+        } catch (IOException ioe) {
+            // A StringWriter does not throw
         }
-        return retStr;
-    }
-	
-    private String getLanguageReport(boolean detailed, Bundle dict) {
-        if (dict == null) return "";
-        String retStr = new String();
-        retStr += "\nLanguage: " + (dict.language == null ? dict.encoding : dict.language);
-        retStr += (dict.country == null ? "" : " - Country: " + dict.country);
-        retStr += (dict.variant == null ? "" : " - Variant: " + dict.variant);
-        retStr += "\n";
-        retStr += "  Number of NLS items in the file: " + dict.allItems.size() + "\n";
-		
-        int untranslated = 0;
-        String untransStr = new String();
-        Enumeration items = dict.allItems.elements();
-        while (items.hasMoreElements()) {
-            BundleItem tempItem = (BundleItem)items.nextElement();
-            if (tempItem.isTranslated()) continue;
-            untranslated++;
-            untransStr += " " + tempItem.getKey();
-        }
-        retStr += "  Number of NLS items not translated: " + untranslated;
-        if (detailed) {
-            retStr += "\n  Untranslated NLS keys: " + untransStr;	
-        }
-		
-        return retStr;
+        return writer.toString();
     }
     
     /**
      * Returns an XHTML formatted report on the status of the currently opened resource bundle
      */
-    public Document getHTMLReportz(boolean detailed) {
+    public Document getHTMLReportz(boolean detailed) throws IOException {
+        RBManager rbm = loadBundle();
         Document html = new DocumentImpl();
         Element root = html.createElement("HTML");
         html.appendChild(root);
@@ -477,7 +268,8 @@ public class RBReporter extends JFrame {
     /**
      * Returns a HTML report as a String object on the status of the currently opened resource bundle
      */
-    public String getHTMLReport(boolean detailed) {
+    public String getHTMLReport(boolean detailed) throws IOException {
+        RBManager rbm = loadBundle();
         StringBuffer buffer = new StringBuffer();
         buffer.append("<HTML>\n<HEAD><TITLE>Resource Bundle Report - " + rbm.getBaseClass() + "</TITLE></HEAD>\n<BODY>\n");
         buffer.append("<CENTER><H1>Resource Bundle Report: " + rbm.getBaseClass() + "</H1></CENTER>\n");
@@ -565,7 +357,8 @@ public class RBReporter extends JFrame {
      * Returns an XML formatted report on the status of the currently open resource bundle
      */ 
 	
-    public Document getXMLReportz(boolean detailed) {
+    public Document getXMLReportz(boolean detailed) throws IOException {
+        RBManager rbm = loadBundle();
         Document xml = new DocumentImpl();
         Element root = xml.createElement("REPORT");
         root.setAttribute("BASECLASS", rbm.getBaseClass());
@@ -583,7 +376,8 @@ public class RBReporter extends JFrame {
      * Returns an XML formatted report as a String object on the status of the currently open resource bundle
      */
     
-    public String getXMLReport(boolean detailed) {
+    public String getXMLReport(boolean detailed) throws IOException {
+        RBManager rbm = loadBundle();
         StringBuffer buffer = new StringBuffer();
         buffer.append("<?xml version=\"1.0\"?>\n");
         buffer.append("<REPORT BASECLASS=\"" + rbm.getBaseClass() + "\" DATE=\"" + (new Date()).toString() + "\">\n");
@@ -1153,14 +947,22 @@ public class RBReporter extends JFrame {
 	private static String getUsage() {
 		return "\nRBReporter Command Line Usage:\n\n" +
 			   "Default Usage (GUI):   java com.ibm.rbm.RBReporter\n" +
-			   "Options Usage:         java com.ibm.rbm.RBReporter [-gui | -now | -line]\n\n" + 
+			   "Options Usage:         java com.ibm.rbm.RBReporter [-profile] [-gui | -now | -line]\n\n" + 
 			   "Options:               -gui     Run the Graphical User Interface\n" +
 			   "                       -now     Execute the Report Generation Immediately\n" +
-			   "                       -line    Run the Reporter without the GUI";
+			   "                       -line    Run the Reporter without the GUI\n" +
+			   "                       -profile Print the time spent loading and scanning on exit\n\n" +
+			   "To run the jobs of a jobs file without any window, use com.ibm.rbm.RBReportDaemon";
 	}
 	
 	public static void main(String args[]) {
 	    RBReporter reporter;
+		if (args.length > 0 && args[0].equals("-profile")) {
+			RBInstrumentation.profileUntilExit(System.out);
+			String rest[] = new String[args.length-1];
+			System.arraycopy(args, 1, rest, 0, rest.length);
+			args = rest;
+		}
 		if (args.length == 1) {
 			if (args[0].equals("-gui")) {
 			    reporter = new RBReporter(true);	
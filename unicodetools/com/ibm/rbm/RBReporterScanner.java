@@ -8,157 +8,450 @@ package com.ibm.rbm;
 
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
-
-import org.apache.xerces.parsers.DOMParser;
-import org.w3c.dom.*;
-import org.xml.sax.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * RBReporterScaner is a utility class for RBReporter. It creates a report from an xml settings
  * file that scans code for resources and compares them against a resource bundle.
+ * <p>
+ * A scanner may also be created for several bundles, such as all of the bundles of a project.
+ * The code is then walked and read only once, and the missing and unused resources of each
+ * bundle are obtained from the methods taking a bundle argument.
  * 
  * @author Jared Jackson
  * @see com.ibm.rbm.RBReporter
  */
 public class RBReporterScanner {
-	private Bundle       bundle;
-	private Document     config;
-	private Hashtable    fileRules;
-	private Hashtable    parseRules;
-	private Hashtable    results;
-	private Hashtable    missing;
+	private Vector       bundles;
+	private ScanPlan     plan;
+	private BundleKeySet keys;                       // The keys of all of the bundles
+	private BundleKeySet bundleKeys[];               // The keys of each bundle
+	private boolean      shared[];                   // Whether a key is in every bundle
+	private ScanResult   results[];
+	private Hashtable    missing;                    // Keys that are not in any bundle
+	private ScanResultSpool spool;                   // Holds the missing results when spilling to disk
+	private AtomicIntegerArray counts;               // Occurance counts of the bundle keys when spilling
 	private boolean      resultsFound;
+	private Vector       statistics = new Vector();
+	private ExecutorService workers;
+	private Semaphore    queued;                     // Limits the files waiting for a worker
+	private Throwable    failure;                    // The first error of the scan workers
+	
+	// The number of files per worker that may be waiting to be scanned
+	private static final int FILES_QUEUED_PER_THREAD = 4;
 	
 	protected RBReporterScanner(Bundle bundle, File configFile) throws IOException {
+		this(singleton(bundle), configFile);
+	}
+	
+	/**
+	 * Creates a scanner comparing the code against each of a Vector of bundles.
+	 */
+	
+	protected RBReporterScanner(Vector bundles, File configFile) throws IOException {
+		this(bundles, ScanPlan.forFile(configFile));
+	}
+	
+	/**
+	 * Creates a scanner comparing the code against each of a Vector of bundles, using an
+	 * already compiled scan file.
+	 */
+	
+	public RBReporterScanner(Vector bundles, ScanPlan plan) {
 		resultsFound = false;
-		this.bundle = bundle;
+		this.bundles = bundles;
+		this.plan = plan;
 		
-		try {
-			InputSource is = new InputSource(new FileInputStream(configFile));
-			DOMParser parser = new DOMParser();
-			parser.parse(is);
-			config = parser.getDocument();
-		} catch (SAXException saxe) {
-			throw new IOException("Illegal XML Document: " + saxe.getMessage());
+		// The scan workers look keys up in immutable sets, without locking
+		bundleKeys = new BundleKeySet[bundles.size()];
+		HashSet allKeys = new HashSet();
+		for (int i=0; i < bundles.size(); i++) {
+			Bundle bundle = (Bundle)bundles.elementAt(i);
+			bundleKeys[i] = new BundleKeySet(bundle);
+			allKeys.addAll(bundle.allItems.keySet());
 		}
-		
-		Element root = config.getDocumentElement();
-		fileRules = getFileRules(root);
-		parseRules = getParseRules(root);
-		
-		results = new Hashtable();
-		Enumeration keys = bundle.allItems.keys();
-		while (keys.hasMoreElements()) {
-			String key = (String)keys.nextElement();
-			BundleItem item = (BundleItem)bundle.allItems.get(key);
-			results.put(key, new ScanResult(item));
+		keys = new BundleKeySet(allKeys);
+		results = new ScanResult[keys.size()];
+		shared = new boolean[keys.size()];
+		for (int i=0; i < results.length; i++) {
+			String key = keys.getKey(i);
+			shared[i] = true;
+			for (int j=0; j < bundles.size(); j++) {
+				if (!bundleKeys[j].contains(key)) {
+					shared[i] = false;
+				} else if (results[i] == null) {
+					results[i] = new ScanResult(((Bundle)bundles.elementAt(j)).getBundleItem(key));
+				}
+			}
 		}
 		
 		missing = new Hashtable();
 	}
 	
-	protected int getNumberResourcesFound() {
-		return results.size();
+	private static Vector singleton(Bundle bundle) {
+		Vector v = new Vector();
+		v.addElement(bundle);
+		return v;
 	}
 	
-	protected int getNumberMissingResources() {
-		return missing.size();
+	/**
+	 * Creates a scanner for the base bundles of all of the resource bundles listed in a
+	 * project file. The project file lists a bundle name and the location of its base file
+	 * on alternating lines.
+	 */
+	
+	protected static RBReporterScanner createProjectScanner(File projectFile, File configFile) throws IOException {
+		Vector files = new Vector();
+		readProjectFile(projectFile, new Vector(), files);
+		Vector v = new Vector();
+		for (int i=0; i < files.size(); i++) {
+			RBManager rbm = new RBManager((File)files.elementAt(i), false);
+			v.addElement(rbm.getBundles().elementAt(0));
+		}
+		return new RBReporterScanner(v, configFile);
+	}
+	
+	/**
+	 * Reads a project file, adding the name of each bundle to one Vector and the File of its
+	 * base class file to the other.
+	 */
+	
+	static void readProjectFile(File projectFile, Vector names, Vector files) throws IOException {
+		BufferedReader br = new BufferedReader(new FileReader(projectFile));
+		try {
+			String line = null;
+			String name = null;
+			int linecount = 0;
+			while ((line = br.readLine()) != null) {
+				if (linecount++ % 2 == 0) {
+					name = line.trim();
+					continue;
+				}
+				if (line.trim().length() < 1) continue;
+				files.addElement(new File(line.trim()));
+				names.addElement(name);
+			}
+		} finally {
+			br.close();
+		}
+	}
+	
+	/**
+	 * Returns the bundles the code is compared against.
+	 */
+	
+	protected Vector getBundles() {
+		return bundles;
+	}
+	
+	protected int getNumberResourcesFound() throws IOException {
+		return getNumberResourcesFound(getFirstBundle());
+	}
+	
+	protected int getNumberMissingResources() throws IOException {
+		return getNumberMissingResources(getFirstBundle());
 	}
 	
 	protected int getNumberUnusedResources() {
+		return getNumberUnusedResources(getFirstBundle());
+	}
+	
+	protected int getNumberResourcesFound(Bundle bundle) throws IOException {
+		return bundleKeys[getBundleIndex(bundle)].size() + getNumberMissingResources(bundle);
+	}
+	
+	protected int getNumberMissingResources(Bundle bundle) throws IOException {
+		final BundleKeySet bkeys = bundleKeys[getBundleIndex(bundle)];
+		if (spool != null) {
+			if (bundles.size() == 1) return spool.getKeyCount();
+			final int count[] = new int[1];
+			spool.visitKeys(new ScanResultVisitor() {
+				public void visit(ScanResult result) {
+					if (!bkeys.contains(result.getName())) count[0]++;
+				}
+			});
+			return count[0];
+		}
+		int count = missing.size();
+		for (int i=0; i < results.length; i++) {
+			if (!shared[i] && !isUnused(i) && !bkeys.contains(keys.getKey(i))) count++;
+		}
+		return count;
+	}
+	
+	protected int getNumberUnusedResources(Bundle bundle) {
+		BundleKeySet bkeys = bundleKeys[getBundleIndex(bundle)];
 		int count = 0;
-		Enumeration elems = results.elements();
-		while (elems.hasMoreElements()) {
-			ScanResult result = (ScanResult)elems.nextElement();
-			if (result.getOccurances().size() < 1) count++;
+		for (int i=0; i < bkeys.size(); i++) {
+			if (isUnused(keys.indexOf(bkeys.getKey(i)))) count++;
 		}
 		return count;
 	}
 	
-	protected Vector getMissingResources() {
-		Enumeration elems = missing.elements();
-		Vector v = new Vector();
-		while (elems.hasMoreElements())
-			v.addElement(elems.nextElement());
+	/**
+	 * Returns all of the missing resources in a Vector. When the scan has spilled its results
+	 * to disk this reads them all back into memory; use visitMissingResources() instead.
+	 */
+	protected Vector getMissingResources() throws IOException {
+		return getMissingResources(getFirstBundle());
+	}
+	
+	protected Vector getMissingResources(Bundle bundle) throws IOException {
+		final Vector v = new Vector();
+		visitMissingResources(bundle, new ScanResultVisitor() {
+			public void visit(ScanResult result) {
+				v.addElement(result);
+			}
+		});
 		return v;
 	}
 	
+	/**
+	 * Hands the missing resources to a visitor one at a time. When the scan has spilled its
+	 * results to disk, the resources are visited in key order while merging the spilled runs,
+	 * so that memory use does not depend on the number of missing resources.
+	 */
+	protected void visitMissingResources(ScanResultVisitor visitor) throws IOException {
+		visitMissingResources(getFirstBundle(), visitor);
+	}
+	
+	protected void visitMissingResources(Bundle bundle, final ScanResultVisitor visitor) throws IOException {
+		final BundleKeySet bkeys = bundleKeys[getBundleIndex(bundle)];
+		if (spool != null) {
+			if (bundles.size() == 1) {
+				spool.visit(visitor);
+				return;
+			}
+			// The spool also holds the keys found in only some of the bundles
+			spool.visit(new ScanResultVisitor() {
+				public void visit(ScanResult result) throws IOException {
+					if (!bkeys.contains(result.getName())) visitor.visit(result);
+				}
+			});
+			return;
+		}
+		Hashtable bundleMissing = new Hashtable(missing);
+		// Keys of other bundles that were found in the code are missing from this one
+		for (int i=0; i < results.length; i++) {
+			if (shared[i] || isUnused(i) || bkeys.contains(keys.getKey(i))) continue;
+			ScanResult result = new ScanResult(new BundleItem(null, keys.getKey(i), "*unknown*"));
+			result.occurances = results[i].getOccurances();
+			bundleMissing.put(keys.getKey(i), result);
+		}
+		// Visited in key order, as they are from the spool
+		Vector names = new Vector(bundleMissing.keySet());
+		Collections.sort(names);
+		for (int i=0; i < names.size(); i++)
+			visitor.visit((ScanResult)bundleMissing.get(names.elementAt(i)));
+	}
+	
 	protected Vector getUnusedResources() {
-		Enumeration elems = results.elements();
+		return getUnusedResources(getFirstBundle());
+	}
+	
+	protected Vector getUnusedResources(Bundle bundle) {
+		BundleKeySet bkeys = bundleKeys[getBundleIndex(bundle)];
 		Vector v = new Vector();
-		while (elems.hasMoreElements()) {
-			ScanResult result = (ScanResult)elems.nextElement();
-			if (result.getOccurances().size() < 1) {
-				v.addElement(result);
+		for (int i=0; i < bkeys.size(); i++) {
+			String key = bkeys.getKey(i);
+			if (isUnused(keys.indexOf(key))) {
+				v.addElement(new ScanResult(bundle.getBundleItem(key)));
 			}
 		}
 		return v;
 	}
 	
-	protected boolean performScan() throws IOException {
+	private boolean isUnused(int index) {
+		if (counts != null) return counts.get(index) < 1;
+		return results[index].getOccurances().size() < 1;
+	}
+	
+	private Bundle getFirstBundle() {
+		return (Bundle)bundles.elementAt(0);
+	}
+	
+	private int getBundleIndex(Bundle bundle) {
+		for (int i=0; i < bundles.size(); i++) {
+			if (bundles.elementAt(i) == bundle) return i;
+		}
+		throw new IllegalArgumentException("Bundle not scanned: " + bundle);
+	}
+	
+	/**
+	 * Releases the temporary files used when the scan spills its results to disk.
+	 */
+	public void dispose() {
+		if (spool != null) spool.dispose();
+	}
+	
+	/**
+	 * Returns a Vector of ScanStatistics, one for each file rule applied to each scanned
+	 * directory during the last call to performScan().
+	 */
+	protected Vector getScanStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Scans the code, replacing the results of any earlier scan. Returns whether any
+	 * resource names were found.
+	 */
+	public boolean performScan() throws IOException {
 		resultsFound = false;
+		statistics = new Vector();
 		
-		Element root = config.getDocumentElement();
-		NodeList nl = root.getElementsByTagName("Scan");
-		if (nl.getLength() < 1) return resultsFound;
-		Element scan_elem = (Element)nl.item(0);
-		nl = scan_elem.getElementsByTagName("Directory");
-		for (int i=0; i < nl.getLength(); i++) {
-			Element dir_elem = (Element)nl.item(i);
-			File directory = new File(dir_elem.getAttribute("location"));
-			boolean recurse = dir_elem.getAttribute("recurse_directories").equalsIgnoreCase("true");
-			NodeList rules_list = dir_elem.getElementsByTagName("Rules");
-			if (rules_list.getLength() < 1) continue;
-			Element rules_elem = (Element)rules_list.item(0);
-			NodeList frules_list = rules_elem.getElementsByTagName("ApplyFileRule");
-			// For each file rule
-			for (int j=0; j < frules_list.getLength(); j++) {
-				Element frule_elem = (Element)frules_list.item(j);
-				FileRule frule = (FileRule)fileRules.get(frule_elem.getAttribute("name"));
-				if (frule == null) continue;
-				NodeList prules_list = frule_elem.getElementsByTagName("ApplyParseRule");
-				Vector prules_v = new Vector();
-				// For each parse rule
-				for (int k=0; k < prules_list.getLength(); k++) {
-					Element prule_elem = (Element)prules_list.item(k);
-					ParseRule prule = (ParseRule)parseRules.get(prule_elem.getAttribute("name"));
-					if (prule == null) continue;
-					prules_v.addElement(prule);
-				}
-				if (prules_v.size() < 1) continue;
-				scanDirectory(directory, frule, prules_v, recurse);
+		// With a spill threshold, at most that many missing occurances are held in memory
+		dispose();
+		spool = null;
+		counts = null;
+		missing = new Hashtable();
+		for (int i=0; i < results.length; i++) results[i].getOccurances().removeAllElements();
+		if (plan.getSpillThreshold() > 0) {
+			spool = new ScanResultSpool(plan.getSpillThreshold(), plan.getTempDirectory());
+			counts = new AtomicIntegerArray(results.length);
+		}
+		// Files are read and parsed by a pool of workers while this thread walks the directories.
+		// The walk waits whenever the workers fall behind, so the queue of files stays short.
+		workers = Executors.newFixedThreadPool(plan.getThreads());
+		queued = new Semaphore(plan.getThreads() * FILES_QUEUED_PER_THREAD);
+		failure = null;
+		try {
+			scanDirectories();
+			workers.shutdown();
+			try {
+				workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException ie) {
+				throw new InterruptedIOException("Code scan interrupted");
 			}
+			checkFailure();
+		} finally {
+			workers.shutdownNow();
+			workers = null;
+			queued = null;
 		}
+		// The workers add occurances in whatever order they finish, so they are sorted to
+		// make the reports of a scan the same from one run to the next
+		for (int i=0; i < results.length; i++) results[i].sortOccurances();
+		Enumeration elems = missing.elements();
+		while (elems.hasMoreElements()) ((ScanResult)elems.nextElement()).sortOccurances();
 		
 		return resultsFound;
 	}
 	
-	private void scanDirectory(File directory, FileRule frule, Vector prules, boolean recurse) throws IOException {
-		
-		// Recursion step
-		if (recurse) {
-			File children[] = directory.listFiles(new java.io.FileFilter(){
-				public boolean accept(File f) {
-					return f.isDirectory();
-				}
-				
-				public String getDescription() {
-					return "";
-				}
-			});
-			for (int i=0; i < children.length; i++) {
-				File new_directory = children[i];
-				scanDirectory(new_directory, frule, prules, recurse);
+	private void scanDirectories() throws IOException {
+		for (int i=0; i < plan.getDirectoryCount(); i++) {
+			ScanPlan.DirectoryPlan dir = plan.getDirectory(i);
+			Vector bindings = new Vector();
+			for (int j=0; j < dir.getFileRuleCount(); j++) {
+				FileRule frule = dir.getFileRule(j);
+				ScanStatistics stats = new ScanStatistics(dir.getDirectory().getPath(), frule.name);
+				statistics.addElement(stats);
+				bindings.addElement(new RuleBinding(frule, dir.getParseRules(j), stats));
 			}
+			// All of the file rules for a directory share a single walk of the tree
+			scanDirectory(dir.getDirectory(), dir.getDirectory().toPath(), dir.getFilter(), bindings, dir.isRecursive());
+		}
+	}
+	
+	private void scanDirectory(File directory, Path root, PathFilter filter,
+							   Vector bindings, boolean recurse) throws IOException {
+		long start = RBInstrumentation.start(RBInstrumentation.DIRECTORY_SCANNED);
+		for (int i=0; i < bindings.size(); i++) {
+			((RuleBinding)bindings.elementAt(i)).stats.directoriesVisited++;
 		}
-		// Go through each acceptable file
+		// A single listing serves both the recursion step and the file scan
 		File children[] = directory.listFiles();
+		if (children == null) return;
+		Vector subdirectories = new Vector();
+		int submitted = 0;
 		for (int i=0; i < children.length; i++) {
 			File f = children[i];
-			if (f.isDirectory() || !(frule.applyRule(f.getName()))) continue;
-			FileReader fr = new FileReader(f);
-			BufferedReader br = new BufferedReader(fr);
+			Path relative = root.relativize(f.toPath());
+			if (f.isDirectory()) {
+				// Excluded directories are pruned before we descend into them
+				if (recurse && !filter.isExcluded(relative)) subdirectories.addElement(f);
+				continue;
+			}
+			boolean filtered = !filter.accept(relative);
+			Vector prules = new Vector();
+			for (int j=0; j < bindings.size(); j++) {
+				RuleBinding binding = (RuleBinding)bindings.elementAt(j);
+				if (filtered || !(binding.frule.applyRule(f.getName()))) {
+					binding.stats.filesSkipped++;
+					continue;
+				}
+				binding.stats.filesAccepted++;
+				for (int k=0; k < binding.prules.size(); k++) {
+					Object prule = binding.prules.elementAt(k);
+					if (!prules.contains(prule)) prules.addElement(prule);
+				}
+			}
+			// Each accepted file is read once, no matter how many file rules accept it
+			if (prules.size() > 0) {
+				submitFile(f, prules);
+				submitted++;
+			}
+		}
+		RBInstrumentation.end(RBInstrumentation.DIRECTORY_SCANNED, start, directory.getPath(), 0, submitted);
+		for (int i=0; i < subdirectories.size(); i++) {
+			scanDirectory((File)subdirectories.elementAt(i), root, filter, bindings, recurse);
+		}
+	}
+	
+	private void submitFile(final File f, final Vector prules) throws IOException {
+		final Semaphore slots = queued;
+		try {
+			slots.acquire();
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException("Code scan interrupted");
+		}
+		// There is no need to walk any further once a worker has failed
+		checkFailure();
+		workers.execute(new Runnable() {
+			public void run() {
+				try {
+					scanFile(f, prules);
+				} catch (Throwable t) {
+					setFailure(t);
+				} finally {
+					slots.release();
+				}
+			}
+		});
+	}
+	
+	private synchronized void setFailure(Throwable t) {
+		if (failure == null) failure = t;
+	}
+	
+	// Passes on the first error encountered by the workers
+	private synchronized void checkFailure() throws IOException {
+		if (failure == null) return;
+		if (failure instanceof IOException) throw (IOException)failure;
+		if (failure instanceof RuntimeException) throw (RuntimeException)failure;
+		if (failure instanceof Error) throw (Error)failure;
+		throw new IOException(failure.toString());
+	}
+	
+	// Called from the scan workers
+	private void scanFile(File f, Vector prules) throws IOException {
+		long start = RBInstrumentation.start(RBInstrumentation.FILE_SCANNED);
+		// The time of each parse rule is added up over the lines of the file
+		long ruleNanos[] = null;
+		int ruleMatches[] = null;
+		if (RBInstrumentation.isEnabled(RBInstrumentation.RULE_EVALUATED)) {
+			ruleNanos = new long[prules.size()];
+			ruleMatches = new int[prules.size()];
+		}
+		int found = 0;
+		BufferedReader br = new BufferedReader(new FileReader(f));
+		try {
 			String line = null;
 			int line_count = 0;
 			// Read the file line by line
@@ -168,138 +461,66 @@ public class RBReporterScanner {
 				// Apply all parse rules to each line
 				for (int j=0; j < prules.size(); j++) {
 					ParseRule prule = (ParseRule)prules.elementAt(j);
+					long ruleStart = (ruleNanos == null ? 0 : System.nanoTime());
 					Vector temp_results = prule.applyRule(line);
+					if (ruleNanos != null) {
+						ruleNanos[j] += System.nanoTime() - ruleStart;
+						ruleMatches[j] += temp_results.size();
+					}
 					for (int k=0; k < temp_results.size(); k++) {
 						findings.addElement(temp_results.elementAt(k));
 					}
 				}
+				found += findings.size();
 				for (int j=0; j < findings.size(); j++) {
 					String name = (String)findings.elementAt(j);
+					// If the name is found in the resource bundle's key set
+					int index = keys.indexOf(name);
+					if (spool != null) {
+						// Only the missing occurances are needed for the reports, which
+						// includes keys that are missing from some of the bundles
+						if (index >= 0) counts.incrementAndGet(index);
+						if (index < 0 || !shared[index]) spool.add(name, f.getAbsolutePath(), line_count);
+						continue;
+					}
 					Occurance occ = new Occurance(f.getName(), f.getAbsolutePath(), line_count);
-					// If the name is found in the resource bundles derived hashtable
-					if (results.containsKey(name)) {
-						ScanResult scan_res = (ScanResult)results.get(name);
-						scan_res.addOccurance(occ);
+					if (index >= 0) {
+						results[index].addOccurance(occ);
 					} else {
 						// Add it to the missing results
-						ScanResult scan_res = new ScanResult(new BundleItem(null, name, "*unknown*"));
-						scan_res.addOccurance(occ);
-						missing.put(name, scan_res);
-						results.put(name, scan_res);
+						synchronized (missing) {
+							ScanResult scan_res = (ScanResult)missing.get(name);
+							if (scan_res == null) {
+								scan_res = new ScanResult(new BundleItem(null, name, "*unknown*"));
+								missing.put(name, scan_res);
+							}
+							scan_res.addOccurance(occ);
+						}
 					}
 				}
 			}
+		} finally {
+			br.close();
 		}
-	}
-	
-	private Hashtable getFileRules(Element root) {
-		Hashtable result = new Hashtable();
-		NodeList frules_list = root.getElementsByTagName("FileRules");
-		Element frules_elem = null;
-		if (frules_list.getLength() > 0) frules_elem = (Element)frules_list.item(0);
-		if (frules_elem == null) return result;
-		frules_list = frules_elem.getElementsByTagName("FileRule");
-		for (int i=0; i < frules_list.getLength(); i++) {
-			Element elem = (Element)frules_list.item(i);
-			FileRule frule = new FileRule(elem.getAttribute("name"), elem.getAttribute("starts_with"),
-										  elem.getAttribute("ends_with"), elem.getAttribute("contains"));
-			result.put(elem.getAttribute("name"), frule);
-		}
-		return result;
-	}
-	
-	private Hashtable getParseRules(Element root) {
-		Hashtable result = new Hashtable();
-		NodeList prules_list = root.getElementsByTagName("ParseRules");
-		Element prules_elem = null;
-		if (prules_list.getLength() > 0)
-			prules_elem = (Element)prules_list.item(0);
-		if (prules_elem == null)
-			return result;
-		prules_list = prules_elem.getElementsByTagName("ParseRule");
-		for (int i=0; i < prules_list.getLength(); i++) {
-			Element elem = (Element)prules_list.item(i);
-			ParseRule prule = new ParseRule(elem.getAttribute("name"), elem.getAttribute("follows"),
-											elem.getAttribute("precedes"));
-			result.put(elem.getAttribute("name"), prule);
+		if (ruleNanos != null) {
+			for (int j=0; j < ruleNanos.length; j++) {
+				RBInstrumentation.record(RBInstrumentation.RULE_EVALUATED, ((ParseRule)prules.elementAt(j)).name + " " + f.getPath(),
+										 ruleNanos[j], f.length(), ruleMatches[j]);
+			}
 		}
-		return result;
-	}
-}
-
-class FileRule {
-	String name;
-	String starts_with;
-	String ends_with;
-	String contains;
-	
-	FileRule(String name, String starts_with, String ends_with, String contains) {
-		this.name = name;
-		this.starts_with = starts_with;
-		this.ends_with = ends_with;
-		this.contains = contains;
-	}
-	
-	boolean applyRule(String source) {
-		boolean accept = true;
-		if (starts_with != null && starts_with.length() > 0 && !(source.startsWith(starts_with))) accept = false;
-		if (ends_with != null && ends_with.length() > 0 && !(source.endsWith(ends_with))) accept = false;
-		if (contains != null && contains.length() > 0 && source.indexOf(contains) < 0) accept = false;
-		return accept;
-	}
-}
-
-class ParseRule {
-	String name;
-	String before;
-	String after;
-	
-	ParseRule(String name, String before, String after) {
-		this.name = name;
-		this.before = before;
-		this.after = after;
+		RBInstrumentation.end(RBInstrumentation.FILE_SCANNED, start, f.getPath(), f.length(), found);
 	}
 	
-	// returns the vector of strings found after before and before after
-	
-	Vector applyRule(String source) {
-		Vector v = new Vector();
-		if (before != null && before.length() > 0) {
-			if (after != null && after.length() > 0) {
-				// Both before and after non-empty
-				int before_index = -1;
-				int after_index = -1;
-				while ((before_index = source.indexOf(before, ++before_index)) >= 0) {
-					//before_index = source.indexOf(before, before_index);
-					after_index = -1;
-					after_index = source.indexOf(after, before_index + before.length()+1);
-					if (after_index < 0 || before_index < 0 || before.length() < 0) {
-					    break;
-					}
-					v.addElement(source.substring(before_index + before.length(), after_index));
-					before_index = after_index;
-				}
-			} else {
-				// Before non-empty, after empty
-				int index = -1;
-				while (source.indexOf(before, ++index) >= 0) {
-					index = source.indexOf(before, index);
-					String result = source.substring(index + before.length(), source.length());
-					if (result != null && result.length() > 0) v.addElement(result);
-				}
-			}
-		} else if (after != null && after.length() > 0) {
-			// Before empty, after not
-			int index = -1;
-			while (source.indexOf(after, ++index) >= 0) {
-				index = source.indexOf(before, index);
-				String result = source.substring(0, index);
-				if (result != null && result.length() > 0) v.addElement(result);
-			}
-		} else {
-			// Before and after empty
-			v.addElement(source);
+	// The file rule and parse rules applied to one scanned directory
+	private static class RuleBinding {
+		FileRule frule;
+		Vector prules;
+		ScanStatistics stats;
+		
+		RuleBinding(FileRule frule, Vector prules, ScanStatistics stats) {
+			this.frule = frule;
+			this.prules = prules;
+			this.stats = stats;
 		}
-		return v;
 	}
-}
\ No newline at end of file
+}
@@ -32,21 +32,6 @@ public class RBTMXExporter extends RBExporter {
         
     public RBTMXExporter() {
         super();
-		
-        // Initialize the file chooser if necessary
-        if (chooser == null) {
-            chooser = new JFileChooser();
-            chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
-                public String getDescription() {
-                    return "TMX Files";
-                }
-                public boolean accept(File f) {
-                    if (f.isDirectory()) return true;
-                    if (f.getName().endsWith(".tmx")) return true;
-                    return false;
-                }
-            });
-        } // end if
     }
 	
     private String convertToISO(Date d) {
@@ -134,17 +119,35 @@ public class RBTMXExporter extends RBExporter {
 	
     public void export(RBManager rbm) throws IOException {
         if (rbm == null) return;
+        // Create the file chooser when it is first needed, as exporting without it needs no Swing
+        if (chooser == null) {
+            chooser = new JFileChooser();
+            chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
+                public String getDescription() {
+                    return "TMX Files";
+                }
+                public boolean accept(File f) {
+                    if (f.isDirectory()) return true;
+                    if (f.getName().endsWith(".tmx")) return true;
+                    return false;
+                }
+            });
+        } // end if
         // Open the Save Dialog
         int ret_val = chooser.showSaveDialog(null);
         if (ret_val != JFileChooser.APPROVE_OPTION) return;
+        export(rbm, chooser.getSelectedFile());
+    }
+
+    public void export(RBManager rbm, File file) throws IOException {
         // Retrieve basic file information
-        File file = chooser.getSelectedFile();                  // The file(s) we will be working with
         File directory = new File(file.getParent());            // The directory we will be writing to
         String base_name = file.getName();                      // The base name of the files we will write
         if (base_name == null || base_name.equals("")) base_name = rbm.getBaseClass();
         if (base_name.endsWith(".tmx")) base_name = base_name.substring(0,base_name.length()-4);
 		
         String file_name = base_name + ".tmx";
+        long start = RBInstrumentation.start(RBInstrumentation.FILE_EXPORTED);
         
         Vector bundle_v = rbm.getBundles();
         Bundle main_bundle = (Bundle)bundle_v.elementAt(0);
@@ -215,11 +218,16 @@ public class RBTMXExporter extends RBExporter {
                 body.appendChild(tu);
             } // end for - j
         } // end for - i
-        FileWriter fw = new FileWriter(new File(directory,file_name));
+        File write_file = new File(directory,file_name);
+        FileWriter fw = new FileWriter(write_file);
         OutputFormat of = new OutputFormat(xml);
         of.setIndenting(true);
         of.setEncoding("ISO-8859-1");
         XMLSerializer serializer = new XMLSerializer(fw, of);
         serializer.serialize(xml);
+        fw.close();
+        int items = 0;
+        for (int i=0; i < bundle_v.size(); i++) items += ((Bundle)bundle_v.elementAt(i)).allItems.size();
+        RBInstrumentation.end(RBInstrumentation.FILE_EXPORTED, start, write_file.getPath(), write_file.length(), items);
     }
 }
\ No newline at end of file
@@ -0,0 +1,212 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the translation units of a TMX file. Each unit is a resource whose key is the TUID
+ * attribute, with one translation for each locale it names. Groups, comments, lookups and
+ * the translated flag are read from the properties RBManager writes into its TMX files.
+ * <p>
+ * The file is read as a stream, one translation unit at a time, so that translation
+ * memories far larger than the memory of the Java platform may be imported. The resources
+ * are handed to the session in batches; the locales first named in a batch are resolved
+ * just before it.
+ *
+ * @see com.ibm.rbm.RBTMXImporter
+ * @see com.ibm.rbm.RBTMXExporter
+ */
+public class RBTMXImportReader extends RBImportReader {
+    private static final int BATCH_SIZE = 1000;                 // Resources handed to the session at a time
+
+    private RBImportSession session;
+    private Hashtable       encodings = new Hashtable();        // The locales resolved so far
+    private Vector          batchItems = new Vector();
+    private Vector          batchEncodings = new Vector();
+    private Vector          batchGroups = new Vector();
+
+    protected void read(File tmx_file, RBImportSession session) throws IOException {
+        this.session = session;
+        encodings.clear();
+        InputStream in = new BufferedInputStream(new FileInputStream(tmx_file), 65536);
+        XMLStreamReader reader = null;
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            reader = factory.createXMLStreamReader(in);
+            boolean inBody = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equalsIgnoreCase("body")) inBody = true;
+                    else if (inBody && name.equals("tu")) readUnit(reader);
+                } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equalsIgnoreCase("body")) {
+                    inBody = false;
+                }
+            }
+            flush();
+        } catch (XMLStreamException e) {
+            e.printStackTrace(System.err);
+            throw new IOException(e.getMessage());
+        } finally {
+            batchItems.removeAllElements();
+            batchEncodings.removeAllElements();
+            batchGroups.removeAllElements();
+            this.session = null;
+            try {
+                if (reader != null) reader.close();
+            } catch (XMLStreamException e) {
+                // The stream is closed below
+            }
+            in.close();
+        }
+    }
+
+    // Reads one translation unit, from just after its start tag to its end tag
+    private void readUnit(XMLStreamReader reader) throws XMLStreamException {
+        String name = reader.getAttributeValue(null, "tuid");
+        String group = null;
+        Vector items = new Vector();
+        Vector itemEncodings = new Vector();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("tu")) break;
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            String element = reader.getLocalName();
+            if (element.equals("prop")) {
+                String type = reader.getAttributeValue(null, "type");
+                String text = readText(reader);
+                if (type != null && type.equals("x-Group") && text.length() > 0) group = text;
+            } else if (element.equals("tuv")) {
+                String encoding = getLanguage(reader);
+                BundleItem item = readVariant(reader, name);
+                if (item != null && name != null && name.length() > 0) {
+                    items.addElement(item);
+                    itemEncodings.addElement(encoding);
+                }
+            }
+        }
+        if (group == null || group.length() < 1) group = session.getDefaultGroup();
+        for (int i=0; i < items.size(); i++) {
+            batchItems.addElement(items.elementAt(i));
+            batchEncodings.addElement(itemEncodings.elementAt(i));
+            batchGroups.addElement(group);
+        }
+        if (batchItems.size() >= BATCH_SIZE) flush();
+    }
+
+    // Reads one variant of a translation unit, returning null if it has no translation
+    private BundleItem readVariant(XMLStreamReader reader, String name) throws XMLStreamException {
+        String created = reader.getAttributeValue(null, "creationdate");
+        String modified = reader.getAttributeValue(null, "changedate");
+        String modifier = reader.getAttributeValue(null, "changeid");
+        String creator = reader.getAttributeValue(null, "creationid");
+        String value = null;
+        String comment = null;
+        String translated = null;
+        Hashtable lookups = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("tuv")) break;
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            String element = reader.getLocalName();
+            if (element.equals("seg")) {
+                if (value == null) value = readText(reader);
+                else readText(reader);
+            } else if (element.equals("prop")) {
+                String type = reader.getAttributeValue(null, "type");
+                String text = readText(reader);
+                if (type == null) continue;
+                if (type.equals("x-Comment")) {
+                    if (text.length() > 0) comment = text;
+                } else if (type.equals("x-Translated")) {
+                    translated = text;
+                } else if (type.equals("x-Lookup")) {
+                    if (text.indexOf("=") > 0) {
+                        if (lookups == null) lookups = new Hashtable();
+                        lookups.put(text.substring(0,text.indexOf("=")), text.substring(text.indexOf("=")+1));
+                    }
+                }
+            }
+        }
+        if (value == null || value.length() < 1) return null;
+        // Create the bundle item
+        BundleItem item = new BundleItem(null, name, value);
+        // Get creation, modification values
+        item.setCreatedDate(created == null ? "" : created);
+        item.setModifiedDate(modified == null ? "" : modified);
+        item.setModifier(modifier == null ? "" : modifier);
+        item.setCreator(creator == null ? "" : creator);
+        if (comment != null) item.setComment(comment);
+        if (translated != null) {
+            if (translated.equalsIgnoreCase("true")) item.setTranslated(true);
+            else if (translated.equalsIgnoreCase("false")) item.setTranslated(false);
+            else item.setTranslated(session.getDefaultTranslated());
+        }
+        if (lookups != null) item.setLookups(lookups);
+        return item;
+    }
+
+    // Returns the locale of a variant, with the dashes of its language tag made underscores
+    private static String getLanguage(XMLStreamReader reader) {
+        String encoding = null;
+        for (int i=0; i < reader.getAttributeCount(); i++) {
+            if (reader.getAttributeLocalName(i).equals("lang")) encoding = reader.getAttributeValue(i);
+        }
+        return (encoding == null ? "" : encoding.replace('-', '_'));
+    }
+
+    // Returns the text directly inside the current element, skipping any elements nested in it,
+    // and leaves the reader on its end tag
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuffer text = new StringBuffer();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+            else if (depth == 1 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ||
+                                    event == XMLStreamConstants.SPACE)) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+        return text.toString();
+    }
+
+    // Resolves the locales first seen in the batch, then hands its resources to the session
+    // and resolves their conflicts
+    private void flush() {
+        Vector newEncodings = new Vector();
+        for (int i=0; i < batchEncodings.size(); i++) {
+            Object encoding = batchEncodings.elementAt(i);
+            if (!encodings.containsKey(encoding)) {
+                encodings.put(encoding, encoding);
+                newEncodings.addElement(encoding);
+            }
+        }
+        if (newEncodings.size() > 0) session.resolveEncodings(newEncodings);
+        for (int i=0; i < batchItems.size(); i++) {
+            session.importResource((BundleItem)batchItems.elementAt(i), (String)batchEncodings.elementAt(i),
+                                   (String)batchGroups.elementAt(i));
+        }
+        // Resolved with each batch, so that the conflicts of a large file are not all held at once
+        session.resolveConflicts();
+        batchItems.removeAllElements();
+        batchEncodings.removeAllElements();
+        batchGroups.removeAllElements();
+    }
+}
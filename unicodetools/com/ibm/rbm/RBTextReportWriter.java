@@ -0,0 +1,115 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes the plain text report of RBReporter directly to a stream, taking the per
+ * locale figures from precomputed report statistics. The time taken is linear in the
+ * size of the report.
+ *
+ * @see com.ibm.rbm.RBReporter
+ */
+public class RBTextReportWriter {
+    private RBReportStatistics stats;
+    private boolean            detailed;
+    private Writer             out;
+
+    public RBTextReportWriter(RBManager rbm, boolean detailed) {
+        this(new RBReportStatistics(rbm), detailed);
+    }
+
+    public RBTextReportWriter(RBReportStatistics stats, boolean detailed) {
+        this.stats = stats;
+        this.detailed = detailed;
+    }
+
+    /**
+     * Writes the report to a file. The code scan results are included if the scanner
+     * is not null.
+     */
+
+    public void write(File file, RBReporterScanner scanner) throws IOException {
+        Writer writer = new BufferedWriter(new FileWriter(file), 1 << 16);
+        try {
+            write(writer, scanner);
+        } finally {
+            writer.close();
+        }
+    }
+
+    public void write(Writer writer, RBReporterScanner scanner) throws IOException {
+        out = writer;
+        out.write("Resource Bundle Report: " + stats.getManager().getBaseClass());
+        out.write("\nReport Generated:       " + (new Date()).toString() + "\n\n");
+        for (int i=0; i < stats.getBundleCount(); i++) {
+            writeLanguageReport(i);
+        }
+        if (scanner != null) writeScanReport(scanner);
+        out.flush();
+    }
+
+    private void writeLanguageReport(int index) throws IOException {
+        Bundle dict = stats.getBundle(index);
+        if (dict == null) return;
+        out.write("\nLanguage: " + (dict.language == null ? dict.encoding : dict.language));
+        out.write(dict.country == null ? "" : " - Country: " + dict.country);
+        out.write(dict.variant == null ? "" : " - Variant: " + dict.variant);
+        out.write("\n");
+        out.write("  Number of NLS items in the file: " + stats.getItemCount(index) + "\n");
+        out.write("  Number of NLS items not translated: " + stats.getUntranslatedCount(index));
+        if (detailed) {
+            out.write("\n  Untranslated NLS keys: ");
+            String keys[] = stats.getUntranslatedKeys(index);
+            for (int i=0; i < keys.length; i++) {
+                out.write(' ');
+                out.write(keys[i]);
+            }
+        }
+    }
+
+    private void writeScanReport(RBReporterScanner scanner) throws IOException {
+        // The scanner may cover other bundles too; report on this one
+        Bundle base = stats.getBundle(0);
+        out.write("\n\nCode Scan Results:\n\n");
+        out.write("\n\tNumber of unique resources found: " + scanner.getNumberResourcesFound(base));
+        out.write("\n\tNumber of resources missing from bundle: " + scanner.getNumberMissingResources(base));
+        // Missing resources from the bundle
+        out.write("\n\tMissing Resources: ");
+        scanner.visitMissingResources(base, new ScanResultVisitor() {
+            int i = 0;
+            public void visit(ScanResult result) throws IOException {
+                Vector occ_v = result.getOccurances();
+                if (detailed) {
+                    out.write("\n\t\t" + result.getName() + " (" + occ_v.size() + " Occurances)");
+                    out.write("\n\t\t\t[");
+                    for (int j=0; j < occ_v.size(); j++) {
+                        if (j > 0) out.write(", ");
+                        out.write(occ_v.elementAt(j).toString());
+                    }
+                    out.write("]");
+                } else {
+                    out.write((i==0 ? "" : ", ") + result.getName() + " (" + occ_v.size() + " Occurances)");
+                }
+                i++;
+            }
+        });
+        // Bundle resources not found in the code
+        out.write("\n\tNumber of potentially unused resources in bundle: " + scanner.getNumberUnusedResources(base));
+        Vector v = scanner.getUnusedResources(base);
+        for (int i=0; i < v.size(); i++) {
+            ScanResult result = (ScanResult)v.elementAt(i);
+            if (detailed) {
+                out.write("\n\t\t" + result.getName() + " (Group: " + result.getGroupName() + ")");
+            } else {
+                out.write((i==0 ? "" : ", ") + result.getName());
+            }
+        }
+    }
+}
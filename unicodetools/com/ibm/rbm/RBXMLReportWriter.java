@@ -0,0 +1,182 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes the XML report of RBReporter with an XMLStreamWriter. The report has the same
+ * structure as the one built by RBReporter.getXMLReportz(), but each element is written
+ * as the bundles and the scan results are visited, so no document is held in memory.
+ *
+ * @see com.ibm.rbm.RBReporter
+ */
+public class RBXMLReportWriter {
+    private static final String ENCODING = "ISO-8859-1";
+
+    private RBReportStatistics stats;
+    private boolean            detailed;
+    private XMLStreamWriter    xml;
+
+    public RBXMLReportWriter(RBManager rbm, boolean detailed) {
+        this(new RBReportStatistics(rbm), detailed);
+    }
+
+    public RBXMLReportWriter(RBReportStatistics stats, boolean detailed) {
+        this.stats = stats;
+        this.detailed = detailed;
+    }
+
+    /**
+     * Writes the report to a file. The code scan results are included if the scanner
+     * is not null.
+     */
+
+    public void write(File file, RBReporterScanner scanner) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        try {
+            write(os, scanner);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Writes the report to a stream in the ISO-8859-1 encoding.
+     */
+
+    public void write(OutputStream os, RBReporterScanner scanner) throws IOException {
+        try {
+            xml = XMLOutputFactory.newInstance().createXMLStreamWriter(os, ENCODING);
+            xml.writeStartDocument(ENCODING, "1.0");
+            newLine(0);
+            xml.writeStartElement("REPORT");
+            xml.writeAttribute("BASECLASS", stats.getManager().getBaseClass());
+            xml.writeAttribute("DATE", (new Date()).toString());
+
+            for (int i=0; i < stats.getBundleCount(); i++) {
+                writeLanguageReport(i);
+            }
+            if (scanner != null) writeScanReport(scanner);
+
+            newLine(0);
+            xml.writeEndElement();
+            newLine(0);
+            xml.writeEndDocument();
+            xml.flush();
+        } catch (XMLStreamException xse) {
+            throw new IOException("Unable to write XML report: " + xse.getMessage());
+        }
+    }
+
+    private void writeLanguageReport(int index) throws XMLStreamException {
+        Bundle dict = stats.getBundle(index);
+        if (dict == null) return;
+        newLine(1);
+        xml.writeStartElement("LANGUAGE_REPORT");
+        newLine(2);
+        xml.writeEmptyElement("LOCALE");
+        xml.writeAttribute("LANGUAGE", (dict.language == null ? dict.encoding : dict.language));
+        xml.writeAttribute("COUNTRY", (dict.country == null ? "" : dict.country));
+        xml.writeAttribute("VARIANT", (dict.variant == null ? "" : dict.variant));
+        writeTextElement(2, "NLS_TOTAL", String.valueOf(stats.getItemCount(index)));
+        writeTextElement(2, "UNTRANSLATED_TOTAL", String.valueOf(stats.getUntranslatedCount(index)));
+        if (detailed) {
+            newLine(2);
+            xml.writeStartElement("UNTRANSLATED");
+            String keys[] = stats.getUntranslatedKeys(index);
+            for (int i=0; i < keys.length; i++) {
+                writeTextElement(3, "RESOURCEKEY", keys[i]);
+            }
+            newLine(2);
+            xml.writeEndElement();
+        }
+        newLine(1);
+        xml.writeEndElement();
+    }
+
+    private void writeScanReport(RBReporterScanner scanner) throws IOException, XMLStreamException {
+        // The scanner may cover other bundles too; report on this one
+        Bundle base = stats.getBundle(0);
+        newLine(1);
+        xml.writeStartElement("CODE_SCAN");
+        newLine(2);
+        xml.writeStartElement("UNIQUE_RESOURCES");
+        writeTextElement(3, "TOTAL", String.valueOf(scanner.getNumberResourcesFound(base)));
+        newLine(2);
+        xml.writeEndElement();
+
+        // Missing resources from the bundle
+        newLine(2);
+        xml.writeStartElement("MISSING_RESOURCES");
+        writeTextElement(3, "TOTAL", String.valueOf(scanner.getNumberMissingResources(base)));
+        scanner.visitMissingResources(base, new ScanResultVisitor() {
+            public void visit(ScanResult result) throws IOException {
+                try {
+                    Vector occ_v = result.getOccurances();
+                    newLine(3);
+                    if (!detailed || occ_v.size() < 1) {
+                        xml.writeEmptyElement("RESOURCE");
+                        xml.writeAttribute("NAME", result.getName());
+                        return;
+                    }
+                    xml.writeStartElement("RESOURCE");
+                    xml.writeAttribute("NAME", result.getName());
+                    for (int j=0; j < occ_v.size(); j++) {
+                        Occurance occ = (Occurance)occ_v.elementAt(j);
+                        newLine(4);
+                        xml.writeEmptyElement("OCCURANCE");
+                        xml.writeAttribute("FILE_NAME", occ.getFileName());
+                        xml.writeAttribute("FILE_PATH", occ.getFilePath());
+                        xml.writeAttribute("LINE_NUMBER", String.valueOf(occ.getLineNumber()));
+                    }
+                    newLine(3);
+                    xml.writeEndElement();
+                } catch (XMLStreamException xse) {
+                    throw new IOException("Unable to write XML report: " + xse.getMessage());
+                }
+            }
+        });
+        newLine(2);
+        xml.writeEndElement();
+
+        // Bundle resources not found in the code
+        newLine(2);
+        xml.writeStartElement("UNUSED_RESOURCES");
+        writeTextElement(3, "TOTAL", String.valueOf(scanner.getNumberUnusedResources(base)));
+        Vector v = scanner.getUnusedResources(base);
+        for (int i=0; i < v.size(); i++) {
+            ScanResult result = (ScanResult)v.elementAt(i);
+            newLine(3);
+            xml.writeEmptyElement("RESOURCE");
+            xml.writeAttribute("NAME", result.getName());
+            xml.writeAttribute("GROUP", result.getGroupName());
+        }
+        newLine(2);
+        xml.writeEndElement();
+
+        newLine(1);
+        xml.writeEndElement();
+    }
+
+    private void writeTextElement(int depth, String name, String value) throws XMLStreamException {
+        newLine(depth);
+        xml.writeStartElement(name);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+
+    private void newLine(int depth) throws XMLStreamException {
+        xml.writeCharacters("\n");
+        for (int i=0; i < depth; i++) xml.writeCharacters("  ");
+    }
+}
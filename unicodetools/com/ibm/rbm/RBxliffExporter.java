@@ -8,6 +8,7 @@ package com.ibm.rbm;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.text.*;
 
 import javax.swing.*;
@@ -23,6 +24,9 @@ import org.w3c.dom.*;
  * along with some of the meta-data associated by RBManager to the XLIFF specification.
  * For more information on XLIFF visit the web site
  * <a href="http://www.lisa.org/xliff/">http://www.lisa.org/xliff/</a>
+ * <p>
+ * The parent locale of each locale, and the items of each parent by key, are found once
+ * for the whole export, and the files of the locales are written at the same time.
  * 
  * @author George Rhoten
  * @see com.ibm.rbm.RBManager
@@ -31,7 +35,6 @@ public class RBxliffExporter extends RBExporter {
     private static final String VERSION = "0.7";
     private static final String XLIFF_DTD = "http://www.oasis-open.org/committees/xliff/documents/xliff.dtd";
     private static final String XLIFF_PUBLIC_NAME = "-//XLIFF//DTD XLIFF//EN";
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 	
     /**
      * Default constructor for the XLIFF exporter.
@@ -39,28 +42,16 @@ public class RBxliffExporter extends RBExporter {
         
     public RBxliffExporter() {
         super();
-		
-        // Initialize the file chooser if necessary
-        if (chooser == null) {
-            chooser = new JFileChooser();
-            chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
-                public String getDescription() {
-                    return "XLIFF Files";
-                }
-                public boolean accept(File f) {
-                    return (f.isDirectory() || f.getName().endsWith(".xlf"));
-                }
-            });
-        }
     }
 	
-    private String convertToISO(Date d) {
+    // Each file is written with a date format of its own, as the files are written at the same time
+    private String convertToISO(SimpleDateFormat dateFormat, Date d) {
         GregorianCalendar gc = new GregorianCalendar();
         gc.setTime(d);
-        return convertToISO(gc);
+        return convertToISO(dateFormat, gc);
     }
 	
-    private String convertToISO(GregorianCalendar gc) {
+    private String convertToISO(SimpleDateFormat dateFormat, GregorianCalendar gc) {
     	dateFormat.setCalendar(gc);
         return dateFormat.format(gc.getTime());
     }
@@ -96,9 +87,11 @@ public class RBxliffExporter extends RBExporter {
     	return locale;
     }
 	
-    private void addTransUnit(Document xml, Element groupElem, BundleItem item, BundleItem parent_item) {
+    private void addTransUnit(Document xml, SimpleDateFormat dateFormat, Element groupElem, BundleItem item,
+                              BundleItem parent_item)
+    {
         Element transUnit = xml.createElement("trans-unit");
-        transUnit.setAttribute("date",convertToISO(item.getModifiedDate()));
+        transUnit.setAttribute("date",convertToISO(dateFormat, item.getModifiedDate()));
         transUnit.setAttribute("id",item.getKey());
 		
         String sourceOrTarget = "target";
@@ -143,7 +136,7 @@ public class RBxliffExporter extends RBExporter {
             if (item.getCreator() != null && item.getCreator().length() > 1) {
 	            Element created_prop = xml.createElement("prop");
 	            created_prop.setAttribute("prop-type","created");
-	            created_prop.appendChild(xml.createTextNode(convertToISO(item.getCreatedDate())));
+	            created_prop.appendChild(xml.createTextNode(convertToISO(dateFormat, item.getCreatedDate())));
 		        transUnit_prop_group_elem.appendChild(created_prop);
             }
 	        
@@ -163,26 +156,89 @@ public class RBxliffExporter extends RBExporter {
     public void export(RBManager rbm) throws IOException {
         if (rbm == null)
         	return;
+        // Create the file chooser when it is first needed, as exporting without it needs no Swing
+        if (chooser == null) {
+            chooser = new JFileChooser();
+            chooser.setFileFilter(new javax.swing.filechooser.FileFilter(){
+                public String getDescription() {
+                    return "XLIFF Files";
+                }
+                public boolean accept(File f) {
+                    return (f.isDirectory() || f.getName().endsWith(".xlf"));
+                }
+            });
+        }
         // Open the Save Dialog
         int ret_val = chooser.showSaveDialog(null);
         if (ret_val != JFileChooser.APPROVE_OPTION)
         	return;
+        export(rbm, chooser.getSelectedFile());
+    }
+
+    public void export(RBManager rbm, File file) throws IOException {
         // Retrieve basic file information
-        File file = chooser.getSelectedFile();              // The file(s) we will be working with
-        File directory = new File(file.getParent());        // The directory we will be writing to
+        final File directory = new File(file.getParent());  // The directory we will be writing to
         String base_name = file.getName();                  // The base name of the files we will write
         if (base_name == null || base_name.equals(""))
         	base_name = rbm.getBaseClass();
         if (base_name.endsWith(".xlf"))
         	base_name = base_name.substring(0,base_name.length()-4);
 		
-        String file_name = base_name + ".xlf";
-        
+        final String base = base_name;
+        Hashtable parentItems = new Hashtable();            // The items of each parent locale by key
+        Vector tasks = new Vector();
         Vector bundle_v = rbm.getBundles();
-        Enumeration bundleIter = bundle_v.elements();
-        while (bundleIter.hasMoreElements()) {
-        	exportFile(rbm, directory, base_name, (Bundle)bundleIter.nextElement());
+        for (int i=0; i < bundle_v.size(); i++) {
+            final Bundle main_bundle = (Bundle)bundle_v.elementAt(i);
+            Bundle parent_bundle = null;
+            String parent_bundle_name = null;
+            if (!getLocale(main_bundle).equals("")) {
+            	// If this isn't the root locale, find the parent
+                parent_bundle_name = getParentLocale(getLocale(main_bundle));
+    	        do {
+    	        	parent_bundle = rbm.getBundle(parent_bundle_name);
+    	        	if (parent_bundle != null) {
+    	        		break;
+    	        	}
+    	            parent_bundle_name = getParentLocale(parent_bundle_name);
+    	        } while (!parent_bundle_name.equals(""));
+            }
+            Map items = null;
+            if (parent_bundle != null) {
+                items = (Map)parentItems.get(parent_bundle_name);
+                if (items == null) {
+                    items = indexItems(parent_bundle);
+                    parentItems.put(parent_bundle_name, items);
+                }
+            }
+            final String parent_name = parent_bundle_name;
+            final Map parent_items = items;
+            tasks.addElement(new Callable() {
+                public Object call() throws IOException {
+                    exportFile(directory, base, main_bundle, parent_name, parent_items);
+                    return main_bundle;
+                }
+            });
         }
+        RBImportReader.runTasks(tasks);
+    }
+
+    /**
+     * Returns the items of a parent bundle by key. The map is only read once it is made, so
+     * the files of all its locales look items up in it at the same time.
+     */
+
+    private Map indexItems(Bundle parent_bundle) {
+        Map items = new HashMap();
+        Vector parent_group_v = parent_bundle.getGroupsAsVector();
+        for (int i=0; i < parent_group_v.size(); i++) {
+            Vector parent_items = ((BundleGroup)parent_group_v.elementAt(i)).getItemsAsVector();
+            for (int j=0; j < parent_items.size(); j++) {
+                BundleItem item = (BundleItem)parent_items.elementAt(j);
+                if (!items.containsKey(item.getKey())) items.put(item.getKey(), item);
+            }
+        }
+        return items;
     }
     
     private void addHeaderProperties(Document xml, Element header, Bundle main_bundle) {
@@ -243,23 +299,12 @@ public class RBxliffExporter extends RBExporter {
         }
     }
     
-    private void exportFile(RBManager rbm, File directory, String base_name, Bundle main_bundle)
+    private void exportFile(File directory, String base_name, Bundle main_bundle, String parent_bundle_name,
+                            Map parent_items)
     	throws IOException
     {
-        Bundle parent_bundle = null;
-        String parent_bundle_name = null;
-        if (!getLocale(main_bundle).equals("")) {
-        	// If this isn't the root locale, find the parent
-            parent_bundle_name = getParentLocale(getLocale(main_bundle));
-	        do {
-	        	parent_bundle = rbm.getBundle(parent_bundle_name);
-	        	if (parent_bundle != null) {
-	        		break;
-	        	}
-	            parent_bundle_name = getParentLocale(parent_bundle_name);
-	        } while (!parent_bundle_name.equals(""));
-        }
-
+        long start = RBInstrumentation.start(RBInstrumentation.FILE_EXPORTED);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
         
         // Find the implementation
         DocumentBuilder builder;
@@ -289,7 +334,7 @@ public class RBxliffExporter extends RBExporter {
         	file_elem.setAttribute("target-language", getLocale(main_bundle));
         }
         file_elem.setAttribute("datatype", "plaintext");
-        file_elem.setAttribute("date", convertToISO(new Date()));
+        file_elem.setAttribute("date", convertToISO(dateFormat, new Date()));
         root.appendChild(file_elem);
 		
         Element header = xml.createElement("header");
@@ -307,25 +352,9 @@ public class RBxliffExporter extends RBExporter {
         file_elem.appendChild(body);
 		
         Vector group_v = main_bundle.getGroupsAsVector();
-        Vector parent_group_v = null;
-        if (parent_bundle != null) {
-        	parent_group_v = parent_bundle.getGroupsAsVector();
-        }
         // Loop through each bundle group in main_bundle
         for (int i=0; i < group_v.size(); i++) {
             BundleGroup curr_group = (BundleGroup)group_v.elementAt(i);
-            BundleGroup parent_group = null;
-            if (parent_group_v != null) { 
-	            Enumeration parentGroupIter = parent_group_v.elements();
-	            
-	            while (parentGroupIter.hasMoreElements()) {
-	            	BundleGroup groupToFind = (BundleGroup)parentGroupIter.nextElement();
-	            	if (groupToFind.getName().equals(curr_group.getName())) {
-	            		parent_group = groupToFind;
-	            		break;
-	            	}
-	            }
-            }
             Element group_elem = xml.createElement("group");
             group_elem.setAttribute("id", curr_group.getName());
             if (curr_group.getComment() != null && curr_group.getComment().length() > 1) {
@@ -339,18 +368,14 @@ public class RBxliffExporter extends RBExporter {
             for (int j=0; j < group_items.size(); j++) {
             	BundleItem main_item = (BundleItem)group_items.get(j);
             	BundleItem parent_item = null;
-            	if (parent_group != null) {
-	            	Enumeration parentIter = parent_group.getItemsAsVector().elements();
-	            	BundleItem itemToFind = null;
-	                while (parentIter.hasMoreElements()) {
-	                	itemToFind = (BundleItem)parentIter.nextElement();
-	                	if (itemToFind.getKey().equals(main_item.getKey())) {
-	                		parent_item = itemToFind;
-	                		break;
-	                	}
-	                }
+            	if (parent_items != null) {
+            		// The parent item is the one of the same key in the group of the same name
+            		parent_item = (BundleItem)parent_items.get(main_item.getKey());
+            		if (parent_item != null && !parent_item.getParentGroup().getName().equals(curr_group.getName())) {
+            			parent_item = null;
+            		}
             	}
-                addTransUnit(xml, group_elem, main_item, parent_item);
+                addTransUnit(xml, dateFormat, group_elem, main_item, parent_item);
                 //group_elem.appendChild(tu);
             }
             body.appendChild(group_elem);
@@ -367,8 +392,8 @@ public class RBxliffExporter extends RBExporter {
         suffix = String.valueOf(array);
         
         // serialize document
-        OutputStreamWriter osw = new OutputStreamWriter(
-        		new FileOutputStream(new File(directory, base_name + suffix + ".xlf")), "UTF-8");
+        File write_file = new File(directory, base_name + suffix + ".xlf");
+        OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(write_file), "UTF-8");
         try {
 			Transformer transformer = TransformerFactory.newInstance().newTransformer();
 			transformer.setOutputProperty(OutputKeys.METHOD, "xml");
@@ -384,5 +409,7 @@ public class RBxliffExporter extends RBExporter {
         }
         
         osw.close();
+        RBInstrumentation.end(RBInstrumentation.FILE_EXPORTED, start, write_file.getPath(), write_file.length(),
+                              main_bundle.allItems.size());
     }
 }
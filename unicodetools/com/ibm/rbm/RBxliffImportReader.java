@@ -0,0 +1,415 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the translation units of XLIFF files, each into the locale of its target language,
+ * or of its source language for a file without translations. A body holding a single group
+ * is taken to be written by ICU, whose group names the locale.
+ * <p>
+ * The files are read as streams. Given a directory, or a list of files through
+ * importFiles(), the reader parses the files at the same time, resolves all of the locales
+ * they name in a single pass, and then merges the resources of each locale in a thread of
+ * its own. Every thread works on a different Bundle, so the merging threads never wait on
+ * each other.
+ *
+ * @see com.ibm.rbm.RBxliffImporter
+ * @see com.ibm.rbm.RBxliffExporter
+ */
+public class RBxliffImportReader extends RBImportReader {
+    /**
+     * The contents of one XLIFF file, ready to be merged into a bundle
+     */
+
+    static class XliffFile {
+        File   file;
+        String language = "";
+        String bundle_name;
+        String bundle_note;
+        String manager_name;
+        String language_name;
+        String country_name;
+        String variant_name;
+        Vector groupNames = new Vector();               // The groups to create, in order
+        Vector groupComments = new Vector();
+        Vector items = new Vector();                    // The resources of the file
+        Vector itemGroups = new Vector();               // The group of each resource, or null for the default group
+    }
+
+    // A group of the body while it is being parsed. The children are groups and items.
+    private static class UnitGroup {
+        String id;
+        String note;
+        Vector children = new Vector();
+    }
+
+    /**
+     * Imports a single file, or every .xlf file of a directory
+     */
+
+    public void importFile(File file, RBImportSession session) throws IOException {
+        if (!file.isDirectory()) {
+            super.importFile(file, session);
+            return;
+        }
+        File children[] = file.listFiles();
+        if (children == null) throw new IOException("Unable to list " + file);
+        Vector files = new Vector();
+        for (int i=0; i < children.length; i++) {
+            if (children[i].isFile() && children[i].getName().toLowerCase().endsWith(".xlf")) files.addElement(children[i]);
+        }
+        importFiles(files, session);
+    }
+
+    /**
+     * Imports a list of files, parsing them in parallel and merging the resources of each
+     * locale in parallel
+     */
+
+    public void importFiles(Vector files, RBImportSession session) throws IOException {
+        merge(parseAll(files, true), session);
+    }
+
+    protected void read(File xlf_file, RBImportSession session) throws IOException {
+        Vector files = new Vector();
+        files.addElement(xlf_file);
+        merge(parseAll(files, false), session);
+    }
+
+    // Parses the files, as many at a time as there are processors, recording each file
+    // as imported if asked to
+    private Vector parseAll(Vector files, final boolean record) throws IOException {
+        Vector tasks = new Vector();
+        for (int i=0; i < files.size(); i++) {
+            final File file = (File)files.elementAt(i);
+            tasks.addElement(new Callable() {
+                public Object call() throws IOException {
+                    return parse(file, record);
+                }
+            });
+        }
+        return runTasks(tasks);
+    }
+
+    // Resolves the locales of all of the files at once, creates their groups, and then
+    // imports the resources of each locale on a thread of its own
+    private void merge(Vector parsed, RBImportSession session) throws IOException {
+        RBManager rbm = session.getManager();
+        Vector locales = new Vector();
+        Hashtable filesByLocale = new Hashtable();
+        for (int i=0; i < parsed.size(); i++) {
+            XliffFile xliff = (XliffFile)parsed.elementAt(i);
+            Vector localeFiles = (Vector)filesByLocale.get(xliff.language);
+            if (localeFiles == null) {
+                localeFiles = new Vector();
+                filesByLocale.put(xliff.language, localeFiles);
+                locales.addElement(xliff.language);
+            }
+            localeFiles.addElement(xliff);
+        }
+        session.resolveEncodings(locales);
+        // Groups are created in every locale, so they are all created before any merging starts
+        for (int i=0; i < parsed.size(); i++) {
+            XliffFile xliff = (XliffFile)parsed.elementAt(i);
+            Bundle main_bundle = rbm.getBundle(xliff.language);
+            if (main_bundle != null) {
+                // There is no bundle when the locale was missing and the session ignored it
+                main_bundle.name = xliff.bundle_name;
+                main_bundle.comment = xliff.bundle_note;
+                main_bundle.manager = xliff.manager_name;
+                main_bundle.language = xliff.language_name;
+                main_bundle.country = xliff.country_name;
+                main_bundle.variant = xliff.variant_name;
+            }
+            for (int j=0; j < xliff.groupNames.size(); j++) {
+                rbm.createGroup((String)xliff.groupNames.elementAt(j), (String)xliff.groupComments.elementAt(j));
+            }
+        }
+        Vector imports = new Vector();
+        for (int i=0; i < locales.size(); i++) {
+            final Vector localeFiles = (Vector)filesByLocale.get(locales.elementAt(i));
+            imports.addElement(new LocaleImport() {
+                protected void importInto(RBImportSession localeSession) {
+                    mergeLocale(localeFiles, localeSession);
+                }
+            });
+        }
+        importLocales(imports, session);
+    }
+
+    // Imports the resources of the files of one locale
+    private static void mergeLocale(Vector localeFiles, RBImportSession session) {
+        for (int i=0; i < localeFiles.size(); i++) {
+            XliffFile xliff = (XliffFile)localeFiles.elementAt(i);
+            String defaultGroup = session.getDefaultGroup();
+            for (int j=0; j < xliff.items.size(); j++) {
+                String group = (String)xliff.itemGroups.elementAt(j);
+                session.importResource((BundleItem)xliff.items.elementAt(j), xliff.language,
+                                       (group == null ? defaultGroup : group));
+            }
+        }
+    }
+
+    /**
+     * Parses one XLIFF file without touching any bundle
+     */
+
+    static XliffFile parse(File xlf_file, boolean record) throws IOException {
+        long start = (record ? RBInstrumentation.start(RBInstrumentation.FILE_IMPORTED) : 0);
+        XliffFile xliff = new XliffFile();
+        xliff.file = xlf_file;
+        InputStream in = new BufferedInputStream(new FileInputStream(xlf_file), 65536);
+        XMLStreamReader reader = null;
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+            // The exporter names the XLIFF DTD on the web; it is not needed to read the file,
+            // and fetching it fails without a network
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            reader = factory.createXMLStreamReader(in);
+            String sourceLocale = "";
+            String targetLocale = "";
+            UnitGroup body = null;
+            // Only the first file element is read
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                String name = reader.getLocalName();
+                if (name.equalsIgnoreCase("file")) {
+                    sourceLocale = getAttribute(reader, "source-language");
+                    targetLocale = getAttribute(reader, "target-language");
+                } else if (name.equalsIgnoreCase("header")) {
+                    readHeader(reader, xliff);
+                } else if (name.equalsIgnoreCase("body")) {
+                    body = readGroup(reader, null);
+                    break;
+                }
+            }
+            if (body == null) throw new IOException(xlf_file + " has no body");
+            String language = "";
+            if (!sourceLocale.equals("")) {
+                language = sourceLocale;
+            }
+            if (!targetLocale.equals("")) {
+                // The target language is the real data. The source is only for reference.
+                // We could do verification that all the data is translated the same though.
+                language = targetLocale;
+            }
+            Vector units = body.children;
+            if (units.size() == 1 && units.elementAt(0) instanceof UnitGroup) {
+                // ICU style group where the top group is just the locale.
+                UnitGroup localeGroup = (UnitGroup)units.elementAt(0);
+                units = localeGroup.children;
+                // It's done this way because ICU handles rfc3066bis (the successor of rfc3066)
+                // XLIFF requires rfc3066, which doesn't handle scripts.
+                language = (localeGroup.id.equals("root") ? "" : localeGroup.id);
+            }
+            xliff.language = language.replace('-', '_');
+            for (int i=0; i < units.size(); i++) {
+                Object unit = units.elementAt(i);
+                if (unit instanceof BundleItem) {
+                    xliff.items.addElement(unit);
+                    xliff.itemGroups.addElement(null);
+                } else {
+                    UnitGroup group = (UnitGroup)unit;
+                    if (group.id.length() < 1) continue;
+                    xliff.groupNames.addElement(group.id);
+                    xliff.groupComments.addElement(group.note == null ? "" : group.note);
+                    addItems(group, group.id, xliff);
+                }
+            }
+        } catch (XMLStreamException e) {
+            e.printStackTrace(System.err);
+            throw new IOException(e.getMessage());
+        } finally {
+            try {
+                if (reader != null) reader.close();
+            } catch (XMLStreamException e) {
+                // The stream is closed below
+            }
+            in.close();
+        }
+        RBInstrumentation.end(RBInstrumentation.FILE_IMPORTED, start, xlf_file.getPath(), xlf_file.length(), xliff.items.size());
+        return xliff;
+    }
+
+    // Adds the items of a group and of the groups nested in it, all under the group's name
+    private static void addItems(UnitGroup group, String name, XliffFile xliff) {
+        for (int i=0; i < group.children.size(); i++) {
+            Object child = group.children.elementAt(i);
+            if (child instanceof UnitGroup) {
+                addItems((UnitGroup)child, name, xliff);
+            } else {
+                xliff.items.addElement(child);
+                xliff.itemGroups.addElement(name);
+            }
+        }
+    }
+
+    // Reads the note and the bundle properties of the header
+    private static void readHeader(XMLStreamReader reader, XliffFile xliff) throws XMLStreamException {
+        boolean inPropGroup = false;
+        boolean propGroupRead = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equalsIgnoreCase("header")) return;
+                if (name.equals("prop-group") && inPropGroup) {
+                    inPropGroup = false;
+                    propGroupRead = true;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            String name = reader.getLocalName();
+            if (name.equals("note")) {
+                String value = readText(reader);
+                if (xliff.bundle_note == null && value.length() > 0) xliff.bundle_note = value;
+            } else if (name.equals("prop-group")) {
+                inPropGroup = !propGroupRead;
+            } else if (name.equals("prop") && inPropGroup) {
+                String propertyType = getAttribute(reader, "prop-type");
+                String value = readText(reader);
+                if (value.length() < 1) continue;
+                if (propertyType.equals("name")) xliff.bundle_name = value;
+                else if (propertyType.equals("manager")) xliff.manager_name = value;
+                else if (propertyType.equals("language")) xliff.language_name = value;
+                else if (propertyType.equals("country")) xliff.country_name = value;
+                else if (propertyType.equals("variant")) xliff.variant_name = value;
+            }
+        }
+    }
+
+    // Reads the groups and translation units inside the current element, up to its end tag
+    private static UnitGroup readGroup(XMLStreamReader reader, String id) throws XMLStreamException {
+        UnitGroup group = new UnitGroup();
+        group.id = id;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) return group;
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            String name = reader.getLocalName();
+            if (name.equalsIgnoreCase("group")) {
+                group.children.addElement(readGroup(reader, getAttribute(reader, "id")));
+            } else if (name.equalsIgnoreCase("trans-unit")) {
+                BundleItem item = readTranslationUnit(reader);
+                if (item != null) group.children.addElement(item);
+            } else if (name.equals("note") && group.id != null) {
+                String value = readText(reader);
+                if (group.note == null && value.length() > 0) group.note = value;
+            } else {
+                skipElement(reader);
+            }
+        }
+        return group;
+    }
+
+    // Reads a translation unit up to its end tag, returning null if it has no value
+    private static BundleItem readTranslationUnit(XMLStreamReader reader) throws XMLStreamException {
+        String name = getAttribute(reader, "id");
+        String state = getAttribute(reader, "state");
+        String date = getAttribute(reader, "date");
+        String target = null;
+        String source = null;
+        String comment = null;
+        String creator = null;
+        String created = null;
+        String modifier = null;
+        boolean inPropGroup = false;
+        boolean propGroupRead = false;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                String element = reader.getLocalName();
+                if (element.equalsIgnoreCase("trans-unit")) break;
+                if (element.equals("prop-group") && inPropGroup) {
+                    inPropGroup = false;
+                    propGroupRead = true;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            String element = reader.getLocalName();
+            if (element.equals("target")) {
+                String text = readText(reader);
+                if (target == null) target = text;
+            } else if (element.equals("source")) {
+                String text = readText(reader);
+                if (source == null) source = text;
+            } else if (element.equals("note")) {
+                String text = readText(reader);
+                if (comment == null) comment = text;
+            } else if (element.equals("prop-group")) {
+                inPropGroup = !propGroupRead;
+            } else if (element.equals("prop") && inPropGroup) {
+                String propertyType = getAttribute(reader, "prop-type");
+                String value = readText(reader);
+                if (value.length() < 1) continue;
+                if (propertyType.equals("creator")) creator = value;
+                else if (propertyType.equals("created")) created = value;
+                else if (propertyType.equals("modifier")) modifier = value;
+            }
+        }
+        // A unit without a target is a template, or a skeleton
+        String transValue = (target != null ? target : source);
+        if (transValue == null || transValue.length() < 1) return null;
+        if (name.length() < 1) return null;
+        // Create the bundle item
+        BundleItem item = new BundleItem(null, name, transValue);
+        if (state.length() > 0) item.setTranslated(state.equalsIgnoreCase("translated"));
+        if (date.length() > 0) item.setModifiedDate(date);
+        if (comment != null && comment.length() > 0) item.setComment(comment);
+        if (creator != null) item.setCreator(creator);
+        if (created != null) item.setCreatedDate(created);
+        if (modifier != null) item.setModifier(modifier);
+        return item;
+    }
+
+    // Returns an attribute of the current element, or "" if it does not have it
+    private static String getAttribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return (value == null ? "" : value);
+    }
+
+    // Returns the text directly inside the current element, skipping any elements nested in it,
+    // and leaves the reader on its end tag
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuffer text = new StringBuffer();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+            else if (depth == 1 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ||
+                                    event == XMLStreamConstants.SPACE)) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+        return text.toString();
+    }
+
+    // Moves the reader to the end tag of the current element
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.xerces.parsers.DOMParser;
+import org.w3c.dom.*;
+import org.xml.sax.*;
+
+/**
+ * A compiled scan file. The plan holds the directories to scan together with the file
+ * and parse rules applied to each of them, resolved and checked once when the scan file
+ * is read. Plans are immutable, so a single plan may be shared by any number of scans.
+ * <p>
+ * Plans obtained through forFile() are cached and reused until the modification time or
+ * the length of the scan file changes. Plans are also serializable; the glob matchers of
+ * a directory are compiled again when the plan is deserialized.
+ *
+ * @see com.ibm.rbm.RBReporterScanner
+ */
+public final class ScanPlan implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static Hashtable cache = new Hashtable();       // Plans by absolute scan file path
+
+    private final String   configPath;
+    private final long     lastModified;
+    private final long     length;
+    private final int      threads;                        // Zero for one per processor
+    private final int      spillThreshold;                 // Zero for no spilling
+    private final String   tempDirectory;
+    private final DirectoryPlan directories[];
+
+    private ScanPlan(File configFile, Document config) throws IOException {
+        configPath = configFile.getPath();
+        lastModified = configFile.lastModified();
+        length = configFile.length();
+
+        Element root = config.getDocumentElement();
+        Hashtable fileRules = getFileRules(root);
+        Hashtable parseRules = getParseRules(root);
+
+        NodeList nl = root.getElementsByTagName("Scan");
+        if (nl.getLength() < 1) {
+            threads = 0;
+            spillThreshold = 0;
+            tempDirectory = null;
+            directories = new DirectoryPlan[0];
+            return;
+        }
+        Element scan_elem = (Element)nl.item(0);
+        threads = getIntAttribute(scan_elem, "threads", 1);
+        spillThreshold = getIntAttribute(scan_elem, "spill_threshold", 0);
+        tempDirectory = (scan_elem.getAttribute("temp_directory").length() > 0 ?
+                         scan_elem.getAttribute("temp_directory") : null);
+
+        Vector v = new Vector();
+        nl = scan_elem.getElementsByTagName("Directory");
+        for (int i=0; i < nl.getLength(); i++) {
+            DirectoryPlan dir = compileDirectory((Element)nl.item(i), fileRules, parseRules);
+            if (dir != null) v.addElement(dir);
+        }
+        directories = new DirectoryPlan[v.size()];
+        v.copyInto(directories);
+    }
+
+    /**
+     * Returns the plan for a scan file, reading and compiling the file only if it has not
+     * been compiled before or has changed since.
+     */
+
+    public static ScanPlan forFile(File configFile) throws IOException {
+        File file = configFile.getAbsoluteFile();
+        ScanPlan plan = (ScanPlan)cache.get(file.getPath());
+        if (plan != null && plan.isCurrent()) return plan;
+        plan = compile(file);
+        cache.put(file.getPath(), plan);
+        return plan;
+    }
+
+    /**
+     * Reads and compiles a scan file, bypassing the cache.
+     */
+
+    public static ScanPlan compile(File configFile) throws IOException {
+        Document config = null;
+        FileInputStream fis = new FileInputStream(configFile);
+        try {
+            InputSource is = new InputSource(fis);
+            DOMParser parser = new DOMParser();
+            parser.parse(is);
+            config = parser.getDocument();
+        } catch (SAXException saxe) {
+            throw new IOException("Illegal XML Document: " + saxe.getMessage());
+        } finally {
+            fis.close();
+        }
+        return new ScanPlan(configFile, config);
+    }
+
+    /**
+     * Returns whether the scan file this plan was compiled from is unchanged.
+     */
+
+    public boolean isCurrent() {
+        File file = new File(configPath);
+        return file.lastModified() == lastModified && file.length() == length;
+    }
+
+    /**
+     * Returns the scan file this plan was compiled from.
+     */
+
+    public File getConfigFile() {
+        return new File(configPath);
+    }
+
+    /**
+     * Returns the number of threads to read and parse files with.
+     */
+
+    public int getThreads() {
+        if (threads < 1) return Runtime.getRuntime().availableProcessors();
+        return threads;
+    }
+
+    /**
+     * Returns the number of missing occurances held in memory before spilling to disk,
+     * or zero if the results are to be kept in memory.
+     */
+
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * Returns the directory for spilled results, or null for the default temporary directory.
+     */
+
+    public File getTempDirectory() {
+        return (tempDirectory == null ? null : new File(tempDirectory));
+    }
+
+    int getDirectoryCount() {
+        return directories.length;
+    }
+
+    DirectoryPlan getDirectory(int index) {
+        return directories[index];
+    }
+
+    private int getIntAttribute(Element elem, String name, int minimum) throws IOException {
+        String value = elem.getAttribute(name);
+        if (value.length() < 1) return 0;
+        try {
+            return Math.max(minimum, Integer.parseInt(value));
+        } catch (NumberFormatException nfe) {
+            throw new IOException("Illegal " + name + " attribute: " + value);
+        }
+    }
+
+    private DirectoryPlan compileDirectory(Element dir_elem, Hashtable fileRules, Hashtable parseRules) throws IOException {
+        String location = dir_elem.getAttribute("location");
+        if (location.length() < 1) throw new IOException("Directory element without a location attribute");
+        NodeList rules_list = dir_elem.getElementsByTagName("Rules");
+        if (rules_list.getLength() < 1) return null;
+        Element rules_elem = (Element)rules_list.item(0);
+        NodeList frules_list = rules_elem.getElementsByTagName("ApplyFileRule");
+        Vector frules_v = new Vector();
+        Vector prules_vs = new Vector();
+        // For each file rule
+        for (int j=0; j < frules_list.getLength(); j++) {
+            Element frule_elem = (Element)frules_list.item(j);
+            FileRule frule = (FileRule)fileRules.get(frule_elem.getAttribute("name"));
+            if (frule == null) throw new IOException("Unknown file rule: " + frule_elem.getAttribute("name"));
+            NodeList prules_list = frule_elem.getElementsByTagName("ApplyParseRule");
+            Vector prules_v = new Vector();
+            // For each parse rule
+            for (int k=0; k < prules_list.getLength(); k++) {
+                Element prule_elem = (Element)prules_list.item(k);
+                ParseRule prule = (ParseRule)parseRules.get(prule_elem.getAttribute("name"));
+                if (prule == null) throw new IOException("Unknown parse rule: " + prule_elem.getAttribute("name"));
+                prules_v.addElement(prule);
+            }
+            if (prules_v.size() < 1) continue;
+            frules_v.addElement(frule);
+            prules_vs.addElement(prules_v);
+        }
+        if (frules_v.size() < 1) return null;
+        FileRule frules[] = new FileRule[frules_v.size()];
+        frules_v.copyInto(frules);
+        Vector prules[] = new Vector[prules_vs.size()];
+        prules_vs.copyInto(prules);
+        PathFilter filter = new PathFilter(getGlobs(dir_elem, "Include"), getGlobs(dir_elem, "Exclude"));
+        return new DirectoryPlan(new File(location),
+                                 dir_elem.getAttribute("recurse_directories").equalsIgnoreCase("true"),
+                                 filter, frules, prules);
+    }
+
+    // Returns the glob attributes of the Include or Exclude children of a Directory element
+    private static Vector getGlobs(Element dir_elem, String tagName) {
+        Vector v = new Vector();
+        NodeList nl = dir_elem.getElementsByTagName(tagName);
+        for (int i=0; i < nl.getLength(); i++) {
+            String glob = ((Element)nl.item(i)).getAttribute("glob");
+            if (glob != null && glob.length() > 0) v.addElement(glob);
+        }
+        return v;
+    }
+
+    private static Hashtable getFileRules(Element root) {
+        Hashtable result = new Hashtable();
+        NodeList frules_list = root.getElementsByTagName("FileRules");
+        Element frules_elem = null;
+        if (frules_list.getLength() > 0) frules_elem = (Element)frules_list.item(0);
+        if (frules_elem == null) return result;
+        frules_list = frules_elem.getElementsByTagName("FileRule");
+        for (int i=0; i < frules_list.getLength(); i++) {
+            Element elem = (Element)frules_list.item(i);
+            FileRule frule = new FileRule(elem.getAttribute("name"), elem.getAttribute("starts_with"),
+                                          elem.getAttribute("ends_with"), elem.getAttribute("contains"));
+            result.put(elem.getAttribute("name"), frule);
+        }
+        return result;
+    }
+
+    private static Hashtable getParseRules(Element root) {
+        Hashtable result = new Hashtable();
+        NodeList prules_list = root.getElementsByTagName("ParseRules");
+        Element prules_elem = null;
+        if (prules_list.getLength() > 0)
+            prules_elem = (Element)prules_list.item(0);
+        if (prules_elem == null)
+            return result;
+        prules_list = prules_elem.getElementsByTagName("ParseRule");
+        for (int i=0; i < prules_list.getLength(); i++) {
+            Element elem = (Element)prules_list.item(i);
+            ParseRule prule = new ParseRule(elem.getAttribute("name"), elem.getAttribute("follows"),
+                                            elem.getAttribute("precedes"));
+            result.put(elem.getAttribute("name"), prule);
+        }
+        return result;
+    }
+
+    // One Directory element of the scan file, with its file rules and their parse rules.
+    // The accessors hand out copies, so that a shared plan cannot be changed by a scan.
+    static final class DirectoryPlan implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final File       directory;
+        private final boolean    recurse;
+        private final PathFilter filter;
+        private final FileRule   fileRules[];
+        private final Vector     parseRules[];              // The parse rules of each file rule
+
+        DirectoryPlan(File directory, boolean recurse, PathFilter filter,
+                      FileRule fileRules[], Vector parseRules[]) {
+            this.directory = directory;
+            this.recurse = recurse;
+            this.filter = filter;
+            this.fileRules = fileRules;
+            this.parseRules = parseRules;
+        }
+
+        File getDirectory() {
+            return directory;
+        }
+
+        boolean isRecursive() {
+            return recurse;
+        }
+
+        PathFilter getFilter() {
+            return filter;
+        }
+
+        int getFileRuleCount() {
+            return fileRules.length;
+        }
+
+        FileRule getFileRule(int index) {
+            return fileRules[index];
+        }
+
+        /**
+         * Returns a copy of the parse rules applied to the files accepted by a file rule
+         */
+
+        Vector getParseRules(int index) {
+            return (Vector)parseRules[index].clone();
+        }
+    }
+}
@@ -40,6 +40,31 @@ public class ScanResult {
     void addOccurance(Occurance o) {
         occurances.addElement(o);
     }
+    
+    /**
+     * Sorts the occurances by file path and then by line number. The code is scanned by
+     * several threads at once, so the order in which occurances are added varies from scan
+     * to scan.
+     */
+    
+    void sortOccurances() {
+        Collections.sort(occurances, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                return compareOccurances(((Occurance)o1).getFilePath(), ((Occurance)o1).getLineNumber(),
+                                         ((Occurance)o2).getFilePath(), ((Occurance)o2).getLineNumber());
+            }
+        });
+    }
+    
+    /**
+     * The order of two occurances, by file path and then by line number
+     */
+    
+    static int compareOccurances(String path1, int line1, String path2, int line2) {
+        int result = path1.compareTo(path2);
+        if (result != 0) return result;
+        return (line1 < line2 ? -1 : (line1 == line2 ? 0 : 1));
+    }
 	
     String getName() {
         return item.getKey();
@@ -0,0 +1,332 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Collects the occurances of resources missing from a bundle while keeping a bounded
+ * number of them in memory. Whenever the buffer fills up, its occurances are sorted by
+ * resource key, file path and line number, and written as a run to a temporary file.
+ * When the results are read, the runs are merged so that all of the occurances of one key
+ * are handed out together, in order of file path and line number. At most MAX_MERGE_RUNS
+ * runs are read at once; when there are more, they are merged in several passes.
+ * <p>
+ * Besides the buffer being filled, each scan worker may hold one full buffer while it
+ * writes it out.
+ * 
+ * @see com.ibm.rbm.RBReporterScanner
+ */
+class ScanResultSpool {
+    // The most runs read at once; beyond this, runs are first merged into fewer, longer ones
+    static final int MAX_MERGE_RUNS = 16;
+    
+    private File       tempDirectory;
+    private Record     buffer[];
+    private int        bufferCount;
+    private Vector     runs;                                // Temporary files of the sorted runs
+    private int        keyCount = -1;                       // Number of distinct keys, once known
+    
+    ScanResultSpool(int threshold, File tempDirectory) {
+        this.tempDirectory = tempDirectory;
+        buffer = new Record[Math.max(1, threshold)];
+        bufferCount = 0;
+        runs = new Vector();
+    }
+    
+    /**
+     * Adds an occurance of a key. Called concurrently by the scan workers. A full buffer is
+     * swapped for an empty one and written out after the lock is released, so the other
+     * workers do not wait on the disk.
+     */
+    
+    void add(String key, String filePath, int lineNumber) throws IOException {
+        Record full[];
+        synchronized (this) {
+            buffer[bufferCount++] = new Record(key, filePath, lineNumber);
+            keyCount = -1;
+            if (bufferCount < buffer.length) return;
+            full = buffer;
+            buffer = new Record[full.length];
+            bufferCount = 0;
+        }
+        File runFile = writeRun(full, full.length);
+        synchronized (this) {
+            runs.addElement(runFile);
+        }
+    }
+    
+    // Sorts the records and writes them out as a new run
+    private File writeRun(Record records[], int count) throws IOException {
+        sortRecords(records, count);
+        File runFile = createRunFile();
+        DataOutputStream dos = openRun(runFile);
+        try {
+            dos.writeInt(count);
+            for (int i=0; i < count; i++) {
+                records[i].write(dos);
+                records[i] = null;
+            }
+        } finally {
+            dos.close();
+        }
+        return runFile;
+    }
+    
+    private File createRunFile() throws IOException {
+        File runFile = File.createTempFile("rbscan", ".run", tempDirectory);
+        runFile.deleteOnExit();
+        return runFile;
+    }
+    
+    private static DataOutputStream openRun(File runFile) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), 1 << 16));
+    }
+    
+    // The scan workers add occurances in no particular order, so the occurances of a key are
+    // sorted by where they were found
+    private static void sortRecords(Record records[], int count) {
+        Arrays.sort(records, 0, count, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                return ((Record)o1).compareTo((Record)o2);
+            }
+        });
+    }
+    
+    /**
+     * Returns the number of distinct keys added so far. This requires a merge pass over
+     * the spilled runs the first time it is called after new occurances have been added.
+     * Like visit(), it may only be called once the workers are done adding.
+     */
+    
+    synchronized int getKeyCount() throws IOException {
+        if (keyCount < 0) {
+            final int count[] = new int[1];
+            merge(new ScanResultVisitor() {
+                public void visit(ScanResult result) {
+                    count[0]++;
+                }
+            }, false);
+            keyCount = count[0];
+        }
+        return keyCount;
+    }
+    
+    /**
+     * Hands each key, together with all of its occurances, to the visitor in ascending
+     * key order.
+     */
+    
+    synchronized void visit(ScanResultVisitor visitor) throws IOException {
+        merge(visitor, true);
+    }
+    
+    /**
+     * Like visit(), but the results handed to the visitor carry no occurances.
+     */
+    
+    synchronized void visitKeys(ScanResultVisitor visitor) throws IOException {
+        merge(visitor, false);
+    }
+    
+    private void merge(ScanResultVisitor visitor, boolean withOccurances) throws IOException {
+        sortRecords(buffer, bufferCount);
+        // Leave room for the cursor on the records still in memory
+        reduceRuns(MAX_MERGE_RUNS - 1);
+        Vector cursors = new Vector();
+        try {
+            PriorityQueue queue = openCursors(runs, cursors);
+            Cursor memoryCursor = new Cursor(runs.size(), buffer, bufferCount);
+            if (memoryCursor.advance()) queue.add(memoryCursor);
+            
+            ScanResult result = null;
+            while (!queue.isEmpty()) {
+                Cursor cursor = (Cursor)queue.poll();
+                Record record = cursor.current;
+                if (result == null || !result.getName().equals(record.key)) {
+                    if (result != null) visitor.visit(result);
+                    result = new ScanResult(new BundleItem(null, record.key, "*unknown*"));
+                }
+                if (withOccurances) result.addOccurance(record.toOccurance());
+                if (cursor.advance()) queue.add(cursor);
+            }
+            if (result != null) visitor.visit(result);
+        } finally {
+            closeCursors(cursors);
+        }
+    }
+    
+    // Merges the oldest runs in groups of MAX_MERGE_RUNS until at most maxRuns are left. The
+    // merged runs replace the ones they were made of, so later merges do not repeat the work.
+    private void reduceRuns(int maxRuns) throws IOException {
+        while (runs.size() > maxRuns) {
+            int groupSize = Math.min(MAX_MERGE_RUNS, runs.size() - maxRuns + 1);
+            Vector group = new Vector();
+            for (int i=0; i < groupSize; i++) group.addElement(runs.elementAt(i));
+            File runFile = createRunFile();
+            Vector cursors = new Vector();
+            try {
+                PriorityQueue queue = openCursors(group, cursors);
+                int count = 0;
+                for (int i=0; i < cursors.size(); i++) {
+                    Cursor cursor = (Cursor)cursors.elementAt(i);
+                    count += cursor.remaining + (cursor.current == null ? 0 : 1);
+                }
+                DataOutputStream dos = openRun(runFile);
+                try {
+                    dos.writeInt(count);
+                    while (!queue.isEmpty()) {
+                        Cursor cursor = (Cursor)queue.poll();
+                        cursor.current.write(dos);
+                        if (cursor.advance()) queue.add(cursor);
+                    }
+                } finally {
+                    dos.close();
+                }
+            } catch (IOException ioe) {
+                runFile.delete();
+                throw ioe;
+            } finally {
+                closeCursors(cursors);
+            }
+            for (int i=0; i < groupSize; i++) {
+                ((File)runs.elementAt(0)).delete();
+                runs.removeElementAt(0);
+            }
+            runs.addElement(runFile);
+        }
+    }
+    
+    // Opens a cursor on each of the run files, adding it to the cursors Vector, and returns
+    // a queue of the cursors that are not empty, ordered by their current record. Ties between
+    // cursors are broken by run order.
+    private static PriorityQueue openCursors(Vector runFiles, Vector cursors) throws IOException {
+        PriorityQueue queue = new PriorityQueue(runFiles.size() + 1, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                Cursor c1 = (Cursor)o1;
+                Cursor c2 = (Cursor)o2;
+                int result = c1.current.compareTo(c2.current);
+                return (result != 0 ? result : c1.order - c2.order);
+            }
+        });
+        for (int i=0; i < runFiles.size(); i++) {
+            Cursor cursor = new Cursor(i, (File)runFiles.elementAt(i));
+            cursors.addElement(cursor);
+            if (cursor.advance()) queue.add(cursor);
+        }
+        return queue;
+    }
+    
+    private static void closeCursors(Vector cursors) throws IOException {
+        for (int i=0; i < cursors.size(); i++) {
+            ((Cursor)cursors.elementAt(i)).close();
+        }
+    }
+    
+    /**
+     * Deletes the temporary files and drops all buffered occurances.
+     */
+    
+    synchronized void dispose() {
+        for (int i=0; i < runs.size(); i++) {
+            ((File)runs.elementAt(i)).delete();
+        }
+        runs.removeAllElements();
+        for (int i=0; i < bufferCount; i++) buffer[i] = null;
+        bufferCount = 0;
+        keyCount = -1;
+    }
+    
+    // A single occurance of a key
+    private static class Record {
+        String key;
+        String filePath;
+        int    lineNumber;
+        
+        Record(String key, String filePath, int lineNumber) {
+            this.key = key;
+            this.filePath = filePath;
+            this.lineNumber = lineNumber;
+        }
+        
+        int compareTo(Record other) {
+            int result = key.compareTo(other.key);
+            if (result != 0) return result;
+            return ScanResult.compareOccurances(filePath, lineNumber, other.filePath, other.lineNumber);
+        }
+        
+        void write(DataOutputStream dos) throws IOException {
+            writeString(dos, key);
+            writeString(dos, filePath);
+            dos.writeInt(lineNumber);
+        }
+        
+        static Record read(DataInputStream dis) throws IOException {
+            String key = readString(dis);
+            String filePath = readString(dis);
+            return new Record(key, filePath, dis.readInt());
+        }
+        
+        Occurance toOccurance() {
+            return new Occurance(new File(filePath).getName(), filePath, lineNumber);
+        }
+        
+        // writeUTF() is limited to 64K, which a long source line could exceed
+        private static void writeString(DataOutputStream dos, String s) throws IOException {
+            byte bytes[] = s.getBytes("UTF-8");
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+        
+        private static String readString(DataInputStream dis) throws IOException {
+            byte bytes[] = new byte[dis.readInt()];
+            dis.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        }
+    }
+    
+    // Reads the records of one sorted run, from a file or from the memory buffer
+    private static class Cursor {
+        int             order;
+        DataInputStream dis;
+        Record          records[];
+        int             remaining;
+        int             position;
+        Record          current;
+        
+        Cursor(int order, File runFile) throws IOException {
+            this.order = order;
+            dis = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), 1 << 16));
+            remaining = dis.readInt();
+        }
+        
+        Cursor(int order, Record records[], int count) {
+            this.order = order;
+            this.records = records;
+            remaining = count;
+        }
+        
+        boolean advance() throws IOException {
+            if (remaining <= 0) {
+                current = null;
+                close();
+                return false;
+            }
+            remaining--;
+            current = (dis != null ? Record.read(dis) : records[position++]);
+            return true;
+        }
+        
+        void close() throws IOException {
+            if (dis != null) {
+                dis.close();
+                dis = null;
+            }
+        }
+    }
+}
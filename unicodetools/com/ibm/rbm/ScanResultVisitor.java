@@ -0,0 +1,22 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+import java.io.IOException;
+
+/**
+ * A callback receiving scan results one resource at a time. The code scanner uses it
+ * to hand out results that may not all fit into memory at once.
+ * 
+ * @see com.ibm.rbm.RBReporterScanner
+ */
+public interface ScanResultVisitor {
+    /**
+     * Called once for each resource, with all of the occurances found for it.
+     */
+    public void visit(ScanResult result) throws IOException;
+}
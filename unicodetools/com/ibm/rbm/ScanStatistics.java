@@ -0,0 +1,71 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm;
+
+/**
+ * This class records the walk statistics of one file rule applied to one directory
+ * while performing the code scan done by RBReporter.
+ * 
+ * @see com.ibm.rbm.RBReporterScanner
+ */
+public class ScanStatistics {
+    String directory;
+    String ruleName;
+    int directoriesVisited;
+    int filesAccepted;
+    int filesSkipped;
+    
+    ScanStatistics(String directory, String ruleName) {
+        this.directory = directory;
+        this.ruleName = ruleName;
+    }
+    
+    /**
+     * Returns the location of the scanned directory as given in the scan file
+     */
+    
+    public String getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Returns the name of the file rule
+     */
+    
+    public String getRuleName() {
+        return ruleName;
+    }
+    
+    /**
+     * Returns the number of directories walked, including the scanned directory itself
+     */
+    
+    public int getDirectoriesVisited() {
+        return directoriesVisited;
+    }
+    
+    /**
+     * Returns the number of files accepted by the file rule
+     */
+    
+    public int getFilesAccepted() {
+        return filesAccepted;
+    }
+    
+    /**
+     * Returns the number of files rejected by the file rule or by the directory globs
+     */
+    
+    public int getFilesSkipped() {
+        return filesSkipped;
+    }
+    
+    public String toString() {
+        return directory + " [" + ruleName + "]: " + directoriesVisited + " directories, " +
+               filesAccepted + " files accepted, " + filesSkipped + " files skipped";
+    }
+}
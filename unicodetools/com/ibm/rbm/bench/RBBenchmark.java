@@ -0,0 +1,440 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm.bench;
+
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import com.ibm.rbm.*;
+
+/**
+ * Measures the time and memory taken by the main operations of RBManager on a synthetic
+ * resource bundle: loading, saving, key lookups, statistics, the code scan, and each of
+ * the exporters and import readers. Each benchmark is run a number of times to warm up
+ * the compiler, and then measured over a number of iterations. For each iteration the
+ * harness records the time, the bytes allocated by the calling thread, and the time spent
+ * in garbage collection. Work done by other threads, such as the scan workers, is included in the
+ * time and garbage collection figures but not in the allocation figure.
+ * <p>
+ * Run it as:
+ * <pre>
+ * java com.ibm.rbm.bench.RBBenchmark [-locales n] [-keys n] [-groups n] [-files n] [-lines n]
+ *                                    [-warmup n] [-iterations n] [-seed n] [-dir directory]
+ *                                    [benchmark ...]
+ * </pre>
+ * Without any benchmark names all of them are run.
+ *
+ * @see com.ibm.rbm.bench.SyntheticBundles
+ */
+public class RBBenchmark {
+    /** Results are stored here so that the compiler cannot discard the measured work */
+    public static volatile int sink;
+
+    /** The number of locales of the bundle of the export-icu-150 benchmark */
+    public static final int MANY_LOCALES = 150;
+
+    /**
+     * A measured operation. setUp() runs once before the warm up, and run() once for each
+     * iteration.
+     */
+
+    public abstract static class Benchmark {
+        private String name;
+
+        protected Benchmark(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        protected void setUp() throws Exception {
+        }
+
+        protected abstract Object run() throws Exception;
+
+        protected void tearDown() throws Exception {
+        }
+    }
+
+    private File             directory;
+    private SyntheticBundles data;
+    private int              files = 200;
+    private int              lines = 50;
+    private int              warmup = 5;
+    private int              iterations = 10;
+    private Vector           benchmarks = new Vector();
+
+    private File             baseFile;
+    private File             scanFile;
+    private RBManager        rbm;
+
+    public RBBenchmark(File directory, SyntheticBundles data) {
+        this.directory = directory;
+        this.data = data;
+        addStandardBenchmarks();
+    }
+
+    public void setSourceFiles(int files, int lines) {
+        this.files = files;
+        this.lines = lines;
+    }
+
+    public void setIterations(int warmup, int iterations) {
+        this.warmup = warmup;
+        this.iterations = Math.max(1, iterations);
+    }
+
+    /**
+     * Adds a benchmark to those run by runAll()
+     */
+
+    public void addBenchmark(Benchmark benchmark) {
+        benchmarks.addElement(benchmark);
+    }
+
+    public Vector getBenchmarks() {
+        return benchmarks;
+    }
+
+    /**
+     * Returns the base class file of the synthetic bundle, writing the bundle first if needed
+     */
+
+    public File getBaseFile() throws IOException {
+        if (baseFile == null) baseFile = data.writeBundle(new File(directory, "bundle"), "Synthetic");
+        return baseFile;
+    }
+
+    /**
+     * Returns the synthetic bundle, loaded once and shared by the benchmarks that only read it
+     */
+
+    public RBManager getManager() throws IOException {
+        if (rbm == null) rbm = new RBManager(getBaseFile(), false);
+        return rbm;
+    }
+
+    public File getScanFile() throws IOException {
+        if (scanFile == null) {
+            File sources = new File(directory, "src");
+            data.writeSourceTree(sources, files, lines);
+            scanFile = SyntheticBundles.writeScanFile(new File(directory, "scan.xml"), sources,
+                                                      Runtime.getRuntime().availableProcessors(), 0);
+        }
+        return scanFile;
+    }
+
+    private void addStandardBenchmarks() {
+        addBenchmark(new Benchmark("load") {
+            protected Object run() throws Exception {
+                return new RBManager(getBaseFile(), false);
+            }
+        });
+        addBenchmark(new Benchmark("save") {
+            File out;
+            protected void setUp() throws Exception {
+                getManager();
+                out = new File(directory, "save");
+                out.mkdirs();
+            }
+            protected Object run() throws Exception {
+                // The same work as RBManager.writeToFile(), without touching the preferences
+                Vector bundles = rbm.getBundles();
+                for (int i=0; i < bundles.size(); i++) {
+                    Bundle bundle = (Bundle)bundles.elementAt(i);
+                    Writer writer = new BufferedWriter(new FileWriter(new File(out, "Synthetic" +
+                        (bundle.encoding == null || bundle.encoding.length() < 1 ? "" : "_" + bundle.encoding) + ".properties")));
+                    bundle.writeContents(writer);
+                    writer.close();
+                }
+                return bundles;
+            }
+        });
+        addBenchmark(new Benchmark("search") {
+            protected void setUp() throws Exception {
+                getManager();
+            }
+            protected Object run() throws Exception {
+                // Look every key up in every locale, then by group, then find the untranslated items
+                int found = 0;
+                Vector bundles = rbm.getBundles();
+                for (int i=0; i < bundles.size(); i++) {
+                    Bundle bundle = (Bundle)bundles.elementAt(i);
+                    for (int j=0; j < data.getKeyCount(); j++) {
+                        if (bundle.getBundleItem(SyntheticBundles.getKey(j)) != null) found++;
+                    }
+                    for (int j=0; j < bundle.getGroupCount(); j++) {
+                        found += bundle.getBundleGroup(bundle.getBundleGroup(j).getName()).getItemCount();
+                    }
+                    found += bundle.getUntranslatedItemsAsVector().size();
+                }
+                return Integer.valueOf(found);
+            }
+        });
+        addBenchmark(new Benchmark("statistics") {
+            protected void setUp() throws Exception {
+                getManager();
+            }
+            protected Object run() throws Exception {
+                return new RBReportStatistics(rbm);
+            }
+        });
+        addBenchmark(new Benchmark("scan") {
+            Vector bundles = new Vector();
+            ScanPlan plan;
+            protected void setUp() throws Exception {
+                bundles.addElement(getManager().getBundles().elementAt(0));
+                plan = ScanPlan.forFile(getScanFile());
+            }
+            protected Object run() throws Exception {
+                RBReporterScanner scanner = new RBReporterScanner(bundles, plan);
+                scanner.performScan();
+                scanner.dispose();
+                return scanner;
+            }
+        });
+        addExportBenchmark("export-icu", new RBICUExporter(), "Synthetic.txt");
+        addBenchmark(new Benchmark("export-icu-" + MANY_LOCALES) {
+            // The ICU exporter writes its locales at the same time, so it is also measured on
+            // a bundle of many locales
+            RBManager many;
+            File out;
+            protected void setUp() throws Exception {
+                File base = data.withLocales(MANY_LOCALES).writeBundle(new File(directory, "bundle-" + MANY_LOCALES), "Synthetic");
+                many = new RBManager(base, false);
+                out = new File(new File(directory, getName()), "Synthetic.txt");
+                out.getParentFile().mkdirs();
+            }
+            protected Object run() throws Exception {
+                new RBICUExporter().export(many, out);
+                return out;
+            }
+            protected void tearDown() throws Exception {
+                many = null;
+            }
+        });
+        addExportBenchmark("export-icu-res", new RBICUBinaryExporter(), "Synthetic.res");
+        addExportBenchmark("export-java", new RBJavaExporter(), "Synthetic.java");
+        addExportBenchmark("export-properties", new RBPropertiesExporter(), "Synthetic.properties");
+        addExportBenchmark("export-tmx", new RBTMXExporter(), "Synthetic.tmx");
+        addExportBenchmark("export-xliff", new RBxliffExporter(), "Synthetic.xlf");
+        addImportBenchmark("import-icu", new RBICUExporter(), new RBICUImportReader(), "Synthetic.txt", false);
+        addImportBenchmark("import-properties", new RBPropertiesExporter(), new RBPropertiesImportReader(), "Synthetic.properties", false);
+        addImportBenchmark("import-tmx", new RBTMXExporter(), new RBTMXImportReader(), "Synthetic.tmx", false);
+        addImportBenchmark("import-xliff", new RBxliffExporter(), new RBxliffImportReader(), "Synthetic.xlf", true);
+    }
+
+    private void addExportBenchmark(String name, final RBExporter exporter, final String fileName) {
+        addBenchmark(new Benchmark(name) {
+            File out;
+            protected void setUp() throws Exception {
+                getManager();
+                out = new File(new File(directory, getName()), fileName);
+                out.getParentFile().mkdirs();
+            }
+            protected Object run() throws Exception {
+                exporter.export(rbm, out);
+                return out;
+            }
+        });
+    }
+
+    // Imports files written by an exporter into an empty bundle. The xliff exporter writes a
+    // file for each locale, all of which are imported when allFiles is set.
+    private void addImportBenchmark(String name, final RBExporter exporter, final RBImportReader reader,
+                                    final String fileName, final boolean allFiles) {
+        addBenchmark(new Benchmark(name) {
+            Vector files = new Vector();
+            protected void setUp() throws Exception {
+                File out = new File(new File(directory, getName()), fileName);
+                out.getParentFile().mkdirs();
+                exporter.export(getManager(), out);
+                if (!allFiles) {
+                    files.addElement(out);
+                    return;
+                }
+                String extension = fileName.substring(fileName.lastIndexOf('.'));
+                File children[] = out.getParentFile().listFiles();
+                for (int i=0; i < children.length; i++) {
+                    if (children[i].getName().endsWith(extension)) files.addElement(children[i]);
+                }
+            }
+            protected Object run() throws Exception {
+                RBImportSession session = new RBImportSession(new RBManager("Synthetic"));
+                session.setFileConflictOption(RBImportSession.FILE_OPTION_EMPTY);
+                for (int i=0; i < files.size(); i++) {
+                    reader.importFile((File)files.elementAt(i), session);
+                }
+                return session;
+            }
+        });
+    }
+
+    /**
+     * Runs the benchmarks whose names are given, or all of them if none are, and prints a
+     * line for each to a stream.
+     */
+
+    public void runAll(String names[], PrintStream out) throws Exception {
+        out.println("Bundle: " + data.getLocaleCount() + " locales, " + data.getKeyCount() + " keys; sources: " +
+                    files + " files of " + lines + " lines; " + warmup + " warm up and " + iterations + " measured iterations");
+        out.println();
+        out.println(pad("Benchmark", 20, false) + pad("Mean ms", 12, true) + pad("Min ms", 12, true) +
+                    pad("Max ms", 12, true) + pad("Alloc MB/op", 14, true) + pad("GC ms/op", 12, true));
+        for (int i=0; i < benchmarks.size(); i++) {
+            Benchmark benchmark = (Benchmark)benchmarks.elementAt(i);
+            if (names.length > 0 && !Arrays.asList(names).contains(benchmark.getName())) continue;
+            double result[] = run(benchmark);
+            out.println(pad(benchmark.getName(), 20, false) + pad(format(result[0]), 12, true) +
+                        pad(format(result[1]), 12, true) + pad(format(result[2]), 12, true) +
+                        pad(format(result[3]), 14, true) + pad(format(result[4]), 12, true));
+        }
+    }
+
+    /**
+     * Runs one benchmark, and returns its mean, minimum and maximum time in milliseconds,
+     * its allocation in megabytes and its garbage collection time in milliseconds per
+     * iteration.
+     */
+
+    public double[] run(Benchmark benchmark) throws Exception {
+        benchmark.setUp();
+        try {
+            for (int i=0; i < warmup; i++) {
+                sink += System.identityHashCode(benchmark.run());
+            }
+            double total = 0;
+            double min = Double.MAX_VALUE;
+            double max = 0;
+            long allocated = 0;
+            long gcMillis = 0;
+            for (int i=0; i < iterations; i++) {
+                long gcBefore = getCollectionTime();
+                long allocatedBefore = getAllocatedBytes();
+                long start = System.nanoTime();
+                sink += System.identityHashCode(benchmark.run());
+                double millis = (System.nanoTime() - start) / 1e6;
+                allocated += getAllocatedBytes() - allocatedBefore;
+                gcMillis += getCollectionTime() - gcBefore;
+                total += millis;
+                min = Math.min(min, millis);
+                max = Math.max(max, millis);
+            }
+            return new double[] {total / iterations, min, max, allocated / 1048576.0 / iterations,
+                                 (double)gcMillis / iterations};
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    // Returns the bytes allocated by the calling thread so far, or 0 if this is not known
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static long getCollectionTime() {
+        long total = 0;
+        Iterator it = ManagementFactory.getGarbageCollectorMXBeans().iterator();
+        while (it.hasNext()) {
+            total += Math.max(0, ((GarbageCollectorMXBean)it.next()).getCollectionTime());
+        }
+        return total;
+    }
+
+    private static String format(double value) {
+        return String.valueOf(Math.round(value * 100) / 100.0);
+    }
+
+    private static String pad(String s, int width, boolean right) {
+        StringBuffer buffer = new StringBuffer(width);
+        if (!right) buffer.append(s);
+        for (int i=s.length(); i < width; i++) buffer.append(' ');
+        if (right) buffer.append(s);
+        return buffer.toString();
+    }
+
+    private static String getUsage() {
+        return "\nRBBenchmark Command Line Usage:\n\n" +
+               "Usage:                 java com.ibm.rbm.bench.RBBenchmark [options] [benchmark ...]\n\n" +
+               "Options:               -locales n     Locales besides the base class (default 10)\n" +
+               "                       -keys n        Keys of each locale (default 2000)\n" +
+               "                       -groups n      Groups the keys are spread over (default 20)\n" +
+               "                       -files n       Source files to scan (default 200)\n" +
+               "                       -lines n       Lookups in each source file (default 50)\n" +
+               "                       -warmup n      Warm up iterations (default 5)\n" +
+               "                       -iterations n  Measured iterations (default 10)\n" +
+               "                       -seed n        Seed of the synthetic data (default 1)\n" +
+               "                       -dir directory Where to write the synthetic data (default a temporary directory, removed afterwards)";
+    }
+
+    public static void main(String args[]) {
+        System.setProperty("java.awt.headless", "true");
+        int locales = 10, keys = 2000, groups = 20, files = 200, lines = 50, warmup = 5, iterations = 10;
+        long seed = 1;
+        File directory = null;
+        Vector names = new Vector();
+        try {
+            for (int i=0; i < args.length; i++) {
+                if (!args[i].startsWith("-")) names.addElement(args[i]);
+                else if (i+1 >= args.length) throw new IllegalArgumentException(args[i]);
+                else if (args[i].equals("-locales")) locales = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-keys")) keys = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-groups")) groups = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-files")) files = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-lines")) lines = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-warmup")) warmup = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-iterations")) iterations = Integer.parseInt(args[++i]);
+                else if (args[i].equals("-seed")) seed = Long.parseLong(args[++i]);
+                else if (args[i].equals("-dir")) directory = new File(args[++i]);
+                else throw new IllegalArgumentException(args[i]);
+            }
+        } catch (IllegalArgumentException iae) {
+            System.out.println(getUsage());
+            return;
+        }
+        // A temporary directory is removed afterwards; one given with -dir is kept
+        boolean temporary = (directory == null);
+        int status = 0;
+        try {
+            if (temporary) {
+                directory = File.createTempFile("rbbench", "");
+                directory.delete();
+            }
+            directory.mkdirs();
+            RBBenchmark bench = new RBBenchmark(directory, new SyntheticBundles(seed, locales, keys, groups));
+            bench.setSourceFiles(files, lines);
+            bench.setIterations(warmup, iterations);
+            String nameArray[] = new String[names.size()];
+            names.copyInto(nameArray);
+            bench.runAll(nameArray, System.out);
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 1;
+        } finally {
+            if (temporary && directory != null) deleteTree(directory);
+        }
+        System.exit(status);
+    }
+
+    private static void deleteTree(File file) {
+        File children[] = file.listFiles();
+        if (children != null) {
+            for (int i=0; i < children.length; i++) deleteTree(children[i]);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm.bench;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes a resource bundle of any size in the format RBManager reads, together with a
+ * tree of Java sources using its keys and a scan file for that tree. The contents
+ * depend only on the seed and the sizes, so the same arguments always give the same
+ * files, and measurements taken on different days compare like with like.
+ * <p>
+ * Every locale has the same keys, spread evenly over the groups. About one item in
+ * five has lookups, one in three of the translations of the locales is marked as not
+ * translated, and a tenth of the keys used in the sources are missing from the bundle.
+ *
+ * @see com.ibm.rbm.bench.RBBenchmark
+ */
+public class SyntheticBundles {
+    private static final String WORDS[] = {"file", "open", "save", "edit", "window", "message", "error", "value",
+                                           "group", "item", "report", "print", "search", "replace", "select",
+                                           "delete", "create", "import", "export", "option", "language", "help"};
+    private static final String DATE = "2007-01-01";
+
+    private long seed;
+    private int  locales;
+    private int  keys;
+    private int  groups;
+
+    /**
+     * @param locales The number of locales besides the base class
+     * @param keys    The number of keys of each locale
+     * @param groups  The number of groups the keys are spread over
+     */
+
+    public SyntheticBundles(long seed, int locales, int keys, int groups) {
+        this.seed = seed;
+        this.locales = locales;
+        this.keys = keys;
+        this.groups = Math.max(1, groups);
+    }
+
+    /**
+     * Returns the encoding of the i-th locale, the first being 0: "aa", "ab" and so on
+     */
+
+    public static String getLocale(int i) {
+        return String.valueOf((char)('a' + (i / 26) % 26)) + (char)('a' + i % 26);
+    }
+
+    /**
+     * Returns the i-th key
+     */
+
+    public static String getKey(int i) {
+        return WORDS[i % WORDS.length] + "_" + WORDS[(i / WORDS.length) % WORDS.length] + "_" + i;
+    }
+
+    public int getKeyCount() {
+        return keys;
+    }
+
+    public int getLocaleCount() {
+        return locales;
+    }
+
+    /**
+     * Returns the same bundle with another number of locales
+     */
+
+    public SyntheticBundles withLocales(int count) {
+        return new SyntheticBundles(seed, count, keys, groups);
+    }
+
+    /**
+     * Writes the base class file and a file for each locale into a directory, and returns
+     * the base class file.
+     */
+
+    public File writeBundle(File directory, String baseName) throws IOException {
+        directory.mkdirs();
+        File baseFile = new File(directory, baseName + ".properties");
+        writeLocale(baseFile, baseName, null, new Random(seed));
+        for (int i=0; i < locales; i++) {
+            writeLocale(new File(directory, baseName + "_" + getLocale(i) + ".properties"), baseName,
+                        getLocale(i), new Random(seed + i + 1));
+        }
+        return baseFile;
+    }
+
+    private void writeLocale(File file, String baseName, String locale, Random random) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1"));
+        try {
+            out.write("# @file          " + baseName + (locale == null ? "" : "_" + locale) + ".properties\n");
+            if (locale != null) {
+                out.write("# @fileEncoding  " + locale + "\n");
+                out.write("# @fileLanguage  Language " + locale + "\n");
+            }
+            out.write("# @fileManager   RBBenchmark\n");
+            out.write("# @fileComment   Synthetic resource bundle\n\n");
+            int perGroup = (keys + groups - 1) / groups;
+            for (int i=0; i < keys; i++) {
+                if (i % perGroup == 0 && i / perGroup > 0) {
+                    out.write("\n#\n# @group Group " + (i / perGroup) + "\n#\n");
+                    out.write("# @groupComment The keys from " + i + "\n\n");
+                }
+                boolean translated = (locale == null || random.nextInt(3) > 0);
+                out.write("# @translated " + translated + " @created " + DATE + " @modified " + DATE +
+                          " @creator bench @modifier bench\n");
+                if (i % 5 == 0) out.write("# @{0} A number\n");
+                if (i % 7 == 0) out.write("# @comment The comment of " + getKey(i) + "\n");
+                out.write(getKey(i) + "=" + getValue(i, locale, random) + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private String getValue(int key, String locale, Random random) {
+        StringBuffer buffer = new StringBuffer();
+        if (locale != null) buffer.append('[').append(locale).append("] ");
+        int words = 2 + random.nextInt(8);
+        for (int i=0; i < words; i++) {
+            if (i > 0) buffer.append(' ');
+            buffer.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (key % 5 == 0) buffer.append(" {0}");
+        return buffer.toString();
+    }
+
+    /**
+     * Writes Java sources into a directory, in subdirectories of ten files each. Each line
+     * of a file holds one key lookup; a tenth of them use keys that are not in the bundle.
+     */
+
+    public void writeSourceTree(File directory, int files, int linesPerFile) throws IOException {
+        Random random = new Random(seed ^ 0x5eed);
+        for (int i=0; i < files; i++) {
+            File packageDirectory = new File(directory, "p" + (i / 10));
+            packageDirectory.mkdirs();
+            Writer out = new BufferedWriter(new FileWriter(new File(packageDirectory, "Source" + i + ".java")));
+            try {
+                out.write("package p" + (i / 10) + ";\n\npublic class Source" + i + " {\n    void run() {\n");
+                for (int j=0; j < linesPerFile; j++) {
+                    int key = random.nextInt(Math.max(1, keys));
+                    String name = (random.nextInt(10) == 0 ? "missing_" + key : getKey(key));
+                    out.write("        show(Resources.getTranslation(\"" + name + "\"));\n");
+                }
+                out.write("    }\n}\n");
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Writes a scan file that applies the usual Java rules to a source tree
+     */
+
+    public static File writeScanFile(File file, File sourceDirectory, int threads, int spillThreshold) throws IOException {
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            out.write("<?xml version=\"1.0\" ?>\n<RBFileScanner>\n");
+            out.write("  <FileRules><FileRule name=\"Java\" ends_with=\".java\" /></FileRules>\n");
+            out.write("  <ParseRules><ParseRule name=\"getTranslation\" follows=\"Resources.getTranslation(&quot;\" " +
+                      "precedes=\"&quot;\" /></ParseRules>\n");
+            out.write("  <Scan threads=\"" + threads + "\"" +
+                      (spillThreshold > 0 ? " spill_threshold=\"" + spillThreshold + "\"" : "") + ">\n");
+            out.write("    <Directory location=\"" + sourceDirectory.getAbsolutePath() + "\" recurse_directories=\"true\">\n");
+            out.write("      <Rules><ApplyFileRule name=\"Java\"><ApplyParseRule name=\"getTranslation\" />" +
+                      "</ApplyFileRule></Rules>\n");
+            out.write("    </Directory>\n  </Scan>\n</RBFileScanner>\n");
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -484,6 +484,10 @@ public class RBManagerGUI extends JFrame implements ActionListener, MouseListene
 																					   // Menu -> File -> Import -> Java
 				if (rbm == null || rbm.getBundles() == null) return;
 				RBJavaImporter importer = new RBJavaImporter(Resources.getTranslation("import_java_title"), rbm, this);
+			} else if (ev.getActionCommand().equals(Resources.getTranslation("menu_file_import_ICU"))) {
+																					   // Menu -> File -> Import -> ICU
+				if (rbm == null || rbm.getBundles() == null) return;
+				RBICUImporter importer = new RBICUImporter(Resources.getTranslation("import_ICU_title"), rbm, this);
 			} else if (ev.getActionCommand().equals(Resources.getTranslation("menu_file_import_TMX"))) {
 																					   // Menu -> File -> Import -> TMX
 				if (rbm == null || rbm.getBundles() == null)
@@ -522,6 +526,15 @@ public class RBManagerGUI extends JFrame implements ActionListener, MouseListene
 					JOptionPane.showMessageDialog(this, Resources.getTranslation("error_export"),
 												  Resources.getTranslation("error"), JOptionPane.ERROR_MESSAGE);
 				}
+			} else if (ev.getActionCommand().equals(Resources.getTranslation("menu_file_export_ICU_binary"))) {
+																					   // Menu -> File -> Export -> ICU Binary
+				RBICUBinaryExporter exp = new RBICUBinaryExporter();
+				try {
+					if (rbm != null && rbm.getBundles() != null) exp.export(rbm);
+				} catch (IOException ioe) {
+					JOptionPane.showMessageDialog(this, Resources.getTranslation("error_export"),
+												  Resources.getTranslation("error"), JOptionPane.ERROR_MESSAGE);
+				}
 			} else if (ev.getActionCommand().equals(Resources.getTranslation("menu_file_export_TMX"))) {
 																					   // Menu -> File -> Export -> TMX
 				RBTMXExporter exp = new RBTMXExporter();
@@ -1422,12 +1435,14 @@ class RBManagerMenuBar extends JMenuBar {
 	JMenuItem    jMenuFileSaveResourceBundleAs = new JMenuItem();
 	JMenu        jMenuFileImportResourceBundle = new JMenu();                 // Menu -> File -> Import
 	JMenuItem    jMenuFileImportJava = new JMenuItem();
+	JMenuItem    jMenuFileImportICU = new JMenuItem();
 	JMenuItem    jMenuFileImportProperties = new JMenuItem();
 	JMenuItem    jMenuFileImportTMX = new JMenuItem();
 	JMenuItem    jMenuFileImportXLF = new JMenuItem();
 	JMenu        jMenuFileExportResourceBundle = new JMenu();                 // Menu -> File -> Export
 	JMenuItem    jMenuFileExportJava = new JMenuItem();
 	JMenuItem    jMenuFileExportICU = new JMenuItem();
+	JMenuItem    jMenuFileExportICUBinary = new JMenuItem();
 	JMenuItem    jMenuFileExportProperties = new JMenuItem();
 	JMenuItem    jMenuFileExportTMX = new JMenuItem();
 	JMenuItem    jMenuFileExportXLF = new JMenuItem();
@@ -1464,6 +1479,8 @@ class RBManagerMenuBar extends JMenuBar {
 		jMenuFileImportResourceBundle.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_import_trigger")));
 		jMenuFileImportJava.setText(Resources.getTranslation("menu_file_import_java"));
 		jMenuFileImportJava.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_import_java_trigger")));
+		jMenuFileImportICU.setText(Resources.getTranslation("menu_file_import_ICU"));
+		jMenuFileImportICU.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_import_ICU_trigger")));
 		jMenuFileImportProperties.setText(Resources.getTranslation("menu_file_import_properties"));
 		jMenuFileImportProperties.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_import_properties_trigger")));
 		jMenuFileImportTMX.setText(Resources.getTranslation("menu_file_import_TMX"));
@@ -1476,6 +1493,8 @@ class RBManagerMenuBar extends JMenuBar {
 		jMenuFileExportJava.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_export_java_trigger")));
 		jMenuFileExportICU.setText(Resources.getTranslation("menu_file_export_ICU"));
 		jMenuFileExportICU.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_export_ICU_trigger")));
+		jMenuFileExportICUBinary.setText(Resources.getTranslation("menu_file_export_ICU_binary"));
+		jMenuFileExportICUBinary.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_export_ICU_binary_trigger")));
 		jMenuFileExportProperties.setText(Resources.getTranslation("menu_file_export_properties"));
 		jMenuFileExportProperties.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_export_properties_trigger")));
 		jMenuFileExportTMX.setText(Resources.getTranslation("menu_file_export_TMX"));
@@ -1572,12 +1591,14 @@ class RBManagerMenuBar extends JMenuBar {
 		
 		//jMenuFileImportResourceBundle.add(jMenuFileImportJava);
 		jMenuFileImportResourceBundle.add(jMenuFileImportProperties);
+		jMenuFileImportResourceBundle.add(jMenuFileImportICU);
         jMenuFileImportTMX.setEnabled(xmlAvailable);
 		jMenuFileImportResourceBundle.add(jMenuFileImportTMX);
         jMenuFileImportXLF.setEnabled(xmlAvailable);
 		jMenuFileImportResourceBundle.add(jMenuFileImportXLF);
 		jMenuFileExportResourceBundle.add(jMenuFileExportJava);
 		jMenuFileExportResourceBundle.add(jMenuFileExportICU);
+		jMenuFileExportResourceBundle.add(jMenuFileExportICUBinary);
 		jMenuFileExportResourceBundle.add(jMenuFileExportProperties);
         jMenuFileExportTMX.setEnabled(xmlAvailable);
 		jMenuFileExportResourceBundle.add(jMenuFileExportTMX);
@@ -1622,6 +1643,11 @@ class RBManagerMenuBar extends JMenuBar {
 		jMenuFileImportJava.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_import_java_trigger")));
 		jMenuFileImportJava.addActionListener(listener);
 		
+		jMenuFileImportICU.setVisible(true);
+		jMenuFileImportICU.setText(Resources.getTranslation("menu_file_import_ICU"));
+		jMenuFileImportICU.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_import_ICU_trigger")));
+		jMenuFileImportICU.addActionListener(listener);
+		
 		jMenuFileImportProperties.setVisible(true);
 		jMenuFileImportProperties.setText(Resources.getTranslation("menu_file_import_properties"));
 		jMenuFileImportProperties.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_import_properties_trigger")));
@@ -1652,6 +1678,11 @@ class RBManagerMenuBar extends JMenuBar {
 		jMenuFileExportICU.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_export_ICU_trigger")));
 		jMenuFileExportICU.addActionListener(listener);
 
+		jMenuFileExportICUBinary.setVisible(true);
+		jMenuFileExportICUBinary.setText(Resources.getTranslation("menu_file_export_ICU_binary"));
+		jMenuFileExportICUBinary.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_export_ICU_binary_trigger")));
+		jMenuFileExportICUBinary.addActionListener(listener);
+
 		jMenuFileExportProperties.setVisible(true);
 		jMenuFileExportProperties.setText(Resources.getTranslation("menu_file_export_properties"));
 		jMenuFileExportProperties.setMnemonic(getKeyEventKey(Resources.getTranslation("menu_file_export_properties_trigger")));
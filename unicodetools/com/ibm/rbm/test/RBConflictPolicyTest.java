@@ -0,0 +1,113 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm.test;
+
+import java.io.*;
+
+import com.ibm.rbm.*;
+
+/**
+ * Checks the decisions of the conflict rules, and in particular that the rule preferring
+ * the newer resource abstains when either resource has no modified date: a resource made
+ * without one, one whose date could not be read, or one imported from a format that has
+ * no dates, like a plain properties file or a TMX unit without a changedate.
+ */
+public class RBConflictPolicyTest extends RBTest {
+    private static final String OLD_DATE = "20050102T000000Z";   // Read by BundleItem as 2005-01-02
+
+    protected void runChecks() throws Exception {
+        checkDates();
+        checkNewer();
+        checkPropertiesImport();
+        checkTMXImport();
+    }
+
+    private void checkDates() {
+        BundleItem item = new BundleItem(null, "k", "v");
+        check(!item.isModifiedDateKnown(), "a new resource has a known modified date");
+        item.setModifiedDate("");
+        check(!item.isModifiedDateKnown(), "an empty modified date is known");
+        item.setModifiedDate("not a date");
+        check(!item.isModifiedDateKnown(), "an unreadable modified date is known");
+        check(item.getModifiedDate() != null, "an unreadable modified date leaves no date");
+        item.setModifiedDate(OLD_DATE);
+        check(item.isModifiedDateKnown(), "a readable modified date is unknown");
+        item.setModifiedDate("");
+        check(!item.isModifiedDateKnown(), "a modified date stays known after an empty one");
+        item.setModifiedDate(new java.util.Date());
+        check(item.isModifiedDateKnown(), "a modified date set as a Date is unknown");
+    }
+
+    private void checkNewer() {
+        RBConflictPolicy newer = RBConflictPolicy.newer();
+        BundleItem existing = new BundleItem(null, "k", "old");
+        existing.setModifiedDate(OLD_DATE);
+        BundleItem undated = new BundleItem(null, "k", "new");
+        checkEquals(RBConflictPolicy.ABSTAIN, newer.decide(null, existing, undated),
+                    "newer() with an undated import");
+        checkEquals(RBConflictPolicy.ABSTAIN, newer.decide(null, undated, existing),
+                    "newer() with an undated existing resource");
+        BundleItem later = new BundleItem(null, "k", "new");
+        later.setModifiedDate("20060102T000000Z");
+        checkEquals(RBConflictPolicy.OVERWRITE, newer.decide(null, existing, later),
+                    "newer() with a later import");
+        checkEquals(RBConflictPolicy.KEEP, newer.decide(null, later, existing),
+                    "newer() with an earlier import");
+    }
+
+    // A plain properties file has no dates, so the resource conflict option decides
+    private void checkPropertiesImport() throws IOException {
+        File file = writeFile("Test.properties", "k1=imported\nk2=added\n");
+        RBManager rbm = createManager();
+        new RBPropertiesImportReader().importFile(file, createSession(rbm));
+        checkImport(rbm, "a properties import");
+    }
+
+    // A TMX unit without a changedate has no date, so the resource conflict option decides
+    private void checkTMXImport() throws IOException {
+        File file = writeFile("Test.tmx",
+                              "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                              "<tmx version=\"1.4\"><header srclang=\"en\"/><body>\n" +
+                              "<tu tuid=\"k1\"><tuv><seg>imported</seg></tuv></tu>\n" +
+                              "<tu tuid=\"k2\"><tuv><seg>added</seg></tuv></tu>\n" +
+                              "</body></tmx>\n");
+        RBManager rbm = createManager();
+        new RBTMXImportReader().importFile(file, createSession(rbm));
+        checkImport(rbm, "a TMX import");
+    }
+
+    // Returns a bundle whose base locale has the resource k1, last modified long ago
+    private static RBManager createManager() {
+        RBManager rbm = new RBManager("Test");
+        Bundle bundle = rbm.getBundle("");
+        BundleItem item = new BundleItem(bundle.getUngroupedGroup(), "k1", "existing");
+        item.setModifiedDate(OLD_DATE);
+        bundle.addBundleItem(item);
+        return rbm;
+    }
+
+    // Returns a session keeping the existing resource unless the newer rule decides otherwise
+    private static RBImportSession createSession(RBManager rbm) {
+        RBImportSession session = new RBImportSession(rbm);
+        session.setDefaultGroup("Ungrouped Items");
+        session.setResourceConflictOption(RBImportSession.RESOURCE_OPTION_IGNORE);
+        session.addConflictPolicy(RBConflictPolicy.newer());
+        return session;
+    }
+
+    private void checkImport(RBManager rbm, String what) {
+        Bundle bundle = rbm.getBundle("");
+        BundleItem k1 = (BundleItem)bundle.allItems.get("k1");
+        BundleItem k2 = (BundleItem)bundle.allItems.get("k2");
+        checkEquals("existing", (k1 == null ? null : k1.getTranslation()), what + " replaced a dated resource");
+        checkEquals("added", (k2 == null ? null : k2.getTranslation()), what + " left out a new resource");
+    }
+
+    public static void main(String args[]) {
+        main(new RBConflictPolicyTest());
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm.test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+import com.ibm.rbm.*;
+
+/**
+ * Checks the .res files written by RBICUBinaryExporter by reading them back the way ICU
+ * reads formatVersion 2 resource bundles, and comparing every key and string with the
+ * bundle they were written from. The bundles cover an empty locale, keys and strings that
+ * are the ends of others, strings written after their length, and the 16-bit, 32-bit and
+ * mixed tables written when the keys or strings are too many for the smaller ones.
+ * <p>
+ * The files are not compared with those of genrb, which is not needed to run the test.
+ */
+public class RBICUBinaryExporterTest extends RBTest {
+    private static final int URES_TABLE     = 2;
+    private static final int URES_TABLE32   = 4;
+    private static final int URES_TABLE16   = 5;
+    private static final int URES_STRING_V2 = 6;
+
+    protected void runChecks() throws Exception {
+        checkSmall();
+        checkWideStrings();
+        checkManyKeys();
+    }
+
+    // A bundle small enough for the 16-bit table, with an empty locale beside it
+    private void checkSmall() throws IOException {
+        RBManager rbm = new RBManager("Small");
+        Bundle bundle = rbm.getBundle("");
+        addItem(bundle, "name", "Smith");
+        addItem(bundle, "lastname", "John Smith");
+        addItem(bundle, "firstname", "John");
+        addItem(bundle, "nickname", "Smith");
+        addItem(bundle, "empty", "");
+        addItem(bundle, "long", repeat("0123456789", 5));
+        addItem(bundle, "longer", repeat("abcdefghij", 120));
+        addItem(bundle, "surrogate", "\udc00 starts like a length");
+        addItem(bundle, "nul", "a\u0000b");
+        rbm.createResource(null, null, null, "de", null, null, null, false);
+
+        ResFile res = export(rbm, "Small", "");
+        if (res == null) return;
+        checkEquals(URES_TABLE16, res.getRootType(), "the root type of a small bundle");
+        checkContents(res, bundle, "a small bundle");
+
+        check(res.isKeyShared("name"), "the key \"name\" is written apart from the keys it ends");
+        check(!res.isKeyShared("firstname"), "the key \"firstname\" is written within another key");
+        checkEquals(res.getStringOffset("lastname") + 5, res.getStringOffset("name"),
+                    "the offset of a string that ends another");
+        checkEquals(res.getStringOffset("name"), res.getStringOffset("nickname"),
+                    "the offset of a string written twice");
+        checkEquals(0, res.getStringOffset("empty"), "the offset of the empty string");
+        check(res.hasExplicitLength("long"), "a long string is written without its length");
+        check(res.hasExplicitLength("longer"), "a longer string is written without its length");
+        check(res.hasExplicitLength("surrogate"), "a string starting like a length is written without it");
+        check(res.hasExplicitLength("nul"), "a string holding a zero is written without its length");
+        check(!res.hasExplicitLength("lastname"), "a short string is written with its length");
+
+        ResFile empty = export(rbm, "Small", "de");
+        if (empty == null) return;
+        checkEquals(URES_TABLE << 28, empty.getRoot(), "the root of an empty bundle");
+        checkEquals(0, empty.getKeys().size(), "the keys of an empty bundle");
+    }
+
+    // Strings beyond the first 64K units need the table of 16-bit keys and 32-bit resources
+    private void checkWideStrings() throws IOException {
+        RBManager rbm = new RBManager("Wide");
+        Bundle bundle = rbm.getBundle("");
+        for (int i=0; i < 2000; i++) addItem(bundle, "k" + i, pad("value " + i + " ", 40, '.'));
+        ResFile res = export(rbm, "Wide", "");
+        if (res == null) return;
+        checkEquals(URES_TABLE, res.getRootType(), "the root type of a bundle of many strings");
+        checkContents(res, bundle, "a bundle of many strings");
+    }
+
+    // Keys beyond the first 64K bytes need the table of 32-bit keys and resources
+    private void checkManyKeys() throws IOException {
+        RBManager rbm = new RBManager("Keys");
+        Bundle bundle = rbm.getBundle("");
+        for (int i=0; i < 3000; i++) addItem(bundle, pad("key." + i + ".", 30, 'x'), "v" + (i % 100));
+        ResFile res = export(rbm, "Keys", "");
+        if (res == null) return;
+        checkEquals(URES_TABLE32, res.getRootType(), "the root type of a bundle of many keys");
+        checkContents(res, bundle, "a bundle of many keys");
+    }
+
+    private static void addItem(Bundle bundle, String key, String value) {
+        bundle.addBundleItem(new BundleItem(bundle.getUngroupedGroup(), key, value));
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuffer buffer = new StringBuffer();
+        for (int i=0; i < count; i++) buffer.append(s);
+        return buffer.toString();
+    }
+
+    private static String pad(String s, int length, char ch) {
+        StringBuffer buffer = new StringBuffer(s);
+        while (buffer.length() < length) buffer.append(ch);
+        return buffer.toString();
+    }
+
+    // Exports a bundle and reads back the file of one of its locales, or returns null if the
+    // file cannot be read
+    private ResFile export(RBManager rbm, String baseName, String encoding) throws IOException {
+        File directory = new File(getDirectory(), baseName);
+        directory.mkdirs();
+        new RBICUBinaryExporter().export(rbm, new File(directory, baseName + ".res"));
+        File file = new File(directory, baseName + (encoding.length() > 0 ? "_" + encoding : "") + ".res");
+        check(file.isFile(), file.getName() + " was not written");
+        if (!file.isFile()) return null;
+        byte data[] = new byte[(int)file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        try {
+            return new ResFile(data);
+        } catch (IOException ioe) {
+            check(false, file.getName() + " cannot be read: " + ioe.getMessage());
+            return null;
+        }
+    }
+
+    // Checks that the file holds exactly the keys and strings of the bundle, in the order of
+    // the keys
+    private void checkContents(ResFile res, Bundle bundle, String what) {
+        Vector keys = res.getKeys();
+        checkEquals(bundle.allItems.size(), keys.size(), "the number of keys of " + what);
+        int wrong = 0;
+        for (int i=0; i < keys.size(); i++) {
+            String key = (String)keys.elementAt(i);
+            BundleItem item = (BundleItem)bundle.allItems.get(key);
+            String expected = (item == null || item.getTranslation() == null ? null : item.getTranslation());
+            if (expected == null || !expected.equals(res.getString(key))) {
+                if (wrong++ == 0) checkEquals(expected, res.getString(key), "the string of " + key + " in " + what);
+            }
+            if (i > 0 && ((String)keys.elementAt(i - 1)).compareTo(key) >= 0) {
+                if (wrong++ == 0) check(false, "the keys of " + what + " are out of order at " + key);
+            }
+        }
+        checkEquals(0, wrong, "the wrong keys and strings of " + what);
+        checkEquals(keys.size(), res.getMaxTableLength(), "the longest table of " + what);
+    }
+
+    /**
+     * A resource bundle of formatVersion 2 holding a single table of strings, read as ICU
+     * reads it
+     */
+
+    private static class ResFile {
+        private ByteBuffer data;                    // The resources, after the data header
+        private int        root;
+        private int        keysTop;                 // The end of the keys, in bytes
+        private int        maxTableLength;
+        private Vector     keys = new Vector();     // The keys in the order of the table
+        private Hashtable  keyOffsets = new Hashtable();
+        private Hashtable  resources = new Hashtable();
+
+        ResFile(byte bytes[]) throws IOException {
+            ByteBuffer file = ByteBuffer.wrap(bytes);
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            int headerSize = file.getShort(0) & 0xffff;
+            if ((file.get(2) & 0xff) != 0xda || (file.get(3) & 0xff) != 0x27) throw new IOException("no magic number");
+            if (file.get(8) != 0) throw new IOException("not little-endian");
+            if (file.get(12) != 'R' || file.get(13) != 'e' || file.get(14) != 's' || file.get(15) != 'B')
+                throw new IOException("not a resource bundle");
+            if (file.get(16) != 2) throw new IOException("formatVersion " + file.get(16));
+            file.position(headerSize);
+            data = file.slice();
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            root = data.getInt(0);
+            int indexLength = data.getInt(4) & 0xff;
+            if (indexLength < 7) throw new IOException(indexLength + " indexes");
+            keysTop = data.getInt(8) << 2;
+            int bundleTop = data.getInt(16) << 2;
+            maxTableLength = data.getInt(20);
+            int unitsTop = data.getInt(28) << 2;
+            if (bundleTop != data.capacity()) throw new IOException("the bundle ends at " + bundleTop + " of " + data.capacity());
+            if (unitsTop < keysTop || unitsTop > bundleTop) throw new IOException("the 16-bit units end at " + unitsTop);
+            readTable();
+        }
+
+        private void readTable() throws IOException {
+            int type = getRootType();
+            int offset = root & 0x0fffffff;
+            if (type == URES_TABLE16) {
+                int count = getUnit(offset);
+                for (int i=0; i < count; i++) {
+                    int res16 = getUnit(offset + 1 + count + i);
+                    addEntry(getUnit(offset + 1 + i), (URES_STRING_V2 << 28) | res16);
+                }
+            } else if (type == URES_TABLE) {
+                if (offset == 0) return;
+                int bytes = offset << 2;
+                int count = data.getShort(bytes) & 0xffff;
+                int resources = bytes + 2 + count * 2 + (count % 2 == 0 ? 2 : 0);
+                for (int i=0; i < count; i++) {
+                    addEntry(data.getShort(bytes + 2 + i * 2) & 0xffff, data.getInt(resources + i * 4));
+                }
+            } else if (type == URES_TABLE32) {
+                int bytes = offset << 2;
+                int count = data.getInt(bytes);
+                for (int i=0; i < count; i++) {
+                    addEntry(data.getInt(bytes + 4 + i * 4), data.getInt(bytes + 4 + count * 4 + i * 4));
+                }
+            } else {
+                throw new IOException("the root is of type " + type);
+            }
+        }
+
+        private void addEntry(int keyOffset, int resource) throws IOException {
+            if (keyOffset >= keysTop) throw new IOException("a key at " + keyOffset + " is beyond the keys");
+            StringBuffer key = new StringBuffer();
+            for (int i = keyOffset; data.get(i) != 0; i++) key.append((char)data.get(i));
+            int type = resource >>> 28;
+            if (type != URES_STRING_V2 && resource != 0) throw new IOException(key + " is of type " + type);
+            keys.addElement(key.toString());
+            keyOffsets.put(key.toString(), Integer.valueOf(keyOffset));
+            resources.put(key.toString(), Integer.valueOf(resource & 0x0fffffff));
+        }
+
+        private int getUnit(int index) {
+            return data.getChar(keysTop + index * 2);
+        }
+
+        int getRoot() {
+            return root;
+        }
+
+        int getRootType() {
+            return root >>> 28;
+        }
+
+        int getMaxTableLength() {
+            return maxTableLength;
+        }
+
+        Vector getKeys() {
+            return keys;
+        }
+
+        int getKeyOffset(String key) {
+            Integer offset = (Integer)keyOffsets.get(key);
+            return (offset == null ? -1 : offset.intValue());
+        }
+
+        // Returns whether a key is the end of another key, and was not written on its own
+        boolean isKeyShared(String key) {
+            int offset = getKeyOffset(key);
+            return offset > 0 && data.get(offset - 1) != 0;
+        }
+
+        int getStringOffset(String key) {
+            Integer offset = (Integer)resources.get(key);
+            return (offset == null ? -1 : offset.intValue());
+        }
+
+        boolean hasExplicitLength(String key) {
+            int offset = getStringOffset(key);
+            return offset >= 0 && (getUnit(offset) & 0xfc00) == 0xdc00;
+        }
+
+        // Returns the string of a key, read as ICU reads a string of formatVersion 2
+        String getString(String key) {
+            int offset = getStringOffset(key);
+            if (offset < 0) return null;
+            int first = getUnit(offset);
+            int length;
+            int start;
+            if ((first & 0xfc00) != 0xdc00) {
+                for (length = 0; getUnit(offset + length) != 0; length++);
+                start = offset;
+            } else if (first < 0xdfef) {
+                length = first & 0x3ff;
+                start = offset + 1;
+            } else if (first < 0xdfff) {
+                length = ((first - 0xdfef) << 16) | getUnit(offset + 1);
+                start = offset + 2;
+            } else {
+                length = (getUnit(offset + 1) << 16) | getUnit(offset + 2);
+                start = offset + 3;
+            }
+            StringBuffer buffer = new StringBuffer(length);
+            for (int i=0; i < length; i++) buffer.append((char)getUnit(start + i));
+            return buffer.toString();
+        }
+    }
+
+    public static void main(String args[]) {
+        main(new RBICUBinaryExporterTest());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm.test;
+
+import java.io.*;
+import java.util.*;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import com.ibm.rbm.*;
+
+/**
+ * Checks that an import whose session prompts asks every prompt on the thread that runs the
+ * import, even when the file holds several locales. The dialogs of RBImporter can only be
+ * shown on the thread of the import, which waits for the locales to be merged, so a prompt
+ * asked on any other thread hangs RBManager. The check is made for a properties bundle, for
+ * a directory of XLIFF files, and for the compiled classes of a ListResourceBundle, which
+ * need the compiler of a JDK.
+ */
+public class RBImportPromptTest extends RBTest {
+    private static final String LOCALES[] = { "", "de", "fr", "ja" };
+
+    protected void runChecks() throws Exception {
+        checkPropertiesImport();
+        checkXliffImport();
+        checkJavaImport();
+    }
+
+    private void checkPropertiesImport() throws IOException {
+        for (int i=0; i < LOCALES.length; i++) {
+            writeFile("Test" + (LOCALES[i].length() > 0 ? "_" + LOCALES[i] : "") + ".properties",
+                      "k1=imported " + LOCALES[i] + "\n");
+        }
+        checkImport(new RBPropertiesImportReader(), new File(getDirectory(), "Test.properties"),
+                    "a properties import");
+    }
+
+    // Imports a directory holding one XLIFF file for each locale, as RBxliffImporter does
+    private void checkXliffImport() throws IOException {
+        for (int i=0; i < LOCALES.length; i++) {
+            String languages = (LOCALES[i].length() > 0 ? " source-language=\"en\" target-language=\"" + LOCALES[i] + "\"" : "");
+            writeFile("xliff/Test" + (LOCALES[i].length() > 0 ? "_" + LOCALES[i] : "") + ".xlf",
+                      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                      "<xliff version=\"1.1\"><file original=\"Test\"" + languages + "><body>\n" +
+                      "<trans-unit id=\"k1\"><source>imported " + LOCALES[i] + "</source>" +
+                      (LOCALES[i].length() > 0 ? "<target>imported " + LOCALES[i] + "</target>" : "") +
+                      "</trans-unit>\n" +
+                      "</body></file></xliff>\n");
+        }
+        checkImport(new RBxliffImportReader(), new File(getDirectory(), "xliff"), "an XLIFF import");
+    }
+
+    // Compiles a ListResourceBundle base class and its locale classes into one directory, and
+    // imports them by choosing the base class, as RBJavaImporter does
+    private void checkJavaImport() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        check(compiler != null, "a Java import needs the compiler of a JDK");
+        if (compiler == null) return;
+        File directory = new File(getDirectory(), "classes");
+        Vector arguments = new Vector();
+        arguments.addElement("-d");
+        arguments.addElement(directory.getPath());
+        for (int i=0; i < LOCALES.length; i++) {
+            String className = "Test" + (LOCALES[i].length() > 0 ? "_" + LOCALES[i] : "");
+            File source = writeFile("java/" + className + ".java",
+                                    "public class " + className + " extends java.util.ListResourceBundle {\n" +
+                                    "    protected Object[][] getContents() {\n" +
+                                    "        return contents;\n" +
+                                    "    }\n" +
+                                    "    static final Object[][] contents = {\n" +
+                                    "        {\"k1\", \"imported " + LOCALES[i] + "\"}\n" +
+                                    "    };\n" +
+                                    "}\n");
+            arguments.addElement(source.getPath());
+        }
+        directory.mkdirs();
+        String args[] = new String[arguments.size()];
+        arguments.copyInto(args);
+        int status = compiler.run(null, null, null, args);
+        checkEquals(0, status, "compiling the classes of a Java import");
+        if (status != 0) return;
+        checkImport(new RBJavaImportReader(), new File(directory, "Test.class"), "a Java import");
+    }
+
+    /**
+     * Imports a file holding the resource k1 in each of LOCALES into a bundle that all ready
+     * has it in each of them, with a session prompting for each conflict, and checks that
+     * every prompt was asked on this thread
+     */
+
+    protected void checkImport(RBImportReader reader, File file, String what) throws IOException {
+        RBManager rbm = createManager();
+        final Thread importThread = Thread.currentThread();
+        final Vector promptThreads = new Vector();
+        RBImportSession session = new RBImportSession(rbm) {
+            protected int promptResource(Bundle bundle, BundleItem original, BundleItem item) {
+                promptThreads.addElement(Thread.currentThread());
+                return RESOURCE_OPTION_OVERWRITE;
+            }
+        };
+        session.setDefaultGroup("Ungrouped Items");
+        session.setResourceConflictOption(RBImportSession.RESOURCE_OPTION_PROMPT);
+        reader.importFile(file, session);
+
+        checkEquals(LOCALES.length, promptThreads.size(), what + " prompts");
+        for (int i=0; i < promptThreads.size(); i++) {
+            check(promptThreads.elementAt(i) == importThread,
+                  what + " prompted on " + promptThreads.elementAt(i) + " instead of " + importThread);
+        }
+        for (int i=0; i < LOCALES.length; i++) {
+            BundleItem item = (BundleItem)rbm.getBundle(LOCALES[i]).allItems.get("k1");
+            checkEquals("imported " + LOCALES[i], (item == null ? null : item.getTranslation()),
+                        what + " resource of locale \"" + LOCALES[i] + "\"");
+        }
+    }
+
+    // Returns a bundle with the resource k1 in each of LOCALES
+    private static RBManager createManager() {
+        RBManager rbm = new RBManager("Test");
+        for (int i=0; i < LOCALES.length; i++) {
+            if (LOCALES[i].length() > 0) rbm.createResource(null, null, null, LOCALES[i], null, null, null, false);
+            Bundle bundle = rbm.getBundle(LOCALES[i]);
+            bundle.addBundleItem(new BundleItem(bundle.getUngroupedGroup(), "k1", "existing " + LOCALES[i]));
+        }
+        return rbm;
+    }
+
+    public static void main(String args[]) {
+        main(new RBImportPromptTest());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm.test;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+import com.ibm.rbm.*;
+
+/**
+ * Checks that the translations of the files of a bundle written by RBManager are read in
+ * ISO-8859-1, as java.util.Properties reads them, so that a raw byte above 0x7F and a \\u
+ * escape read as the same character, while the meta-data in the comments is read in the
+ * default encoding it is written in, so that groups and comments survive being saved and
+ * loaded again.
+ */
+public class RBManagerReadTest extends RBTest {
+    private static final String CAFE = "caf\u00e9";
+    private static final String GROUP = "Gr\u00f6\u00dfe";
+    private static final String COMMENT = "na\u00efve";
+
+    protected void runChecks() throws Exception {
+        byte header[] = "# @file Test\nk0=caf\\u00e9\nk1=caf".getBytes("ISO-8859-1");
+        byte data[] = new byte[header.length + 2];
+        System.arraycopy(header, 0, data, 0, header.length);
+        data[header.length] = (byte)0xE9;
+        data[header.length + 1] = (byte)'\n';
+        File file = writeFile("Test.properties", data);
+
+        check(RBManager.isRBManagerFile(file), "the file is not taken as written by RBManager");
+        Bundle bundle = RBManager.readBundle(file, "");
+        checkTranslation(bundle, "k0", "readBundle()");
+        checkTranslation(bundle, "k1", "readBundle()");
+
+        RBManager rbm = new RBManager(file, false);
+        checkTranslation(rbm.getBundle(""), "k0", "RBManager(File)");
+        checkTranslation(rbm.getBundle(""), "k1", "RBManager(File)");
+
+        checkSaved();
+    }
+
+    /**
+     * Saves a bundle with meta-data outside of ASCII and loads it again, twice over. The
+     * meta-data is written in the default charset, so it is kept to ASCII when that charset
+     * can not hold it.
+     */
+    private void checkSaved() throws IOException {
+        boolean encodable = Charset.defaultCharset().newEncoder().canEncode(GROUP + COMMENT);
+        String groupName = (encodable ? GROUP : "Size");
+        String comment = (encodable ? COMMENT : "naive");
+        RBManager rbm = new RBManager("Saved");
+        Bundle bundle = rbm.getBundle("");
+        bundle.addBundleGroup(groupName, comment);
+        BundleItem item = new BundleItem(bundle.getBundleGroup(groupName), "k1", CAFE);
+        item.setComment(comment);
+        bundle.addBundleItem(item);
+        File directory = new File(getDirectory(), "saved");
+        directory.mkdirs();
+        for (int i=1; i <= 2; i++) {
+            String what = "save " + i;
+            rbm.writeToDirectory(directory);
+            rbm = new RBManager(new File(directory, "Saved.properties"), false);
+            bundle = rbm.getBundle("");
+            checkTranslation(bundle, "k1", what);
+            BundleGroup group = bundle.getBundleGroup(groupName);
+            check(group != null, what + " lost the group " + groupName);
+            checkEquals(comment, (group == null ? null : group.getComment()), what + " group comment");
+            item = (BundleItem)bundle.allItems.get("k1");
+            checkEquals(groupName, (item == null ? null : item.getParentGroup().getName()), what + " group of k1");
+            checkEquals(comment, (item == null ? null : item.getComment()), what + " comment of k1");
+        }
+    }
+
+    private void checkTranslation(Bundle bundle, String key, String what) {
+        BundleItem item = (bundle == null ? null : (BundleItem)bundle.allItems.get(key));
+        checkEquals(CAFE, (item == null ? null : item.getTranslation()), what + " read " + key);
+    }
+
+    public static void main(String args[]) {
+        main(new RBManagerReadTest());
+    }
+}
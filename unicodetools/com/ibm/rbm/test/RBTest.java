@@ -0,0 +1,134 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm.test;
+
+import java.io.*;
+
+/**
+ * The super class of the self-checking tests of RBManager. Each test is a class with a
+ * main() method, so it needs nothing but the classes of RBManager to run. A test makes its
+ * checks through check() and checkEquals(), which report a failure without stopping the
+ * test, and works on files in a temporary directory that is removed when it is done.
+ * <p>
+ * Run all of the tests with:
+ * <pre>
+ * java com.ibm.rbm.test.RBTestSuite
+ * </pre>
+ * The exit status is the number of failed tests.
+ *
+ * @see com.ibm.rbm.test.RBTestSuite
+ */
+public abstract class RBTest {
+    private PrintStream out;
+    private File        directory;
+    private int         checks;
+    private int         failures;
+
+    /**
+     * Runs the checks of the test
+     */
+
+    protected abstract void runChecks() throws Exception;
+
+    /**
+     * Runs the test, printing each failed check and a summary, and returns whether every
+     * check passed. An exception thrown by the test counts as a failure.
+     */
+
+    public boolean run(PrintStream out) {
+        this.out = out;
+        checks = 0;
+        failures = 0;
+        try {
+            runChecks();
+        } catch (Throwable t) {
+            failures++;
+            out.println(getName() + ": FAILED with " + t);
+            t.printStackTrace(out);
+        } finally {
+            if (directory != null) deleteTree(directory);
+            directory = null;
+        }
+        out.println(getName() + ": " + (checks - failures) + " of " + checks + " checks passed" +
+                    (failures > 0 ? ", " + failures + " FAILED" : ""));
+        return failures == 0;
+    }
+
+    public String getName() {
+        String name = getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    protected void check(boolean condition, String message) {
+        checks++;
+        if (condition) return;
+        failures++;
+        out.println(getName() + ": FAILED " + message);
+    }
+
+    protected void checkEquals(Object expected, Object actual, String message) {
+        check(expected == null ? actual == null : expected.equals(actual),
+              message + ": expected <" + expected + "> but was <" + actual + ">");
+    }
+
+    protected void checkEquals(long expected, long actual, String message) {
+        check(expected == actual, message + ": expected <" + expected + "> but was <" + actual + ">");
+    }
+
+    /**
+     * Returns a temporary directory for the files of the test, created on the first call
+     */
+
+    protected File getDirectory() throws IOException {
+        if (directory == null) {
+            directory = File.createTempFile("rbtest", "");
+            directory.delete();
+            if (!directory.mkdirs()) throw new IOException("Unable to create " + directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Writes a file of the given bytes into the directory of the test
+     */
+
+    protected File writeFile(String name, byte data[]) throws IOException {
+        File file = new File(getDirectory(), name);
+        file.getParentFile().mkdirs();
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(data);
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes a file of the given text, encoded in UTF-8, into the directory of the test
+     */
+
+    protected File writeFile(String name, String text) throws IOException {
+        return writeFile(name, text.getBytes("UTF-8"));
+    }
+
+    private static void deleteTree(File file) {
+        File children[] = file.listFiles();
+        if (children != null) {
+            for (int i=0; i < children.length; i++) deleteTree(children[i]);
+        }
+        file.delete();
+    }
+
+    /**
+     * Runs a single test from its main() method, exiting with a non-zero status if it failed
+     */
+
+    protected static void main(RBTest test) {
+        System.exit(test.run(System.out) ? 0 : 1);
+    }
+}
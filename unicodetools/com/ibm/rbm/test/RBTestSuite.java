@@ -0,0 +1,39 @@
+/*
+ *****************************************************************************
+ * Copyright (C) 2000-2007, International Business Machines Corporation and  *
+ * others. All Rights Reserved.                                              *
+ *****************************************************************************
+ */
+package com.ibm.rbm.test;
+
+/**
+ * Runs all of the tests of RBManager. The exit status is the number of failed tests.
+ *
+ * @see com.ibm.rbm.test.RBTest
+ */
+public class RBTestSuite {
+    /**
+     * Returns a new instance of every test
+     */
+
+    public static RBTest[] getTests() {
+        return new RBTest[] {
+            new RBConflictPolicyTest(),
+            new RBManagerReadTest(),
+            new RBImportPromptTest(),
+            new RBICUBinaryExporterTest()
+        };
+    }
+
+    public static void main(String args[]) {
+        // Loading bundles must not depend on a display
+        System.setProperty("java.awt.headless", "true");
+        RBTest tests[] = getTests();
+        int failed = 0;
+        for (int i=0; i < tests.length; i++) {
+            if (!tests[i].run(System.out)) failed++;
+        }
+        System.out.println("RBTestSuite: " + (tests.length - failed) + " of " + tests.length + " tests passed");
+        System.exit(failed);
+    }
+}